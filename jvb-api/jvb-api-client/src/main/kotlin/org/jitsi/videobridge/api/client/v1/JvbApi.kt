@@ -22,9 +22,11 @@ import io.ktor.client.HttpClient
 import io.ktor.client.engine.cio.CIO
 import io.ktor.client.features.websocket.WebSockets
 import org.jitsi.utils.logging2.LoggerImpl
+import org.jitsi.videobridge.api.util.LatencyHistogram
 import org.jitsi.videobridge.api.util.XmppWebSocketClient
 import org.jivesoftware.smack.packet.IQ
 import org.jivesoftware.smack.packet.Stanza
+import java.util.concurrent.CompletableFuture
 
 /**
  * JVB Client API for controlling a JVB instance
@@ -51,6 +53,32 @@ class JvbApi(jvbHost: String, jvbPort: Int) {
         return wsClient.sendIqAndGetReply(iq)
     }
 
+    /**
+     * Send an [IQ] and return a future which completes with the response
+     * [IQ].  Call is asynchronous, so many requests can be outstanding at
+     * the same time.
+     */
+    fun sendIqAsync(iq: IQ): CompletableFuture<Stanza> {
+        return wsClient.sendIqAsync(iq)
+    }
+
+    /**
+     * Send multiple [IQ]s (e.g. updates to different conferences) in a
+     * single message, and return a future for each of their responses.
+     * Call is asynchronous.
+     */
+    fun sendIqsAsync(iqs: List<IQ>): List<CompletableFuture<Stanza>> {
+        return wsClient.sendIqsAsync(iqs)
+    }
+
+    /**
+     * Get the latency histograms of the requests sent so far, by request
+     * type.
+     */
+    fun getLatencyStats(): Map<String, LatencyHistogram.Snapshot> {
+        return wsClient.getLatencyStats()
+    }
+
     /**
      * Send an [IQ] and don't wait for its response
      */
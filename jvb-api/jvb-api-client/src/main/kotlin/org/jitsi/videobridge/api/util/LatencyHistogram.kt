@@ -0,0 +1,119 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.api.util
+
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * A histogram of request latencies with fixed buckets.  Recording is
+ * lock-free, so it can be done from any thread.
+ */
+class LatencyHistogram(
+    /**
+     * The upper bounds (inclusive, in milliseconds) of the buckets, in
+     * increasing order.  An extra bucket holds the latencies above the last
+     * bound.
+     */
+    private val bucketBoundsMs: LongArray = DEFAULT_BUCKET_BOUNDS_MS
+) {
+    private val counts = AtomicLongArray(bucketBoundsMs.size + 1)
+    private val totalLatencyMs = AtomicLong()
+    private val numTimeouts = AtomicLong()
+
+    init {
+        require(bucketBoundsMs.isNotEmpty()) { "At least one bucket bound is required" }
+        require(bucketBoundsMs.asList() == bucketBoundsMs.sorted()) { "Bucket bounds must be sorted" }
+    }
+
+    fun record(latency: Duration) {
+        val latencyMs = latency.toMillis()
+        var bucket = bucketBoundsMs.binarySearch(latencyMs)
+        if (bucket < 0) {
+            bucket = -bucket - 1
+        }
+        counts.incrementAndGet(bucket)
+        totalLatencyMs.addAndGet(latencyMs)
+    }
+
+    /**
+     * Record a request which didn't get a response in time.
+     */
+    fun recordTimeout() {
+        numTimeouts.incrementAndGet()
+    }
+
+    fun snapshot(): Snapshot = Snapshot(
+        bucketBoundsMs.asList(),
+        (0 until counts.length()).map { counts.get(it) },
+        totalLatencyMs.get(),
+        numTimeouts.get()
+    )
+
+    data class Snapshot(
+        val bucketBoundsMs: List<Long>,
+        /**
+         * The number of latencies in each bucket, with one more element than
+         * [bucketBoundsMs] for the latencies above the last bound.
+         */
+        val counts: List<Long>,
+        val totalLatencyMs: Long,
+        val numTimeouts: Long
+    ) {
+        val count: Long
+            get() = counts.sum()
+
+        val meanLatencyMs: Double
+            get() = if (count == 0L) 0.0 else totalLatencyMs.toDouble() / count
+
+        /**
+         * Get the upper bound of the bucket which contains a given percentile
+         * (between 0 and 1) of the latencies, or null if there are no
+         * latencies or the percentile falls in the last (unbounded) bucket.
+         */
+        fun percentileMs(percentile: Double): Long? {
+            val total = count
+            if (total == 0L) {
+                return null
+            }
+            val target = Math.ceil(percentile * total).toLong().coerceAtLeast(1)
+            var cumulative = 0L
+            counts.forEachIndexed { bucket, bucketCount ->
+                cumulative += bucketCount
+                if (cumulative >= target) {
+                    return bucketBoundsMs.getOrNull(bucket)
+                }
+            }
+            return null
+        }
+
+        fun toMap(): Map<String, Any?> = mapOf(
+            "count" to count,
+            "timeouts" to numTimeouts,
+            "mean_ms" to meanLatencyMs,
+            "p50_ms" to percentileMs(0.5),
+            "p99_ms" to percentileMs(0.99),
+            "buckets" to bucketBoundsMs.mapIndexed { i, bound -> "<= $bound" to counts[i] }.toMap() +
+                ("> ${bucketBoundsMs.last()}" to counts.last())
+        )
+    }
+
+    companion object {
+        val DEFAULT_BUCKET_BOUNDS_MS = longArrayOf(1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 15000)
+    }
+}
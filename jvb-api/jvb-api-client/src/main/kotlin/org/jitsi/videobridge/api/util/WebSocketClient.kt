@@ -58,12 +58,14 @@ class WebSocketClient(
     private val logger = createChildLogger(parentLogger)
     private val job = Job()
     private val coroutineScope = CoroutineScope(dispatcher + job)
-    private val msgsToSend = Channel<Frame>(Channel.RENDEZVOUS)
+    private val msgsToSend = Channel<Frame>(Channel.UNLIMITED)
 
+    /**
+     * Queue a message to be sent.  Messages are sent in the order in which
+     * this method is called.
+     */
     fun sendString(data: String) {
-        coroutineScope.launch {
-            msgsToSend.send(Frame.Text(data))
-        }
+        msgsToSend.offer(Frame.Text(data))
     }
 
     /**
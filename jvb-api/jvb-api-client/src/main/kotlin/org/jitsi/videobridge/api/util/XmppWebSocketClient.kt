@@ -19,6 +19,15 @@ package org.jitsi.videobridge.api.util
 import io.ktor.client.HttpClient
 import io.ktor.http.cio.websocket.Frame
 import io.ktor.http.cio.websocket.readText
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
 import org.jitsi.utils.logging2.LoggerImpl
 import org.jitsi.utils.logging2.createChildLogger
 import org.jivesoftware.smack.packet.IQ
@@ -26,22 +35,35 @@ import org.jivesoftware.smack.packet.Stanza
 import java.time.Duration
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
 import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Send and receive XMPP messages over websockets.  Supports sending [IQ]s and
  * waiting for their replies (by correlating stanza IDs) or
  * 'sending-and-forgetting': sending an IQ but not waiting for its response.
+ *
+ * Requests are pipelined: any number of them can be outstanding at the same
+ * time over the single websocket, and their replies can arrive in any order.
+ * Multiple IQs can also be sent in a single websocket message (see
+ * [sendIqsAsync]), and incoming messages may contain multiple stanzas.
+ * Serialization happens on [dispatcher] rather than on the calling thread,
+ * in a single coroutine, so messages are sent in the order in which they were
+ * submitted.
  */
 class XmppWebSocketClient(
     private val wsClient: WebSocketClient,
     parentLogger: LoggerImpl,
     /**
-     * How long we'll wait in [#sendIqAndGetReply] for a response before
-     * timing out
+     * How long we'll wait for a response before timing out
+     */
+    private val requestTimeout: Duration = Duration.ofSeconds(15),
+    /**
+     * The dispatcher used to serialize requests and to time them out
      */
-    private val requestTimeout: Duration = Duration.ofSeconds(15)
+    dispatcher: CoroutineDispatcher = Dispatchers.IO
 ) {
     constructor(
         /**
@@ -73,21 +95,49 @@ class XmppWebSocketClient(
     private val requestId = AtomicInteger(1)
 
     /**
-     * A map of stanza ID -> handlers waiting for a response to a stanza with
+     * A map of stanza ID -> requests waiting for a response to a stanza with
      * that ID
      */
-    private val responseHandlers: MutableMap<String, CompletableFuture<Stanza>> = ConcurrentHashMap()
+    private val pendingRequests: MutableMap<String, PendingRequest> = ConcurrentHashMap()
+
+    private val coroutineScope = CoroutineScope(dispatcher + SupervisorJob())
+
+    /**
+     * The latencies of the requests, by the name of the child element of the
+     * request [IQ] (e.g. "conference" for Colibri).
+     */
+    private val latencies: MutableMap<String, LatencyHistogram> = ConcurrentHashMap()
+
+    /**
+     * The stanzas waiting to be serialized and sent, each element being sent
+     * in one websocket message.
+     */
+    private val outgoing = Channel<List<Stanza>>(Channel.UNLIMITED)
 
     init {
         wsClient.incomingMessageHandler = this::handleIncomingMessage
+        coroutineScope.launch {
+            for (stanzas in outgoing) {
+                try {
+                    wsClient.sendString(SmackXmlSerDes.serializeAll(stanzas))
+                } catch (e: Exception) {
+                    logger.error("Failed to send a message", e)
+                }
+            }
+        }
     }
 
     private fun handleIncomingMessage(frame: Frame) {
         when (frame) {
             is Frame.Text -> {
-                val stanza = SmackXmlSerDes.deserialize(frame.readText())
-                responseHandlers.remove(stanza.stanzaId)?.let {
-                    it.complete(stanza)
+                val stanzas = try {
+                    SmackXmlSerDes.deserializeAll(frame.readText())
+                } catch (e: Exception) {
+                    logger.error("Failed to parse incoming message", e)
+                    return
+                }
+                stanzas.forEach { stanza ->
+                    pendingRequests.remove(stanza.stanzaId)?.complete(stanza)
                 }
             }
             else -> logger.error("Received a non-test websocket frame: $frame")
@@ -99,24 +149,59 @@ class XmppWebSocketClient(
      * null if it times out.
      */
     fun sendIqAndGetReply(iq: IQ): Stanza? {
-        val id = requestId.getAndIncrement()
-        iq.stanzaId = "$id"
-        val response = CompletableFuture<Stanza>()
-        responseHandlers["$id"] = response
-        wsClient.sendString(SmackXmlSerDes.serialize(iq))
-
         return try {
-            response.get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)
-        } catch (t: Throwable) {
-            responseHandlers.remove("$id")
+            sendIqAsync(iq).get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)
+        } catch (e: ExecutionException) {
+            null
+        } catch (e: TimeoutException) {
+            null
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
             null
         }
     }
 
+    /**
+     * Send an [IQ] without blocking.  The returned future completes with the
+     * response, or exceptionally with a [TimeoutException] if there is no
+     * response within [requestTimeout].  The [IQ] must not be modified after
+     * it has been passed to this method.
+     */
+    fun sendIqAsync(iq: IQ): CompletableFuture<Stanza> = sendIqsAsync(listOf(iq)).first()
+
+    /**
+     * Send multiple [IQ]s in a single websocket message without blocking,
+     * e.g. to update multiple conferences at once.  The responses are
+     * correlated individually, in the same way as for [sendIqAsync].
+     */
+    fun sendIqsAsync(iqs: List<IQ>): List<CompletableFuture<Stanza>> {
+        val responses = iqs.map { iq ->
+            val id = "${requestId.getAndIncrement()}"
+            iq.stanzaId = id
+            val request = PendingRequest(id, iq.childElementName ?: "unknown")
+            pendingRequests[id] = request
+            request.timeoutJob = coroutineScope.launch {
+                delay(requestTimeout.toMillis())
+                pendingRequests.remove(id)?.timeOut()
+            }
+            request.future
+        }
+        outgoing.offer(iqs)
+        return responses
+    }
+
     /**
      * Send an [IQ] asynchronously and don't wait for a response
      */
-    fun sendIqAndForget(iq: IQ) = wsClient.sendString(SmackXmlSerDes.serialize(iq))
+    fun sendIqAndForget(iq: IQ) {
+        outgoing.offer(listOf(iq))
+    }
+
+    /**
+     * Get the latency histograms of the requests sent so far, by the name of
+     * the child element of the request [IQ].
+     */
+    fun getLatencyStats(): Map<String, LatencyHistogram.Snapshot> = latencies.mapValues { it.value.snapshot() }
 
     /**
      * Connect the websocket client
@@ -126,5 +211,34 @@ class XmppWebSocketClient(
     /**
      * Disconnect the websocket client
      */
-    fun stop() = wsClient.stop()
+    fun stop() {
+        outgoing.close()
+        coroutineScope.cancel()
+        wsClient.stop()
+        pendingRequests.keys.toList().forEach {
+            pendingRequests.remove(it)?.future?.completeExceptionally(IllegalStateException("Client stopped"))
+        }
+    }
+
+    private inner class PendingRequest(
+        private val id: String,
+        private val type: String
+    ) {
+        val future = CompletableFuture<Stanza>()
+        var timeoutJob: Job? = null
+        private val sentNanos = System.nanoTime()
+
+        fun complete(stanza: Stanza) {
+            timeoutJob?.cancel()
+            histogram().record(Duration.ofNanos(System.nanoTime() - sentNanos))
+            future.complete(stanza)
+        }
+
+        fun timeOut() {
+            histogram().recordTimeout()
+            future.completeExceptionally(TimeoutException("No response to request $id within $requestTimeout"))
+        }
+
+        private fun histogram() = latencies.computeIfAbsent(type) { LatencyHistogram() }
+    }
 }
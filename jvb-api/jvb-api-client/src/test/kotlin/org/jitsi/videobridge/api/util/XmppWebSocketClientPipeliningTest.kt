@@ -0,0 +1,139 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.api.util
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.assertions.timing.eventually
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.Spec
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldHaveSize
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeInstanceOf
+import io.ktor.client.HttpClient
+import io.ktor.client.engine.cio.CIO
+import io.ktor.client.features.websocket.WebSockets
+import io.ktor.http.cio.websocket.Frame
+import io.ktor.http.cio.websocket.readText
+import io.ktor.server.engine.embeddedServer
+import io.ktor.server.jetty.Jetty
+import org.jitsi.utils.logging2.LoggerImpl
+import org.jitsi.xmpp.extensions.colibri.ColibriConferenceIQ
+import java.time.Duration
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import kotlin.random.Random
+import kotlin.time.ExperimentalTime
+import kotlin.time.seconds
+
+@ExperimentalTime
+class XmppWebSocketClientPipeliningTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val wsPort = Random.nextInt(1024, 65535)
+
+    private val client = HttpClient(CIO) {
+        install(WebSockets)
+    }
+
+    private val wsServer = TestWsServer()
+
+    private val server = embeddedServer(Jetty, port = wsPort) {
+        wsServer.app(this)
+    }
+
+    private val testLogger = LoggerImpl("test")
+
+    private val xmppClients = mutableListOf<XmppWebSocketClient>()
+
+    private fun xmppClient(path: String, requestTimeout: Duration = Duration.ofSeconds(5)) =
+        XmppWebSocketClient(client, "localhost", wsPort, path, testLogger, requestTimeout).also {
+            xmppClients.add(it)
+            it.run()
+        }
+
+    override fun afterSpec(spec: Spec) {
+        xmppClients.forEach { it.stop() }
+        client.close()
+        server.stop(0, 0)
+    }
+
+    init {
+        server.start()
+
+        context("sendIqAsync") {
+            context("with many outstanding requests") {
+                val ws = xmppClient("/ws/echo")
+                val iqs = (1..50).map { ColibriConferenceIQ() }
+                val responses = iqs.map { ws.sendIqAsync(it) }
+                should("complete all of them") {
+                    responses.forEachIndexed { i, response ->
+                        response.get(5, TimeUnit.SECONDS).stanzaId shouldBe iqs[i].stanzaId
+                    }
+                }
+                should("record their latencies") {
+                    responses.forEach { it.get(5, TimeUnit.SECONDS) }
+                    val stats = ws.getLatencyStats()
+                    stats.keys shouldBe setOf(ColibriConferenceIQ.ELEMENT_NAME)
+                    stats.getValue(ColibriConferenceIQ.ELEMENT_NAME).count shouldBe 50
+                    stats.getValue(ColibriConferenceIQ.ELEMENT_NAME).numTimeouts shouldBe 0
+                }
+            }
+            context("when no reply is sent") {
+                val ws = xmppClient("/ws/blackhole", requestTimeout = Duration.ofSeconds(1))
+                val response = ws.sendIqAsync(ColibriConferenceIQ())
+                should("time out") {
+                    val exception = shouldThrow<ExecutionException> {
+                        response.get(5, TimeUnit.SECONDS)
+                    }
+                    exception.cause.shouldBeInstanceOf<TimeoutException>()
+                    ws.getLatencyStats().getValue(ColibriConferenceIQ.ELEMENT_NAME).numTimeouts shouldBe 1
+                }
+            }
+        }
+        context("sending many requests") {
+            val ws = xmppClient("/ws/echo")
+            val iqs = (1..50).map { ColibriConferenceIQ() }
+            iqs.forEach { ws.sendIqAsync(it) }
+            should("send them in order") {
+                eventually(5.seconds) {
+                    wsServer.receivedMessages shouldHaveSize 50
+                }
+                val receivedIds = wsServer.receivedMessages.map {
+                    SmackXmlSerDes.deserialize((it as Frame.Text).readText()).stanzaId
+                }
+                receivedIds shouldBe iqs.map { it.stanzaId }
+            }
+        }
+        context("sendIqsAsync") {
+            val ws = xmppClient("/ws/echo")
+            val iqs = (1..5).map { ColibriConferenceIQ() }
+            val responses = ws.sendIqsAsync(iqs)
+            should("send the IQs in a single message") {
+                eventually(5.seconds) {
+                    wsServer.receivedMessages shouldHaveSize 1
+                }
+            }
+            should("complete all of them") {
+                responses.forEachIndexed { i, response ->
+                    response.get(5, TimeUnit.SECONDS).stanzaId shouldBe iqs[i].stanzaId
+                }
+            }
+        }
+    }
+}
@@ -24,14 +24,77 @@ import org.jivesoftware.smack.util.PacketParserUtils
  * [String]s.  Note that deserialization relies on the proper
  * [org.jivesoftware.smack.provider.Provider]s being installed to the
  * [org.jivesoftware.smack.provider.ProviderManager].
+ *
+ * Multiple stanzas can be sent in a single message (a batch) by
+ * concatenating them, as they would be in an XMPP stream.
  */
 class SmackXmlSerDes {
     companion object {
         fun serialize(stanza: Stanza): String =
             stanza.toXML().toString()
 
+        fun serializeAll(stanzas: List<Stanza>): String =
+            stanzas.joinToString(separator = "") { serialize(it) }
+
         fun deserialize(data: String): Stanza {
             return PacketParserUtils.parseStanza(data)
         }
+
+        fun deserializeAll(data: String): List<Stanza> =
+            splitStanzas(data).map { deserialize(it) }
+
+        /**
+         * Splits a message into its top-level elements.  Smack escapes '<'
+         * and '>' in attribute values and text, so we only need to skip over
+         * processing instructions, comments and CDATA sections.
+         */
+        fun splitStanzas(data: String): List<String> {
+            val stanzas = mutableListOf<String>()
+            var depth = 0
+            var start = -1
+            var i = data.indexOf('<')
+            while (i >= 0 && i < data.length) {
+                when {
+                    data.startsWith("<?", i) -> i = data.skipPast("?>", i)
+                    data.startsWith("<!--", i) -> i = data.skipPast("-->", i)
+                    data.startsWith("<![CDATA[", i) -> i = data.skipPast("]]>", i)
+                    data.startsWith("</", i) -> {
+                        i = data.skipPast(">", i)
+                        depth--
+                        if (depth == 0) {
+                            stanzas.add(data.substring(start, i))
+                        }
+                    }
+                    else -> {
+                        val end = data.skipPast(">", i)
+                        if (depth == 0) {
+                            start = i
+                        }
+                        if (data[end - 2] == '/') {
+                            // A self-closing element.
+                            if (depth == 0) {
+                                stanzas.add(data.substring(start, end))
+                            }
+                        } else {
+                            depth++
+                        }
+                        i = end
+                    }
+                }
+                i = data.indexOf('<', i)
+            }
+            if (depth != 0) {
+                throw IllegalArgumentException("Unbalanced elements in message")
+            }
+            return stanzas
+        }
+
+        private fun String.skipPast(terminator: String, from: Int): Int {
+            val index = indexOf(terminator, from)
+            if (index < 0) {
+                throw IllegalArgumentException("Unterminated markup at $from")
+            }
+            return index + terminator.length
+        }
     }
 }
@@ -143,6 +143,18 @@ public AbstractEndpointMessageTransport getMessageTransport()
      */
     abstract public MediaSourceDesc[] getMediaSources();
 
+    /**
+     * Gets the bitrate (in bps) of a layer of one of this endpoint's media
+     * sources.
+     *
+     * @param layer the layer.
+     * @param nowMs the current time.
+     */
+    public long getLayerBitrateBps(RtpLayerDesc layer, long nowMs)
+    {
+        return (long) layer.getBitrate(nowMs).getBps();
+    }
+
     /**
      * Returns the display name of this <tt>Endpoint</tt>.
      *
@@ -266,6 +278,20 @@ public void expire()
      */
     public abstract boolean shouldExpire();
 
+    /**
+     * Gets how long to wait before checking {@link #shouldExpire()} again,
+     * i.e. the earliest time at which this endpoint could be ready to expire
+     * if nothing changes. Endpoints which can compute this from their
+     * activity should override this, by default they are checked at the
+     * configured expire check interval.
+     *
+     * @return the delay until the next expire check.
+     */
+    public Duration getExpireCheckDelay()
+    {
+        return VideobridgeExpireThread.config.getInterval();
+    }
+
     /**
      * Get the last 'incoming activity' (packets received) this endpoint has seen
      * @return the timestamp, in milliseconds, of the last activity of this endpoint
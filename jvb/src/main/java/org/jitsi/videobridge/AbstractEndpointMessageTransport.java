@@ -80,6 +80,35 @@ public void onMessage(Object src, String msg)
             return;
         }
 
+        submitMessage(src, message);
+    }
+
+    /**
+     * Handles a binary (CBOR-encoded) message received from a particular
+     * transport channel.
+     *
+     * @param src the transport channel on which the message was received.
+     * @param data the encoded message.
+     */
+    public void onBinaryMessage(Object src, byte[] data)
+    {
+        BridgeChannelMessage message;
+
+        try
+        {
+            message = BridgeChannelCodec.decodeCbor(data);
+        }
+        catch (IOException ioe)
+        {
+            logger.warn("Invalid binary message received, length=" + data.length, ioe);
+            return;
+        }
+
+        submitMessage(src, message);
+    }
+
+    private void submitMessage(Object src, BridgeChannelMessage message)
+    {
         TaskPools.IO_POOL.submit(() ->
         {
             BridgeChannelMessage response = handleMessage(message);
@@ -0,0 +1,126 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge;
+
+import org.jetbrains.annotations.*;
+import org.jitsi.nlj.*;
+
+import java.util.*;
+
+/**
+ * Forwards the audio packets of a conference. Audio doesn't need the generic
+ * path of {@link Conference} (the {@link PotentialPacketHandler#wants} and
+ * {@link PotentialPacketHandler#send} checks of every endpoint for every
+ * packet, and the bitrate controller), so this keeps a list of the receivers
+ * which accept audio, updated when the endpoints change, and hands each of
+ * them a copy of the packet directly.
+ *
+ * Note that the copy of the packet and its enqueuing in the receiver's send
+ * queue dominate the cost of the fan-out, on both paths. The enqueuing is not
+ * batched: every receiver has its own queue, and a call to {@link #forward}
+ * adds exactly one packet to each of them, so there is nothing to batch
+ * without holding packets back.
+ */
+public class AudioForwarder
+{
+    /**
+     * The receivers which accept audio, replaced (never modified) when they
+     * change, so that it can be iterated without locking.
+     */
+    private volatile Receiver[] receivers = new Receiver[0];
+
+    /**
+     * Sets the receivers which accept audio.
+     */
+    public void setReceivers(Collection<? extends Receiver> receivers)
+    {
+        this.receivers = receivers.toArray(new Receiver[0]);
+    }
+
+    /**
+     * Forwards an audio packet to all receivers except its source, and to
+     * {@code octo} if it is not {@code null} and wants the packet. The last
+     * handler gets the original packet, and the others get copies.
+     *
+     * @return {@code false} if no one wanted the packet, in which case the
+     * caller still owns it.
+     */
+    public boolean forward(
+        PacketInfo packetInfo, @Nullable PotentialPacketHandler octo)
+    {
+        String sourceEndpointId = packetInfo.getEndpointId();
+        Receiver prevReceiver = null;
+        for (Receiver receiver : receivers)
+        {
+            if (!receiver.getID().equals(sourceEndpointId)
+                && receiver.wantsAudio(packetInfo))
+            {
+                if (prevReceiver != null)
+                {
+                    prevReceiver.sendAudio(packetInfo.clone());
+                }
+                prevReceiver = receiver;
+            }
+        }
+
+        if (octo != null && octo.wants(packetInfo))
+        {
+            if (prevReceiver != null)
+            {
+                prevReceiver.sendAudio(packetInfo.clone());
+            }
+            octo.send(packetInfo);
+            return true;
+        }
+        if (prevReceiver != null)
+        {
+            prevReceiver.sendAudio(packetInfo);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of receivers which accept audio.
+     */
+    public int getNumReceivers()
+    {
+        return receivers.length;
+    }
+
+    /**
+     * An endpoint which receives audio through an {@link AudioForwarder}.
+     */
+    public interface Receiver
+    {
+        /**
+         * @return the ID of the endpoint.
+         */
+        String getID();
+
+        /**
+         * @return whether the endpoint wants a specific audio packet right now
+         * (e.g. its transport is connected).
+         */
+        boolean wantsAudio(PacketInfo packetInfo);
+
+        /**
+         * Sends an audio packet to the endpoint, which takes ownership of it.
+         */
+        void sendAudio(PacketInfo packetInfo);
+    }
+}
@@ -17,6 +17,8 @@
 
 import org.jetbrains.annotations.*;
 import org.jitsi.nlj.*;
+import org.jitsi.nlj.rtp.*;
+import org.jitsi.nlj.stats.*;
 import org.jitsi.rtp.*;
 import org.jitsi.rtp.rtcp.rtcpfb.payload_specific_fb.*;
 import org.jitsi.rtp.rtp.*;
@@ -25,6 +27,7 @@
 import org.jitsi.utils.logging2.Logger;
 import org.jitsi.utils.logging2.LoggerImpl;
 import org.jitsi.utils.logging2.*;
+import org.jitsi.videobridge.cc.*;
 import org.jitsi.videobridge.message.*;
 import org.jitsi.videobridge.octo.*;
 import org.jitsi.videobridge.shim.*;
@@ -78,6 +81,44 @@
 
     private final Object endpointsCacheLock = new Object();
 
+    /**
+     * Forwards the audio packets of this conference to the local endpoints
+     * which accept audio, bypassing the generic path of {@link #sendOut}.
+     * Its receivers are updated together with {@link #endpointsCache}.
+     */
+    private final AudioForwarder audioForwarder = new AudioForwarder();
+
+    /**
+     * Tracks the levels of the speakers, to select the audio packets to
+     * forward (if {@link #filterAudio}) and the speakers whose audio is
+     * projected (see {@link AudioProjection}). It is {@code null} if neither
+     * is enabled.
+     */
+    @Nullable
+    private final AudioLevelFilter audioLevelFilter
+        = AudioConfig.getFilterEnabled() || AudioConfig.getProjectionEnabled()
+            ? new AudioLevelFilter(AudioConfig.getFilterMaxSpeakers(), AudioConfig.getFilterHangover())
+            : null;
+
+    /**
+     * Whether to forward only the audio packets accepted by
+     * {@link #audioLevelFilter}.
+     */
+    private final boolean filterAudio = AudioConfig.getFilterEnabled();
+
+    /**
+     * The minimum interval between two updates of the projected speakers
+     * triggered by audio levels (they are also updated when the dominant
+     * speaker changes).
+     */
+    private static final long AUDIO_SPEAKERS_UPDATE_INTERVAL_MS = 200;
+
+    /**
+     * The time of the last update of the projected speakers triggered by
+     * audio levels.
+     */
+    private final AtomicLong lastAudioSpeakersUpdateMs = new AtomicLong();
+
     /**
      * The indicator which determines whether {@link #expire()} has been called
      * on this <tt>Conference</tt>.
@@ -147,9 +188,26 @@
      */
     private final ConferenceShim shim;
 
+    /**
+     * Maps the SSRCs received in this conference to the ID of their sender.
+     */
+    private final SsrcOwnerIndex ssrcOwnerIndex = new SsrcOwnerIndex();
+
     //TODO not public
     final public EncodingsManager encodingsManager = new EncodingsManager();
 
+    /**
+     * The bitrate allocations computed for the endpoints of this conference,
+     * shared between receivers with identical inputs.
+     */
+    private final BitrateController.AllocationCache allocationCache = new BitrateController.AllocationCache();
+
+    /**
+     * How long the Colibri requests for this conference took to handle,
+     * including the time they waited behind earlier requests.
+     */
+    private final DelayStats colibriDelayStats = new DelayStats(new long[] { 5, 50, 100, 1000 });
+
     /**
      * This {@link Conference}'s link to Octo.
      */
@@ -164,6 +222,12 @@
     @NotNull
     private final EndpointConnectionStatusMonitor epConnectionStatusMonitor;
 
+    /**
+     * Sends out the broadcast {@link EndpointMessage}s of the endpoints.
+     */
+    @NotNull
+    private final BroadcastMessageAggregator broadcastMessageAggregator;
+
     /**
      * Initializes a new <tt>Conference</tt> instance which is to represent a
      * conference in the terms of Jitsi Videobridge which has a specific
@@ -207,6 +271,7 @@ public Conference(Videobridge videobridge,
                 {
                     lastNEndpointsChangedAsync();
                 }
+                endpointsCache.forEach(Endpoint::resyncForwardedEndpointsIfDue);
             }
             catch (Exception e)
             {
@@ -219,6 +284,7 @@ public Conference(Videobridge videobridge,
         videobridgeStatistics.totalConferencesCreated.incrementAndGet();
         epConnectionStatusMonitor = new EndpointConnectionStatusMonitor(this, TaskPools.SCHEDULED_POOL, logger);
         epConnectionStatusMonitor.start();
+        broadcastMessageAggregator = new BroadcastMessageAggregator(this, TaskPools.SCHEDULED_POOL, logger);
     }
 
     /**
@@ -285,6 +351,20 @@ public void sendMessage(
         }
     }
 
+    /**
+     * Broadcasts a message from one of the endpoints of this conference to
+     * all the other endpoints (including the ones on other bridges), subject
+     * to the rate limit of the sender.
+     *
+     * @param sender the ID of the endpoint which sent the message.
+     * @param msg the message to broadcast.
+     * @return {@code false} if the message was dropped.
+     */
+    public boolean broadcastEndpointMessage(String sender, EndpointMessage msg)
+    {
+        return broadcastMessageAggregator.broadcast(sender, msg);
+    }
+
     /**
      * Used to send a message to a subset of endpoints in the call, primary use
      * case being a message that has originated from an endpoint (as opposed to
@@ -415,6 +495,8 @@ private void dominantSpeakerChanged()
         AbstractEndpoint dominantSpeaker = speechActivity.getDominantEndpoint();
         String dominantSpeakerId = dominantSpeaker == null ? null : dominantSpeaker.getID();
 
+        audioSpeakersChanged();
+
         if (logger.isInfoEnabled())
         {
             logger.info("ds_change ds_id=" + dominantSpeakerId);
@@ -566,10 +648,16 @@ private void updateStatisticsOnExpire()
      */
     AbstractEndpoint findEndpointByReceiveSSRC(long receiveSSRC)
     {
-        return getEndpoints().stream()
-                .filter(ep -> ep.receivesSsrc(receiveSSRC))
-                .findFirst()
-                .orElse(null);
+        String endpointId = ssrcOwnerIndex.getOwner(receiveSSRC);
+        return endpointId == null ? null : getEndpoint(endpointId);
+    }
+
+    /**
+     * @return the index of the SSRCs received in this conference.
+     */
+    public SsrcOwnerIndex getSsrcOwnerIndex()
+    {
+        return ssrcOwnerIndex;
     }
 
     /**
@@ -622,6 +710,7 @@ else if (existingEndpoint != null)
         subscribeToEndpointEvents(endpoint);
 
         addEndpoint(endpoint);
+        epConnectionStatusMonitor.endpointCreated(endpoint);
 
         return endpoint;
     }
@@ -658,6 +747,39 @@ public void sourcesChanged()
     private void endpointsChanged()
     {
         speechActivity.endpointsChanged(getEndpoints());
+        audioSpeakersChanged();
+    }
+
+    /**
+     * @return the IDs of the endpoints of this conference, ordered by speech
+     * activity (the most recent speaker first).
+     */
+    List<String> getEndpointIdsBySpeechActivity()
+    {
+        return speechActivity.getSpeechActivitySnapshot().stream()
+            .map(AbstractEndpoint::getID)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the smoothed audio levels of the active speakers of this
+     * conference, by endpoint ID.
+     */
+    Map<String, Double> getAudioLevels()
+    {
+        return audioLevelFilter == null ? Collections.emptyMap() : audioLevelFilter.getLevels();
+    }
+
+    /**
+     * Notifies the local endpoints that the levels or the order of the
+     * speakers changed, so that the ones which receive projected audio update
+     * their projection.
+     */
+    private void audioSpeakersChanged()
+    {
+        List<String> endpointIds = getEndpointIdsBySpeechActivity();
+        Map<String, Double> levels = getAudioLevels();
+        endpointsCache.forEach(e -> e.audioSpeakersChanged(endpointIds, levels, false));
     }
 
     /**
@@ -690,9 +812,22 @@ private void updateEndpointsCache()
             });
 
             endpointsCache = Collections.unmodifiableList(endpointsList);
+            audioForwarder.setReceivers(
+                endpointsList.stream()
+                    .filter(Endpoint::acceptsAudio)
+                    .collect(Collectors.toList()));
         }
     }
 
+    /**
+     * Notifies this conference that an endpoint started or stopped accepting
+     * audio.
+     */
+    void endpointAcceptsAudioChanged()
+    {
+        updateEndpointsCache();
+    }
+
     /**
      * Returns the number of local AND remote {@link Endpoint}s in this {@link Conference}.
      *
@@ -778,6 +913,53 @@ public ConferenceSpeechActivity getSpeechActivity()
         return speechActivity;
     }
 
+    /**
+     * Notifies this conference that an audio packet with a specific level was
+     * received from one of its endpoints.
+     *
+     * @param endpoint the endpoint which sent the packet.
+     * @param level the audio level of the packet.
+     */
+    public void audioLevelReceived(@NotNull AbstractEndpoint endpoint, long level)
+    {
+        speechActivity.levelChanged(endpoint, level);
+        if (audioLevelFilter != null)
+        {
+            audioLevelFilter.levelReceived(endpoint.getID(), level);
+
+            if (AudioConfig.getProjectionEnabled())
+            {
+                long nowMs = System.currentTimeMillis();
+                long lastMs = lastAudioSpeakersUpdateMs.get();
+                if (nowMs - lastMs >= AUDIO_SPEAKERS_UPDATE_INTERVAL_MS
+                    && lastAudioSpeakersUpdateMs.compareAndSet(lastMs, nowMs))
+                {
+                    audioSpeakersChanged();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the cache through which the {@link BitrateController}s of the
+     * endpoints of this conference share their bitrate allocations.
+     */
+    public BitrateController.AllocationCache getAllocationCache()
+    {
+        return allocationCache;
+    }
+
+    /**
+     * Notifies this conference that a Colibri request for it was handled.
+     *
+     * @param delayMs how long it took (in ms) from the time the request was
+     * received.
+     */
+    void colibriRequestHandled(long delayMs)
+    {
+        colibriDelayStats.addDelay(delayMs);
+    }
+
     /**
      * Gets the <tt>Videobridge</tt> which has initialized this
      * <tt>Conference</tt>.
@@ -818,6 +1000,7 @@ void endpointExpired(AbstractEndpoint endpoint)
         }
 
         endpointsById.forEach((i, senderEndpoint) -> senderEndpoint.removeReceiver(id));
+        VideobridgeExpireThread.cancelExpireCheck(endpoint);
 
         if (tentacle != null)
         {
@@ -826,7 +1009,14 @@ void endpointExpired(AbstractEndpoint endpoint)
 
         if (removedEndpoint != null)
         {
+            ssrcOwnerIndex.removeOwner(id);
+            allocationCache.clear();
             epConnectionStatusMonitor.endpointExpired(removedEndpoint.getID());
+            broadcastMessageAggregator.endpointExpired(removedEndpoint.getID());
+            if (audioLevelFilter != null)
+            {
+                audioLevelFilter.endpointRemoved(removedEndpoint.getID());
+            }
             endpointsChanged();
         }
     }
@@ -847,6 +1037,7 @@ public void addEndpoint(AbstractEndpoint endpoint)
         final AbstractEndpoint replacedEndpoint;
         replacedEndpoint = endpointsById.put(endpoint.getID(), endpoint);
         updateEndpointsCache();
+        VideobridgeExpireThread.scheduleExpireCheck(endpoint);
 
         endpointsChanged();
 
@@ -1014,7 +1205,17 @@ public boolean isOctoEnabled()
     public void handleIncomingPacket(PacketInfo packetInfo)
     {
         Packet packet = packetInfo.getPacket();
-        if (packet instanceof RtpPacket)
+        if (packet instanceof AudioRtpPacket)
+        {
+            // Audio goes to every endpoint which accepts it, so it doesn't
+            // need the per-endpoint checks of sendOut.
+            if ((filterAudio && !audioLevelFilter.accept(packetInfo.getEndpointId()))
+                || !audioForwarder.forward(packetInfo, tentacle))
+            {
+                ByteBufferPool.returnBuffer(packet.getBuffer());
+            }
+        }
+        else if (packet instanceof RtpPacket)
         {
             // This is identical to the default 'else' below, but it defined
             // because the vast majority of packet will follow this path.
@@ -1026,7 +1227,6 @@ else if (packet instanceof RtcpFbPliPacket || packet instanceof RtcpFbFirPacket)
                 ? ((RtcpFbPliPacket) packet).getMediaSourceSsrc()
                 : ((RtcpFbFirPacket) packet).getMediaSenderSsrc();
 
-            // XXX we could make this faster with a map
             AbstractEndpoint targetEndpoint = findEndpointByReceiveSSRC(mediaSsrc);
 
             PotentialPacketHandler pph = null;
@@ -1110,6 +1310,14 @@ public JSONObject getDebugState(boolean full, String endpointId)
             debugState.put("speechActivity", speechActivity.getDebugState());
             debugState.put("statistics", statistics.getJson());
             //debugState.put("encodingsManager", encodingsManager.getDebugState());
+            debugState.put("allocationCache", allocationCache.getDebugState());
+            debugState.put("colibriDelay", colibriDelayStats.toJson());
+            debugState.put("ssrcOwnerIndex", ssrcOwnerIndex.getDebugState());
+            debugState.put("broadcastMessages", broadcastMessageAggregator.getDebugState());
+            if (audioLevelFilter != null)
+            {
+                debugState.put("audioLevelFilter", audioLevelFilter.getDebugState());
+            }
             ConfOctoTransport tentacle = this.tentacle;
             debugState.put(
                     "tentacle",
@@ -22,7 +22,6 @@
 import org.json.simple.*;
 
 import java.util.*;
-import java.util.stream.*;
 
 /**
  * Represents the speech activity of the <tt>Endpoint</tt>s in a
@@ -63,9 +62,14 @@
 
     /**
      * The list of endpoints ordered by speech activity alone with the dominant speaker at the beginning of the list
-     * i.e. the dominant speaker history.
+     * i.e. the dominant speaker history. A dominant speaker change moves an endpoint to the front in O(1).
      */
-    private final List<AbstractEndpoint> endpointsBySpeechActivity = new ArrayList<>();
+    private final MoveToFrontList<AbstractEndpoint> endpointsBySpeechActivity = new MoveToFrontList<>();
+
+    /**
+     * The endpoints in {@link #endpointsBySpeechActivity} by ID.
+     */
+    private final Map<String, AbstractEndpoint> endpointsById = new HashMap<>();
 
     /**
      * The list of endpoints in "LastN" order. That is, endpoints currently sending video are at the top of the list,
@@ -121,17 +125,13 @@ protected void activeSpeakerChanged(@NotNull String id)
         boolean endpointListChanged;
         synchronized (syncRoot)
         {
-            AbstractEndpoint endpoint
-                    = endpointsBySpeechActivity.stream()
-                        .filter(e -> id.equals(e.getID()))
-                        .findFirst().orElse(null);
+            AbstractEndpoint endpoint = endpointsById.get(id);
             // Move this endpoint to the top of our sorted list
-            if (!endpointsBySpeechActivity.remove(endpoint))
+            if (endpoint == null || !endpointsBySpeechActivity.moveToFront(endpoint))
             {
                 logger.warn("Got active speaker notification for an unknown endpoint: " + id + ", ignoring");
                 return;
             }
-            endpointsBySpeechActivity.add(0, endpoint);
 
             endpointListChanged = updateLastNEndpoints();
         }
@@ -156,13 +156,21 @@ boolean updateLastNEndpoints()
     {
         synchronized (syncRoot)
         {
-            Map<Boolean, List<AbstractEndpoint>> bySendingVideo
-                    = endpointsBySpeechActivity.stream()
-                        .collect(Collectors.groupingBy(AbstractEndpoint::isSendingVideo));
-
-            List<AbstractEndpoint> newEndpointsInLastNOrder = new ArrayList<>(endpointsBySpeechActivity.size());
-            newEndpointsInLastNOrder.addAll(bySendingVideo.getOrDefault(true, Collections.emptyList()));
-            newEndpointsInLastNOrder.addAll(bySendingVideo.getOrDefault(false, Collections.emptyList()));
+            List<AbstractEndpoint> newEndpointsInLastNOrder
+                    = new ArrayList<>(endpointsBySpeechActivity.getSize());
+            List<AbstractEndpoint> notSendingVideo = new ArrayList<>();
+            for (AbstractEndpoint endpoint : endpointsBySpeechActivity)
+            {
+                if (endpoint.isSendingVideo())
+                {
+                    newEndpointsInLastNOrder.add(endpoint);
+                }
+                else
+                {
+                    notSendingVideo.add(endpoint);
+                }
+            }
+            newEndpointsInLastNOrder.addAll(notSendingVideo);
 
             if (!newEndpointsInLastNOrder.equals(endpointsInLastNOrder))
             {
@@ -185,6 +193,7 @@ void expire()
             this.listener = null;
             this.dominantSpeakerIdentification = null;
             endpointsBySpeechActivity.clear();
+            endpointsById.clear();
             endpointsInLastNOrder = Collections.emptyList();
         }
     }
@@ -200,7 +209,19 @@ public AbstractEndpoint getDominantEndpoint()
     {
         synchronized (syncRoot)
         {
-            return endpointsBySpeechActivity.isEmpty() ? null : endpointsBySpeechActivity.get(0);
+            return endpointsBySpeechActivity.getFirst();
+        }
+    }
+
+    /**
+     * Gets an immutable snapshot of the endpoints ordered by speech activity alone (the dominant speaker history),
+     * which can be read without holding any lock.
+     */
+    public List<AbstractEndpoint> getSpeechActivitySnapshot()
+    {
+        synchronized (syncRoot)
+        {
+            return endpointsBySpeechActivity.snapshot();
         }
     }
 
@@ -241,20 +262,27 @@ public void endpointsChanged(List<AbstractEndpoint> conferenceEndpoints)
         synchronized (syncRoot)
         {
             // Remove any endpoints we have that are no longer in the conference
-            AbstractEndpoint previousDominantSpeaker
-                    = endpointsBySpeechActivity.isEmpty() ? null : endpointsBySpeechActivity.get(0);
-            endpointsListChanged = endpointsBySpeechActivity.removeIf(ep -> !conferenceEndpoints.contains(ep));
+            AbstractEndpoint previousDominantSpeaker = endpointsBySpeechActivity.getFirst();
+            Set<AbstractEndpoint> conferenceEndpointSet = new HashSet<>(conferenceEndpoints);
+            endpointsListChanged = endpointsBySpeechActivity.removeIf(ep -> {
+                if (conferenceEndpointSet.contains(ep))
+                {
+                    return false;
+                }
+                endpointsById.remove(ep.getID());
+                return true;
+            });
             // Add any endpoints from the conf we don't have to the end of our list
             for (AbstractEndpoint conferenceEndpoint : conferenceEndpoints)
             {
                 if (!endpointsBySpeechActivity.contains(conferenceEndpoint))
                 {
                     endpointsBySpeechActivity.add(conferenceEndpoint);
+                    endpointsById.put(conferenceEndpoint.getID(), conferenceEndpoint);
                     endpointsListChanged = true;
                 }
             }
-            AbstractEndpoint newDominantSpeaker
-                    = endpointsBySpeechActivity.isEmpty() ? null : endpointsBySpeechActivity.get(0);
+            AbstractEndpoint newDominantSpeaker = endpointsBySpeechActivity.getFirst();
             dominantSpeakerChanged = !Objects.equals(previousDominantSpeaker, newDominantSpeaker);
 
             if (endpointsListChanged)
@@ -23,6 +23,7 @@
 import org.jitsi.nlj.format.*;
 import org.jitsi.nlj.rtp.*;
 import org.jitsi.nlj.rtp.bandwidthestimation.*;
+import org.jitsi.nlj.rtp.codec.vp8.*;
 import org.jitsi.nlj.stats.*;
 import org.jitsi.nlj.transform.node.*;
 import org.jitsi.nlj.util.*;
@@ -32,11 +33,11 @@
 import org.jitsi.rtp.rtcp.rtcpfb.payload_specific_fb.*;
 import org.jitsi.rtp.rtp.*;
 import org.jitsi.utils.*;
-import org.jitsi.utils.concurrent.*;
 import org.jitsi.utils.logging.*;
 import org.jitsi.utils.logging2.Logger;
 import org.jitsi.utils.queue.*;
 import org.jitsi.videobridge.cc.*;
+import org.jitsi.videobridge.cc.config.*;
 import org.jitsi.videobridge.datachannel.*;
 import org.jitsi.videobridge.datachannel.protocol.*;
 import org.jitsi.videobridge.message.*;
@@ -44,6 +45,7 @@
 import org.jitsi.videobridge.sctp.*;
 import org.jitsi.videobridge.shim.*;
 import org.jitsi.videobridge.stats.*;
+import org.jitsi.videobridge.transport.*;
 import org.jitsi.videobridge.transport.dtls.*;
 import org.jitsi.videobridge.transport.ice.*;
 import org.jitsi.videobridge.util.*;
@@ -72,7 +74,7 @@
  * @author George Politis
  */
 public class Endpoint
-    extends AbstractEndpoint implements PotentialPacketHandler,
+    extends AbstractEndpoint implements PotentialPacketHandler, AudioForwarder.Receiver,
         EncodingsManager.EncodingsUpdateListener
 {
     /**
@@ -118,6 +120,12 @@ public static OrderedJsonObject getPacketDelayStats()
      */
     private SctpManager sctpManager;
 
+    /**
+     * The pure-Java SCTP association, used instead of {@link #sctpManager}
+     * when configured.
+     */
+    private SctpAssociation sctpAssociation;
+
     /**
      * The time at which this endpoint was created (in millis since epoch)
      */
@@ -181,6 +189,20 @@ public static OrderedJsonObject getPacketDelayStats()
      */
     private final Transceiver transceiver;
 
+    /**
+     * Learns the number of temporal layers of the video streams that this
+     * endpoint sends, or {@code null} if that is disabled.
+     */
+    @Nullable
+    private final TemporalLayerDiscovery temporalLayerDiscovery;
+
+    /**
+     * Keeps the bitrates of the layers of our media sources when they are
+     * re-created, until the new layers have been measured.
+     */
+    private final LayerBitrateCarryOver layerBitrateCarryOver
+        = new LayerBitrateCarryOver();
+
     /**
      * The set of {@link ChannelShim}s associated with this endpoint. This
      * allows us to expire the endpoint once all of its 'channels' have been
@@ -189,6 +211,43 @@ public static OrderedJsonObject getPacketDelayStats()
      */
     private final Set<ChannelShim> channelShims = ConcurrentHashMap.newKeySet();
 
+    /**
+     * Whether the client receives the changes to its forwarded endpoints as
+     * deltas.
+     */
+    private volatile boolean forwardedEndpointsDeltas = false;
+
+    /**
+     * Projects the audio of the most recent speakers onto a fixed set of
+     * SSRCs, or {@code null} if the client receives a stream per sender.
+     */
+    @Nullable
+    private volatile AudioProjection audioProjection = null;
+
+    /**
+     * The latest {@link AudioProjectionMessage} which hasn't been sent yet.
+     * The projection changes as soon as the speakers change, but the message
+     * is sent from {@link TaskPools#IO_POOL}, where the tasks can run in any
+     * order. So every task sends whatever is the latest message at the time
+     * (if any), while holding {@link #audioProjectionSendLock}, and the client
+     * never gets an older mapping after a newer one.
+     */
+    private final AtomicReference<AudioProjectionMessage> pendingAudioProjectionMessage
+        = new AtomicReference<>();
+
+    /**
+     * Makes the updates of {@link #audioProjection} and of
+     * {@link #pendingAudioProjectionMessage} atomic.
+     */
+    private final Object audioProjectionLock = new Object();
+
+    /**
+     * Held while taking and sending {@link #pendingAudioProjectionMessage}.
+     */
+    private final Object audioProjectionSendLock = new Object();
+
+    private final ForwardedEndpointsEncoder forwardedEndpointsEncoder;
+
     /**
      * Whether this endpoint should accept audio packets. We set this according
      * to whether the endpoint has an audio Colibri channel whose direction
@@ -215,19 +274,24 @@ public static OrderedJsonObject getPacketDelayStats()
     private static final boolean OPEN_DATA_LOCALLY = false;
 
     /**
-     * The executor which runs bandwidth probing.
-     *
-     * TODO (brian): align the recurringRunnable stuff with whatever we end up
-     * doing with all the other executors.
+     * The scheduler which runs bandwidth probing.
      */
-    private static final RecurringRunnableExecutor recurringRunnableExecutor
-            = new RecurringRunnableExecutor(Endpoint.class.getSimpleName());
+    private static final BandwidthProbingScheduler probingScheduler
+            = BandwidthProbingScheduler.getInstance();
 
     /**
      * The queue we put outgoing SRTP packets onto so they can be sent
-     * out via the {@link IceTransport} on an IO thread.
+     * out via the {@link IceTransport} on a thread of the
+     * {@link TaskPools#SENDER_POOL}.
+     */
+    private final FairSenderPool.SendQueue<PacketInfo> outgoingSrtpPacketQueue;
+
+    /**
+     * Paces the video packets on their way to the
+     * {@link #outgoingSrtpPacketQueue}, or {@code null} if pacing is disabled.
      */
-    private final PacketInfoQueue outgoingSrtpPacketQueue;
+    @Nullable
+    private final Pacer pacer;
 
     /**
      * The {@link SctpSocket} for this endpoint, if an SCTP connection was
@@ -262,6 +326,7 @@ public Endpoint(
         this.clock = clock;
 
         creationTime = clock.instant();
+        forwardedEndpointsEncoder = new ForwardedEndpointsEncoder(clock);
         diagnosticContext = conference.newDiagnosticContext();
         transceiver = new Transceiver(
             id,
@@ -289,14 +354,30 @@ public void trace(@NotNull Function0<Unit> f)
                 }
             });
         bitrateController = new BitrateController(this, diagnosticContext, logger);
-
-        outgoingSrtpPacketQueue = new PacketInfoQueue(
-            getClass().getSimpleName() + "-outgoing-packet-queue",
-            TaskPools.IO_POOL,
+        temporalLayerDiscovery
+            = BitrateControllerConfig.temporalLayerDiscoveryEnabled()
+                ? new TemporalLayerDiscovery(
+                    BitrateControllerConfig.temporalLayerDiscoveryWindow(),
+                    BitrateControllerConfig.temporalLayerDiscoveryRiseDelay())
+                : null;
+
+        outgoingSrtpPacketQueue = TaskPools.SENDER_POOL.createQueue(
+            getClass().getSimpleName() + "-outgoing-packet-queue-" + id,
+            TransportConfig.getQueueSize(),
             this::doSendSrtp,
-            TransportConfig.getQueueSize()
+            packetInfo -> ByteBufferPool.returnBuffer(packetInfo.getPacket().getBuffer()),
+            queueErrorCounter
         );
-        outgoingSrtpPacketQueue.setErrorHandler(queueErrorCounter);
+        // Pacing against an estimation that we don't trust would only add
+        // delay.
+        pacer = TransportConfig.getPacerEnabled() && BitrateControllerConfig.trustBwe()
+            ? new Pacer(
+                outgoingSrtpPacketQueue::add,
+                TaskPools.PACER_POOL,
+                TransportConfig.getPacerRateMultiplier(),
+                TransportConfig.getPacerBurstWindow(),
+                TransportConfig.getPacerMaxQueueDelay())
+            : null;
 
         messageTransport = new EndpointMessageTransport(
             this,
@@ -306,17 +387,22 @@ public void trace(@NotNull Function0<Unit> f)
         );
 
         diagnosticContext.put("endpoint_id", id);
-        bandwidthProbing = new BandwidthProbing(Endpoint.this.transceiver::sendProbing);
+        bandwidthProbing = new BandwidthProbing(this::sendProbing);
         bandwidthProbing.setDiagnosticContext(diagnosticContext);
         bandwidthProbing.setBitrateController(bitrateController);
         conference.encodingsManager.subscribe(this);
 
         bandwidthProbing.enabled = true;
-        recurringRunnableExecutor.registerRecurringRunnable(bandwidthProbing);
-
-        iceTransport = new IceTransport(getID(), iceControlling, logger);
+        probingScheduler.register(bandwidthProbing);
+
+        Map<String, String> logContext = new HashMap<>();
+        logContext.put("confId", conference.getID());
+        logContext.put("gid", String.valueOf(conference.getGid()));
+        logContext.put("epId", id);
+        EndpointTransports transports = EndpointTransports.create(getID(), iceControlling, logger, logContext);
+        iceTransport = transports.getIceTransport();
         setupIceTransport();
-        dtlsTransport = new DtlsTransport(logger);
+        dtlsTransport = transports.getDtlsTransport();
         setupDtlsTransport();
 
         conference.getVideobridge().getStatistics().totalEndpoints.incrementAndGet();
@@ -342,9 +428,21 @@ public EndpointMessageTransport getMessageTransport()
 
     private void setupIceTransport()
     {
-        iceTransport.incomingDataHandler = new IceTransport.IncomingDataHandler() {
+        iceTransport.incomingDataHandler = new IceTransport.PooledIncomingDataHandler() {
             @Override
-            public void dataReceived(@NotNull byte[] data, int offset, int length, @NotNull Instant receivedTime) {
+            public int getHeadroom()
+            {
+                return RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET;
+            }
+
+            @Override
+            public int getTailroom()
+            {
+                return RtpPacket.BYTES_TO_LEAVE_AT_END_OF_PACKET;
+            }
+
+            @Override
+            public void dataReceived(@NotNull byte[] data, int offset, int length, long receivedTime) {
                 // DTLS data will be handled by the DtlsTransport, but SRTP data can go
                 // straight to the transceiver
                 if (PacketUtils.looksLikeDtls(data, offset, length))
@@ -361,11 +459,32 @@ public void dataReceived(@NotNull byte[] data, int offset, int length, @NotNull
                             RtpPacket.BYTES_TO_LEAVE_AT_END_OF_PACKET
                     );
                     System.arraycopy(data, offset, copy, RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET, length);
-                    Packet pkt = new UnparsedPacket(copy, RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET, length);
-                    PacketInfo pktInfo = new PacketInfo(pkt);
-                    pktInfo.setReceivedTime(receivedTime.toEpochMilli());
-                    transceiver.handleIncomingPacket(pktInfo);
+                    srtpDataReceived(copy, RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET, length, receivedTime);
+                }
+            }
+
+            @Override
+            public boolean pooledDataReceived(
+                @NotNull byte[] data, int offset, int length, long receivedTime)
+            {
+                if (PacketUtils.looksLikeDtls(data, offset, length))
+                {
+                    // The DTLS transport makes its own copy, so the buffer can be reused.
+                    dtlsTransport.dtlsDataReceived(data, offset, length);
+                    return false;
                 }
+                // The buffer already has the room the RTP pipeline needs before and after the packet, so it is
+                // handed over as it is.
+                srtpDataReceived(data, offset, length, receivedTime);
+                return true;
+            }
+
+            private void srtpDataReceived(byte[] buf, int offset, int length, long receivedTime)
+            {
+                Packet pkt = new UnparsedPacket(buf, offset, length);
+                PacketInfo pktInfo = new PacketInfo(pkt);
+                pktInfo.setReceivedTime(iceTransport.getNanoClock().toEpochMillis(receivedTime));
+                transceiver.handleIncomingPacket(pktInfo);
             }
         };
         iceTransport.eventHandler = new IceTransport.EventHandler() {
@@ -376,13 +495,31 @@ public void connected() {
                     handler.iceSucceeded();
                     return Unit.INSTANCE;
                 });
-                transceiver.setOutgoingPacketHandler(outgoingSrtpPacketQueue::add);
-                TaskPools.IO_POOL.submit(iceTransport::startReadingData);
-                TaskPools.IO_POOL.submit(dtlsTransport::startDtlsHandshake);
+                if (iceTransport.isTcp())
+                {
+                    // Sending over TCP blocks while the send buffer is full,
+                    // which must not hold up the threads that send to the
+                    // other endpoints.
+                    logger.info("ICE connected over TCP, sending from the"
+                        + " blocking pool");
+                    outgoingSrtpPacketQueue.setBlockingExecutor(
+                        TaskPools.BLOCKING_POOL);
+                }
+                if (pacer != null)
+                {
+                    transceiver.setOutgoingPacketHandler(pacer::enqueue);
+                }
+                else
+                {
+                    transceiver.setOutgoingPacketHandler(outgoingSrtpPacketQueue::add);
+                }
+                TaskPools.BLOCKING_POOL.submit(iceTransport::startReadingData);
+                TaskPools.BLOCKING_POOL.submit(dtlsTransport::startDtlsHandshake);
             }
 
             @Override
             public void failed() {
+                VideobridgeExpireThread.scheduleExpireCheck(Endpoint.this);
                 eventEmitter.fireEvent(handler -> {
                     handler.iceFailed();
                     return Unit.INSTANCE;
@@ -412,6 +549,20 @@ private void setupDtlsTransport()
         };
     }
 
+    /**
+     * Sends probing packets for {@link #bandwidthProbing}, through the
+     * {@link #pacer} (if any) so that they are sent after the other packets.
+     */
+    private int sendProbing(Collection<Long> mediaSsrcs, int numBytes)
+    {
+        if (pacer == null)
+        {
+            return transceiver.sendProbing(mediaSsrcs, numBytes);
+        }
+        return pacer.sendProbes(
+            () -> transceiver.sendProbing(mediaSsrcs, numBytes));
+    }
+
     private boolean doSendSrtp(PacketInfo packetInfo)
     {
         if (PacketExtensionsKt.looksLikeRtp(packetInfo.getPacket()))
@@ -492,6 +643,34 @@ private boolean isTransportConnected()
         return iceTransport.isConnected() && dtlsTransport.isConnected();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean wantsAudio(PacketInfo packetInfo)
+    {
+        AudioProjection audioProjection = this.audioProjection;
+        return acceptAudio && isTransportConnected()
+            && (audioProjection == null || audioProjection.accept(packetInfo.getEndpointId()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sendAudio(PacketInfo packetInfo)
+    {
+        AudioProjection audioProjection = this.audioProjection;
+        if (audioProjection != null
+            && !audioProjection.rewrite(packetInfo.packetAs(), packetInfo.getEndpointId()))
+        {
+            // The speaker lost its slot since wantsAudio.
+            ByteBufferPool.returnBuffer(packetInfo.getPacket().getBuffer());
+            return;
+        }
+        transceiver.sendPacket(packetInfo);
+    }
+
     public double getRtt()
     {
         return getTransceiver().getTransceiverStats().getEndpointConnectionStats().getRtt();
@@ -606,6 +785,10 @@ public void addPayloadType(PayloadType payloadType)
     {
         transceiver.addPayloadType(payloadType);
         bitrateController.addPayloadType(payloadType);
+        if (pacer != null)
+        {
+            pacer.addPayloadType(payloadType);
+        }
     }
 
     @Override
@@ -620,6 +803,16 @@ public void setSenderVideoConstraints(ImmutableMap<String, VideoConstraints> new
         bitrateController.setVideoConstraints(newVideoConstraints);
     }
 
+    /**
+     * Notifies this endpoint that the bitrate allocation of its
+     * {@link BitrateController} was updated, which may have changed whether
+     * there is something to probe for.
+     */
+    public void bitrateAllocationChanged()
+    {
+        probingScheduler.wake(bandwidthProbing);
+    }
+
     public void effectiveVideoConstraintsChanged(
         ImmutableMap<String, VideoConstraints> oldVideoConstraints,
         ImmutableMap<String, VideoConstraints> newVideoConstraints)
@@ -688,11 +881,7 @@ public boolean shouldExpire()
             return true;
         }
 
-        Duration maxExpireTimeFromChannelShims = channelShims.stream()
-                .map(ChannelShim::getExpire)
-                .map(Duration::ofSeconds)
-                .max(Comparator.comparing(Function.identity()))
-                .orElse(Duration.ofSeconds(0));
+        Duration maxExpireTimeFromChannelShims = getMaxExpireTimeFromChannelShims();
 
         Instant lastActivity = getLastIncomingActivity();
         Instant now = clock.instant();
@@ -718,6 +907,50 @@ public boolean shouldExpire()
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The endpoint can expire when it has had no activity for longer than
+     * the expire time of its channel shims (or, if it never had activity,
+     * {@link #EP_TIMEOUT} after its creation). Expire checks are also
+     * scheduled directly when ICE fails or the expire time of a shim changes.
+     */
+    @Override
+    public Duration getExpireCheckDelay()
+    {
+        if (iceTransport.hasFailed())
+        {
+            return Duration.ZERO;
+        }
+
+        Instant lastActivity = getLastIncomingActivity();
+        Instant deadline = lastActivity == ClockUtils.NEVER
+            ? creationTime.plus(EP_TIMEOUT)
+            : lastActivity.plus(getMaxExpireTimeFromChannelShims());
+
+        // Check just after the deadline, since the endpoint only expires once
+        // its inactivity exceeds the timeout.
+        return Duration.between(clock.instant(), deadline).plusMillis(1);
+    }
+
+    private Duration getMaxExpireTimeFromChannelShims()
+    {
+        return channelShims.stream()
+                .map(ChannelShim::getExpire)
+                .map(Duration::ofSeconds)
+                .max(Comparator.comparing(Function.identity()))
+                .orElse(Duration.ofSeconds(0));
+    }
+
+    /**
+     * Notifies this endpoint that the expire value of one of its channel
+     * shims changed, which may make it expire sooner.
+     */
+    public void channelExpireChanged()
+    {
+        VideobridgeExpireThread.scheduleExpireCheck(this);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -765,6 +998,10 @@ public void expire()
             {
                 sctpManager.closeConnection();
             }
+            if (sctpAssociation != null)
+            {
+                sctpAssociation.close();
+            }
         }
         catch (Exception e)
         {
@@ -772,12 +1009,16 @@ public void expire()
         }
 
         bandwidthProbing.enabled = false;
-        recurringRunnableExecutor.deRegisterRecurringRunnable(bandwidthProbing);
+        probingScheduler.deregister(bandwidthProbing);
         getConference().encodingsManager.unsubscribe(this);
 
         dtlsTransport.stop();
         iceTransport.stop();
 
+        if (pacer != null)
+        {
+            pacer.close();
+        }
         outgoingSrtpPacketQueue.close();
 
         logger.info("Expired.");
@@ -828,6 +1069,12 @@ private void updateStatsOnExpire()
      */
     public void createSctpConnection()
     {
+        if (SctpConfig.config.getImplementation() == SctpConfig.Implementation.JAVA)
+        {
+            createSctpAssociation();
+            return;
+        }
+
         logger.debug(() -> "Creating SCTP mananger");
         // Create the SctpManager and provide it a method for sending SCTP data
         this.sctpManager = new SctpManager(
@@ -837,7 +1084,7 @@ public void createSctpConnection()
             },
             logger
         );
-        sctpHandler.setSctpManager(sctpManager);
+        sctpHandler.setSctpPacketHandler(sctpManager::handleIncomingSctp);
         // NOTE(brian): as far as I know we always act as the 'server' for sctp
         // connections, but if not we can make which type we use dynamic
         SctpServerSocket socket = sctpManager.createServerSocket();
@@ -846,35 +1093,7 @@ public void createSctpConnection()
             @Override
             public void onReady()
             {
-                logger.info("SCTP connection is ready, creating the Data channel stack");
-                dataChannelStack
-                    = new DataChannelStack(
-                        (data, sid, ppid) -> socket.send(data, true, sid, ppid),
-                        logger
-                    );
-                dataChannelStack.onDataChannelStackEvents(dataChannel ->
-                {
-                    logger.info("Remote side opened a data channel.");
-                    Endpoint.this.messageTransport.setDataChannel(dataChannel);
-                });
-                dataChannelHandler.setDataChannelStack(dataChannelStack);
-                if (OPEN_DATA_LOCALLY)
-                {
-                    logger.info("Will open the data channel.");
-                    DataChannel dataChannel
-                        = dataChannelStack.createDataChannel(
-                            DataChannelProtocolConstants.RELIABLE,
-                            0,
-                            0,
-                            0,
-                            "default");
-                    Endpoint.this.messageTransport.setDataChannel(dataChannel);
-                    dataChannel.open();
-                }
-                else
-                {
-                    logger.info("Will wait for the remote side to open the data channel.");
-                }
+                createDataChannelStack((data, sid, ppid) -> socket.send(data, true, sid, ppid));
             }
 
             @Override
@@ -884,18 +1103,97 @@ public void onDisconnected()
             }
         };
         socket.dataCallback = (data, sid, ssn, tsn, ppid, context, flags) -> {
-            // We assume all data coming over SCTP will be datachannel data
-            DataChannelPacket dcp = new DataChannelPacket(data, 0, data.length, sid, (int)ppid);
             // Post the rest of the task here because the current context is
             // holding a lock inside the SctpSocket which can cause a deadlock
             // if two endpoints are trying to send datachannel messages to one
             // another (with stats broadcasting it can happen often)
-            TaskPools.IO_POOL.execute(() -> dataChannelHandler.consume(new PacketInfo(dcp)));
+            dataChannelDataReceived(data, sid, (int)ppid);
         };
         socket.listen();
         sctpSocket = Optional.of(socket);
     }
 
+    /**
+     * Creates a pure-Java {@link SctpAssociation}, which waits for the INIT
+     * of the remote side.
+     */
+    private void createSctpAssociation()
+    {
+        logger.debug(() -> "Creating SCTP association");
+        sctpAssociation = new SctpAssociation(
+            (data, offset, length) -> {
+                dtlsTransport.sendDtlsData(data, offset, length);
+                return 0;
+            },
+            new SctpAssociation.Listener()
+            {
+                @Override
+                public void onReady()
+                {
+                    createDataChannelStack((data, sid, ppid) -> sctpAssociation.send(data, true, sid, ppid));
+                }
+
+                @Override
+                public void onData(@NotNull byte[] data, int sid, int ppid)
+                {
+                    // Don't process the message on the thread which handles
+                    // incoming packets, for consistency with the native stack.
+                    dataChannelDataReceived(data, sid, ppid);
+                }
+
+                @Override
+                public void onDisconnected()
+                {
+                    logger.info("SCTP connection is disconnected.");
+                }
+            },
+            TaskPools.SCHEDULED_POOL,
+            logger);
+        sctpHandler.setSctpPacketHandler(sctpAssociation::handleIncomingSctp);
+    }
+
+    /**
+     * Creates the data channel stack once the SCTP connection is ready.
+     */
+    private void createDataChannelStack(DataChannelStack.DataChannelDataSender dataChannelDataSender)
+    {
+        logger.info("SCTP connection is ready, creating the Data channel stack");
+        dataChannelStack = new DataChannelStack(dataChannelDataSender, logger);
+        dataChannelStack.onDataChannelStackEvents(dataChannel ->
+        {
+            logger.info("Remote side opened a data channel.");
+            Endpoint.this.messageTransport.setDataChannel(dataChannel);
+        });
+        dataChannelHandler.setDataChannelStack(dataChannelStack);
+        if (OPEN_DATA_LOCALLY)
+        {
+            logger.info("Will open the data channel.");
+            DataChannel dataChannel
+                = dataChannelStack.createDataChannel(
+                    DataChannelProtocolConstants.RELIABLE,
+                    0,
+                    0,
+                    0,
+                    "default");
+            Endpoint.this.messageTransport.setDataChannel(dataChannel);
+            dataChannel.open();
+        }
+        else
+        {
+            logger.info("Will wait for the remote side to open the data channel.");
+        }
+    }
+
+    /**
+     * Handles a message received over SCTP (from either stack).
+     */
+    private void dataChannelDataReceived(byte[] data, int sid, int ppid)
+    {
+        // We assume all data coming over SCTP will be datachannel data
+        DataChannelPacket dcp = new DataChannelPacket(data, 0, data.length, sid, ppid);
+        TaskPools.IO_POOL.execute(() -> dataChannelHandler.consume(new PacketInfo(dcp)));
+    }
+
     private void acceptSctpConnection(SctpServerSocket sctpServerSocket)
     {
         TaskPools.IO_POOL.submit(() -> {
@@ -1008,6 +1306,13 @@ public void sendLastNEndpointsChangeEvent(
             endpointsEnteringLastN = forwardedEndpoints;
         }
 
+        if (forwardedEndpointsDeltas)
+        {
+            forwardedEndpointsEncoder.update(forwardedEndpoints, conferenceEndpoints);
+            sendPendingForwardedEndpointsAsync();
+            return;
+        }
+
         ForwardedEndpointsMessage msg
                 = new ForwardedEndpointsMessage(
                     forwardedEndpoints,
@@ -1026,6 +1331,139 @@ public void sendLastNEndpointsChangeEvent(
         });
     }
 
+    /**
+     * Sends a full message with the forwarded endpoints to a client which uses
+     * deltas, if one is due (see {@link ForwardedEndpointsEncoder#resyncIfDue()}).
+     * This is called periodically by the conference.
+     */
+    void resyncForwardedEndpointsIfDue()
+    {
+        if (forwardedEndpointsDeltas && forwardedEndpointsEncoder.resyncIfDue())
+        {
+            sendPendingForwardedEndpointsAsync();
+        }
+    }
+
+    private void sendPendingForwardedEndpointsAsync()
+    {
+        TaskPools.IO_POOL.submit(() -> {
+            try
+            {
+                forwardedEndpointsEncoder.sendPending(message -> {
+                    EndpointMessageTransport messageTransport = getMessageTransport();
+                    return messageTransport != null && messageTransport.trySendMessage(message);
+                });
+            }
+            catch (Exception e)
+            {
+                logger.warn("Failed to send a message: ", e);
+            }
+        });
+    }
+
+    /**
+     * Sets whether the changes to the forwarded endpoints are sent to the
+     * client as deltas (see {@link ForwardedEndpointsEncoder}).
+     *
+     * @return whether deltas are used, which is {@code false} if they are
+     * disabled in the configuration.
+     */
+    public boolean setForwardedEndpointsDeltas(boolean enabled)
+    {
+        enabled &= ForwardedEndpointsEncoder.getEnabled();
+        if (enabled && !forwardedEndpointsDeltas)
+        {
+            // The client starts with a full message.
+            forwardedEndpointsEncoder.reset();
+        }
+        forwardedEndpointsDeltas = enabled;
+        return enabled;
+    }
+
+    /**
+     * Sets whether the client receives the audio of the most recent speakers
+     * projected onto a fixed set of SSRCs (see {@link AudioProjection}).
+     *
+     * @return whether audio is projected, which is {@code false} if it is
+     * disabled in the configuration.
+     */
+    public boolean setAudioProjection(boolean enabled)
+    {
+        enabled &= AudioConfig.getProjectionEnabled();
+        if (enabled && audioProjection == null)
+        {
+            audioProjection = new AudioProjection(
+                AudioProjection.randomSsrcs(AudioConfig.getProjectionNumSpeakers()));
+            audioSpeakersChanged(
+                getConference().getEndpointIdsBySpeechActivity(), getConference().getAudioLevels(), true);
+        }
+        else if (!enabled)
+        {
+            audioProjection = null;
+        }
+        return enabled;
+    }
+
+    /**
+     * Notifies this endpoint that the levels or the order of the speakers in
+     * the conference changed.
+     *
+     * @param endpointIds the IDs of the endpoints of the conference, ordered
+     * by speech activity.
+     * @param levels the smoothed audio levels of the active speakers, by
+     * endpoint ID.
+     * @param force whether to send the projected sources to the client even
+     * if they didn't change.
+     */
+    void audioSpeakersChanged(List<String> endpointIds, Map<String, Double> levels, boolean force)
+    {
+        AudioProjection audioProjection = this.audioProjection;
+        if (audioProjection == null)
+        {
+            return;
+        }
+
+        List<String> speakers = endpointIds.stream()
+            .filter(id -> !id.equals(getID()))
+            .collect(Collectors.toList());
+        synchronized (audioProjectionLock)
+        {
+            if (!audioProjection.setSpeakers(speakers, levels) && !force)
+            {
+                return;
+            }
+            List<AudioProjectionMessage.Source> sources = new ArrayList<>();
+            audioProjection.getSources().forEach(
+                (ssrc, endpointId) -> sources.add(new AudioProjectionMessage.Source(ssrc, endpointId)));
+            pendingAudioProjectionMessage.set(new AudioProjectionMessage(sources));
+        }
+        TaskPools.IO_POOL.submit(this::sendPendingAudioProjectionMessage);
+    }
+
+    /**
+     * Sends {@link #pendingAudioProjectionMessage}, unless another task has
+     * already sent it.
+     */
+    private void sendPendingAudioProjectionMessage()
+    {
+        synchronized (audioProjectionSendLock)
+        {
+            AudioProjectionMessage msg = pendingAudioProjectionMessage.getAndSet(null);
+            if (msg == null)
+            {
+                return;
+            }
+            try
+            {
+                sendMessage(msg);
+            }
+            catch (Exception e)
+            {
+                logger.warn("Failed to send a message: ", e);
+            }
+        }
+    }
+
     /**
      * Sets the remote transport information (ICE candidates, DTLS fingerprints).
      *
@@ -1124,6 +1562,15 @@ public MediaSourceDesc[] getMediaSources()
         return transceiver.getMediaSources();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLayerBitrateBps(RtpLayerDesc layer, long nowMs)
+    {
+        return layerBitrateCarryOver.getBitrateBps(layer, nowMs);
+    }
+
     /**
      * Re-creates this endpoint's media sources based on the sources
      * and source groups that have been signaled.
@@ -1151,10 +1598,23 @@ public void recreateMediaSources()
 
         if (!sources.isEmpty() || !sourceGroups.isEmpty())
         {
+            TemporalLayerDiscovery temporalLayerDiscovery
+                = this.temporalLayerDiscovery;
+            if (temporalLayerDiscovery != null)
+            {
+                temporalLayerDiscovery.retain(sources.stream()
+                    .map(SourcePacketExtension::getSSRC)
+                    .collect(Collectors.toSet()));
+            }
             MediaSourceDesc[] mediaSources =
                 MediaSourceFactory.createMediaSources(
                     sources,
-                    sourceGroups);
+                    sourceGroups,
+                    temporalLayerDiscovery == null
+                        ? ssrc -> 0
+                        : temporalLayerDiscovery::getNumTemporalLayers);
+            layerBitrateCarryOver.sourcesRebuilt(
+                getMediaSources(), mediaSources, clock.millis());
             setMediaSources(mediaSources);
         }
     }
@@ -1186,6 +1646,23 @@ public void addReceiveSsrc(long ssrc, MediaType mediaType)
     private void handleIncomingPacket(PacketInfo packetInfo)
     {
         packetInfo.setEndpointId(getID());
+        if (temporalLayerDiscovery != null
+            && packetInfo.getPacket() instanceof Vp8Packet)
+        {
+            Vp8Packet vp8Packet = packetInfo.packetAs();
+            if (temporalLayerDiscovery.observe(
+                vp8Packet.getSsrc(),
+                vp8Packet.getTemporalLayerIndex(),
+                clock.millis()))
+            {
+                // The layers of the sources are part of their description,
+                // so we rebuild them (which updates the bitrate allocation
+                // of the receivers).
+                logger.info(() -> "Temporal layers changed: "
+                    + temporalLayerDiscovery.getStatsJson());
+                TaskPools.IO_POOL.submit(this::recreateMediaSources);
+            }
+        }
         getConference().handleIncomingPacket(packetInfo);
     }
 
@@ -1325,8 +1802,22 @@ public void updateAcceptedMediaTypes()
                 }
             }
         }
+        boolean acceptAudioChanged = this.acceptAudio != acceptAudio;
         this.acceptAudio = acceptAudio;
         this.acceptVideo = acceptVideo;
+        if (acceptAudioChanged)
+        {
+            getConference().endpointAcceptsAudioChanged();
+        }
+    }
+
+    /**
+     * @return whether this endpoint accepts audio packets from other
+     * endpoints.
+     */
+    public boolean acceptsAudio()
+    {
+        return acceptAudio;
     }
 
     public void updateForceMute()
@@ -1377,6 +1868,11 @@ public JSONObject getDebugState()
         JSONObject debugState = super.getDebugState();
 
         //debugState.put("sctpManager", sctpManager.getDebugState());
+        SctpAssociation sctpAssociation = this.sctpAssociation;
+        if (sctpAssociation != null)
+        {
+            debugState.put("sctpAssociation", sctpAssociation.getDebugState());
+        }
         debugState.put("bitrateController", bitrateController.getDebugState());
         debugState.put("bandwidthProbing", bandwidthProbing.getDebugState());
         debugState.put("iceTransport", iceTransport.getDebugState());
@@ -1384,7 +1880,25 @@ public JSONObject getDebugState()
         debugState.put("transceiver", transceiver.getNodeStats().toJson());
         debugState.put("acceptAudio", acceptAudio);
         debugState.put("acceptVideo", acceptVideo);
+        if (temporalLayerDiscovery != null)
+        {
+            debugState.put(
+                "temporalLayers", temporalLayerDiscovery.getStatsJson());
+        }
         debugState.put("messageTransport", messageTransport.getDebugState());
+        if (pacer != null)
+        {
+            debugState.put("pacer", pacer.getDebugState());
+        }
+        if (forwardedEndpointsDeltas)
+        {
+            debugState.put("forwardedEndpointsEncoder", forwardedEndpointsEncoder.getDebugState());
+        }
+        AudioProjection audioProjection = this.audioProjection;
+        if (audioProjection != null)
+        {
+            debugState.put("audioProjection", audioProjection.getDebugState());
+        }
 
         return debugState;
     }
@@ -1428,7 +1942,7 @@ private class TransceiverEventHandlerImpl implements TransceiverEventHandler
         @Override
         public void audioLevelReceived(long sourceSsrc, long level)
         {
-            getConference().getSpeechActivity().levelChanged(Endpoint.this, level);
+            getConference().audioLevelReceived(Endpoint.this, level);
         }
 
         /**
@@ -1439,6 +1953,10 @@ public void bandwidthEstimationChanged(@NotNull Bandwidth newValue)
         {
             logger.debug(() -> "Estimated bandwidth is now " + newValue);
             bitrateController.bandwidthChanged((long)newValue.getBps());
+            if (pacer != null)
+            {
+                pacer.bandwidthChanged((long)newValue.getBps());
+            }
             bandwidthProbing.bandwidthEstimationChanged(newValue);
         }
     }
@@ -1527,7 +2045,7 @@ public void trace(@NotNull Function0<Unit> f)
     private static class SctpHandler extends ConsumerNode
     {
         private final Object sctpManagerLock = new Object();
-        public SctpManager sctpManager = null;
+        public Consumer<PacketInfo> sctpPacketHandler = null;
         public BlockingQueue<PacketInfo> cachedSctpPackets = new LinkedBlockingQueue<>(100);
         private AtomicLong numCachedSctpPackets = new AtomicLong();
 
@@ -1546,14 +2064,14 @@ protected void consume(@NotNull PacketInfo packetInfo)
             {
                 if (SctpConfig.config.enabled())
                 {
-                    if (sctpManager == null)
+                    if (sctpPacketHandler == null)
                     {
                         numCachedSctpPackets.incrementAndGet();
                         cachedSctpPackets.add(packetInfo);
                     }
                     else
                     {
-                        sctpManager.handleIncomingSctp(packetInfo);
+                        sctpPacketHandler.accept(packetInfo);
                     }
                 }
             }
@@ -1568,9 +2086,10 @@ public NodeStatsBlock getNodeStats()
         }
 
         /**
-         * Sets the SCTP manager of this endpoint.
+         * Sets the handler of the SCTP packets of this endpoint (the
+         * {@link SctpManager} or the {@link SctpAssociation}).
          */
-        public void setSctpManager(SctpManager sctpManager)
+        public void setSctpPacketHandler(Consumer<PacketInfo> sctpPacketHandler)
         {
             // Submit this to the pool since we wait on the lock and process any
             // cached packets here as well
@@ -1582,8 +2101,8 @@ public void setSctpManager(SctpManager sctpManager)
                 // another thread, which would be a problem.
                 synchronized (sctpManagerLock)
                 {
-                    this.sctpManager = sctpManager;
-                    cachedSctpPackets.forEach(sctpManager::handleIncomingSctp);
+                    this.sctpPacketHandler = sctpPacketHandler;
+                    cachedSctpPackets.forEach(sctpPacketHandler);
                     cachedSctpPackets.clear();
                 }
             });
@@ -26,6 +26,7 @@
 import org.json.simple.*;
 
 import java.lang.ref.*;
+import java.nio.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
@@ -84,6 +85,12 @@
     @NotNull
     private final Endpoint endpoint;
 
+    /**
+     * The encoding of the messages sent to the endpoint, selected from the
+     * ones listed in its {@link ClientHelloMessage}.
+     */
+    private volatile BridgeChannelEncoding encoding = BridgeChannelEncoding.JSON;
+
     /**
      * Initializes a new {@link EndpointMessageTransport} instance.
      * @param endpoint the associated {@link Endpoint}.
@@ -125,7 +132,32 @@ public BridgeChannelMessage clientHello(ClientHelloMessage message)
         // remote endpoint and the Videobridge is operational.
         // We take care to send the reply using the same transport channel on
         // which we received the request..
-        return new ServerHelloMessage();
+        //
+        // A client which lists a binary encoding must be able to receive it
+        // from now on, so we can switch before the reply is sent. The reply
+        // itself is always sent as JSON.
+        String encodingName = null;
+        if (message.getEncodings() != null)
+        {
+            encoding = BridgeChannelCodec.selectEncoding(message.getEncodings());
+            encodingName = encoding.getEncodingName();
+            logger.info("Using " + encodingName + " encoding for bridge channel messages.");
+        }
+
+        Boolean forwardedEndpointsDeltas = null;
+        if (message.getForwardedEndpointsDeltas() != null)
+        {
+            forwardedEndpointsDeltas
+                = endpoint.setForwardedEndpointsDeltas(message.getForwardedEndpointsDeltas());
+        }
+
+        Boolean audioProjection = null;
+        if (message.getAudioProjection() != null)
+        {
+            audioProjection = endpoint.setAudioProjection(message.getAudioProjection());
+        }
+
+        return new ServerHelloMessage(encodingName, forwardedEndpointsDeltas, audioProjection);
     }
 
     @Override
@@ -162,7 +194,14 @@ else if (dst instanceof DataChannel)
      */
     private void sendMessage(DataChannel dst, BridgeChannelMessage message)
     {
-        dst.sendString(message.toJson());
+        if (useCbor(message))
+        {
+            dst.sendBinary(BridgeChannelCodec.encodeCbor(message));
+        }
+        else
+        {
+            dst.sendString(BridgeChannelCodec.encodeJson(message));
+        }
         statisticsSupplier.get().totalDataChannelMessagesSent.incrementAndGet();
     }
 
@@ -176,10 +215,27 @@ private void sendMessage(ColibriWebSocket dst, BridgeChannelMessage message)
         // We'll use the async version of sendString since this may be called
         // from multiple threads.  It's just fire-and-forget though, so we
         // don't wait on the result
-        dst.getRemote().sendStringByFuture(message.toJson());
+        if (useCbor(message))
+        {
+            dst.getRemote().sendBytesByFuture(ByteBuffer.wrap(BridgeChannelCodec.encodeCbor(message)));
+        }
+        else
+        {
+            dst.getRemote().sendStringByFuture(BridgeChannelCodec.encodeJson(message));
+        }
         statisticsSupplier.get().totalColibriWebSocketMessagesSent.incrementAndGet();
     }
 
+    /**
+     * @return whether to send a specific message to the endpoint as CBOR.
+     * The {@link ServerHelloMessage} is always sent as JSON, since the client
+     * learns the selected encoding from it.
+     */
+    private boolean useCbor(BridgeChannelMessage message)
+    {
+        return encoding == BridgeChannelEncoding.CBOR && !(message instanceof ServerHelloMessage);
+    }
+
     @Override
     public void onDataChannelMessage(DataChannelMessage dataChannelMessage)
     {
@@ -191,6 +247,11 @@ public void onDataChannelMessage(DataChannelMessage dataChannelMessage)
             DataChannelStringMessage dataChannelStringMessage = (DataChannelStringMessage)dataChannelMessage;
             onMessage(dataChannel.get(), dataChannelStringMessage.data);
         }
+        else if (dataChannelMessage instanceof DataChannelBinaryMessage)
+        {
+            DataChannelBinaryMessage dataChannelBinaryMessage = (DataChannelBinaryMessage)dataChannelMessage;
+            onBinaryMessage(dataChannel.get(), dataChannelBinaryMessage.data);
+        }
     }
 
     /**
@@ -198,20 +259,31 @@ public void onDataChannelMessage(DataChannelMessage dataChannelMessage)
      */
     @Override
     protected void sendMessage(@NotNull BridgeChannelMessage msg)
+    {
+        trySendMessage(msg);
+    }
+
+    /**
+     * Sends a message through the active transport channel, if there is one.
+     *
+     * @return {@code false} if there is no transport channel available and
+     * the message was dropped.
+     */
+    boolean trySendMessage(@NotNull BridgeChannelMessage msg)
     {
         Object dst = getActiveTransportChannel();
         if (dst == null)
         {
             logger.debug("No available transport channel, can't send a message");
             numOutgoingMessagesDropped.incrementAndGet();
+            return false;
         }
-        else
-        {
-            sentMessagesCounts.computeIfAbsent(
-                    msg.getClass().getSimpleName(),
-                    (k) -> new AtomicLong()).incrementAndGet();
-            sendMessage(dst, msg);
-        }
+
+        sentMessagesCounts.computeIfAbsent(
+                msg.getClass().getSimpleName(),
+                (k) -> new AtomicLong()).incrementAndGet();
+        sendMessage(dst, msg);
+        return true;
     }
 
     /**
@@ -283,6 +355,11 @@ public void webSocketConnected(ColibriWebSocket ws)
 
             webSocket = ws;
             webSocketLastActive = true;
+            // The client on the new web socket has to negotiate its encoding
+            // again.
+            encoding = BridgeChannelEncoding.JSON;
+            endpoint.setForwardedEndpointsDeltas(false);
+            endpoint.setAudioProjection(false);
             sendMessage(ws, new ServerHelloMessage());
         }
 
@@ -344,6 +421,24 @@ public void webSocketTextReceived(ColibriWebSocket ws, String message)
         onMessage(ws, message);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void webSocketBinaryReceived(ColibriWebSocket ws, byte[] message)
+    {
+        if (ws == null || !ws.equals(webSocket))
+        {
+            logger.warn("Received binary data from an unknown web socket.");
+            return;
+        }
+
+        statisticsSupplier.get().totalColibriWebSocketMessagesReceived.incrementAndGet();
+
+        webSocketLastActive = true;
+        onBinaryMessage(ws, message);
+    }
+
     /**
      * Sets the data channel for this endpoint.
      * @param dataChannel the {@link DataChannel} to use for this transport
@@ -382,6 +477,7 @@ public JSONObject getDebugState()
     {
         JSONObject debugState = super.getDebugState();
         debugState.put("numOutgoingMessagesDropped", numOutgoingMessagesDropped.get());
+        debugState.put("encoding", encoding.getEncodingName());
 
         JSONObject sentCounts = new JSONObject();
         sentCounts.putAll(sentMessagesCounts);
@@ -543,37 +639,37 @@ public BridgeChannelMessage endpointMessage(EndpointMessage message)
             return null;
         }
 
+        if (message.isBroadcast())
+        {
+            // Broadcast message to all local endpoints + octo.
+            if (!conference.broadcastEndpointMessage(from, message))
+            {
+                logger.debug("Dropped a broadcast EndpointMessage, over the rate limit.");
+            }
+            return null;
+        }
+
         boolean sendToOcto;
 
         List<AbstractEndpoint> targets;
-        if (message.isBroadcast())
+        // 1:1 message
+        String to = message.getTo();
+
+        AbstractEndpoint targetEndpoint = conference.getEndpoint(to);
+        if (targetEndpoint instanceof OctoEndpoint)
         {
-            // Broadcast message to all local endpoints + octo.
-            targets = new LinkedList<>(conference.getLocalEndpoints());
-            targets.remove(endpoint);
+            targets = Collections.emptyList();
             sendToOcto = true;
         }
+        else if (targetEndpoint != null)
+        {
+            targets = Collections.singletonList(targetEndpoint);
+            sendToOcto = false;
+        }
         else
         {
-            // 1:1 message
-            String to = message.getTo();
-
-            AbstractEndpoint targetEndpoint = conference.getEndpoint(to);
-            if (targetEndpoint instanceof OctoEndpoint)
-            {
-                targets = Collections.emptyList();
-                sendToOcto = true;
-            }
-            else if (targetEndpoint != null)
-            {
-                targets = Collections.singletonList(targetEndpoint);
-                sendToOcto = false;
-            }
-            else
-            {
-                logger.warn("Unable to find endpoint to send EndpointMessage to: " + to);
-                return null;
-            }
+            logger.warn("Unable to find endpoint to send EndpointMessage to: " + to);
+            return null;
         }
 
         conference.sendMessage(message, targets, sendToOcto);
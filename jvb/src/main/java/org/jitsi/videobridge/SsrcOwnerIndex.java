@@ -0,0 +1,244 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge;
+
+import org.jetbrains.annotations.*;
+import org.json.simple.*;
+
+import java.util.*;
+
+/**
+ * Maps the SSRCs received in a conference (primary, RTX and FEC, from both
+ * local and Octo endpoints) to the ID of the endpoint which sends them, so
+ * that RTCP feedback (e.g. PLI and FIR) can be routed to the sender of the
+ * media without scanning all endpoints.
+ *
+ * The SSRCs are kept in an open-addressing table of primitive longs. Lookups
+ * happen for every PLI/FIR and are lock-free: they read an immutable snapshot
+ * of the table. Updates only happen on signaling and replace the snapshot,
+ * so they are batched per endpoint.
+ */
+public class SsrcOwnerIndex
+{
+    /**
+     * The current snapshot of the table.
+     */
+    private volatile Table table = Table.EMPTY;
+
+    /**
+     * Gets the ID of the endpoint which sends a specific SSRC.
+     *
+     * @param ssrc the SSRC.
+     * @return the ID of the endpoint, or {@code null} if the SSRC is unknown.
+     */
+    @Nullable
+    public String getOwner(long ssrc)
+    {
+        return table.get(ssrc);
+    }
+
+    /**
+     * Records that a specific SSRC is sent by a specific endpoint, replacing
+     * any previous owner of the SSRC. This copies the whole table, so when
+     * recording several SSRCs use {@link #putAll(String, Collection)}.
+     */
+    public void put(long ssrc, @NotNull String ownerId)
+    {
+        putAll(ownerId, Collections.singletonList(ssrc));
+    }
+
+    /**
+     * Records that some SSRCs are sent by a specific endpoint, replacing any
+     * previous owner of the SSRCs, with a single copy of the table.
+     */
+    public synchronized void putAll(@NotNull String ownerId, @NotNull Collection<Long> ssrcs)
+    {
+        Table oldTable = table;
+        if (ssrcs.stream().allMatch(ssrc -> ownerId.equals(oldTable.get(ssrc))))
+        {
+            return;
+        }
+
+        Table.Builder builder = new Table.Builder(oldTable.size + ssrcs.size());
+        oldTable.forEach(builder::put);
+        ssrcs.forEach(ssrc -> builder.put(ssrc, ownerId));
+        table = builder.build();
+    }
+
+    /**
+     * Sets the SSRCs sent by a specific endpoint, replacing all of the SSRCs
+     * previously recorded for it.
+     */
+    public synchronized void setSsrcs(@NotNull String ownerId, @NotNull Collection<Long> ssrcs)
+    {
+        Table oldTable = table;
+        Table.Builder builder = new Table.Builder(oldTable.size + ssrcs.size());
+        oldTable.forEach((ssrc, owner) -> {
+            if (!ownerId.equals(owner))
+            {
+                builder.put(ssrc, owner);
+            }
+        });
+        ssrcs.forEach(ssrc -> builder.put(ssrc, ownerId));
+        table = builder.build();
+    }
+
+    /**
+     * Removes all of the SSRCs sent by a specific endpoint.
+     */
+    public synchronized void removeOwner(@NotNull String ownerId)
+    {
+        setSsrcs(ownerId, Collections.emptyList());
+    }
+
+    /**
+     * @return the number of SSRCs in this index.
+     */
+    public int size()
+    {
+        return table.size;
+    }
+
+    /**
+     * Gets a JSON representation of the parts of this object's state that
+     * are deemed useful for debugging.
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject getDebugState()
+    {
+        Table tableCopy = table;
+        JSONObject debugState = new JSONObject();
+        debugState.put("size", tableCopy.size);
+        debugState.put("capacity", tableCopy.keys.length);
+        return debugState;
+    }
+
+    /**
+     * An immutable open-addressing (linear probing) table of SSRCs.
+     */
+    private static class Table
+    {
+        /**
+         * Marks an empty slot. SSRCs are unsigned 32-bit values, so they can
+         * never be negative.
+         */
+        private static final long EMPTY_KEY = -1;
+
+        private static final Table EMPTY = new Builder(0).build();
+
+        private final long[] keys;
+
+        private final String[] owners;
+
+        private final int size;
+
+        private Table(long[] keys, String[] owners, int size)
+        {
+            this.keys = keys;
+            this.owners = owners;
+            this.size = size;
+        }
+
+        private String get(long ssrc)
+        {
+            int mask = keys.length - 1;
+            for (int i = slotOf(ssrc, mask); keys[i] != EMPTY_KEY; i = (i + 1) & mask)
+            {
+                if (keys[i] == ssrc)
+                {
+                    return owners[i];
+                }
+            }
+            return null;
+        }
+
+        private void forEach(Entry entry)
+        {
+            for (int i = 0; i < keys.length; i++)
+            {
+                if (keys[i] != EMPTY_KEY)
+                {
+                    entry.accept(keys[i], owners[i]);
+                }
+            }
+        }
+
+        private static int slotOf(long ssrc, int mask)
+        {
+            // SSRCs are random, but spread the bits anyway in case they
+            // aren't.
+            long h = ssrc * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private interface Entry
+        {
+            void accept(long ssrc, String owner);
+        }
+
+        /**
+         * Fills the arrays of a new {@link Table}. The capacity is fixed
+         * upfront, so it never needs to grow.
+         */
+        private static class Builder
+        {
+            private final long[] keys;
+
+            private final String[] owners;
+
+            private int size = 0;
+
+            private Builder(int expectedSize)
+            {
+                // Keep the load factor at or below 0.5.
+                int capacity = 8;
+                while (capacity < expectedSize * 2)
+                {
+                    capacity <<= 1;
+                }
+                keys = new long[capacity];
+                Arrays.fill(keys, EMPTY_KEY);
+                owners = new String[capacity];
+            }
+
+            private void put(long ssrc, String owner)
+            {
+                if (ssrc < 0)
+                {
+                    return;
+                }
+
+                int mask = keys.length - 1;
+                int i = slotOf(ssrc, mask);
+                while (keys[i] != EMPTY_KEY && keys[i] != ssrc)
+                {
+                    i = (i + 1) & mask;
+                }
+                if (keys[i] == EMPTY_KEY)
+                {
+                    keys[i] = ssrc;
+                    size++;
+                }
+                owners[i] = owner;
+            }
+
+            private Table build()
+            {
+                return new Table(keys, owners, size);
+            }
+        }
+    }
+}
@@ -18,10 +18,78 @@ package org.jitsi.videobridge
 import org.jitsi.config.JitsiConfig
 import org.jitsi.metaconfig.config
 import org.jitsi.metaconfig.from
+import java.time.Duration
 
 class TransportConfig {
     companion object {
         @JvmStatic
         val queueSize: Int by config("videobridge.transport.send.queue-size".from(JitsiConfig.newConfig))
+
+        /**
+         * The number of threads which drain the outgoing queues of the endpoints. They only send over UDP (endpoints
+         * connected over ICE-TCP are drained on [org.jitsi.videobridge.util.TaskPools.BLOCKING_POOL]), so one per
+         * processor is enough.
+         */
+        @JvmStatic
+        val sendThreads: Int by config {
+            "videobridge.transport.send.threads".from(JitsiConfig.newConfig)
+                .transformedBy { if (it > 0) it else Runtime.getRuntime().availableProcessors() }
+        }
+
+        /**
+         * The maximum number of packets of an outgoing queue which are sent in a row, before the other queues get
+         * their turn.
+         */
+        @JvmStatic
+        val sendBurstLimit: Int by config("videobridge.transport.send.burst-limit".from(JitsiConfig.newConfig))
+
+        /**
+         * Whether to pace the video sent to each endpoint according to its bandwidth estimation.
+         */
+        @JvmStatic
+        val pacerEnabled: Boolean by config("videobridge.transport.send.pacer.enabled".from(JitsiConfig.newConfig))
+
+        /**
+         * The pacing rate, as a multiple of the bandwidth estimation.
+         */
+        @JvmStatic
+        val pacerRateMultiplier: Double by
+            config("videobridge.transport.send.pacer.rate-multiplier".from(JitsiConfig.newConfig))
+
+        /**
+         * How much unused pacing budget can build up, in terms of time at the pacing rate.
+         */
+        @JvmStatic
+        val pacerBurstWindow: Duration by
+            config("videobridge.transport.send.pacer.burst-window".from(JitsiConfig.newConfig))
+
+        /**
+         * The maximum time a packet should wait in the pacer.
+         */
+        @JvmStatic
+        val pacerMaxQueueDelay: Duration by
+            config("videobridge.transport.send.pacer.max-queue-delay".from(JitsiConfig.newConfig))
+
+        /**
+         * The number of threads of the timer which wakes up the pacers of all endpoints.
+         */
+        @JvmStatic
+        val pacerThreads: Int by config {
+            "videobridge.transport.send.pacer.threads".from(JitsiConfig.newConfig)
+                .transformedBy { if (it > 0) it else Runtime.getRuntime().availableProcessors() }
+        }
+
+        /**
+         * The number of endpoint transports (ICE and DTLS) to create ahead of time, or 0 to create them when the
+         * endpoints are created.
+         */
+        @JvmStatic
+        val warmPoolSize: Int by config("videobridge.transport.warm-pool.size".from(JitsiConfig.newConfig))
+
+        /**
+         * How long a transport can wait in the warm pool before it's discarded.
+         */
+        @JvmStatic
+        val warmPoolMaxAge: Duration by config("videobridge.transport.warm-pool.max-age".from(JitsiConfig.newConfig))
     }
 }
@@ -16,6 +16,7 @@
 package org.jitsi.videobridge;
 
 import kotlin.*;
+import kotlin.jvm.functions.Function1;
 import org.apache.commons.lang3.*;
 import org.jetbrains.annotations.*;
 import org.jitsi.nlj.*;
@@ -29,6 +30,7 @@
 import org.jitsi.videobridge.octo.*;
 import org.jitsi.videobridge.octo.config.*;
 import org.jitsi.videobridge.shim.*;
+import org.jitsi.videobridge.transport.*;
 import org.jitsi.videobridge.util.*;
 import org.jitsi.videobridge.version.*;
 import org.jitsi.videobridge.xmpp.*;
@@ -45,6 +47,7 @@
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
+import java.util.function.Consumer;
 
 /**
  * Represents the Jitsi Videobridge which creates, lists and destroys
@@ -117,6 +120,19 @@
      */
     private final VideobridgeShim shim = new VideobridgeShim(this);
 
+    /**
+     * Used to give each request which creates a conference without a name its
+     * own {@link ColibriRequestDispatcher} queue.
+     */
+    private final AtomicLong newConferenceRequestCount = new AtomicLong();
+
+    /**
+     * Runs the Colibri requests, in parallel for different conferences and
+     * in order within a conference.
+     */
+    private final ColibriRequestDispatcher colibriRequestDispatcher
+        = new ColibriRequestDispatcher(TaskPools.IO_POOL);
+
     /**
      * The {@link JvbLoadManager} instance used for this bridge.
      */
@@ -353,17 +369,101 @@ public Collection<Conference> getConferences()
     }
 
     /**
-     * Handles a <tt>ColibriConferenceIQ</tt> stanza which represents a request.
+     * Handles a <tt>ColibriConferenceIQ</tt> stanza which represents a request
+     * without blocking the calling thread.
+     *
+     * @param conferenceIQ the <tt>ColibriConferenceIQ</tt> stanza represents
+     * the request to handle
+     * @param responseSender the callback which is invoked with the response
+     * to the request (which may be an error) once it has been handled.
+     */
+    public void handleColibriConferenceIQ(
+        ColibriConferenceIQ conferenceIQ,
+        Consumer<IQ> responseSender)
+    {
+        handleColibriConferenceIQAsync(conferenceIQ).whenComplete((response, error) ->
+        {
+            if (error != null)
+            {
+                logger.error("Failed to handle colibri request", error);
+                response = IQUtils.createError(
+                    conferenceIQ,
+                    XMPPError.Condition.internal_server_error,
+                    error.getMessage());
+            }
+            responseSender.accept(response);
+        });
+    }
+
+    /**
+     * Handles a <tt>ColibriConferenceIQ</tt> stanza which represents a request
+     * on the {@link ColibriRequestDispatcher}. Requests for the same
+     * conference are handled in the order in which they were submitted,
+     * requests for different conferences may be handled in parallel.
      *
      * @param conferenceIQ the <tt>ColibriConferenceIQ</tt> stanza represents
      * the request to handle
-     * @return an <tt>org.jivesoftware.smack.packet.IQ</tt> stanza which
-     * represents the response to the specified request or <tt>null</tt> to
-     * reply with <tt>feature-not-implemented</tt>
+     * @return a future which completes with the response to the request.
+     */
+    public CompletableFuture<IQ> handleColibriConferenceIQAsync(ColibriConferenceIQ conferenceIQ)
+    {
+        long submittedMs = System.currentTimeMillis();
+
+        return colibriRequestDispatcher.submit(getColibriRequestKey(conferenceIQ), () ->
+        {
+            IQ response = shim.handleColibriConferenceIQ(conferenceIQ);
+            if (response instanceof ColibriConferenceIQ)
+            {
+                Conference conference = getConference(((ColibriConferenceIQ) response).getID());
+                if (conference != null)
+                {
+                    conference.colibriRequestHandled(System.currentTimeMillis() - submittedMs);
+                }
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Gets the key of the {@link ColibriRequestDispatcher} queue of a request.
+     * Requests for a conference which has a name are keyed by its name, so
+     * that the request which creates it (which has no ID yet) is ordered
+     * with the requests which follow and use the ID. Requests for a
+     * conference without a name are keyed by its ID. Requests which create a
+     * conference without a name have nothing to be ordered with, so they get
+     * a key of their own.
+     *
+     * @param conferenceIQ the request.
+     * @return the key of the queue to run the request on.
+     */
+    String getColibriRequestKey(ColibriConferenceIQ conferenceIQ)
+    {
+        String id = conferenceIQ.getID();
+        EntityBareJid name = conferenceIQ.getName();
+        if (id != null)
+        {
+            Conference conference = getConference(id);
+            if (conference != null && conference.getName() != null)
+            {
+                name = conference.getName();
+            }
+            else
+            {
+                return "id:" + id;
+            }
+        }
+
+        return name != null
+            ? "name:" + name
+            : "new:" + newConferenceRequestCount.incrementAndGet();
+    }
+
+    /**
+     * @return the dispatcher which runs the Colibri requests.
      */
-    public IQ handleColibriConferenceIQ(ColibriConferenceIQ conferenceIQ)
+    public ColibriRequestDispatcher getColibriRequestDispatcher()
     {
-        return shim.handleColibriConferenceIQ(conferenceIQ);
+        return colibriRequestDispatcher;
     }
 
     /**
@@ -477,6 +577,7 @@ public void start()
 
         videobridgeExpireThread.start();
         healthChecker.start();
+        EndpointTransports.getPool().start();
 
         // <conference>
         ProviderManager.addIQProvider(
@@ -525,6 +626,7 @@ public void stop()
     {
         videobridgeExpireThread.stop();
         healthChecker.stop();
+        EndpointTransports.getPool().stop();
         if (loadSamplerTask != null)
         {
             loadSamplerTask.cancel(true);
@@ -645,9 +747,11 @@ private class XmppConnectionEventHandler implements XmppConnection.EventHandler
     {
         @NotNull
         @Override
-        public IQ colibriConferenceIqReceived(@NotNull ColibriConferenceIQ iq)
+        public void colibriConferenceIqReceived(
+            @NotNull ColibriConferenceIQ iq,
+            @NotNull Function1<? super IQ, Unit> responseSender)
         {
-            return handleColibriConferenceIQ(iq);
+            handleColibriConferenceIQ(iq, responseSender::invoke);
         }
 
         @NotNull
@@ -21,11 +21,18 @@
 
 import org.jitsi.utils.concurrent.*;
 import org.jitsi.utils.logging2.*;
+import org.jitsi.videobridge.util.*;
+import org.json.simple.*;
 
 /**
  * Implements a <tt>Thread</tt> which expires the {@link AbstractEndpoint}s and
  * {@link Conference}s of a specific <tt>Videobridge</tt>.
  *
+ * Conferences are checked periodically. Endpoints each have a timeout on a
+ * {@link TimeoutScheduler}, which fires when the endpoint could next be
+ * ready to expire (see {@link AbstractEndpoint#getExpireCheckDelay()}), so
+ * the cost of expiring endpoints doesn't grow with the number of endpoints.
+ *
  * @author Lyubomir Marinov
  */
 public class VideobridgeExpireThread
@@ -47,11 +54,37 @@
 
     /**
      * The executor used to expire the individual {@link AbstractEndpoint}s
-     * or {@link Conference}s.
+     * or {@link Conference}s. Expiring blocks (e.g. on closing sockets), so
+     * it runs on virtual threads when they are enabled.
      */
     private static final Executor EXPIRE_EXECUTOR
-        = ExecutorUtils.newCachedThreadPool(
-            true, VideobridgeExpireThread.class.getSimpleName() + "-channel");
+        = TaskPools.newBlockingExecutor(
+            VideobridgeExpireThread.class.getSimpleName() + "-channel",
+            () -> ExecutorUtils.newCachedThreadPool(
+                true,
+                VideobridgeExpireThread.class.getSimpleName() + "-channel"));
+
+    /**
+     * The resolution of the endpoint timeouts.
+     */
+    private static final Duration ENDPOINT_TICK_PERIOD = Duration.ofSeconds(1);
+
+    /**
+     * The number of slots of the endpoint timeout wheel. With a 1 second tick
+     * this covers the default expire timeout in a single rotation.
+     */
+    private static final int ENDPOINT_NUM_SLOTS = 128;
+
+    /**
+     * The timeouts of the endpoints of all conferences.
+     */
+    private static final TimeoutScheduler<AbstractEndpoint> endpointTimeouts
+        = new TimeoutScheduler<>(
+            "endpoint expire",
+            ENDPOINT_TICK_PERIOD,
+            TaskPools.SCHEDULED_POOL,
+            ENDPOINT_NUM_SLOTS,
+            VideobridgeExpireThread::checkEndpoint);
 
     /**
      * The {@link PeriodicRunnable} registered with {@link #EXECUTOR} which is
@@ -110,6 +143,7 @@ public void run()
             }
         };
         EXECUTOR.registerRecurringRunnable(expireRunnable);
+        endpointTimeouts.start();
     }
 
     /**
@@ -124,12 +158,62 @@ void stop()
         }
         expireRunnable = null;
         videobridge = null;
+        endpointTimeouts.stop();
+    }
+
+    /**
+     * Schedules the next expire check of a specific endpoint, based on its
+     * {@link AbstractEndpoint#getExpireCheckDelay()}. This should be called
+     * when an endpoint is added to a conference, and again when something
+     * which makes it expire sooner happens (e.g. its ICE failed).
+     */
+    public static void scheduleExpireCheck(AbstractEndpoint endpoint)
+    {
+        endpointTimeouts.schedule(endpoint, endpoint.getExpireCheckDelay());
+    }
+
+    /**
+     * Stops checking whether a specific endpoint should expire.
+     */
+    public static void cancelExpireCheck(AbstractEndpoint endpoint)
+    {
+        endpointTimeouts.cancel(endpoint);
     }
 
     /**
-     * Expires the {@link Conference}s and/or {@link Endpoint}s of a specific <tt>Videobridge</tt> if they
-     * have been inactive for more than their advertised <tt>expire</tt> number
-     * of seconds.
+     * Expires a specific endpoint if it should expire.
+     *
+     * @return the delay after which to check the endpoint again, or
+     * {@code null} if it has expired.
+     */
+    private static Duration checkEndpoint(AbstractEndpoint endpoint)
+    {
+        if (endpoint.isExpired())
+        {
+            return null;
+        }
+        if (endpoint.shouldExpire())
+        {
+            logger.info("Expiring endpoint " + endpoint.getID());
+            EXPIRE_EXECUTOR.execute(endpoint::expire);
+            return null;
+        }
+        return endpoint.getExpireCheckDelay();
+    }
+
+    /**
+     * @return a JSON representation of the statistics of the endpoint
+     * timeouts.
+     */
+    public static JSONObject getEndpointTimeoutStats()
+    {
+        return endpointTimeouts.getStatsJson();
+    }
+
+    /**
+     * Expires the {@link Conference}s of a specific <tt>Videobridge</tt> which
+     * have no endpoints. Endpoints are expired by their timeouts (see
+     * {@link #scheduleExpireCheck(AbstractEndpoint)}).
      *
      * @param videobridge the <tt>Videobridge</tt> which is to have its
      * <tt>Channel</tt>s expired if they have been inactive for more than their
@@ -140,7 +224,6 @@ private void expire(Videobridge videobridge)
         logger.info("Running expire()");
         for (Conference conference : videobridge.getConferences())
         {
-            // The Conferences will live an iteration more than the Contents.
             if (conference.shouldExpire())
             {
                 logger.info("Conference "
@@ -148,17 +231,6 @@ private void expire(Videobridge videobridge)
                 EXPIRE_EXECUTOR.execute(
                         () -> videobridge.expireConference(conference));
             }
-            else
-            {
-                for (AbstractEndpoint endpoint : conference.getEndpoints())
-                {
-                    if (endpoint.shouldExpire())
-                    {
-                        logger.info("Expiring endpoint " + endpoint.getID());
-                        EXPIRE_EXECUTOR.execute(endpoint::expire);
-                    }
-                }
-            }
         }
     }
 }
@@ -24,6 +24,7 @@
 import org.jitsi.utils.collections.*;
 import org.jitsi.utils.logging.*;
 import org.jitsi.utils.logging2.Logger;
+import org.jitsi.videobridge.cc.config.*;
 import org.jitsi.videobridge.cc.vp8.*;
 import org.json.simple.*;
 
@@ -49,6 +50,12 @@
  */
 public class AdaptiveSourceProjection
 {
+    /**
+     * How long (in ms) a suspended projection has to be idle before its
+     * {@link #context} is released, or 0 to never release it.
+     */
+    private static final long IDLE_TIMEOUT_MS = BitrateControllerConfig.projectionIdleTimeout().toMillis();
+
     /**
      * The <tt>Logger</tt> used by the <tt>AdaptiveSourceProjection</tt> class
      * and its instances for logging output.
@@ -104,6 +111,26 @@
 
     private final Map<Byte, PayloadType> payloadTypes;
 
+    /**
+     * The RTP state of the last {@link #context}, saved when the context was
+     * released because the projection was idle. It is used to create a new
+     * context when the projection resumes, so that the receiver sees the
+     * stream continuing where it left off. Only accessed from the thread
+     * that calls {@link #accept(PacketInfo)}.
+     */
+    private RtpState compactedRtpState;
+
+    /**
+     * The arrival time (in ms) of the last packet accepted by this
+     * projection, or of the first packet it saw if none was accepted.
+     */
+    private long lastActiveMs = -1;
+
+    /**
+     * The number of times the {@link #context} was released.
+     */
+    private int numCompactions = 0;
+
     /**
      * Ctor.
      *
@@ -184,12 +211,27 @@ void setTargetIndex(int value)
     public boolean accept(@NotNull PacketInfo packetInfo)
     {
         VideoRtpPacket videoRtpPacket = packetInfo.packetAs();
+        if (isCompacted() && targetIndex <= RtpLayerDesc.SUSPENDED_INDEX)
+        {
+            // Stay compacted until the projection resumes.
+            return false;
+        }
+
         AdaptiveSourceProjectionContext contextCopy = getContext(videoRtpPacket);
         if (contextCopy == null)
         {
             return false;
         }
 
+        long receivedMs = packetInfo.getReceivedTime();
+        if (compactedRtpState != null)
+        {
+            // The context was re-created from the saved state, which is no
+            // longer needed. The idle time starts again from now.
+            compactedRtpState = null;
+            lastActiveMs = receivedMs;
+        }
+
         // XXX We want to let the context know that the stream has been
         // suspended so that it can raise the needsKeyframe flag and also allow
         // it to compute a sequence number delta when the target becomes > -1.
@@ -203,9 +245,32 @@ public boolean accept(@NotNull PacketInfo packetInfo)
         }
 
         int targetIndexCopy = targetIndex;
+        if (lastActiveMs == -1)
+        {
+            lastActiveMs = receivedMs;
+        }
+
+        if (targetIndexCopy <= RtpLayerDesc.SUSPENDED_INDEX
+            && IDLE_TIMEOUT_MS > 0
+            && receivedMs - lastActiveMs >= IDLE_TIMEOUT_MS)
+        {
+            // The source has been suspended for a while (e.g. it's outside of
+            // last-n). Release the context, with its frame maps and
+            // projections, and keep only the RTP state that we need to
+            // resume. A new context needs a keyframe to start with, which is
+            // what a suspended context would need too.
+            compact();
+            return false;
+        }
+
         boolean accept = contextCopy.accept(
             packetInfo, videoRtpPacket.getQualityIndex(), targetIndexCopy);
 
+        if (accept)
+        {
+            lastActiveMs = receivedMs;
+        }
+
         // We check if the context needs a keyframe regardless of whether or not
         // the packet was accepted.
         //
@@ -336,12 +401,44 @@ else if (context == null || contextPayloadType != payloadType)
         }
     }
 
+    /**
+     * Releases the {@link #context}, keeping only its {@link RtpState}.
+     */
+    private void compact()
+    {
+        AdaptiveSourceProjectionContext contextCopy = context;
+        if (contextCopy == null)
+        {
+            return;
+        }
+
+        logger.debug(() -> "Compacting idle source projection.");
+        compactedRtpState = contextCopy.getRtpState();
+        context = null;
+        contextPayloadType = -1;
+        numCompactions++;
+    }
+
+    /**
+     * @return true if the {@link #context} was released because this
+     * projection was idle, and hasn't been created again since.
+     */
+    private boolean isCompacted()
+    {
+        return context == null && compactedRtpState != null;
+    }
+
     /**
      * Gets the {@link RtpState}.
      */
     private RtpState getRtpState()
     {
-        if (context == null)
+        if (context == null && compactedRtpState != null)
+        {
+            // Resume from where we were when the context was released.
+            return compactedRtpState;
+        }
+        else if (context == null)
         {
             // TODO If '1' are the starting seq number and timestamp, should
             //  we use random values?
@@ -360,15 +457,19 @@ private RtpState getRtpState()
      * Rewrites an RTP packet for projection.
      *
      * @param packetInfo the RTP packet to rewrite.
+     * @throws RewriteException if there is no context to rewrite the packet
+     * with (e.g. because the projection was compacted after the packet was
+     * accepted), in which case the packet must not be forwarded as it is.
      */
    void rewriteRtp(@NotNull PacketInfo packetInfo)
         throws RewriteException
     {
         AdaptiveSourceProjectionContext contextCopy = context;
-        if (contextCopy != null)
+        if (contextCopy == null)
         {
-            contextCopy.rewriteRtp(packetInfo);
+            throw new RewriteException("No source projection context.");
         }
+        contextCopy.rewriteRtp(packetInfo);
     }
 
     /**
@@ -382,7 +483,9 @@ boolean rewriteRtcp(@NotNull RtcpSrPacket rtcpSrPacket)
         AdaptiveSourceProjectionContext contextCopy = context;
         if (contextCopy == null)
         {
-            return true;
+            // If we were compacted we're not forwarding the stream, and we
+            // can't rewrite the SR anyway.
+            return compactedRtpState == null;
         }
 
         return contextCopy.rewriteRtcp(rtcpSrPacket);
@@ -413,6 +516,8 @@ public JSONObject getDebugState()
         debugState.put("contextPayloadType", contextPayloadType);
         debugState.put("idealIndex", idealIndex);
         debugState.put("targetIndex", targetIndex);
+        debugState.put("compacted", isCompacted());
+        debugState.put("numCompactions", numCompactions);
 
         return debugState;
     }
@@ -17,18 +17,21 @@
 
 import org.jitsi.nlj.rtp.bandwidthestimation.*;
 import org.jitsi.nlj.util.*;
-import org.jitsi.utils.concurrent.*;
 import org.jitsi.utils.logging.*;
 import org.jitsi.videobridge.cc.config.*;
 import org.json.simple.*;
 
+import java.time.*;
 import java.util.*;
 
 /**
+  * Sends probing data for a single receiver. It is run by the
+  * {@link BandwidthProbingScheduler}.
+  *
   * @author George Politis
   */
  public class BandwidthProbing
-     extends PeriodicRunnable implements BandwidthEstimator.Listener
+     implements BandwidthEstimator.Listener
  {
      /**
       * The {@link TimeSeriesLogger} to be used by this instance to print time
@@ -70,16 +73,38 @@
 
      private ProbingDataSender probingDataSender;
 
+     private final Clock clock;
+
      private static final BandwidthProbingConfig config = new BandwidthProbingConfig();
 
+     /**
+      * Decides when to run probe clusters and at what rate.
+      */
+     private final ProbeClusterController probeClusterController = new ProbeClusterController(
+         config.getClusterDuration(),
+         config.getClusterRateMultiplier(),
+         config.getEvaluationWindow(),
+         config.getMinBweIncrease(),
+         config.getInitialBackoff(),
+         config.getMaxBackoff());
+
      /**
       * Ctor.
       *
       */
      public BandwidthProbing(ProbingDataSender probingDataSender)
      {
-         super(config.getPaddingPeriodMs());
+         this(probingDataSender, Clock.systemUTC());
+     }
+
+     /**
+      * Ctor.
+      *
+      */
+     public BandwidthProbing(ProbingDataSender probingDataSender, Clock clock)
+     {
          this.probingDataSender = probingDataSender;
+         this.clock = clock;
      }
 
      /**
@@ -103,16 +128,17 @@ public void setBitrateController(BitrateController bitrateController)
      }
 
      /**
-      * {@inheritDoc}
+      * Sends the probing data which is due, if any.
+      *
+      * @return the delay (in ms) after which this should run again, 0 to run
+      * again on the next tick, or -1 if there is nothing to probe for until
+      * the allocation changes.
       */
-     @Override
-     public void run()
+     long probe()
      {
-         super.run();
-
          if (!enabled)
          {
-             return;
+             return -1;
          }
 
          // We calculate how much to probe for based on the total target bps
@@ -122,29 +148,25 @@ public void run()
 
          // How much padding do we need?
          long totalNeededBps = bitrateControllerStatus.currentIdealBps - bitrateControllerStatus.currentTargetBps;
-         if (totalNeededBps < 1)
-         {
-             // Don't need to send any probing.
-             bytesLeftOver = 0;
-             return;
-         }
 
          long latestBweCopy = latestBwe;
 
-         if (bitrateControllerStatus.currentIdealBps <= latestBweCopy)
+         // The cluster controller decides whether we're currently in a probe
+         // cluster and how far above the estimation we're allowed to go. It
+         // returns 0 when there is no deficit.
+         long nowMs = clock.millis();
+         long paddingBps = probeClusterController.getProbingBps(
+                 nowMs,
+                 latestBweCopy,
+                 bitrateControllerStatus.currentTargetBps,
+                 bitrateControllerStatus.currentIdealBps);
+         if (paddingBps < 1)
          {
-             // it seems like the ideal bps fits in the bandwidth estimation,
-             // let's update the bitrate controller.
-             //TODO(brian): this trigger for a bitratecontroller update seems awkward and may not be obsolete
-             // since i now update it every time we get an updated estimate from bandwidth estimator
-//             dest.getBitrateController().update(bweBps);
-             return;
+             // Don't need to send any probing.
+             bytesLeftOver = 0;
+             return probeClusterController.getNextProbeDelayMs(nowMs);
          }
 
-         // How much padding can we afford?
-         long maxPaddingBps = latestBweCopy - bitrateControllerStatus.currentTargetBps;
-         long paddingBps = Math.min(totalNeededBps, maxPaddingBps);
-
          DiagnosticContext.TimeSeriesPoint timeSeriesPoint = null;
 
          double newBytesNeeded = (config.getPaddingPeriodMs() * paddingBps / 1000.0 / 8.0);
@@ -158,7 +180,6 @@ public void run()
                      .addField("total_ideal_bps", bitrateControllerStatus.currentIdealBps)
                      .addField("total_target_bps", bitrateControllerStatus.currentTargetBps)
                      .addField("needed_bps", totalNeededBps)
-                     .addField("max_padding_bps", maxPaddingBps)
                      .addField("bwe_bps", latestBweCopy)
                      .addField("bytes_needed", bytesNeeded)
                      .addField("prev_bytes_left_over", bytesLeftOver);
@@ -185,12 +206,15 @@ public void run()
          {
              timeSeriesLogger.trace(timeSeriesPoint);
          }
+
+         return probeClusterController.getNextProbeDelayMs(nowMs);
      }
 
      @Override
      public void bandwidthEstimationChanged(Bandwidth newBw)
      {
          this.latestBwe = (long)newBw.getBps();
+         probeClusterController.bandwidthEstimationChanged(latestBwe);
      }
 
      /**
@@ -205,6 +229,7 @@ public JSONObject getDebugState()
          debugState.put("ts", ts);
          debugState.put("enabled", enabled);
          debugState.put("latestBwe", latestBwe);
+         debugState.put("probeClusters", probeClusterController.getDebugState());
 
          return debugState;
      }
@@ -213,6 +238,15 @@ public JSONObject getDebugState()
      {
          /**
           * Sends a specific number of bytes with a specific set of SSRCs.
+          * Retransmissions (RTX) of recently sent packets of the given SSRCs
+          * are preferred over padding-only packets, so the SSRCs are ordered
+          * with the most preferred first.
+          *
+          * Which packets were sent recently is only known to the
+          * transceiver's packet cache, so the order is an approximation: the
+          * SSRCs are ordered by their target bitrate, because the stream with
+          * the highest bitrate is the most likely to have sent a packet
+          * recently (but a low frame rate or a paused stream may have none).
           * @param mediaSsrcs the SSRCs
           * @param numBytes the number of probing bytes we want to send
           * @return the number of bytes of probing data actually sent
@@ -0,0 +1,359 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.cc;
+
+import org.jitsi.nlj.util.*;
+import org.jitsi.utils.logging2.*;
+import org.jitsi.videobridge.cc.config.*;
+import org.jitsi.videobridge.util.*;
+import org.json.simple.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Runs the {@link BandwidthProbing} of all endpoints.
+ *
+ * A single thread advances a {@link TimingWheel} once per padding period and
+ * hands the probes which are due to the CPU pool, split in as many chunks as
+ * there are processors. A probe runs often only while its endpoint has
+ * something to probe for (i.e. while its allocation has a deficit): once it
+ * reports that it has nothing to do it is only checked again every
+ * {@code idleRecheckPeriodMs}, or earlier if it is woken up with
+ * {@link #wake(BandwidthProbing)} (which happens when the allocation of its
+ * endpoint changes). A probe is never left off the wheel, so a missed wake up
+ * or a failed run doesn't stop probing.
+ */
+public class BandwidthProbingScheduler
+{
+    private static final Logger logger = new LoggerImpl(BandwidthProbingScheduler.class.getName());
+
+    private static final BandwidthProbingConfig config = new BandwidthProbingConfig();
+
+    /**
+     * The number of slots of the timing wheel. With the default padding period
+     * of 15ms this covers the maximum backoff between probe clusters in a
+     * single rotation.
+     */
+    private static final int NUM_SLOTS = 1024;
+
+    /**
+     * How often a probe which has nothing to probe for is checked again.
+     */
+    private static final long IDLE_RECHECK_PERIOD_MS = 1000;
+
+    /**
+     * The scheduler shared by all endpoints.
+     */
+    private static final BandwidthProbingScheduler INSTANCE = new BandwidthProbingScheduler(
+        config.getPaddingPeriodMs(),
+        IDLE_RECHECK_PERIOD_MS,
+        TaskPools.CPU_POOL,
+        Runtime.getRuntime().availableProcessors());
+
+    static
+    {
+        INSTANCE.start(
+            Executors.newSingleThreadScheduledExecutor(new NameableThreadFactory("Bandwidth probing scheduler")));
+    }
+
+    public static BandwidthProbingScheduler getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private final long tickPeriodMs;
+
+    private final long idleRecheckPeriodMs;
+
+    private final Executor workerPool;
+
+    /**
+     * The maximum number of chunks in which the probes due on a single tick
+     * are split.
+     */
+    private final int parallelism;
+
+    private final TimingWheel<Task> wheel = new TimingWheel<>(NUM_SLOTS);
+
+    private final Map<BandwidthProbing, Task> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * The time (from {@link System#nanoTime()}) at which the wheel started
+     * turning, used to compute when each tick was due.
+     */
+    private final long startNanos = System.nanoTime();
+
+    private final Stats stats = new Stats();
+
+    BandwidthProbingScheduler(
+        long tickPeriodMs,
+        long idleRecheckPeriodMs,
+        Executor workerPool,
+        int parallelism)
+    {
+        this.tickPeriodMs = tickPeriodMs;
+        this.idleRecheckPeriodMs = idleRecheckPeriodMs;
+        this.workerPool = workerPool;
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Starts turning the wheel on a specific executor, once per tick period.
+     */
+    void start(ScheduledExecutorService ticker)
+    {
+        ticker.scheduleAtFixedRate(this::tick, tickPeriodMs, tickPeriodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts running a specific {@link BandwidthProbing}, starting with the
+     * next tick.
+     */
+    public void register(BandwidthProbing bandwidthProbing)
+    {
+        Task task = new Task(bandwidthProbing);
+        if (tasks.putIfAbsent(bandwidthProbing, task) == null)
+        {
+            task.wake();
+        }
+    }
+
+    /**
+     * Stops running a specific {@link BandwidthProbing}.
+     */
+    public void deregister(BandwidthProbing bandwidthProbing)
+    {
+        Task task = tasks.remove(bandwidthProbing);
+        if (task != null)
+        {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Makes a specific {@link BandwidthProbing} run on the next tick, e.g.
+     * because the allocation of its endpoint has changed.
+     */
+    public void wake(BandwidthProbing bandwidthProbing)
+    {
+        Task task = tasks.get(bandwidthProbing);
+        if (task != null)
+        {
+            task.wake();
+        }
+    }
+
+    /**
+     * Advances the wheel and dispatches the probes which are due.
+     */
+    private void tick()
+    {
+        try
+        {
+            List<Task> due = wheel.advance();
+
+            long dueNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(wheel.getCurrentTick() * tickPeriodMs);
+            stats.tickLag(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - dueNanos), tickPeriodMs);
+
+            if (due.isEmpty())
+            {
+                return;
+            }
+
+            stats.numProbes.addAndGet(due.size());
+            int numChunks = Math.min(parallelism, due.size());
+            for (int i = 0; i < numChunks; i++)
+            {
+                int firstIndex = i;
+                workerPool.execute(() -> {
+                    for (int j = firstIndex; j < due.size(); j += numChunks)
+                    {
+                        due.get(j).run();
+                    }
+                });
+            }
+        }
+        catch (Throwable t)
+        {
+            // An exception would cancel the periodic execution.
+            logger.warn("Failed to run bandwidth probing tick", t);
+        }
+    }
+
+    /**
+     * @return the number of ticks after which a delay (in ms) has elapsed.
+     */
+    private long toTicks(long delayMs)
+    {
+        return (delayMs + tickPeriodMs - 1) / tickPeriodMs;
+    }
+
+    /**
+     * Gets a JSON representation of the statistics of this scheduler.
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject getStatsJson()
+    {
+        JSONObject statsJson = new JSONObject();
+        statsJson.put("tick_period_ms", tickPeriodMs);
+        statsJson.put("parallelism", parallelism);
+        statsJson.put("num_registered", tasks.size());
+        statsJson.put("num_scheduled", wheel.size());
+        statsJson.put("num_ticks", wheel.getCurrentTick());
+        statsJson.put("num_probes", stats.numProbes.get());
+        statsJson.put("num_late_ticks", stats.numLateTicks.get());
+        statsJson.put("last_tick_lag_ms", stats.lastTickLagMs);
+        statsJson.put("max_tick_lag_ms", stats.maxTickLagMs.get());
+        return statsJson;
+    }
+
+    /**
+     * @return the lag (in ms) of the most recent tick, i.e. how long after it
+     * was due it actually ran.
+     */
+    public long getLastTickLagMs()
+    {
+        return stats.lastTickLagMs;
+    }
+
+    /**
+     * @return the highest lag (in ms) of a tick since the scheduler started.
+     */
+    public long getMaxTickLagMs()
+    {
+        return stats.maxTickLagMs.get();
+    }
+
+    /**
+     * Wraps a {@link BandwidthProbing} on the wheel and makes sure that it
+     * never runs concurrently with itself.
+     */
+    private class Task
+    {
+        private final BandwidthProbing bandwidthProbing;
+
+        /**
+         * Whether the probe is currently running on a worker thread.
+         */
+        private boolean running = false;
+
+        /**
+         * Whether the probe was woken up while it was running, in which case
+         * it will run again on the next tick.
+         */
+        private boolean wakePending = false;
+
+        private boolean cancelled = false;
+
+        Task(BandwidthProbing bandwidthProbing)
+        {
+            this.bandwidthProbing = bandwidthProbing;
+        }
+
+        void run()
+        {
+            synchronized (this)
+            {
+                if (cancelled)
+                {
+                    return;
+                }
+                if (running)
+                {
+                    // Another worker is still running the previous tick.
+                    wakePending = true;
+                    return;
+                }
+                running = true;
+            }
+
+            long nextDelayMs = -1;
+            try
+            {
+                nextDelayMs = bandwidthProbing.probe();
+            }
+            catch (Throwable t)
+            {
+                logger.warn("Failed to run bandwidth probing", t);
+            }
+
+            synchronized (this)
+            {
+                running = false;
+                if (cancelled)
+                {
+                    return;
+                }
+                if (wakePending)
+                {
+                    wakePending = false;
+                    nextDelayMs = 0;
+                }
+                // With nothing to probe for (or after a failure) we still
+                // check again later, in case a wake up was missed.
+                wheel.schedule(this, toTicks(nextDelayMs >= 0 ? nextDelayMs : idleRecheckPeriodMs));
+            }
+        }
+
+        synchronized void wake()
+        {
+            if (cancelled)
+            {
+                return;
+            }
+            if (running)
+            {
+                wakePending = true;
+            }
+            else
+            {
+                wheel.schedule(this, 1);
+            }
+        }
+
+        synchronized void cancel()
+        {
+            cancelled = true;
+            wheel.cancel(this);
+        }
+    }
+
+    private static class Stats
+    {
+        private final AtomicLong numProbes = new AtomicLong();
+
+        /**
+         * The number of ticks which ran more than a tick period late.
+         */
+        private final AtomicLong numLateTicks = new AtomicLong();
+
+        private final AtomicLong maxTickLagMs = new AtomicLong();
+
+        private volatile long lastTickLagMs = 0;
+
+        private void tickLag(long lagMs, long tickPeriodMs)
+        {
+            lastTickLagMs = lagMs;
+            if (lagMs > tickPeriodMs)
+            {
+                numLateTicks.incrementAndGet();
+            }
+            maxTickLagMs.accumulateAndGet(lagMs, Math::max);
+        }
+    }
+}
@@ -267,6 +267,18 @@ public static List<EndpointMultiRank> makeEndpointMultiRankList(
      */
     private Instant lastUpdateTime = Instant.MIN;
 
+    /**
+     * The number of allocations which were taken from the conference's
+     * {@link AllocationCache}.
+     */
+    private final AtomicLong numAllocationCacheHits = new AtomicLong();
+
+    /**
+     * The number of allocations which had to be computed because they were
+     * not found in the conference's {@link AllocationCache}.
+     */
+    private final AtomicLong numAllocationCacheMisses = new AtomicLong();
+
     /**
      * Initializes a new {@link BitrateController} instance which is to
      * belong to a particular {@link Endpoint}.
@@ -392,6 +404,13 @@ public JSONObject getDebugState()
         }
         debugState.put("adaptiveSourceProjectionMap", adaptiveSourceProjectionsJson);
         debugState.put("numDroppedPacketsUnknownSsrc", numDroppedPacketsUnknownSsrc.intValue());
+        JSONObject allocationCacheJson = new JSONObject();
+        long hits = numAllocationCacheHits.get();
+        long misses = numAllocationCacheMisses.get();
+        allocationCacheJson.put("hits", hits);
+        allocationCacheJson.put("misses", misses);
+        allocationCacheJson.put("hitRate", hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        debugState.put("allocationCache", allocationCacheJson);
         return debugState;
     }
 
@@ -408,7 +427,8 @@ StatusSnapshot getStatusSnapshot()
         {
             return new StatusSnapshot();
         }
-        List<Long> activeSsrcs = new ArrayList<>();
+        // The active SSRCs mapped to their target bitrate.
+        Map<Long, Long> activeSsrcs = new HashMap<>();
         long totalTargetBps = 0, totalIdealBps = 0;
         long nowMs = clock.instant().toEpochMilli();
         for (MediaSourceDesc incomingSource : destinationEndpoint
@@ -439,7 +459,7 @@ StatusSnapshot getStatusSnapshot()
                 long ssrc = adaptiveSourceProjection.getTargetSsrc();
                 if (ssrc > -1)
                 {
-                    activeSsrcs.add(ssrc);
+                    activeSsrcs.put(ssrc, targetBps);
                 }
             }
 
@@ -451,7 +471,14 @@ StatusSnapshot getStatusSnapshot()
             // be extracted in a utility method somehow.
             totalIdealBps += incomingSource.getBitrate(nowMs, adaptiveSourceProjection.getIdealIndex()).getBps();
         }
-        return new StatusSnapshot(totalTargetBps, totalIdealBps, activeSsrcs);
+        // Order the SSRCs by decreasing bitrate. This approximates the order
+        // of the most recently sent packets (which only the transceiver
+        // knows): the highest bitrate streams are the most likely to have
+        // recent packets available for retransmission, so probing with their
+        // RTX is preferred over padding-only packets.
+        List<Long> sortedActiveSsrcs = new ArrayList<>(activeSsrcs.keySet());
+        sortedActiveSsrcs.sort(Comparator.comparing(activeSsrcs::get, Comparator.reverseOrder()));
+        return new StatusSnapshot(totalTargetBps, totalIdealBps, sortedActiveSsrcs);
     }
 
     /**
@@ -578,7 +605,7 @@ private synchronized void update()
         }
 
         // Compute the bitrate allocation.
-        SourceBitrateAllocation[] sourceBitrateAllocations = allocate(bweBps, sortedEndpoints);
+        SourceBitrateAllocation[] sourceBitrateAllocations = allocate(bweBps, sortedEndpoints, nowMs);
 
         // Update the the controllers based on the allocation and send a
         // notification to the client the set of forwarded endpoints has
@@ -688,6 +715,7 @@ private synchronized void update()
 
         // The bandwidth brober will pick this up.
         this.adaptiveSourceProjections = Collections.unmodifiableList(adaptiveSourceProjections);
+        destinationEndpoint.bitrateAllocationChanged();
 
         if (!newForwardedEndpointIds.equals(oldForwardedEndpointIds))
         {
@@ -773,20 +801,68 @@ private AdaptiveSourceProjection lookupOrCreateAdaptiveSourceProjection(
      * Computes the ideal and the target bitrate, limiting the target to be
      * less than bandwidth estimation specified as an argument.
      *
+     * Receivers which rank the same sources with the same constraints and
+     * have a similar bandwidth estimation end up with the same allocation, so
+     * the result is shared with the other receivers of the conference through
+     * its {@link AllocationCache}. Receivers share an entry when their
+     * bandwidth falls in the same (quantized) bucket, but allocations are
+     * computed with the real bandwidth, and a cached one is only used if its
+     * target bitrate fits in the bandwidth of this receiver.
+     *
      * @param maxBandwidth the max bandwidth estimation that the target bitrate
      * must not exceed.
      * @param conferenceEndpoints the ordered list of {@link Endpoint}s
      * participating in the multipoint conference with the dominant (speaker)
      * {@link Endpoint} at the beginning of the list i.e. the dominant speaker
-     * history. This parameter is optional but it can be used for performance;
-     * if it's omitted it will be fetched from the
-     * {@link ConferenceSpeechActivity}.
+     * history.
+     * @param nowMs the current time (in ms).
      * @return an array of {@link SourceBitrateAllocation}.
      */
-    private SourceBitrateAllocation[] allocate(long maxBandwidth, List<AbstractEndpoint> conferenceEndpoints)
+    private SourceBitrateAllocation[] allocate(
+        long maxBandwidth,
+        List<AbstractEndpoint> conferenceEndpoints,
+        long nowMs)
     {
-        SourceBitrateAllocation[] sourceBitrateAllocations = prioritize(conferenceEndpoints);
+        List<EndpointMultiRank> endpointMultiRankList = rank(conferenceEndpoints);
+
+        AllocationCache allocationCache = destinationEndpoint.getConference().getAllocationCache();
+        if (!allocationCache.isEnabled())
+        {
+            return allocate(maxBandwidth, prioritize(endpointMultiRankList));
+        }
+
+        AllocationCache.Key key
+            = AllocationCache.Key.of(endpointMultiRankList, allocationCache.quantize(maxBandwidth));
+        SourceBitrateAllocation[] sourceBitrateAllocations = prioritize(endpointMultiRankList);
+
+        AllocationCache.CachedAllocation cached = allocationCache.get(key, nowMs);
+        if (cached != null && cached.applyTo(sourceBitrateAllocations, maxBandwidth))
+        {
+            numAllocationCacheHits.incrementAndGet();
+            return sourceBitrateAllocations;
+        }
+
+        numAllocationCacheMisses.incrementAndGet();
+        allocate(maxBandwidth, sourceBitrateAllocations);
+        allocationCache.put(key, AllocationCache.CachedAllocation.of(sourceBitrateAllocations), nowMs);
+        return sourceBitrateAllocations;
+    }
 
+    /**
+     * Computes the ideal and the target bitrate of a prioritized set of
+     * sources, limiting the target to be less than bandwidth estimation
+     * specified as an argument.
+     *
+     * @param maxBandwidth the max bandwidth estimation that the target bitrate
+     * must not exceed.
+     * @param sourceBitrateAllocations the prioritized allocations (see
+     * {@link #prioritize(List)}), which are updated in place.
+     * @return the {@link SourceBitrateAllocation} array that was passed in.
+     */
+    private SourceBitrateAllocation[] allocate(
+        long maxBandwidth,
+        SourceBitrateAllocation[] sourceBitrateAllocations)
+    {
         if (ArrayUtils.isNullOrEmpty(sourceBitrateAllocations))
         {
             return sourceBitrateAllocations;
@@ -861,29 +937,21 @@ private SourceBitrateAllocation[] allocate(long maxBandwidth, List<AbstractEndpo
     }
 
     /**
-     * Returns a prioritized {@link SourceBitrateAllocation} array where
-     * selected endpoint are at the top of the array, followed by the pinned
-     * endpoints, finally followed by any other remaining endpoints. The
-     * priority respects the order induced by the <tt>conferenceEndpoints</tt>
-     * parameter.
+     * Ranks the endpoints of the conference for bandwidth allocation based on
+     * their speaker order and the video constraints of this receiver. See
+     * {@link EndpointMultiRanker}.
      *
      * @param conferenceEndpoints the ordered list of {@link Endpoint}s
      * participating in the multipoint conference with the dominant (speaker)
      * {@link Endpoint} at the beginning of the list i.e. the dominant speaker
-     * history. This parameter is optional but it can be used for performance;
-     * if it's omitted it will be fetched from the
-     * {@link ConferenceSpeechActivity}.
-     * @return a prioritized {@link SourceBitrateAllocation} array where
-     * selected endpoint are at the top of the array, followed by the pinned
-     * endpoints, finally followed by any other remaining endpoints.
+     * history.
+     * @return the ranked endpoints, along with their effective video
+     * constraints.
      */
-    private SourceBitrateAllocation[] prioritize(List<AbstractEndpoint> conferenceEndpoints)
+    private List<EndpointMultiRank> rank(List<AbstractEndpoint> conferenceEndpoints)
     {
         Map<String, VideoConstraints> copyOfVideoConstraintsMap = this.videoConstraintsMap;
 
-        // Init.
-        List<SourceBitrateAllocation> sourceBitrateAllocations = new ArrayList<>();
-
         int adjustedLastN = JvbLastNKt.calculateLastN(this.lastN, JvbLastNKt.jvbLastNSingleton.getJvbLastN());
         if (adjustedLastN < 0)
         {
@@ -904,8 +972,26 @@ private SourceBitrateAllocation[] prioritize(List<AbstractEndpoint> conferenceEn
                 ". Endpoints constraints: " + Arrays.toString(copyOfVideoConstraintsMap.values().toArray()));
         }
 
-        List<EndpointMultiRank> endpointMultiRankList
-            = makeEndpointMultiRankList(conferenceEndpoints, copyOfVideoConstraintsMap, adjustedLastN);
+        return makeEndpointMultiRankList(conferenceEndpoints, copyOfVideoConstraintsMap, adjustedLastN);
+    }
+
+    /**
+     * Returns a prioritized {@link SourceBitrateAllocation} array where
+     * selected endpoint are at the top of the array, followed by the pinned
+     * endpoints, finally followed by any other remaining endpoints. The
+     * priority respects the order induced by the <tt>endpointMultiRankList</tt>
+     * parameter.
+     *
+     * @param endpointMultiRankList the ranked endpoints (see
+     * {@link #rank(List)}).
+     * @return a prioritized {@link SourceBitrateAllocation} array where
+     * selected endpoint are at the top of the array, followed by the pinned
+     * endpoints, finally followed by any other remaining endpoints.
+     */
+    private SourceBitrateAllocation[] prioritize(List<EndpointMultiRank> endpointMultiRankList)
+    {
+        // Init.
+        List<SourceBitrateAllocation> sourceBitrateAllocations = new ArrayList<>();
 
         for (EndpointMultiRank endpointMultiRank : endpointMultiRankList)
         {
@@ -923,7 +1009,7 @@ private SourceBitrateAllocation[] prioritize(List<AbstractEndpoint> conferenceEn
                 {
                     sourceBitrateAllocations.add(
                         new SourceBitrateAllocation(
-                            endpointMultiRank.endpoint.getID(),
+                            endpointMultiRank.endpoint,
                             source,
                             endpointMultiRank.effectiveVideoConstraints));
 
@@ -1146,11 +1232,11 @@ private RateSnapshot(long bps, RtpLayerDesc layer)
          * selected.
          */
         private SourceBitrateAllocation(
-            String endpointID,
+            AbstractEndpoint endpoint,
             MediaSourceDesc source,
             VideoConstraints effectiveVideoConstraints)
         {
-            this.endpointID = endpointID;
+            this.endpointID = endpoint.getID();
             this.effectiveVideoConstraints = effectiveVideoConstraints;
             this.source = source;
 
@@ -1209,7 +1295,7 @@ private SourceBitrateAllocation(
                     || (lessThanOrEqualIdealResolution && atLeastPreferredFps))
                     || ratesList.isEmpty())
                 {
-                    long layerBitrateBps = (long) layer.getBitrate(nowMs).getBps();
+                    long layerBitrateBps = endpoint.getLayerBitrateBps(layer, nowMs);
                     if (layerBitrateBps > 0)
                     {
                         idealBps = layerBitrateBps;
@@ -1467,7 +1553,410 @@ public int compare(EndpointMultiRank o1, EndpointMultiRank o2)
     }
 
     /**
-     * TODO Document
+     * Caches the allocations computed by the {@link BitrateController}s of a
+     * conference, so that receivers with identical inputs (the same ranking of
+     * the same sources with the same effective constraints, and a bandwidth
+     * estimation in the same bucket) share a single computation. This is
+     * common in large conferences, where most receivers have the same last-n
+     * and the same constraints.
+     *
+     * The sources which the receiver doesn't want to see (i.e. with an ideal
+     * height of 0, e.g. because they are outside of its last-n) don't take
+     * part in the allocation, so they are left out of the inputs. Otherwise
+     * a receiver which sends video would never share an entry, since its own
+     * sources are missing from its ranking but present in everyone else's.
+     * With this, it only has a separate entry if it is among the last-n of
+     * the other receivers (a recent speaker), or if last-n is disabled.
+     *
+     * Only the outcome of an allocation (the rated target index of each
+     * source) is cached, which doesn't depend on the receiver, so the entries
+     * don't hold on to the {@link BitrateController} that computed them.
+     *
+     * The cache is bounded: it evicts the least recently used entries, and
+     * entries are removed after a short time so that changes in the bitrates
+     * of the layers are eventually taken into account.
+     */
+    public static class AllocationCache
+    {
+        /**
+         * The maximum number of entries, or 0 if caching is disabled.
+         */
+        private final int maxSize;
+
+        private final long ttlMs;
+
+        /**
+         * The relative size of a bandwidth bucket.
+         */
+        private final double bandwidthStep;
+
+        private final Map<Key, Entry> entries;
+
+        private long numHits = 0;
+
+        private long numMisses = 0;
+
+        private long numEvictions = 0;
+
+        private long numExpirations = 0;
+
+        public AllocationCache()
+        {
+            this(
+                BitrateControllerConfig.allocationCacheSize(),
+                BitrateControllerConfig.allocationCacheTtl(),
+                BitrateControllerConfig.allocationCacheBandwidthStep());
+        }
+
+        public AllocationCache(int maxSize, Duration ttl, double bandwidthStep)
+        {
+            this.maxSize = maxSize;
+            this.ttlMs = ttl.toMillis();
+            this.bandwidthStep = bandwidthStep;
+            this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+                {
+                    if (size() > AllocationCache.this.maxSize)
+                    {
+                        numEvictions++;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * @return true if allocations should be looked up in this cache.
+         */
+        public boolean isEnabled()
+        {
+            return maxSize > 0;
+        }
+
+        /**
+         * Rounds a bandwidth down to the lower bound of its bucket. Buckets
+         * grow geometrically, so that the rounding error is at most
+         * {@link #bandwidthStep} of the bandwidth.
+         *
+         * @param bps the bandwidth (in bps).
+         * @return the quantized bandwidth (in bps).
+         */
+        long quantize(long bps)
+        {
+            if (bps <= 1 || bps == Long.MAX_VALUE || bandwidthStep <= 0)
+            {
+                return bps;
+            }
+
+            double bucket = Math.floor(Math.log(bps) / Math.log1p(bandwidthStep));
+            return Math.min(bps, (long) Math.pow(1 + bandwidthStep, bucket));
+        }
+
+        /**
+         * @return the allocation cached for a specific key, or {@code null}
+         * if there is none or it expired.
+         */
+        synchronized CachedAllocation get(Key key, long nowMs)
+        {
+            Entry entry = entries.get(key);
+            if (entry == null || entry.isExpired(nowMs))
+            {
+                if (entry != null)
+                {
+                    entries.remove(key);
+                    numExpirations++;
+                }
+                numMisses++;
+                return null;
+            }
+
+            numHits++;
+            return entry.allocation;
+        }
+
+        /**
+         * Caches an allocation, and removes the entries which expired.
+         */
+        synchronized void put(Key key, CachedAllocation allocation, long nowMs)
+        {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext())
+            {
+                if (it.next().isExpired(nowMs))
+                {
+                    it.remove();
+                    numExpirations++;
+                }
+            }
+            entries.put(key, new Entry(allocation, nowMs));
+        }
+
+        /**
+         * Removes all entries, e.g. because an endpoint expired (so that its
+         * sources aren't kept in the keys).
+         */
+        public synchronized void clear()
+        {
+            entries.clear();
+        }
+
+        /**
+         * @return the number of entries.
+         */
+        synchronized int size()
+        {
+            return entries.size();
+        }
+
+        /**
+         * Gets a JSON representation of the parts of this object's state that
+         * are deemed useful for debugging.
+         */
+        @SuppressWarnings("unchecked")
+        public synchronized JSONObject getDebugState()
+        {
+            JSONObject debugState = new JSONObject();
+            debugState.put("maxSize", maxSize);
+            debugState.put("size", entries.size());
+            debugState.put("hits", numHits);
+            debugState.put("misses", numMisses);
+            debugState.put("evictions", numEvictions);
+            debugState.put("expirations", numExpirations);
+            return debugState;
+        }
+
+        private class Entry
+        {
+            private final CachedAllocation allocation;
+
+            private final long createdMs;
+
+            private Entry(CachedAllocation allocation, long createdMs)
+            {
+                this.allocation = allocation;
+                this.createdMs = createdMs;
+            }
+
+            private boolean isExpired(long nowMs)
+            {
+                return nowMs - createdMs >= ttlMs;
+            }
+        }
+
+        /**
+         * The outcome of an allocation: the rated target index of each
+         * source, in priority order, and whether it is oversending.
+         */
+        static class CachedAllocation
+        {
+            private final int[] ratedTargetIndices;
+
+            private final boolean[] oversending;
+
+            CachedAllocation(int[] ratedTargetIndices, boolean[] oversending)
+            {
+                this.ratedTargetIndices = ratedTargetIndices;
+                this.oversending = oversending;
+            }
+
+            private static CachedAllocation of(SourceBitrateAllocation[] sourceBitrateAllocations)
+            {
+                List<SourceBitrateAllocation> allocated = allocated(sourceBitrateAllocations);
+                int[] ratedTargetIndices = new int[allocated.size()];
+                boolean[] oversending = new boolean[allocated.size()];
+                for (int i = 0; i < allocated.size(); i++)
+                {
+                    ratedTargetIndices[i] = allocated.get(i).ratedTargetIdx;
+                    oversending[i] = allocated.get(i).oversending;
+                }
+                return new CachedAllocation(ratedTargetIndices, oversending);
+            }
+
+            /**
+             * @return the allocations which take part in the allocation (see
+             * {@link BitrateController#allocate(long, SourceBitrateAllocation[])}),
+             * in order. The others are never allocated anything.
+             */
+            private static List<SourceBitrateAllocation> allocated(
+                SourceBitrateAllocation[] sourceBitrateAllocations)
+            {
+                List<SourceBitrateAllocation> allocated = new ArrayList<>(sourceBitrateAllocations.length);
+                for (SourceBitrateAllocation sourceBitrateAllocation : sourceBitrateAllocations)
+                {
+                    if (sourceBitrateAllocation.effectiveVideoConstraints.getIdealHeight() > 0)
+                    {
+                        allocated.add(sourceBitrateAllocation);
+                    }
+                }
+                return allocated;
+            }
+
+            /**
+             * Applies this allocation to the (newly prioritized) allocations
+             * of a receiver, if it fits in the receiver's bandwidth.
+             *
+             * @return {@code false} if the allocation doesn't match the
+             * sources or exceeds the bandwidth, in which case the allocations
+             * are left unchanged.
+             */
+            private boolean applyTo(SourceBitrateAllocation[] sourceBitrateAllocations, long maxBandwidth)
+            {
+                List<SourceBitrateAllocation> allocated = allocated(sourceBitrateAllocations);
+                if (allocated.size() != ratedTargetIndices.length)
+                {
+                    return false;
+                }
+
+                long targetBps = 0;
+                for (int i = 0; i < allocated.size(); i++)
+                {
+                    SourceBitrateAllocation sourceBitrateAllocation = allocated.get(i);
+                    if (ratedTargetIndices[i] >= sourceBitrateAllocation.ratedIndices.length)
+                    {
+                        return false;
+                    }
+                    if (!oversending[i] && ratedTargetIndices[i] > -1)
+                    {
+                        targetBps += sourceBitrateAllocation.ratedIndices[ratedTargetIndices[i]].bps;
+                    }
+                }
+                if (targetBps > maxBandwidth)
+                {
+                    return false;
+                }
+
+                for (int i = 0; i < allocated.size(); i++)
+                {
+                    allocated.get(i).ratedTargetIdx = ratedTargetIndices[i];
+                    allocated.get(i).oversending = oversending[i];
+                }
+                return true;
+            }
+        }
+
+        /**
+         * The inputs of an allocation: the ranked sources with their
+         * effective constraints, and the quantized bandwidth.
+         */
+        static class Key
+        {
+            private final List<String> endpointIds;
+
+            private final List<VideoConstraints> constraints;
+
+            /**
+             * The sources of the ranked endpoints, so that a change in the
+             * sources of an endpoint results in a different key.
+             */
+            private final List<MediaSourceDesc[]> sources;
+
+            /**
+             * Whether the first prioritized source takes part in the
+             * allocation, which is the only one that can be forced (see
+             * {@link BitrateControllerConfig#enableOnstageVideoSuspend()}).
+             */
+            private final boolean firstAllocated;
+
+            private final long bandwidthBps;
+
+            private final int hashCode;
+
+            Key(
+                List<String> endpointIds,
+                List<VideoConstraints> constraints,
+                List<MediaSourceDesc[]> sources,
+                boolean firstAllocated,
+                long bandwidthBps)
+            {
+                this.endpointIds = endpointIds;
+                this.constraints = constraints;
+                this.sources = sources;
+                this.firstAllocated = firstAllocated;
+                this.bandwidthBps = bandwidthBps;
+                this.hashCode = Objects.hash(endpointIds, constraints, firstAllocated, bandwidthBps);
+            }
+
+            static Key of(List<EndpointMultiRank> endpointMultiRankList, long bandwidthBps)
+            {
+                List<String> endpointIds = new ArrayList<>(endpointMultiRankList.size());
+                List<VideoConstraints> constraints = new ArrayList<>(endpointMultiRankList.size());
+                List<MediaSourceDesc[]> sources = new ArrayList<>(endpointMultiRankList.size());
+                Boolean firstAllocated = null;
+                for (EndpointMultiRank endpointMultiRank : endpointMultiRankList)
+                {
+                    if (endpointMultiRank.endpoint.isExpired())
+                    {
+                        continue;
+                    }
+                    MediaSourceDesc[] endpointSources = endpointMultiRank.endpoint.getMediaSources();
+                    if (ArrayUtils.isNullOrEmpty(endpointSources))
+                    {
+                        // Doesn't contribute to the allocation.
+                        continue;
+                    }
+                    boolean allocated = endpointMultiRank.effectiveVideoConstraints.getIdealHeight() > 0;
+                    if (firstAllocated == null)
+                    {
+                        firstAllocated = allocated;
+                    }
+                    if (!allocated)
+                    {
+                        // Its sources are never allocated anything.
+                        continue;
+                    }
+                    endpointIds.add(endpointMultiRank.endpoint.getID());
+                    constraints.add(endpointMultiRank.effectiveVideoConstraints);
+                    sources.add(endpointSources);
+                }
+                return new Key(endpointIds, constraints, sources, Boolean.TRUE.equals(firstAllocated), bandwidthBps);
+            }
+
+            @Override
+            public boolean equals(Object o)
+            {
+                if (this == o)
+                {
+                    return true;
+                }
+                if (!(o instanceof Key))
+                {
+                    return false;
+                }
+                Key other = (Key) o;
+                if (hashCode != other.hashCode
+                    || firstAllocated != other.firstAllocated
+                    || bandwidthBps != other.bandwidthBps
+                    || !endpointIds.equals(other.endpointIds)
+                    || !constraints.equals(other.constraints)
+                    || sources.size() != other.sources.size())
+                {
+                    return false;
+                }
+                for (int i = 0; i < sources.size(); i++)
+                {
+                    if (!Arrays.equals(sources.get(i), other.sources.get(i)))
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public int hashCode()
+            {
+                return hashCode;
+            }
+        }
+    }
+
+    /**
+     * A snapshot of the current target and ideal bitrates of a
+     * {@link BitrateController}, and of the SSRCs that are being forwarded
+     * (ordered by decreasing bitrate).
      */
     static class StatusSnapshot
     {
@@ -0,0 +1,299 @@
+/*
+ * Copyright @ 2015 - Present, 8x8 Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.cc;
+
+import org.json.simple.*;
+
+import java.time.*;
+
+/**
+ * Decides when and how much to probe for a single receiver.
+ *
+ * Instead of continuously padding up to the bandwidth estimation, probing is
+ * done in short clusters during which the total send rate is raised above the
+ * current estimation (up to the ideal bitrate). After a cluster ends we give
+ * the bandwidth estimator some time to react. If the estimation increased
+ * enough the cluster is successful and we probe again right away, otherwise
+ * we back off exponentially before trying again. This allows a quick ramp-up
+ * when there is spare capacity while not wasting bandwidth on padding that
+ * doesn't lead anywhere.
+ */
+class ProbeClusterController
+{
+    /**
+     * How long a single probe cluster lasts, in ms.
+     */
+    private final long clusterDurationMs;
+
+    /**
+     * The total send rate that we aim for during a probe cluster, as a
+     * multiple of the bandwidth estimation at the start of the cluster.
+     */
+    private final double clusterRateMultiplier;
+
+    /**
+     * How long (in ms) we wait after a cluster for the estimation to react.
+     */
+    private final long evaluationWindowMs;
+
+    /**
+     * The minimum relative increase of the estimation for a cluster to be
+     * considered successful.
+     */
+    private final double minBweIncrease;
+
+    /**
+     * The delay (in ms) after the first failed cluster.
+     */
+    private final long initialBackoffMs;
+
+    /**
+     * The maximum delay (in ms) between two clusters.
+     */
+    private final long maxBackoffMs;
+
+    private State state = State.IDLE;
+
+    /**
+     * The time (in ms) at which the current phase ({@link State#PROBING} or
+     * {@link State#EVALUATING}) ends, or at which the next cluster can start
+     * (in {@link State#IDLE}).
+     */
+    private long phaseEndMs = -1;
+
+    /**
+     * The bandwidth estimation at the start of the current cluster.
+     */
+    private long clusterStartBweBps = -1;
+
+    /**
+     * The highest bandwidth estimation that we have seen since the start of
+     * the current cluster.
+     */
+    private long maxBweBps = -1;
+
+    /**
+     * The delay (in ms) to apply after the next failed cluster.
+     */
+    private long backoffMs;
+
+    /**
+     * Whether the receiver had a deficit (i.e. something to probe for) the
+     * last time we were asked for a probing rate.
+     */
+    private boolean hasDeficit = false;
+
+    private long numClusters = 0;
+
+    private long numSuccessfulClusters = 0;
+
+    private long numFailedClusters = 0;
+
+    /**
+     * Ctor.
+     */
+    ProbeClusterController(
+        Duration clusterDuration,
+        double clusterRateMultiplier,
+        Duration evaluationWindow,
+        double minBweIncrease,
+        Duration initialBackoff,
+        Duration maxBackoff)
+    {
+        this.clusterDurationMs = clusterDuration.toMillis();
+        this.clusterRateMultiplier = clusterRateMultiplier;
+        this.evaluationWindowMs = evaluationWindow.toMillis();
+        this.minBweIncrease = minBweIncrease;
+        this.initialBackoffMs = initialBackoff.toMillis();
+        this.maxBackoffMs = maxBackoff.toMillis();
+        this.backoffMs = initialBackoffMs;
+    }
+
+    /**
+     * Notifies this instance of a new bandwidth estimation.
+     *
+     * @param bweBps the new bandwidth estimation (in bps).
+     */
+    synchronized void bandwidthEstimationChanged(long bweBps)
+    {
+        if (state != State.IDLE && bweBps > maxBweBps)
+        {
+            maxBweBps = bweBps;
+        }
+    }
+
+    /**
+     * Computes the rate at which to send probing data right now.
+     *
+     * @param nowMs the current time (in ms).
+     * @param bweBps the current bandwidth estimation (in bps).
+     * @param targetBps the bitrate (in bps) of what we currently forward.
+     * @param idealBps the bitrate (in bps) of what we would like to forward.
+     * @return the rate (in bps) at which to send probing data, or 0 if we
+     * shouldn't be probing at this time.
+     */
+    synchronized long getProbingBps(long nowMs, long bweBps, long targetBps, long idealBps)
+    {
+        if (state == State.EVALUATING)
+        {
+            evaluate(nowMs);
+        }
+
+        hasDeficit = idealBps > targetBps && bweBps >= 0 && idealBps > bweBps;
+        if (!hasDeficit)
+        {
+            // There is no deficit, or the ideal already fits in the estimation
+            // and the allocation will catch up on its own. A cluster in
+            // progress is left to be evaluated.
+            if (state == State.PROBING)
+            {
+                endCluster(nowMs);
+            }
+            return 0;
+        }
+
+        if (state == State.IDLE)
+        {
+            if (nowMs < phaseEndMs)
+            {
+                return 0;
+            }
+
+            state = State.PROBING;
+            phaseEndMs = nowMs + clusterDurationMs;
+            clusterStartBweBps = bweBps;
+            maxBweBps = bweBps;
+            numClusters++;
+        }
+
+        if (state == State.PROBING)
+        {
+            if (nowMs >= phaseEndMs)
+            {
+                endCluster(nowMs);
+                return 0;
+            }
+
+            long probeTargetBps = Math.min(idealBps, (long) (clusterStartBweBps * clusterRateMultiplier));
+            return Math.max(probeTargetBps - targetBps, 0);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Computes how long it is until this controller needs to be asked for a
+     * probing rate again, based on the state left by the last call to
+     * {@link #getProbingBps(long, long, long, long)}.
+     *
+     * @param nowMs the current time (in ms).
+     * @return the delay (in ms) until the next call, 0 to call again as soon
+     * as possible, or -1 if there is nothing to probe for (until the
+     * allocation changes).
+     */
+    synchronized long getNextProbeDelayMs(long nowMs)
+    {
+        switch (state)
+        {
+            case PROBING:
+                return 0;
+            case EVALUATING:
+                // With a deficit a successful cluster is followed by the next
+                // one right away, so we check on every occasion. Without one
+                // we only need to wrap up the evaluation.
+                return hasDeficit ? 0 : Math.max(phaseEndMs - nowMs, 0);
+            default:
+                return hasDeficit ? Math.max(phaseEndMs - nowMs, 0) : -1;
+        }
+    }
+
+    /**
+     * Ends the current cluster and starts waiting for the bandwidth
+     * estimation to react.
+     */
+    private void endCluster(long nowMs)
+    {
+        state = State.EVALUATING;
+        phaseEndMs = nowMs + evaluationWindowMs;
+    }
+
+    /**
+     * Checks whether the current cluster has succeeded or failed.
+     */
+    private void evaluate(long nowMs)
+    {
+        if (maxBweBps >= clusterStartBweBps * (1 + minBweIncrease))
+        {
+            numSuccessfulClusters++;
+            backoffMs = initialBackoffMs;
+            state = State.IDLE;
+            // We can probe again right away.
+            phaseEndMs = nowMs;
+        }
+        else if (nowMs >= phaseEndMs)
+        {
+            numFailedClusters++;
+            state = State.IDLE;
+            phaseEndMs = nowMs + backoffMs;
+            backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+        }
+    }
+
+    /**
+     * @return true if a probe cluster is currently in progress.
+     */
+    synchronized boolean isProbing()
+    {
+        return state == State.PROBING;
+    }
+
+    /**
+     * Gets a JSON representation of the parts of this object's state that
+     * are deemed useful for debugging.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized JSONObject getDebugState()
+    {
+        JSONObject debugState = new JSONObject();
+        debugState.put("state", state.toString());
+        debugState.put("backoffMs", backoffMs);
+        debugState.put("clusterStartBweBps", clusterStartBweBps);
+        debugState.put("maxBweBps", maxBweBps);
+        debugState.put("numClusters", numClusters);
+        debugState.put("numSuccessfulClusters", numSuccessfulClusters);
+        debugState.put("numFailedClusters", numFailedClusters);
+        return debugState;
+    }
+
+    private enum State
+    {
+        /**
+         * Waiting for the next cluster.
+         */
+        IDLE,
+
+        /**
+         * A cluster is in progress.
+         */
+        PROBING,
+
+        /**
+         * A cluster has ended and we're waiting for the bandwidth estimation
+         * to react.
+         */
+        EVALUATING
+    }
+}
@@ -53,6 +53,13 @@
      */
     private final VP8QualityFilter vp8QualityFilter;
 
+    /**
+     * The index of the most recent keyframes and TL0 frames of each encoding,
+     * shared with the {@link #vp8QualityFilter}.
+     */
+    private final VP8LayerIndex layerIndex
+        = new VP8LayerIndex(VP8QualityFilter.MIN_KEY_FRAME_WAIT_MS);
+
     /**
      * The diagnostic context of this instance.
      */
@@ -89,7 +96,7 @@ public VP8AdaptiveSourceProjectionContext(
         this.logger = parentLogger.createChildLogger(
             VP8AdaptiveSourceProjectionContext.class.getName());
         this.payloadType = payloadType;
-        this.vp8QualityFilter = new VP8QualityFilter(parentLogger);
+        this.vp8QualityFilter = new VP8QualityFilter(layerIndex, parentLogger);
 
         lastVP8FrameProjection = new VP8FrameProjection(diagnosticContext,
             rtpState.ssrc, rtpState.maxSequenceNumber, rtpState.maxTimestamp);
@@ -178,23 +185,6 @@ private VP8Frame findNextAcceptedFrame(@NotNull VP8Frame frame)
         return frameMap.findNextAcceptedFrame(frame);
     }
 
-    /**
-     * Find a subsequent Tid==0 frame after the given frame
-     * @param frame The frame to query
-     * @return A subsequent TL0 frame, or null
-     */
-    @Nullable
-    private VP8Frame findNextTl0(@NotNull VP8Frame frame)
-    {
-        VP8FrameMap frameMap = vp8FrameMaps.get(frame.getSsrc());
-        if (frameMap == null)
-        {
-            return null;
-        }
-
-        return frameMap.findNextTl0(frame);
-    }
-
     /**
      * Calculate the projected sequence number gap between two frames (of the same encoding),
      * allowing collapsing for unaccepted frames.
@@ -291,6 +281,7 @@ public synchronized boolean accept(
 
         if (result.isNewFrame())
         {
+            int encodingId = RtpLayerDesc.getEidFromIndex(incomingIndex);
             if (vp8Packet.isKeyframe() && frameIsNewSsrc(frame))
             {
             /* If we're not currently projecting this SSRC, check if we've
@@ -298,8 +289,7 @@ public synchronized boolean accept(
                If we have, we can't turn on the encoding starting from this
                packet, so treat this frame as though it weren't a keyframe.
              */
-                VP8Frame f = findNextTl0(frame);
-                if (f != null && !f.isAccepted())
+                if (layerIndex.hasDroppedNewerTl0(frame, encodingId))
                 {
                     frame.setKeyframe(false);
                 }
@@ -308,6 +298,7 @@ public synchronized boolean accept(
             long receivedMs = packetInfo.getReceivedTime();
             boolean accepted = vp8QualityFilter
                 .acceptFrame(frame, incomingIndex, targetIndex, receivedMs);
+            layerIndex.frameReceived(frame, encodingId, result.isReset(), receivedMs);
 
             if (accepted)
             {
@@ -610,7 +601,7 @@ private VP8FrameProjection createInLayerProjection(
     }
 
     @Override
-    public boolean needsKeyframe()
+    public synchronized boolean needsKeyframe()
     {
         if (vp8QualityFilter.needsKeyframe())
         {
@@ -739,6 +730,7 @@ public synchronized JSONObject getDebugState()
         debugState.put(
                 "vp8FrameMaps", mapSizes);
         debugState.put("vp8QualityFilter", vp8QualityFilter.getDebugState());
+        debugState.put("layerIndex", layerIndex.getDebugState());
         debugState.put("payloadType", payloadType.toString());
 
         return debugState;
@@ -0,0 +1,235 @@
+/*
+ * Copyright @ 2019 8x8, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.cc.vp8;
+
+import org.jetbrains.annotations.*;
+import org.jitsi.nlj.codec.vp8.*;
+import org.json.simple.*;
+
+import java.util.*;
+
+/**
+ * Keeps track, for each encoding of a VP8 source, of the position of its most
+ * recent keyframe and of its most recent TL0 frame, as well as of the keyframe
+ * group that the source is currently sending. This allows the switching
+ * decisions to be made in constant time, instead of walking the
+ * {@link VP8FrameMap}s.
+ *
+ * A keyframe group is the set of keyframes that the sender produces on all
+ * of its encodings in response to a single keyframe request. It starts with
+ * the first keyframe received after {@link #keyframeGroupWindowMs} without
+ * one.
+ *
+ * Instances of this class are not thread-safe, they are meant to be used
+ * while holding the lock of the owning
+ * {@link VP8AdaptiveSourceProjectionContext}.
+ */
+class VP8LayerIndex
+{
+    /**
+     * How long (in ms) after the first keyframe of a group we expect the
+     * keyframes of the other encodings to arrive.
+     */
+    private final long keyframeGroupWindowMs;
+
+    /**
+     * The state of each encoding, indexed by encoding ID.
+     */
+    private EncodingState[] encodings = new EncodingState[0];
+
+    /**
+     * The arrival time (in ms) of the first keyframe of the most recent
+     * keyframe group, or -1 if we haven't received any keyframes.
+     */
+    private long keyframeGroupStartMs = -1;
+
+    VP8LayerIndex(long keyframeGroupWindowMs)
+    {
+        this.keyframeGroupWindowMs = keyframeGroupWindowMs;
+    }
+
+    /**
+     * Updates the index with a newly received frame. Any keyframe received
+     * outside of a keyframe group starts a new group, whether or not the
+     * quality filter accepted it (e.g. also while the source is suspended).
+     *
+     * @param frame the frame.
+     * @param encodingId the encoding of the frame.
+     * @param isReset whether the frame caused a reset of the frame map of
+     * its encoding, in which case positions within the encoding can no longer
+     * be compared to the previous ones.
+     * @param receivedMs the time (in ms) at which the frame was received.
+     */
+    void frameReceived(@NotNull VP8Frame frame, int encodingId, boolean isReset, long receivedMs)
+    {
+        if (encodingId < 0)
+        {
+            return;
+        }
+
+        EncodingState encoding = getOrCreate(encodingId);
+        if (isReset || encoding.ssrc != frame.getSsrc())
+        {
+            encoding.reset(frame.getSsrc());
+        }
+
+        if (frame.isKeyframe())
+        {
+            if (!isInKeyframeGroup(receivedMs))
+            {
+                keyframeGroupStartMs = receivedMs;
+            }
+            encoding.latestKeyframeMs = receivedMs;
+            encoding.latestKeyframePictureId = frame.getPictureId();
+        }
+
+        if (frame.isTL0() && (encoding.latestTl0 == null || isNewer(frame, encoding.latestTl0)))
+        {
+            encoding.latestTl0 = frame;
+        }
+    }
+
+    /**
+     * @return true if a TL0 frame which is newer than a specific frame of an
+     * encoding has already been dropped, in which case the encoding can't be
+     * (re)started from that frame.
+     */
+    boolean hasDroppedNewerTl0(@NotNull VP8Frame frame, int encodingId)
+    {
+        EncodingState encoding = get(encodingId);
+        if (encoding == null || encoding.ssrc != frame.getSsrc())
+        {
+            return false;
+        }
+
+        VP8Frame latestTl0 = encoding.latestTl0;
+        return latestTl0 != null && isNewer(latestTl0, frame) && !latestTl0.isAccepted();
+    }
+
+    /**
+     * @return true if a keyframe group is in progress at a specific time,
+     * i.e. if we're within {@link #keyframeGroupWindowMs} of its first
+     * keyframe.
+     */
+    boolean isInKeyframeGroup(long nowMs)
+    {
+        return keyframeGroupStartMs != -1 && nowMs - keyframeGroupStartMs <= keyframeGroupWindowMs;
+    }
+
+    /**
+     * @return true if a keyframe group is in progress and a specific encoding
+     * hasn't sent its keyframe yet, in which case its keyframe is expected to
+     * arrive shortly without having to request one. An encoding that we
+     * haven't received any frames of isn't expected to send a keyframe, so
+     * this is false for it.
+     */
+    boolean isKeyframePending(int encodingId, long nowMs)
+    {
+        if (encodingId < 0 || !isInKeyframeGroup(nowMs))
+        {
+            return false;
+        }
+
+        EncodingState encoding = get(encodingId);
+        return encoding != null && encoding.latestKeyframeMs < keyframeGroupStartMs;
+    }
+
+    /**
+     * @return the arrival time (in ms) of the first keyframe of the most
+     * recent keyframe group, or -1.
+     */
+    long getKeyframeGroupStartMs()
+    {
+        return keyframeGroupStartMs;
+    }
+
+    private static boolean isNewer(@NotNull VP8Frame frame, @NotNull VP8Frame other)
+    {
+        return Vp8Utils.getExtendedPictureIdDelta(frame.getPictureId(), other.getPictureId()) > 0;
+    }
+
+    @Nullable
+    private EncodingState get(int encodingId)
+    {
+        return encodingId >= 0 && encodingId < encodings.length ? encodings[encodingId] : null;
+    }
+
+    @NotNull
+    private EncodingState getOrCreate(int encodingId)
+    {
+        if (encodingId >= encodings.length)
+        {
+            encodings = Arrays.copyOf(encodings, encodingId + 1);
+        }
+        if (encodings[encodingId] == null)
+        {
+            encodings[encodingId] = new EncodingState();
+        }
+        return encodings[encodingId];
+    }
+
+    /**
+     * Gets a JSON representation of the parts of this object's state that
+     * are deemed useful for debugging.
+     */
+    @SuppressWarnings("unchecked")
+    JSONObject getDebugState()
+    {
+        JSONObject debugState = new JSONObject();
+        debugState.put("keyframeGroupStartMs", keyframeGroupStartMs);
+        JSONArray encodingsJson = new JSONArray();
+        for (EncodingState encoding : encodings)
+        {
+            if (encoding == null)
+            {
+                encodingsJson.add(null);
+                continue;
+            }
+            JSONObject encodingJson = new JSONObject();
+            encodingJson.put("ssrc", encoding.ssrc);
+            encodingJson.put("latestKeyframeMs", encoding.latestKeyframeMs);
+            encodingJson.put("latestKeyframePictureId", encoding.latestKeyframePictureId);
+            encodingJson.put(
+                "latestTl0PictureId",
+                encoding.latestTl0 == null ? -1 : encoding.latestTl0.getPictureId());
+            encodingsJson.add(encodingJson);
+        }
+        debugState.put("encodings", encodingsJson);
+        return debugState;
+    }
+
+    private static class EncodingState
+    {
+        private long ssrc = -1;
+
+        private long latestKeyframeMs = -1;
+
+        private int latestKeyframePictureId = -1;
+
+        /**
+         * The most recent (i.e. with the highest picture ID) TL0 frame.
+         */
+        private VP8Frame latestTl0;
+
+        private void reset(long ssrc)
+        {
+            this.ssrc = ssrc;
+            latestKeyframeMs = -1;
+            latestKeyframePictureId = -1;
+            latestTl0 = null;
+        }
+    }
+}
@@ -42,7 +42,7 @@
      * The default maximum frequency (in millis) at which the media engine
      * generates key frame.
      */
-    private static final int MIN_KEY_FRAME_WAIT_MS = 300;
+    static final int MIN_KEY_FRAME_WAIT_MS = 300;
 
     /**
      * The HD, SD, LD and suspended spatial/quality layer IDs.
@@ -50,10 +50,17 @@
     private static final int SUSPENDED_ENCODING_ID = -1;
 
     /**
-     * Holds the arrival time (in millis) of the most recent keyframe group.
-     * Reading/writing of this field is synchronized on this instance.
+     * The index of the keyframes and TL0 frames of the encodings of the
+     * source, which tells us about the keyframe group in progress. It is
+     * updated by the owning {@link VP8AdaptiveSourceProjectionContext} after
+     * each call to {@link #acceptFrame(VP8Frame, int, int, long)}.
      */
-    private long mostRecentKeyframeGroupArrivalTimeMs = -1L;
+    private final VP8LayerIndex layerIndex;
+
+    /**
+     * The arrival time (in millis) of the most recent frame.
+     */
+    private long lastReceivedMs = -1L;
 
     /**
      * A boolean flag that indicates whether a simulcast switch is pending. This
@@ -82,8 +89,9 @@
      */
     private int currentEncodingId = SUSPENDED_ENCODING_ID;
 
-    public VP8QualityFilter(Logger parentLogger)
+    public VP8QualityFilter(VP8LayerIndex layerIndex, Logger parentLogger)
     {
+        this.layerIndex = layerIndex;
         this.logger = parentLogger.createChildLogger(VP8QualityFilter.class.getName());
     }
 
@@ -91,9 +99,17 @@ public VP8QualityFilter(Logger parentLogger)
      * @return true if a the target encoding id has changed and a
      * keyframe hasn't been received yet, false otherwise.
      */
-    boolean needsKeyframe()
+    synchronized boolean needsKeyframe()
     {
-        return needsKeyframe;
+        if (!needsKeyframe)
+        {
+            return false;
+        }
+
+        // If the sender is in the middle of a keyframe group and the target
+        // encoding hasn't sent its keyframe yet, it is on its way and we'll
+        // switch on it, so there's no need for another keyframe request.
+        return !layerIndex.isKeyframePending(internalEncodingIdTarget, lastReceivedMs);
     }
 
     /**
@@ -123,6 +139,8 @@ synchronized boolean acceptFrame(
         int externalEncodingIdTarget
             = RtpLayerDesc.getEidFromIndex(externalTargetIndex);
 
+        lastReceivedMs = receivedMs;
+
         if (externalEncodingIdTarget != internalEncodingIdTarget)
         {
             // The externalEncodingIdTarget has changed since accept last
@@ -224,8 +242,7 @@ else if (currentEncodingId < externalEncodingIdTarget)
      */
     private synchronized boolean isOutOfSwitchingPhase(long receivedMs)
     {
-        long deltaMs = receivedMs - mostRecentKeyframeGroupArrivalTimeMs;
-        return deltaMs > MIN_KEY_FRAME_WAIT_MS;
+        return !layerIndex.isInKeyframeGroup(receivedMs);
     }
 
     /**
@@ -296,9 +313,8 @@ private synchronized boolean acceptKeyframe(
             // During the switching phase we always project the first
             // keyframe because it may very well be the only one that we
             // receive (i.e. the endpoint is sending low quality only). Then
-            // we try to approach the target.
-
-            mostRecentKeyframeGroupArrivalTimeMs = receivedMs;
+            // we try to approach the target. The layer index marks this
+            // keyframe as the start of a new group once we return.
 
             logger.debug(() -> "First keyframe in this kf group " +
                 "currentEncodingId: " + encodingIdOfKeyframe +
@@ -365,7 +381,7 @@ public JSONObject getDebugState()
         JSONObject debugState = new JSONObject();
         debugState.put(
                 "mostRecentKeyframeGroupArrivalTimeMs",
-                mostRecentKeyframeGroupArrivalTimeMs);
+                layerIndex.getKeyframeGroupStartMs());
         debugState.put("needsKeyframe", needsKeyframe);
         debugState.put(
                 "internalEncodingIdTarget",
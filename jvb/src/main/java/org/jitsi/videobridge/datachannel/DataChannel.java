@@ -152,4 +152,14 @@ public void sendString(String message)
         DataChannelStringMessage stringMessage = new DataChannelStringMessage(message);
         dataChannelDataSender.send(stringMessage.getBuffer(), sid, DataChannelProtocolConstants.WEBRTC_PPID_STRING);
     }
+
+    /**
+     * Sends binary data through this data channel.
+     * @param data the data to send.
+     */
+    public void sendBinary(byte[] data)
+    {
+        DataChannelBinaryMessage binaryMessage = new DataChannelBinaryMessage(data);
+        dataChannelDataSender.send(binaryMessage.getBuffer(), sid, DataChannelProtocolConstants.WEBRTC_PPID_BIN);
+    }
 }
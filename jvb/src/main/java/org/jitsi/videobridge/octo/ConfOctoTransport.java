@@ -15,11 +15,13 @@
  */
 package org.jitsi.videobridge.octo;
 
+import kotlin.*;
 import org.jetbrains.annotations.*;
 import org.jitsi.nlj.*;
 import org.jitsi.nlj.format.*;
 import org.jitsi.nlj.rtp.*;
 import org.jitsi.nlj.util.*;
+import org.jitsi.rtp.*;
 import org.jitsi.utils.*;
 import org.jitsi.utils.logging2.*;
 import org.jitsi.utils.queue.*;
@@ -105,7 +107,7 @@
     /**
      * We queue up outgoing packets by their *source* endpoint ID.
      */
-    private final Map<String, PacketInfoQueue> outgoingPacketQueues =
+    private final Map<String, FairSenderPool.SendQueue<PacketInfo>> outgoingPacketQueues =
         new ConcurrentHashMap<>();
 
     /**
@@ -118,6 +120,22 @@
 
     private final Clock clock;
 
+    /**
+     * The history of the video packets we send, from which we retransmit the
+     * packets which the remote bridges request, or {@code null} if
+     * retransmissions are disabled.
+     */
+    @Nullable
+    private final OctoSendHistory sendHistory;
+
+    /**
+     * Requests the retransmission of the video packets from the remote
+     * bridges which were lost, or {@code null} if retransmissions are
+     * disabled.
+     */
+    @Nullable
+    private final OctoNackRequester nackRequester;
+
     /**
      * Whether or not this {@link ConfOctoTransport} is currently active
      */
@@ -176,6 +194,44 @@ public void handleIncomingPacket(@NotNull OctoPacketInfo packetInfo)
                 octoTransceiver.handleIncomingPacket(packetInfo);
             }
         });
+
+        OctoConfig config = OctoConfig.config;
+        if (config.getRetransmissionsEnabled())
+        {
+            sendHistory = new OctoSendHistory(
+                config.getRetransmissionHistorySize(), config.getRetransmissionMaxAge(), clock);
+            nackRequester = new OctoNackRequester(
+                (buf, off, len) -> {
+                    bridgeOctoTransport.sendMediaData(
+                        buf, off, len, remoteBridges.values(), conferenceId, NACK_EP_ID);
+                    return Unit.INSTANCE;
+                },
+                config.getNackInterval(),
+                config.getMaxNacksPerPacket(),
+                config.getRetransmissionMaxAge(),
+                clock);
+            addHandler(NACK_EP_ID, new IncomingOctoEpPacketHandler()
+            {
+                @Override
+                public void handleIncomingPacket(@NotNull OctoPacketInfo packetInfo)
+                {
+                    Packet nack = packetInfo.getPacket();
+                    sendHistory.nackReceived(
+                        nack.getBuffer(), nack.getOffset(), nack.getLength(),
+                        (buf, off, len, sourceEpId) -> {
+                            bridgeOctoTransport.sendMediaData(
+                                buf, off, len, remoteBridges.values(), conferenceId, sourceEpId);
+                            return Unit.INSTANCE;
+                        });
+                    ByteBufferPool.returnBuffer(nack.getBuffer());
+                }
+            });
+        }
+        else
+        {
+            sendHistory = null;
+            nackRequester = null;
+        }
     }
 
     public String getBridgeId()
@@ -270,7 +326,7 @@ public void send(PacketInfo packet)
              * This achieves parallelization while guaranteeing that we don't
              * reorder things that shouldn't be reordered.
              */
-            PacketInfoQueue queue =
+            FairSenderPool.SendQueue<PacketInfo> queue =
                 outgoingPacketQueues.computeIfAbsent(packet.getEndpointId(),
                     this::createQueue);
 
@@ -287,7 +343,19 @@ public void send(PacketInfo packet)
 
     private boolean doSend(PacketInfo packetInfo)
     {
-        stats.packetSent(packetInfo.getPacket().getLength(), clock.instant());
+        stats.packetSent(packetInfo.getPacket().getLength(), clock.millis());
+        if (sendHistory != null && packetInfo.getPacket() instanceof VideoRtpPacket)
+        {
+            // The packet is stored before sending, which may move it within its buffer.
+            VideoRtpPacket packet = (VideoRtpPacket) packetInfo.getPacket();
+            sendHistory.add(
+                packet.getSsrc(),
+                packet.getSequenceNumber(),
+                packet.getBuffer(),
+                packet.getOffset(),
+                packet.getLength(),
+                packetInfo.getEndpointId());
+        }
         packetInfo.sent();
         bridgeOctoTransport.sendMediaData(
             packetInfo.getPacket().getBuffer(),
@@ -310,7 +378,18 @@ public void handleMediaPacket(@NotNull OctoPacketInfo packetInfo)
             ByteBufferPool.returnBuffer(packetInfo.getPacket().getBuffer());
             return;
         }
-        stats.packetReceived(packetInfo.getPacket().length, clock.instant());
+        stats.packetReceived(packetInfo.getPacket().length, clock.millis());
+        if (nackRequester != null && PacketExtensionsKt.looksLikeRtp(packetInfo.getPacket()))
+        {
+            Packet packet = packetInfo.getPacket();
+            if (!nackRequester.rtpPacketReceived(packet.getBuffer(), packet.getOffset(), packet.getLength()))
+            {
+                // A retransmission which another bridge requested.
+                stats.incomingPacketDropped();
+                ByteBufferPool.returnBuffer(packet.getBuffer());
+                return;
+            }
+        }
         IncomingOctoEpPacketHandler handler = incomingPacketHandlers.get(packetInfo.getEndpointId());
         if (handler != null)
         {
@@ -370,6 +449,12 @@ public void setSources(
                 videoSources, videoSourceGroups);
         octoEndpoints.setMediaSources(sources);
 
+        if (nackRequester != null)
+        {
+            nackRequester.setVideoSsrcs(
+                videoSources.stream().map(SourcePacketExtension::getSSRC).collect(Collectors.toSet()));
+        }
+
         // We only need to call this if the sources of any endpoint actually
         // changed, but that's not easy to detect. It's safe to call it more
         // often.
@@ -396,6 +481,10 @@ public void setSources(
             if (endpoint instanceof OctoEndpoint)
             {
                 ((OctoEndpoint) endpoint).setReceiveSsrcs(endpointSsrcsByMediaType);
+
+                Set<Long> epSsrcs = new HashSet<>(epAudioSsrcs);
+                epSsrcs.addAll(epVideoSsrcs);
+                conference.getSsrcOwnerIndex().setSsrcs(endpointId, epSsrcs);
             }
             else
             {
@@ -409,7 +498,7 @@ public void setSources(
      */
     public void endpointExpired(String endpointId)
     {
-        PacketInfoQueue removed = outgoingPacketQueues.remove(endpointId);
+        FairSenderPool.SendQueue<PacketInfo> removed = outgoingPacketQueues.remove(endpointId);
         if (removed != null)
         {
             removed.close();
@@ -440,8 +529,12 @@ public void expire()
             logger.info("Expiring");
             setRelays(Collections.emptySet());
             octoEndpoints.setEndpoints(Collections.emptySet());
-            outgoingPacketQueues.values().forEach(PacketInfoQueue::close);
+            outgoingPacketQueues.values().forEach(FairSenderPool.SendQueue::close);
             outgoingPacketQueues.clear();
+            if (sendHistory != null)
+            {
+                sendHistory.clear();
+            }
         }
     }
 
@@ -483,17 +576,16 @@ public void removeHandler(String epId, IncomingOctoEpPacketHandler handler)
     }
 
     /**
-     * Creates a PacketInfoQueue for an endpoint.
+     * Creates an outgoing queue for an endpoint.
      */
-    private PacketInfoQueue createQueue(String epId)
+    private FairSenderPool.SendQueue<PacketInfo> createQueue(String epId)
     {
-        PacketInfoQueue q = new PacketInfoQueue(
-            "octo-tentacle-outgoing-packet-queue",
-            TaskPools.IO_POOL,
+        return TaskPools.SENDER_POOL.createQueue(
+            "octo-tentacle-outgoing-packet-queue-" + epId,
+            OctoConfig.config.getSendQueueSize(),
             this::doSend,
-            OctoConfig.config.getSendQueueSize());
-        q.setErrorHandler(queueErrorCounter);
-        return q;
+            packetInfo -> ByteBufferPool.returnBuffer(packetInfo.getPacket().getBuffer()),
+            queueErrorCounter);
     }
 
     /**
@@ -507,6 +599,13 @@ public OrderedJsonObject getDebugState()
         debugState.put("octoEndpoints", octoEndpoints.getDebugState());
         debugState.putAll(stats.toJson());
         debugState.put("bridgeOctoTransport", bridgeOctoTransport.getStatsJson());
+        if (sendHistory != null && nackRequester != null)
+        {
+            OrderedJsonObject retransmissions = new OrderedJsonObject();
+            retransmissions.put("send_history", sendHistory.getStatsJson());
+            retransmissions.put("nack_requester", nackRequester.getStatsJson());
+            debugState.put("retransmissions", retransmissions);
+        }
 
         JSONArray remoteRelays = new JSONArray();
         remoteRelays.addAll(remoteBridges.keySet());
@@ -530,9 +629,8 @@ public OrderedJsonObject getDebugState()
         private final LongAdder bytesSent = new LongAdder();
         private final BitrateTracker sendBitRate = new BitrateTracker(Duration.ofSeconds(60));
 
-        void packetReceived(int size, Instant time)
+        void packetReceived(int size, long timeMs)
         {
-            long timeMs = time.toEpochMilli();
             packetsReceived++;
             receivePacketRate.update(1, timeMs);
             bytesReceived += size;
@@ -544,9 +642,8 @@ void incomingPacketDropped()
             incomingPacketsDropped++;
         }
 
-        void packetSent(int size, Instant time)
+        void packetSent(int size, long timeMs)
         {
-            long timeMs = time.toEpochMilli();
             packetsSent.increment();
             sendPacketRate.update(1, timeMs);
             bytesSent.add(size);
@@ -27,6 +27,7 @@
 
 import javax.inject.*;
 import javax.ws.rs.*;
+import javax.ws.rs.container.*;
 import javax.ws.rs.core.*;
 import java.util.*;
 
@@ -106,7 +107,7 @@ public String getDominantSpeakerIdentification(@PathParam("confId") String confI
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public String createConference(String requestBody)
+    public void createConference(String requestBody, @Suspended AsyncResponse asyncResponse)
     {
         Object requestJson;
         try
@@ -131,14 +132,17 @@ public String createConference(String requestBody)
             throw new BadRequestExceptionWithMessage("Must not include conference ID");
         }
 
-        return getVideobridgeIqResponseAsJson(requestConferenceIQ);
+        respondAsync(requestConferenceIQ, asyncResponse);
     }
 
     @PATCH
     @Path("/{confId}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public String patchConference(@PathParam("confId") String confId, String requestBody)
+    public void patchConference(
+        @PathParam("confId") String confId,
+        String requestBody,
+        @Suspended AsyncResponse asyncResponse)
     {
         Conference conference = videobridge.getConference(confId);
         if (conference == null)
@@ -163,14 +167,30 @@ public String patchConference(@PathParam("confId") String confId, String request
             throw new BadRequestException();
         }
 
-        return getVideobridgeIqResponseAsJson(requestIq);
+        respondAsync(requestIq, asyncResponse);
     }
 
-    private String getVideobridgeIqResponseAsJson(ColibriConferenceIQ request)
+    /**
+     * Handles a request without blocking the calling thread, and resumes the
+     * {@link AsyncResponse} with the response once it has been handled.
+     */
+    private void respondAsync(ColibriConferenceIQ request, AsyncResponse asyncResponse)
     {
-        IQ responseIq = videobridge
-                .handleColibriConferenceIQ(request);
+        videobridge.handleColibriConferenceIQ(request, responseIq ->
+        {
+            try
+            {
+                asyncResponse.resume(getIqResponseAsJson(responseIq));
+            }
+            catch (WebApplicationException e)
+            {
+                asyncResponse.resume(e);
+            }
+        });
+    }
 
+    private static String getIqResponseAsJson(IQ responseIq)
+    {
         if (responseIq.getError() != null)
         {
             throw new BadRequestExceptionWithMessage(
@@ -23,11 +23,15 @@
 import org.jitsi.utils.logging2.Logger;
 import org.jitsi.utils.queue.*;
 import org.jitsi.videobridge.*;
+import org.jitsi.videobridge.cc.*;
+import org.jitsi.videobridge.message.*;
 import org.jitsi.videobridge.rest.*;
 import org.jitsi.videobridge.rest.annotations.*;
 import org.jitsi.videobridge.stats.*;
+import org.jitsi.videobridge.transport.*;
 import org.jitsi.videobridge.util.*;
 import org.jitsi.videobridge.xmpp.*;
+import org.json.simple.*;
 
 import javax.inject.*;
 import javax.ws.rs.*;
@@ -189,6 +193,7 @@ public String epDebug(
     @GET
     @Path("/stats/{feature}")
     @Produces(MediaType.APPLICATION_JSON)
+    @SuppressWarnings("unchecked")
     public String getStats(@PathParam("feature") DebugFeatures feature)
     {
         switch (feature)
@@ -206,10 +211,19 @@ public String getStats(@PathParam("feature") DebugFeatures feature)
                 return PacketTransitStats.getStatsJson().toJSONString();
             }
             case TASK_POOL_STATS: {
-                return TaskPools.getStatsJson().toJSONString();
+                JSONObject stats = TaskPools.getStatsJson();
+                stats.put("BANDWIDTH_PROBING_SCHEDULER", BandwidthProbingScheduler.getInstance().getStatsJson());
+                stats.put("ENDPOINT_TRANSPORT_POOL", EndpointTransports.getPool().getStatsJson());
+                stats.put("ENDPOINT_EXPIRE_TIMEOUTS", VideobridgeExpireThread.getEndpointTimeoutStats());
+                return stats.toJSONString();
             }
             case XMPP_DELAY_STATS: {
-                return XmppConnection.getStatsJson().toJSONString();
+                JSONObject stats = XmppConnection.getStatsJson();
+                stats.put("colibri_dispatcher", videobridge.getColibriRequestDispatcher().getStatsJson());
+                return stats.toJSONString();
+            }
+            case BRIDGE_CHANNEL_STATS: {
+                return BridgeChannelCodec.getStatsJson().toJSONString();
             }
             case PAYLOAD_VERIFICATION: {
                 return PayloadVerificationPlugin.getStatsJson().toJSONString();
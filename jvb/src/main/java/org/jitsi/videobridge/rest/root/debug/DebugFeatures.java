@@ -29,7 +29,8 @@
     TRANSIT_STATS("transit-stats"),
     TASK_POOL_STATS("task-pool-stats"),
     NODE_TRACING("node-tracing"),
-    XMPP_DELAY_STATS("xmpp-delay-stats");
+    XMPP_DELAY_STATS("xmpp-delay-stats"),
+    BRIDGE_CHANNEL_STATS("bridge-channel-stats");
 
     private final String value;
 
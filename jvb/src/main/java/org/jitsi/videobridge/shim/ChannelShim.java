@@ -195,6 +195,10 @@ public void setExpire(int expire)
             endpoint.removeChannel(this);
             contentShim.removeChannel(this);
         }
+        else
+        {
+            endpoint.channelExpireChanged();
+        }
     }
 
     /**
@@ -267,9 +271,12 @@ public void describe(ColibriConferenceIQ.ChannelCommon commonIq)
     public void setSources(@NotNull List<SourcePacketExtension> sources)
     {
         this.sources = sources;
+        List<Long> ssrcs = new ArrayList<>(sources.size());
         sources.forEach(s -> {
             endpoint.addReceiveSsrc(s.getSSRC(), getMediaType());
+            ssrcs.add(s.getSSRC());
         });
+        endpoint.getConference().getSsrcOwnerIndex().putAll(endpoint.getID(), ssrcs);
     }
 
     /**
@@ -280,6 +287,7 @@ public void setSourceGroups(List<SourceGroupPacketExtension> sourceGroups)
         this.sourceGroups = sourceGroups;
         if (sourceGroups != null)
         {
+            List<Long> secondarySsrcs = new ArrayList<>();
             sourceGroups.forEach(sourceGroup -> {
                 List<SourcePacketExtension> sources = sourceGroup.getSources();
                 if (sources.size() < 2)
@@ -303,8 +311,10 @@ public void setSourceGroups(List<SourceGroupPacketExtension> sourceGroups)
                                 primarySsrc,
                                 secondarySsrc,
                                 ssrcAssociationType);
+                    secondarySsrcs.add(secondarySsrc);
                 }
             });
+            endpoint.getConference().getSsrcOwnerIndex().putAll(endpoint.getID(), secondarySsrcs);
         }
     }
 
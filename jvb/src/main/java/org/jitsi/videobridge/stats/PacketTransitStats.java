@@ -18,6 +18,8 @@
 
 import org.jitsi.nlj.util.*;
 import org.jitsi.videobridge.*;
+import org.jitsi.videobridge.cc.*;
+import org.jitsi.videobridge.transport.ice.*;
 import org.json.simple.*;
 
 public class PacketTransitStats
@@ -28,6 +30,8 @@ public static OrderedJsonObject getStatsJson()
 
         stats.put("e2e_packet_delay", Endpoint.getPacketDelayStats());
         stats.put(Endpoint.overallAverageBridgeJitter.name, Endpoint.overallAverageBridgeJitter.get());
+        stats.put("ice_ingress_delay", IceTransport.getIngressDelayStatsJson());
+        stats.put("pacing_delay", Pacer.getPacingDelayStatsJson());
 
         return stats;
     }
@@ -20,6 +20,7 @@
 import org.jitsi.nlj.transform.node.incoming.*;
 import org.jitsi.utils.*;
 import org.jitsi.videobridge.*;
+import org.jitsi.videobridge.cc.*;
 import org.jitsi.videobridge.octo.*;
 import org.jitsi.videobridge.octo.config.*;
 import org.jitsi.videobridge.shim.*;
@@ -453,6 +454,18 @@ private void generate0()
                 "stress_level",
                 jvbStats.stressLevel
             );
+            unlockedSetStat(
+                "colibri_request_queue_depth",
+                videobridge.getColibriRequestDispatcher().getQueueDepth()
+            );
+            unlockedSetStat(
+                "bandwidth_probing_tick_lag_ms",
+                BandwidthProbingScheduler.getInstance().getLastTickLagMs()
+            );
+            unlockedSetStat(
+                "bandwidth_probing_max_tick_lag_ms",
+                BandwidthProbingScheduler.getInstance().getMaxTickLagMs()
+            );
             unlockedSetStat(CONFERENCES, conferences);
             unlockedSetStat(OCTO_CONFERENCES, octoConferences);
             unlockedSetStat(INACTIVE_CONFERENCES, inactiveConferences);
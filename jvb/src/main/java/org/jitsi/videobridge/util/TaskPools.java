@@ -18,9 +18,11 @@
 
 import org.jitsi.nlj.util.*;
 import org.jitsi.utils.logging2.*;
+import org.jitsi.videobridge.*;
 import org.json.simple.*;
 
 import java.util.concurrent.*;
+import java.util.function.*;
 
 public class TaskPools
 {
@@ -41,9 +43,72 @@
                     new NameableThreadFactory("Global CPU pool")
             );
 
+    /**
+     * An executor for tasks which block for a long time, such as the receive
+     * loops of the transports.  These take a thread each for the lifetime of
+     * an endpoint, so they run on virtual threads when that is enabled and
+     * supported, and on the {@link #IO_POOL} otherwise.
+     */
+    public static final ExecutorService BLOCKING_POOL =
+            newBlockingExecutor("Global blocking pool", () -> IO_POOL);
+
     public static final ScheduledExecutorService SCHEDULED_POOL =
             Executors.newSingleThreadScheduledExecutor(new NameableThreadFactory("Global scheduled pool"));
 
+    /**
+     * The timer which wakes up the pacers of all endpoints.  A pacer schedules
+     * a wakeup for almost every packet that it delays, so the pacers don't
+     * share the single thread of the {@link #SCHEDULED_POOL} with the other
+     * periodic tasks.
+     */
+    public static final ScheduledExecutorService PACER_POOL =
+            Executors.newScheduledThreadPool(
+                    TransportConfig.getPacerThreads(),
+                    new NameableThreadFactory("Global pacer pool"));
+
+    /**
+     * A fixed set of threads which drain the outgoing packet queues of all
+     * endpoints in turn.  The queues are kept off the {@link #IO_POOL}, which
+     * also runs blocking tasks and grows without bound.
+     */
+    public static final FairSenderPool SENDER_POOL =
+            new FairSenderPool(
+                    "Global sender pool",
+                    TransportConfig.getSendThreads(),
+                    TransportConfig.getSendBurstLimit());
+
+    /**
+     * Creates an executor for blocking tasks, which runs each task on a new
+     * virtual thread if {@link TaskPoolsConfig#getVirtualThreads()} is set and
+     * the JVM supports it without pinning carrier threads in ice4j (Java 24
+     * or later), or else returns the executor given by {@code fallback}.
+     */
+    public static ExecutorService newBlockingExecutor(
+            String name, Supplier<ExecutorService> fallback)
+    {
+        if (TaskPoolsConfig.getVirtualThreads())
+        {
+            int javaVersion = VirtualThreads.getJavaVersion();
+            if (javaVersion < VirtualThreads.MIN_NON_PINNING_JAVA_VERSION)
+            {
+                classLogger.warn("Virtual threads are enabled, but Java " + javaVersion
+                        + " pins their carrier threads while sockets block (Java "
+                        + VirtualThreads.MIN_NON_PINNING_JAVA_VERSION + " or later is needed)."
+                        + " Using platform threads for " + name);
+                return fallback.get();
+            }
+            ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor(name);
+            if (executor != null)
+            {
+                classLogger.info("Using virtual threads for " + name);
+                return executor;
+            }
+            classLogger.warn("Virtual threads are enabled, but not supported by this JVM ("
+                    + System.getProperty("java.version") + "). Using platform threads for " + name);
+        }
+        return fallback.get();
+    }
+
     @SuppressWarnings("unchecked")
     public static JSONObject getStatsJson(ExecutorService es)
     {
@@ -73,6 +138,12 @@ public static JSONObject getStatsJson()
 
         debugState.put("IO_POOL", getStatsJson(IO_POOL));
         debugState.put("CPU_POOL", getStatsJson(CPU_POOL));
+        if (BLOCKING_POOL != IO_POOL)
+        {
+            debugState.put("BLOCKING_POOL", getStatsJson(BLOCKING_POOL));
+        }
+        debugState.put("SENDER_POOL", SENDER_POOL.getStatsJson());
+        debugState.put("PACER_POOL", getStatsJson(PACER_POOL));
 
         return debugState;
     }
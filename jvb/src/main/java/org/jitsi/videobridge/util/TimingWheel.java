@@ -0,0 +1,172 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import java.util.*;
+
+/**
+ * A hashed timing wheel. Items are scheduled a number of ticks in the future
+ * and are returned by {@link #advance()} once the wheel has turned that many
+ * ticks. Scheduling, rescheduling and cancelling are O(1), and advancing the
+ * wheel only looks at the items which hash to the current slot, so the cost
+ * of a tick does not depend on the total number of scheduled items.
+ *
+ * Each item can be scheduled at most once, scheduling an item which is
+ * already scheduled moves it to its new deadline.
+ *
+ * This class is thread safe.
+ *
+ * @param <T> the type of the scheduled items.
+ */
+public class TimingWheel<T>
+{
+    /**
+     * The slots of the wheel. An item with deadline {@code d} lives in slot
+     * {@code d % slots.length}.
+     */
+    private final List<Set<T>> slots;
+
+    /**
+     * Maps a scheduled item to its deadline (in ticks).
+     */
+    private final Map<T, Long> deadlines = new HashMap<>();
+
+    /**
+     * The number of times the wheel has been advanced.
+     */
+    private long currentTick = 0;
+
+    /**
+     * Initializes a new {@link TimingWheel} instance.
+     *
+     * @param numSlots the number of slots of the wheel. Items with a delay
+     * larger than this survive multiple rotations, so it should be larger
+     * than the typical delay.
+     */
+    public TimingWheel(int numSlots)
+    {
+        if (numSlots < 1)
+        {
+            throw new IllegalArgumentException("numSlots must be positive: " + numSlots);
+        }
+
+        slots = new ArrayList<>(numSlots);
+        for (int i = 0; i < numSlots; i++)
+        {
+            slots.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Schedules an item to expire after a specific number of ticks, replacing
+     * any previous deadline of the item.
+     *
+     * @param item the item to schedule.
+     * @param delayTicks the number of ticks after which the item expires. Values
+     * smaller than 1 are treated as 1, i.e. the item expires on the next tick.
+     */
+    public synchronized void schedule(T item, long delayTicks)
+    {
+        Long oldDeadline = deadlines.remove(item);
+        if (oldDeadline != null)
+        {
+            slotOf(oldDeadline).remove(item);
+        }
+
+        long deadline = currentTick + Math.max(delayTicks, 1);
+        deadlines.put(item, deadline);
+        slotOf(deadline).add(item);
+    }
+
+    /**
+     * Cancels an item.
+     *
+     * @param item the item to cancel.
+     * @return true if the item was scheduled.
+     */
+    public synchronized boolean cancel(T item)
+    {
+        Long deadline = deadlines.remove(item);
+        if (deadline == null)
+        {
+            return false;
+        }
+
+        slotOf(deadline).remove(item);
+        return true;
+    }
+
+    /**
+     * @return true if a specific item is currently scheduled.
+     */
+    public synchronized boolean isScheduled(T item)
+    {
+        return deadlines.containsKey(item);
+    }
+
+    /**
+     * Advances the wheel by one tick.
+     *
+     * @return the items which expired on this tick, in the order in which they
+     * were scheduled. They are no longer scheduled.
+     */
+    public synchronized List<T> advance()
+    {
+        currentTick++;
+
+        Set<T> slot = slotOf(currentTick);
+        if (slot.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+
+        List<T> expired = new ArrayList<>();
+        Iterator<T> it = slot.iterator();
+        while (it.hasNext())
+        {
+            T item = it.next();
+            if (deadlines.get(item) <= currentTick)
+            {
+                it.remove();
+                deadlines.remove(item);
+                expired.add(item);
+            }
+        }
+
+        return expired;
+    }
+
+    /**
+     * @return the number of scheduled items.
+     */
+    public synchronized int size()
+    {
+        return deadlines.size();
+    }
+
+    /**
+     * @return the number of times the wheel has been advanced.
+     */
+    public synchronized long getCurrentTick()
+    {
+        return currentTick;
+    }
+
+    private Set<T> slotOf(long tick)
+    {
+        return slots.get((int) (tick % slots.size()));
+    }
+}
@@ -23,6 +23,7 @@
 import org.jitsi.xmpp.extensions.jitsimeet.*;
 
 import java.util.*;
+import java.util.function.*;
 import java.util.stream.*;
 
 /**
@@ -40,12 +41,12 @@
         = new LoggerImpl(MediaSourceFactory.class.getName());
 
     /**
-     * The default number of temporal layers to use for VP8 simulcast.
-     *
-     * FIXME: hardcoded ugh.. this should be either signaled or somehow included
-     * in the RTP stream.
+     * The number of temporal layers that we assume for a stream until we've
+     * seen its packets, since it isn't signaled. We over-estimate it, so that
+     * we don't drop the packets of a layer that we don't recognize (e.g.
+     * screenshare sends 2 temporal layers even without simulcast).
      */
-    private static final int VP8_SIMULCAST_TEMPORAL_LAYERS = 3;
+    private static final int DEFAULT_TEMPORAL_LAYERS_PER_STREAM = 3;
 
     /**
      * The resolution of the base stream when activating simulcast for VP8.
@@ -494,6 +495,29 @@ public static String getOwner(SourcePacketExtension source)
     public static MediaSourceDesc[] createMediaSources(
         Collection<SourcePacketExtension> sources,
         Collection<SourceGroupPacketExtension> sourceGroups)
+    {
+        return createMediaSources(sources, sourceGroups, ssrc -> 0);
+    }
+
+    /**
+     * Creates {@link MediaSourceDesc}s from signaling params and the number
+     * of temporal layers that have been observed for their encodings.
+     *
+     * @param sources The {@link List} of {@link SourcePacketExtension} that
+     * describes the list of jingle sources.
+     * @param sourceGroups The {@link List} of
+     * {@link SourceGroupPacketExtension} that describes the list of jingle
+     * source groups.
+     * @param numTemporalLayers gives the number of temporal layers of the
+     * encoding with a given primary SSRC, or 0 if it is not known (in which
+     * case we assume {@link #DEFAULT_TEMPORAL_LAYERS_PER_STREAM}).
+     * @return an array of {@link MediaSourceDesc} that are described in the
+     * jingle sources and source groups.
+     */
+    public static MediaSourceDesc[] createMediaSources(
+        Collection<SourcePacketExtension> sources,
+        Collection<SourceGroupPacketExtension> sourceGroups,
+        LongToIntFunction numTemporalLayers)
     {
         final Collection<SourceGroupPacketExtension> finalSourceGroups
                 = sourceGroups == null ? new ArrayList<>() : sourceGroups;
@@ -508,24 +532,13 @@ public static MediaSourceDesc[] createMediaSources(
         sourceSsrcsList.forEach(sourceSsrcs -> {
             // As of now, we only ever have 1 spatial layer per stream
             int numSpatialLayersPerStream = 1;
-            // Previously, we assumed that when simulcast was enabled, 3 temporal layers would
-            // be present in each stream and if simulcast wasn't enabled, there would be only
-            // 1 temporal layer per stream, but we found that screenshare started sending 2
-            // temporal layers, and we'd therefore start dropping layer 1 packets since we didn't
-            // recognize them.  The truth is we have no way of _knowing_ how many temporal layers
-            // there are going to be (as it's not signaled) unless we dynamically read the layers
-            // as the packets come in (which we may want to do in the future)--but for now we'll
-            // over-estimate how many layers there are per stream to avoid dropping packets for a
-            // layer we don't recognize.  Since there are already situations where chrome sends fewer
-            // temporal layers than we assume, this should be safe.
-            final int numTemporalLayersPerStream = 3;
             Map<Long, SecondarySsrcs> secondarySsrcs
                 = getAllSecondarySsrcs(sourceSsrcs, finalSourceGroups);
             MediaSourceDesc mediaSource
                 = createSource(
                         sourceSsrcs,
                         numSpatialLayersPerStream,
-                        numTemporalLayersPerStream,
+                        numTemporalLayers,
                         secondarySsrcs);
             mediaSources.add(mediaSource);
         });
@@ -661,8 +674,8 @@ public Iterator<Long> iterator()
      * @param primarySsrcs the set of primary video ssrcs belonging to this source
      * @param numSpatialLayersPerStream the number of spatial layers per stream
      * for this source
-     * @param numTemporalLayersPerStream the number of temporal layers per stream
-     * for this source
+     * @param numTemporalLayers gives the number of temporal layers of the
+     * stream with a given primary ssrc, or 0 if it is not known
      * @param allSecondarySsrcs a map of primary ssrc -> SecondarySsrcs, which lists
      * the ssrc and type of all the secondary ssrcs for a given primary (e.g.
      * its corresponding rtx and fec ssrcs)
@@ -671,7 +684,7 @@ public Iterator<Long> iterator()
     private static MediaSourceDesc createSource(
             SourceSsrcs primarySsrcs,
             int numSpatialLayersPerStream,
-            int numTemporalLayersPerStream,
+            LongToIntFunction numTemporalLayers,
             Map<Long, SecondarySsrcs> allSecondarySsrcs)
     {
         RtpEncodingDesc[] encodings =
@@ -693,6 +706,14 @@ private static MediaSourceDesc createSource(
             Long primarySsrc = primarySsrcs.get(encodingIdx);
             SecondarySsrcs ssrcSecondarySsrcs = allSecondarySsrcs.get(primarySsrc);
 
+            int numTemporalLayersPerStream
+                = numTemporalLayers.applyAsInt(primarySsrc);
+            if (numTemporalLayersPerStream <= 0)
+            {
+                numTemporalLayersPerStream
+                    = DEFAULT_TEMPORAL_LAYERS_PER_STREAM;
+            }
+
             encodings[encodingIdx] = createRtpEncodingDesc(primarySsrc,
                 numSpatialLayersPerStream, numTemporalLayersPerStream,
                 ssrcSecondarySsrcs, encodingIdx, height);
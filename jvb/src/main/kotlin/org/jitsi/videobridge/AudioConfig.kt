@@ -0,0 +1,60 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge
+
+import org.jitsi.config.JitsiConfig
+import org.jitsi.metaconfig.config
+import org.jitsi.metaconfig.from
+import java.time.Duration
+
+class AudioConfig {
+    companion object {
+        /**
+         * Whether to forward only the audio of the loudest speakers of a conference (see [AudioLevelFilter]).
+         */
+        @JvmStatic
+        val filterEnabled: Boolean by config("videobridge.audio.filter.enabled".from(JitsiConfig.newConfig))
+
+        /**
+         * The maximum number of speakers whose audio is forwarded at the same time.
+         */
+        @JvmStatic
+        val filterMaxSpeakers: Int by config("videobridge.audio.filter.max-speakers".from(JitsiConfig.newConfig))
+
+        /**
+         * How long the audio of a speaker keeps being forwarded after its last non-silent packet.
+         */
+        @JvmStatic
+        val filterHangover: Duration by config("videobridge.audio.filter.hangover".from(JitsiConfig.newConfig))
+
+        /**
+         * Whether clients can ask to receive the audio of the loudest speakers projected onto a fixed set of
+         * SSRCs (see [AudioProjection]).
+         */
+        @JvmStatic
+        val projectionEnabled: Boolean by config("videobridge.audio.projection.enabled".from(JitsiConfig.newConfig))
+
+        /**
+         * The number of SSRCs (and so of speakers) of an [AudioProjection].
+         */
+        @JvmStatic
+        val projectionNumSpeakers: Int by config(
+            "videobridge.audio.projection.num-speakers".from(JitsiConfig.newConfig)
+        )
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge
+
+import org.jitsi.nlj.util.OrderedJsonObject
+import java.time.Clock
+import java.time.Duration
+
+/**
+ * Decides which audio packets of a conference are forwarded, based on the
+ * audio levels signaled by the senders: only the packets of the (at most)
+ * [maxSpeakers] loudest speakers are forwarded, and the packets of a speaker
+ * stop being forwarded [hangover] after its last non-silent packet (so that
+ * the ends of words and short pauses are not cut).
+ *
+ * The levels are the ones reported by the transceivers' [org.jitsi.nlj.AudioLevelListener], where 0 is silence and
+ * louder is higher. They are received before the packet which carried them gets to [accept].
+ *
+ * Endpoints which don't signal audio levels are always forwarded.
+ */
+class AudioLevelFilter @JvmOverloads constructor(
+    private val maxSpeakers: Int,
+    private val hangover: Duration,
+    private val clock: Clock = Clock.systemUTC()
+) {
+    private val speakers = HashMap<String, Speaker>()
+
+    /**
+     * The speakers whose audio is being forwarded, at most [maxSpeakers].
+     */
+    private val forwarded = ArrayList<Speaker>()
+
+    private var numAccepted = 0L
+    private var numDropped = 0L
+    private var numSpeakerChanges = 0L
+
+    /**
+     * Notifies this filter that a packet with a specific audio level was received from an endpoint.
+     */
+    fun levelReceived(endpointId: String, level: Long) = synchronized(this) {
+        val speaker = speakers.getOrPut(endpointId) { Speaker(endpointId) }
+        if (level > SILENCE) {
+            speaker.lastActiveMs = clock.millis()
+            speaker.level = if (speaker.level < 0) level.toDouble() else
+                speaker.level + SMOOTHING * (level - speaker.level)
+        }
+    }
+
+    /**
+     * @return whether an audio packet received from a specific endpoint should be forwarded.
+     */
+    fun accept(endpointId: String?): Boolean = synchronized(this) {
+        val speaker = endpointId?.let { speakers[it] } ?: return true.also { numAccepted++ }
+        val nowMs = clock.millis()
+
+        val accepted = when {
+            !speaker.isActive(nowMs) -> {
+                forwarded.remove(speaker)
+                false
+            }
+            speaker in forwarded -> true
+            else -> {
+                forwarded.removeIf { !it.isActive(nowMs) }
+                if (forwarded.size < maxSpeakers) {
+                    forwarded.add(speaker)
+                    numSpeakerChanges++
+                    true
+                } else {
+                    val quietest = forwarded.minBy { it.level }
+                    if (quietest != null && speaker.level > quietest.level) {
+                        forwarded[forwarded.indexOf(quietest)] = speaker
+                        numSpeakerChanges++
+                        true
+                    } else {
+                        false
+                    }
+                }
+            }
+        }
+
+        if (accepted) numAccepted++ else numDropped++
+        accepted
+    }
+
+    /**
+     * Stops tracking an endpoint (e.g. because it expired).
+     */
+    fun endpointRemoved(endpointId: String) = synchronized(this) {
+        speakers.remove(endpointId)?.let { forwarded.remove(it) }
+        Unit
+    }
+
+    /**
+     * @return the IDs of the speakers whose audio is being forwarded.
+     */
+    fun getForwardedSpeakers(): List<String> = synchronized(this) {
+        forwarded.map { it.endpointId }
+    }
+
+    /**
+     * @return the smoothed levels of the active speakers (the ones which sent a non-silent packet within [hangover]),
+     * by endpoint ID.
+     */
+    fun getLevels(): Map<String, Double> = synchronized(this) {
+        val nowMs = clock.millis()
+        speakers.values.filter { it.isActive(nowMs) }.associate { it.endpointId to it.level }
+    }
+
+    fun getDebugState(): OrderedJsonObject = synchronized(this) {
+        OrderedJsonObject().apply {
+            put("max_speakers", maxSpeakers)
+            put("hangover_ms", hangover.toMillis())
+            put("forwarded_speakers", forwarded.map { it.endpointId })
+            put("num_accepted", numAccepted)
+            put("num_dropped", numDropped)
+            put("num_speaker_changes", numSpeakerChanges)
+        }
+    }
+
+    private inner class Speaker(val endpointId: String) {
+        /**
+         * The time of the last non-silent packet, or [NEVER].
+         */
+        var lastActiveMs = NEVER
+
+        /**
+         * The smoothed level of the non-silent packets, or -1 before the first one.
+         */
+        var level = -1.0
+
+        fun isActive(nowMs: Long) = lastActiveMs != NEVER && nowMs - lastActiveMs <= hangover.toMillis()
+    }
+
+    companion object {
+        private const val SILENCE = 0L
+        private const val NEVER = Long.MIN_VALUE
+
+        /**
+         * The weight of a new level in the smoothed level of a speaker. Levels are received ~50 times per second, so
+         * this follows changes in a few hundred milliseconds.
+         */
+        private const val SMOOTHING = 0.1
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge
+
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.rtp.rtp.RtpPacket
+import org.jitsi.rtp.util.RtpUtils
+import java.time.Clock
+import java.util.Random
+
+/**
+ * Projects the audio of the (at most) `ssrcs.size` loudest speakers of a conference onto a fixed set of SSRCs, so that
+ * a receiver gets a bounded number of audio streams regardless of the size of the conference. A speaker keeps its SSRC
+ * (slot) for as long as it stays among the loudest speakers.
+ *
+ * Like [org.jitsi.videobridge.cc.GenericAdaptiveSourceProjectionContext], the sequence numbers and timestamps of each
+ * outgoing SSRC are continuous: when a slot switches to a new source, the sequence numbers continue from the last one
+ * sent, and the timestamps advance by the time that passed since the last packet. Timestamps assume the 48 kHz clock of
+ * opus.
+ *
+ * The projected SSRCs have no RTCP sender reports: the reports of the sources keep their original SSRCs, and they
+ * wouldn't apply to the rewritten timestamps anyway. So a receiver can't synchronize projected audio with video (lip
+ * sync).
+ */
+class AudioProjection @JvmOverloads constructor(
+    ssrcs: List<Long>,
+    private val clock: Clock = Clock.systemUTC()
+) {
+    private val slots = ssrcs.map { Slot(it) }
+
+    /**
+     * Sets the endpoints whose audio is projected to the loudest of [endpointIds] (ordered by speech activity, most
+     * recent first, and without the receiver itself), based on their smoothed audio [levels] (see
+     * [AudioLevelFilter.getLevels]). The endpoints without a level (which are not speaking) come after the ones with a
+     * level, and the order of [endpointIds] only breaks ties.
+     *
+     * @return whether the endpoints of any slot changed.
+     */
+    fun setSpeakers(endpointIds: List<String>, levels: Map<String, Double> = emptyMap()): Boolean = synchronized(this) {
+        // The sort is stable, so endpoints with the same level stay in the order of speech activity.
+        val speakers = endpointIds.sortedByDescending { levels[it] ?: NO_LEVEL }.take(slots.size)
+        var changed = false
+        slots.filter { slot -> slot.endpointId.let { it != null && it !in speakers } }.forEach {
+            it.endpointId = null
+            changed = true
+        }
+        speakers.filter { id -> slots.none { it.endpointId == id } }.forEach { id ->
+            // There is a free slot for every new speaker, since there are no more speakers than slots.
+            slots.first { it.endpointId == null }.assign(id)
+            changed = true
+        }
+        changed
+    }
+
+    /**
+     * @return whether the audio of a specific endpoint is projected.
+     */
+    fun accept(endpointId: String?): Boolean = synchronized(this) {
+        endpointId != null && slots.any { it.endpointId == endpointId }
+    }
+
+    /**
+     * Rewrites the SSRC, sequence number and timestamp of an audio packet from a specific endpoint (in place).
+     *
+     * @return whether the packet was rewritten, which is `false` if the endpoint's audio is not projected (in which
+     * case the packet should be dropped).
+     */
+    fun rewrite(packet: RtpPacket, endpointId: String?): Boolean = synchronized(this) {
+        val slot = slots.find { it.endpointId != null && it.endpointId == endpointId } ?: return false
+        slot.rewrite(packet, clock.millis())
+        true
+    }
+
+    /**
+     * @return the SSRCs of the slots, mapped to the endpoints whose audio they carry (or `null` for free slots).
+     */
+    fun getSources(): Map<Long, String?> = synchronized(this) {
+        slots.associate { it.ssrc to it.endpointId }
+    }
+
+    fun getDebugState(): OrderedJsonObject = synchronized(this) {
+        OrderedJsonObject().apply {
+            slots.forEach { put(it.ssrc.toString(), it.getDebugState()) }
+        }
+    }
+
+    private class Slot(val ssrc: Long) {
+        /**
+         * The endpoint whose audio is projected to this slot, if any.
+         */
+        var endpointId: String? = null
+
+        /**
+         * The SSRC of the source currently projected to this slot, or -1 if the deltas need to be computed again.
+         */
+        private var sourceSsrc = -1L
+
+        private var sequenceNumberDelta = 0
+        private var timestampDelta = 0L
+
+        private var maxSequenceNumber = 0
+        private var maxTimestamp = 0L
+        private var lastSentMs = NEVER
+
+        private var numSwitches = 0L
+
+        fun assign(endpointId: String) {
+            this.endpointId = endpointId
+            // Even if the endpoint had this slot before, its sequence numbers moved on in the meantime.
+            sourceSsrc = -1
+        }
+
+        fun rewrite(packet: RtpPacket, nowMs: Long) {
+            if (packet.ssrc != sourceSsrc) {
+                sourceSsrc = packet.ssrc
+                numSwitches++
+                if (lastSentMs == NEVER) {
+                    sequenceNumberDelta = 0
+                    timestampDelta = 0
+                } else {
+                    sequenceNumberDelta = RtpUtils.getSequenceNumberDelta(
+                        RtpUtils.applySequenceNumberDelta(maxSequenceNumber, 1),
+                        packet.sequenceNumber
+                    )
+                    val elapsed = maxOf(MIN_TIMESTAMP_GAP, (nowMs - lastSentMs) * CLOCK_RATE_KHZ)
+                    timestampDelta = RtpUtils.getTimestampDiff(
+                        RtpUtils.applyTimestampDelta(maxTimestamp, elapsed),
+                        packet.timestamp
+                    )
+                }
+            }
+
+            val sequenceNumber = RtpUtils.applySequenceNumberDelta(packet.sequenceNumber, sequenceNumberDelta)
+            val timestamp = RtpUtils.applyTimestampDelta(packet.timestamp, timestampDelta)
+            if (lastSentMs == NEVER || RtpUtils.isOlderSequenceNumberThan(maxSequenceNumber, sequenceNumber)) {
+                maxSequenceNumber = sequenceNumber
+            }
+            if (lastSentMs == NEVER || RtpUtils.isNewerTimestampThan(timestamp, maxTimestamp)) {
+                maxTimestamp = timestamp
+            }
+            lastSentMs = nowMs
+
+            packet.ssrc = ssrc
+            packet.sequenceNumber = sequenceNumber
+            packet.timestamp = timestamp
+        }
+
+        fun getDebugState() = OrderedJsonObject().apply {
+            put("endpoint", endpointId)
+            put("source_ssrc", sourceSsrc)
+            put("max_sequence_number", maxSequenceNumber)
+            put("max_timestamp", maxTimestamp)
+            put("num_switches", numSwitches)
+        }
+    }
+
+    companion object {
+        private const val NEVER = Long.MIN_VALUE
+        private const val NO_LEVEL = -1.0
+
+        /**
+         * The RTP clock rate of opus, in ticks per millisecond.
+         */
+        private const val CLOCK_RATE_KHZ = 48L
+
+        /**
+         * The minimum timestamp increase when a slot switches to a new source (one 20 ms opus frame).
+         */
+        private const val MIN_TIMESTAMP_GAP = 20 * CLOCK_RATE_KHZ
+
+        private val random = Random()
+
+        /**
+         * @return [n] distinct random SSRCs.
+         */
+        @JvmStatic
+        fun randomSsrcs(n: Int): List<Long> {
+            val ssrcs = LinkedHashSet<Long>()
+            while (ssrcs.size < n) {
+                ssrcs.add(random.nextInt().toLong() and 0xffff_ffffL)
+            }
+            return ssrcs.toList()
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge
+
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.utils.logging2.Logger
+import org.jitsi.utils.logging2.createChildLogger
+import org.jitsi.videobridge.message.EndpointMessage
+import java.io.IOException
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Sends out the broadcast [EndpointMessage]s of the endpoints of a
+ * conference.
+ *
+ * Each sender is rate limited, and messages above its limit are dropped (and
+ * counted), so that a misbehaving client can't make the bridge fan out an
+ * unbounded number of messages.  Messages which arrive within
+ * [BroadcastMessageConfig.coalescingWindow] of each other are sent out
+ * together, with a single pass over the endpoints of the conference, and
+ * each message is serialized once regardless of the number of receivers.
+ */
+class BroadcastMessageAggregator @JvmOverloads constructor(
+    private val conference: Conference,
+    private val executor: ScheduledExecutorService,
+    parentLogger: Logger,
+    private val clock: Clock = Clock.systemUTC(),
+    private val config: BroadcastMessageConfig = BroadcastMessageConfig()
+) {
+    private val logger = createChildLogger(parentLogger)
+
+    private val coalescingWindowMs = config.coalescingWindow.toMillis()
+
+    private val rateLimiters: MutableMap<String, TokenBucket> = ConcurrentHashMap()
+
+    /**
+     * The messages waiting for the current window to end.
+     */
+    private var pending = mutableListOf<EndpointMessage>()
+
+    private var flushScheduled = false
+
+    private val lock = Any()
+
+    private val numMessages = AtomicLong()
+    private val numDroppedMessages = AtomicLong()
+    private val numFlushes = AtomicLong()
+    private val numSends = AtomicLong()
+
+    /**
+     * Broadcast a message to all other endpoints in the conference (local and
+     * remote).
+     *
+     * @param sender the ID of the endpoint which sent the message.
+     * @return false if the message was dropped because the sender is over its
+     * rate limit.
+     */
+    fun broadcast(sender: String, message: EndpointMessage): Boolean {
+        if (config.maxRatePerSender > 0) {
+            val rateLimiter = rateLimiters.computeIfAbsent(sender) {
+                TokenBucket(config.maxRatePerSender, config.maxBurstPerSender, clock.instant())
+            }
+            if (!rateLimiter.tryAcquire(clock.instant())) {
+                numDroppedMessages.incrementAndGet()
+                return false
+            }
+        }
+        numMessages.incrementAndGet()
+
+        if (coalescingWindowMs <= 0) {
+            send(listOf(message))
+            return true
+        }
+
+        synchronized(lock) {
+            pending.add(message)
+            if (!flushScheduled) {
+                flushScheduled = true
+                executor.schedule(::flush, coalescingWindowMs, TimeUnit.MILLISECONDS)
+            }
+        }
+        return true
+    }
+
+    private fun flush() {
+        val messages = synchronized(lock) {
+            flushScheduled = false
+            pending.also { pending = mutableListOf() }
+        }
+        try {
+            send(messages)
+        } catch (t: Throwable) {
+            logger.warn("Failed to send broadcast messages", t)
+        }
+    }
+
+    private fun send(messages: List<EndpointMessage>) {
+        if (messages.isEmpty()) {
+            return
+        }
+        numFlushes.incrementAndGet()
+
+        // Serialize each message before the fan-out, which then reuses the
+        // cached string.
+        messages.forEach { it.toJson() }
+
+        for (receiver in conference.localEndpoints) {
+            for (message in messages) {
+                if (message.from == receiver.id) {
+                    continue
+                }
+                try {
+                    receiver.sendMessage(message)
+                    numSends.incrementAndGet()
+                } catch (e: IOException) {
+                    logger.error("Failed to send message to ${receiver.id}", e)
+                }
+            }
+        }
+
+        messages.forEach { conference.sendMessage(it, emptyList(), true) }
+    }
+
+    /**
+     * Notify this [BroadcastMessageAggregator] that an endpoint in the
+     * conference has expired.
+     */
+    fun endpointExpired(endpointId: String) {
+        rateLimiters.remove(endpointId)
+    }
+
+    fun getDebugState(): OrderedJsonObject = OrderedJsonObject().apply {
+        put("coalescing_window_ms", coalescingWindowMs)
+        put("num_messages", numMessages.get())
+        put("num_dropped_messages", numDroppedMessages.get())
+        put("num_flushes", numFlushes.get())
+        put("num_sends", numSends.get())
+        put("dropped_by_sender", OrderedJsonObject().apply {
+            rateLimiters.forEach { (id, rateLimiter) ->
+                if (rateLimiter.numDropped > 0) {
+                    put(id, rateLimiter.numDropped)
+                }
+            }
+        })
+    }
+
+    fun getNumDroppedMessages(): Long = numDroppedMessages.get()
+
+    /**
+     * A token bucket which refills at [rate] tokens per second, up to [burst]
+     * tokens.
+     */
+    private class TokenBucket(
+        private val rate: Double,
+        private val burst: Double,
+        private var lastRefill: Instant
+    ) {
+        private var tokens = burst
+
+        var numDropped = 0L
+            private set
+
+        @Synchronized
+        fun tryAcquire(now: Instant): Boolean {
+            val elapsedMs = Duration.between(lastRefill, now).toMillis()
+            if (elapsedMs > 0) {
+                tokens = minOf(burst, tokens + elapsedMs * rate / 1000)
+                lastRefill = now
+            }
+            return if (tokens >= 1) {
+                tokens -= 1
+                true
+            } else {
+                numDropped++
+                false
+            }
+        }
+    }
+}
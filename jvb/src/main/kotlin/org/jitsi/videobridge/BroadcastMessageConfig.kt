@@ -0,0 +1,36 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge
+
+import org.jitsi.config.JitsiConfig
+import org.jitsi.metaconfig.config
+import org.jitsi.metaconfig.from
+import java.time.Duration
+
+class BroadcastMessageConfig {
+    val coalescingWindow: Duration by config(
+        "videobridge.broadcast-messages.coalescing-window".from(JitsiConfig.newConfig)
+    )
+
+    val maxRatePerSender: Double by config(
+        "videobridge.broadcast-messages.max-rate-per-sender".from(JitsiConfig.newConfig)
+    )
+
+    val maxBurstPerSender: Double by config(
+        "videobridge.broadcast-messages.max-burst-per-sender".from(JitsiConfig.newConfig)
+    )
+}
@@ -21,16 +21,25 @@ import org.jitsi.utils.logging2.Logger
 import org.jitsi.utils.logging2.cdebug
 import org.jitsi.utils.logging2.createChildLogger
 import org.jitsi.videobridge.message.EndpointConnectionStatusMessage
+import org.jitsi.videobridge.util.TimeoutScheduler
 import java.time.Clock
 import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ScheduledExecutorService
-import java.util.concurrent.ScheduledFuture
-import java.util.concurrent.TimeUnit
-import java.util.concurrent.atomic.AtomicReference
 
+/**
+ * Tracks whether the local endpoints of a conference are connected, based on
+ * their incoming activity, and notifies the conference when that changes.
+ *
+ * Each endpoint has a single timeout which fires when it could next change
+ * state (e.g. when its inactivity limit elapses if no more packets are
+ * received), so the periodic cost doesn't grow with the size of the
+ * conference.  Endpoints which are inactive are checked every
+ * [EndpointConnectionStatusConfig.intervalMs] to detect reconnection.
+ */
 class EndpointConnectionStatusMonitor @JvmOverloads constructor(
     private val conference: Conference,
-    private val executor: ScheduledExecutorService,
+    executor: ScheduledExecutorService,
     parentLogger: Logger,
     private val clock: Clock = Clock.systemUTC()
 ) {
@@ -38,69 +47,99 @@ class EndpointConnectionStatusMonitor @JvmOverloads constructor(
 
     private val config = EndpointConnectionStatusConfig()
 
+    private val checkInterval = Duration.ofMillis(config.intervalMs)
+
     private val inactiveEndpointIds = mutableSetOf<String>()
 
-    private val taskHandle = AtomicReference<ScheduledFuture<*>>(null)
+    /**
+     * The endpoints being monitored, by ID.
+     */
+    private val endpoints: MutableMap<String, Endpoint> = ConcurrentHashMap()
+
+    private val timeouts = TimeoutScheduler(
+        "connection status",
+        checkInterval,
+        executor,
+        NUM_SLOTS,
+        ::checkEndpoint,
+        clock
+    )
 
     fun start() {
-        if (taskHandle.compareAndSet(
-                null,
-                executor.scheduleWithFixedDelay(::run, config.intervalMs, config.intervalMs, TimeUnit.MILLISECONDS))
-        ) {
-            logger.info("Starting connection status monitor")
-        } else {
-            logger.warn("Task already started, not starting again")
-        }
+        logger.info("Starting connection status monitor")
+        timeouts.start()
     }
 
     fun stop() {
-        taskHandle.getAndSet(null)?.cancel(false)
+        timeouts.stop()
         logger.info("Stopped")
     }
 
-    private fun run() {
-        val localEps = conference.endpoints.filterIsInstance<Endpoint>()
-        localEps.forEach(::monitorEndpointActivity)
+    /**
+     * Start monitoring a local endpoint of the conference.
+     */
+    fun endpointCreated(endpoint: Endpoint) {
+        endpoints[endpoint.id] = endpoint
+        // The endpoint's state is read on the first check, which runs on the
+        // next tick.
+        timeouts.schedule(endpoint.id, Duration.ZERO)
     }
 
-    private fun monitorEndpointActivity(endpoint: Endpoint) {
+    /**
+     * Check the activity of an endpoint.
+     *
+     * @return the time after which the endpoint should be checked again, or
+     * null if it's no longer monitored.
+     */
+    private fun checkEndpoint(endpointId: String): Duration? {
+        val endpoint = endpoints[endpointId] ?: return null
         val now = clock.instant()
-        val mostRecentChannelCreatedTime = endpoint.mostRecentChannelCreatedTime
         val lastActivity = endpoint.lastIncomingActivity
 
         if (lastActivity == NEVER) {
             // Here we check if it's taking too long for the endpoint to connect
             // We're doing that by checking how much time has elapsed since
             // the first endpoint's channel has been created.
-            val timeSinceCreation = Duration.between(mostRecentChannelCreatedTime, now)
-            if (timeSinceCreation > config.firstTransferTimeout) {
+            val timeSinceCreation = Duration.between(endpoint.mostRecentChannelCreatedTime, now)
+            return if (timeSinceCreation > config.firstTransferTimeout) {
                 logger.cdebug { "${endpoint.id} is having trouble establishing the connection " +
                         "and will be marked as inactive" }
-                notifyStatusChange(endpoint.id, false, null)
-                return
+                setActive(endpoint.id, false)
+                checkInterval
             } else {
                 logger.cdebug { "${endpoint.id} not ready for activity checks yet" }
-                return
+                config.firstTransferTimeout - timeSinceCreation
             }
         }
 
         val noActivityTime = Duration.between(lastActivity, now)
         val active = noActivityTime <= config.maxInactivityLimit
+        if (!active) {
+            logger.cdebug { "${endpoint.id} has had no activity for $noActivityTime" }
+        }
+        setActive(endpoint.id, active)
+
+        // An inactive endpoint can only become active again on a check, so we
+        // keep checking it at the configured interval.
+        return if (active) config.maxInactivityLimit - noActivityTime else checkInterval
+    }
+
+    private fun setActive(endpointId: String, active: Boolean) {
         var changed = false
         synchronized(inactiveEndpointIds) {
-            if (!active && !inactiveEndpointIds.contains(endpoint.id)) {
-                logger.cdebug { "${endpoint.id} is considered disconnected.  No activity for $noActivityTime" }
-                inactiveEndpointIds += endpoint.id
+            if (!active && !inactiveEndpointIds.contains(endpointId)) {
+                logger.cdebug { "$endpointId is considered disconnected" }
+                inactiveEndpointIds += endpointId
                 changed = true
-            } else if (active && inactiveEndpointIds.contains(endpoint.id)) {
-                logger.cdebug { "${endpoint.id} has reconnected" }
-                inactiveEndpointIds -= endpoint.id
+            } else if (active && inactiveEndpointIds.contains(endpointId)) {
+                logger.cdebug { "$endpointId has reconnected" }
+                inactiveEndpointIds -= endpointId
                 changed = true
             }
         }
 
         if (changed) {
-            notifyStatusChange(endpoint.id, active, null)
+            notifyStatusChange(endpointId, active, null)
         }
     }
 
@@ -122,6 +161,8 @@ class EndpointConnectionStatusMonitor @JvmOverloads constructor(
      * expired
      */
     fun endpointExpired(endpointId: String) {
+        endpoints.remove(endpointId)
+        timeouts.cancel(endpointId)
         synchronized(inactiveEndpointIds) {
             inactiveEndpointIds -= endpointId
         }
@@ -138,4 +179,12 @@ class EndpointConnectionStatusMonitor @JvmOverloads constructor(
             }
         }
     }
+
+    companion object {
+        /**
+         * With the default check interval of 500ms this covers the default
+         * first transfer timeout in a single rotation.
+         */
+        private const val NUM_SLOTS = 64
+    }
 }
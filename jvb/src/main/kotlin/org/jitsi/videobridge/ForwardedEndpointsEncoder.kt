@@ -0,0 +1,193 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge
+
+import org.jitsi.config.JitsiConfig
+import org.jitsi.metaconfig.config
+import org.jitsi.metaconfig.from
+import org.jitsi.nlj.util.NEVER
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.videobridge.message.BridgeChannelMessage
+import org.jitsi.videobridge.message.ForwardedEndpointsDeltaMessage
+import org.jitsi.videobridge.message.ForwardedEndpointsMessage
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+
+/**
+ * Produces the messages which tell an endpoint which endpoints are being
+ * forwarded to it, for endpoints which negotiated deltas.  Each change is
+ * sent as a [ForwardedEndpointsDeltaMessage] with only the added and removed
+ * IDs. A full [ForwardedEndpointsMessage] is sent first, after a message
+ * which failed to be sent, and then periodically (see [resyncIfDue]) even if
+ * nothing changes, so that a client which lost track (e.g. because it missed
+ * a message) recovers.
+ *
+ * Updates are coalesced: only the most recent state is kept, and it is
+ * encoded when it is sent, so that the messages (and their sequence
+ * numbers) go out in order even if the tasks which send them run
+ * concurrently.
+ */
+class ForwardedEndpointsEncoder @JvmOverloads constructor(
+    private val clock: Clock = Clock.systemUTC(),
+    private val fullResyncInterval: Duration = Config.fullResyncInterval,
+    private val maxDeltasBetweenResyncs: Int = Config.maxDeltasBetweenResyncs
+) {
+    /**
+     * The most recent state, which hasn't been sent yet.
+     */
+    private var pending: State? = null
+
+    /**
+     * The last state which was sent, or null if the next message must be a
+     * full one.
+     */
+    private var sent: State? = null
+
+    private var seq = 0L
+
+    private var lastFullResync: Instant = NEVER
+
+    private var deltasSinceFullResync = 0
+
+    private var numFullMessages = 0L
+    private var numDeltaMessages = 0L
+    private var numFailedSends = 0L
+
+    /**
+     * Set the state to be sent with the next call to [sendPending].
+     */
+    @Synchronized
+    fun update(forwardedEndpoints: Collection<String>, conferenceEndpoints: Collection<String>) {
+        pending = State(forwardedEndpoints.toSet(), conferenceEndpoints.toSet())
+    }
+
+    /**
+     * Make the next message a full one, e.g. because the client (re)started
+     * using deltas.
+     */
+    @Synchronized
+    fun reset() {
+        sent?.let { if (pending == null) pending = it }
+        sent = null
+    }
+
+    /**
+     * Encode the pending state, if any, and pass it to [send] (while holding
+     * the lock, so that messages are sent in the order of their sequence
+     * numbers). [send] returns whether the message was sent; if it wasn't
+     * (or if [send] throws), the state is kept pending and the next message is
+     * a full one.
+     */
+    @Synchronized
+    fun sendPending(send: (BridgeChannelMessage) -> Boolean) {
+        val state = pending ?: return
+        pending = null
+        val message = encode(state)
+        var sentOk = false
+        try {
+            sentOk = send(message)
+        } finally {
+            if (!sentOk) {
+                // The client didn't get the message, so it can't apply the
+                // next delta.
+                numFailedSends++
+                sent = null
+                if (pending == null) pending = state
+            }
+        }
+    }
+
+    /**
+     * Check whether a message should be sent even if nothing changed: either
+     * because the resync interval elapsed since the last full message, in
+     * which case the last state is sent again as a full message, or because
+     * the last message failed to be sent. This is meant to be called
+     * periodically, so that a client which missed a delta recovers even if
+     * the forwarded endpoints don't change.
+     *
+     * @return whether a message is pending, in which case the caller should
+     * call [sendPending].
+     */
+    @Synchronized
+    fun resyncIfDue(): Boolean {
+        if (pending == null) {
+            val last = sent ?: return false
+            if (Duration.between(lastFullResync, clock.instant()) < fullResyncInterval) {
+                return false
+            }
+            pending = last
+        }
+        return true
+    }
+
+    private fun encode(state: State): BridgeChannelMessage {
+        seq++
+        val previous = sent
+        sent = state
+        val now = clock.instant()
+
+        if (previous == null ||
+            deltasSinceFullResync >= maxDeltasBetweenResyncs ||
+            Duration.between(lastFullResync, now) >= fullResyncInterval
+        ) {
+            lastFullResync = now
+            deltasSinceFullResync = 0
+            numFullMessages++
+            val entering = if (previous == null) state.forwarded else state.forwarded - previous.forwarded
+            return ForwardedEndpointsMessage(state.forwarded, entering, state.conference, seq)
+        }
+
+        deltasSinceFullResync++
+        numDeltaMessages++
+        val entering = state.forwarded - previous.forwarded
+        return ForwardedEndpointsDeltaMessage(
+            seq,
+            entering,
+            previous.forwarded - state.forwarded,
+            entering,
+            state.conference - previous.conference,
+            previous.conference - state.conference
+        )
+    }
+
+    @Synchronized
+    fun getDebugState(): OrderedJsonObject = OrderedJsonObject().apply {
+        put("seq", seq)
+        put("num_full_messages", numFullMessages)
+        put("num_delta_messages", numDeltaMessages)
+        put("num_failed_sends", numFailedSends)
+    }
+
+    private class State(val forwarded: Set<String>, val conference: Set<String>)
+
+    companion object Config {
+        @JvmStatic
+        val enabled: Boolean by config(
+            "videobridge.bridge-channel.forwarded-endpoints-deltas.enabled".from(JitsiConfig.newConfig)
+        )
+
+        val fullResyncInterval: Duration by config(
+            "videobridge.bridge-channel.forwarded-endpoints-deltas.full-resync-interval".from(JitsiConfig.newConfig)
+        )
+
+        val maxDeltasBetweenResyncs: Int by config(
+            "videobridge.bridge-channel.forwarded-endpoints-deltas.max-deltas-between-resyncs"
+                .from(JitsiConfig.newConfig)
+        )
+    }
+}
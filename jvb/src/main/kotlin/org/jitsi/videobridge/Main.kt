@@ -166,6 +166,8 @@ fun main(args: Array<String>) {
     TaskPools.SCHEDULED_POOL.shutdownNow()
     TaskPools.CPU_POOL.shutdownNow()
     TaskPools.IO_POOL.shutdownNow()
+    TaskPools.BLOCKING_POOL.shutdownNow()
+    TaskPools.SENDER_POOL.shutdown()
 }
 
 private fun setupMetaconfigLogger() {
@@ -0,0 +1,85 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.cc
+
+import org.jitsi.nlj.MediaSourceDesc
+import org.jitsi.nlj.RtpLayerDesc
+import java.time.Duration
+import java.util.IdentityHashMap
+
+/**
+ * Carries the measured bitrates of the layers of an endpoint's media sources over when the sources are rebuilt (e.g.
+ * when their number of temporal layers changes). The layers of the new sources start without any bitrate history,
+ * so the receivers would otherwise see the stream at 0 bps and suspend it until the new layers have been measured.
+ *
+ * A layer inherits the bitrate of the layer of the old sources with the same SSRC and indices, for [period] after
+ * the rebuild, and its own measurement takes over as soon as it is higher.
+ */
+class LayerBitrateCarryOver @JvmOverloads constructor(
+    private val period: Duration = Duration.ofSeconds(5),
+    private val measure: (RtpLayerDesc, Long) -> Long = { layer, nowMs -> layer.getBitrate(nowMs).bps.toLong() }
+) {
+    @Volatile
+    private var carriedOver = CarriedOver(IdentityHashMap(), NEVER)
+
+    /**
+     * Records that [oldSources] were replaced with [newSources] at [nowMs].
+     */
+    fun sourcesRebuilt(oldSources: Array<MediaSourceDesc>?, newSources: Array<MediaSourceDesc>, nowMs: Long) {
+        val oldLayers = HashMap<LayerKey, RtpLayerDesc>()
+        oldSources?.forEach { source ->
+            source.rtpLayers.forEach { oldLayers[LayerKey(source.primarySSRC, it)] = it }
+        }
+
+        val bitrates = IdentityHashMap<RtpLayerDesc, Long>()
+        newSources.forEach { source ->
+            source.rtpLayers.forEach { layer ->
+                oldLayers[LayerKey(source.primarySSRC, layer)]?.let { bitrates[layer] = getBitrateBps(it, nowMs) }
+            }
+        }
+        carriedOver = CarriedOver(bitrates, nowMs + period.toMillis())
+    }
+
+    /**
+     * Gets the bitrate of [layer], which is the one carried over from the old sources, if any, until the layer has
+     * been measured for long enough.
+     */
+    fun getBitrateBps(layer: RtpLayerDesc, nowMs: Long): Long {
+        val measuredBps = measure(layer, nowMs)
+        val carriedOver = this.carriedOver
+        if (nowMs >= carriedOver.untilMs) {
+            return measuredBps
+        }
+        return maxOf(measuredBps, carriedOver.bitrates[layer] ?: 0)
+    }
+
+    private class CarriedOver(val bitrates: Map<RtpLayerDesc, Long>, val untilMs: Long)
+
+    /**
+     * Identifies a layer across rebuilds. A stream with a single temporal (or spatial) layer has an index of -1,
+     * which we treat as 0, so that its base layer keeps its bitrate when a second layer is discovered.
+     */
+    private data class LayerKey(val ssrc: Long, val eid: Int, val sid: Int, val tid: Int) {
+        constructor(ssrc: Long, layer: RtpLayerDesc) :
+            this(ssrc, layer.eid, layer.sid.coerceAtLeast(0), layer.tid.coerceAtLeast(0))
+    }
+
+    companion object {
+        private const val NEVER = Long.MIN_VALUE
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.cc
+
+import org.jitsi.nlj.PacketInfo
+import org.jitsi.nlj.format.PayloadType
+import org.jitsi.nlj.format.RtxPayloadType
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.rtp.Packet
+import org.jitsi.rtp.extensions.looksLikeRtcp
+import org.jitsi.utils.MediaType
+import org.jitsi.videobridge.stats.MicrosecondDelayStats
+import org.jitsi.videobridge.util.ByteBufferPool
+import org.jitsi.videobridge.util.NanoClock
+import java.time.Duration
+import java.util.ArrayDeque
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.function.Consumer
+import java.util.function.IntSupplier
+
+/**
+ * Paces the (SRTP protected) packets sent to an endpoint to a multiple of its bandwidth estimation, so that bursts
+ * (e.g. a keyframe after the receiver switches to a higher layer) don't overrun the bottleneck of the receiver.
+ *
+ * RTCP and audio are not paced. The other packets are sent in priority order: retransmissions (packets with an RTX
+ * payload type), then new video, then probes. Probes are generated by jitsi-media-transform as RTX or padding-only
+ * packets, and the padding length is encrypted by the time they get here, so they are recognized by being enqueued
+ * from within [sendProbes] rather than by their headers.
+ *
+ * The budget builds up to at most [burstWindow] worth of bytes while the pacer is idle. When the queue would not
+ * drain before its oldest packet has waited for [maxQueueDelay] at the pacing rate, it is drained faster, so that the
+ * delay added by the pacer stays around [maxQueueDelay] at most.
+ */
+class Pacer @JvmOverloads constructor(
+    private val send: Consumer<PacketInfo>,
+    private val scheduler: ScheduledExecutorService,
+    private val rateMultiplier: Double,
+    burstWindow: Duration,
+    maxQueueDelay: Duration,
+    private val nanoClock: NanoClock = NanoClock.SYSTEM
+) {
+    private val burstWindowNanos = burstWindow.toNanos()
+    private val maxQueueDelayNanos = maxQueueDelay.toNanos()
+
+    @Volatile
+    private var audioPayloadTypes: Set<Int> = emptySet()
+
+    @Volatile
+    private var rtxPayloadTypes: Set<Int> = emptySet()
+
+    /**
+     * The pacing rate, or 0 if there is no bandwidth estimation yet (in which case we don't pace).
+     */
+    private var rateBps = 0L
+
+    private val queues = Array(PacketClass.values().size) { ArrayDeque<Entry>() }
+
+    private var queuedBytes = 0L
+
+    /**
+     * The number of bytes that can be sent right now. Sending a packet may make this negative.
+     */
+    private var budgetBytes = 0.0
+
+    private var lastBudgetUpdateNanos = nanoClock.nanoTime()
+
+    private var wakeup: ScheduledFuture<*>? = null
+
+    private var closed = false
+
+    private val packetsSent = LongArray(PacketClass.values().size)
+
+    private val delayStats = MicrosecondDelayStats()
+
+    /**
+     * Whether the current thread is sending probes, see [sendProbes].
+     */
+    private val sendingProbes = ThreadLocal.withInitial { false }
+
+    fun addPayloadType(payloadType: PayloadType) {
+        val pt = payloadType.pt.toInt()
+        when {
+            payloadType is RtxPayloadType -> rtxPayloadTypes = rtxPayloadTypes + pt
+            payloadType.mediaType == MediaType.AUDIO -> audioPayloadTypes = audioPayloadTypes + pt
+        }
+    }
+
+    @Synchronized
+    fun bandwidthChanged(bandwidthBps: Long) {
+        updateBudget(nanoClock.nanoTime())
+        rateBps = (bandwidthBps * rateMultiplier).toLong()
+        if (rateBps <= 0) {
+            // Nothing to pace against.
+            drain()
+        }
+    }
+
+    /**
+     * Runs [sendProbes], which requests probes from jitsi-media-transform, and paces the packets which it enqueues as
+     * probes, i.e. after all other packets. jitsi-media-transform sends the probes through the outgoing pipeline on
+     * the calling thread, so these are the packets enqueued on this thread until [sendProbes] returns.
+     *
+     * @return the value returned by [sendProbes] (the number of bytes sent).
+     */
+    fun sendProbes(sendProbes: IntSupplier): Int {
+        sendingProbes.set(true)
+        try {
+            return sendProbes.asInt
+        } finally {
+            sendingProbes.set(false)
+        }
+    }
+
+    /**
+     * Sends [packetInfo], now or when there is enough budget.
+     */
+    fun enqueue(packetInfo: PacketInfo) {
+        val packetClass = if (sendingProbes.get()) PacketClass.PROBE else classify(packetInfo.packet)
+        if (packetClass == null) {
+            send.accept(packetInfo)
+            return
+        }
+        synchronized(this) {
+            if (closed) {
+                ByteBufferPool.returnBuffer(packetInfo.packet.buffer)
+                return
+            }
+            val now = nanoClock.nanoTime()
+            queues[packetClass.ordinal].add(Entry(packetInfo, packetClass, now))
+            queuedBytes += packetInfo.packet.length
+            if (rateBps <= 0) {
+                drain()
+            } else if (wakeup == null) {
+                process(now)
+            }
+        }
+    }
+
+    /**
+     * Classifies an outgoing packet, or returns null if it is not to be paced.
+     */
+    private fun classify(packet: Packet): PacketClass? {
+        if (packet.length < RTP_HEADER_LENGTH || packet.looksLikeRtcp()) {
+            return null
+        }
+        val pt = packet.buffer[packet.offset + 1].toInt() and 0x7f
+        return when {
+            pt in audioPayloadTypes -> null
+            pt in rtxPayloadTypes -> PacketClass.RETRANSMISSION
+            else -> PacketClass.VIDEO
+        }
+    }
+
+    @Synchronized
+    private fun onWakeup() {
+        wakeup = null
+        if (!closed) {
+            process(nanoClock.nanoTime())
+        }
+    }
+
+    /**
+     * Sends queued packets while there is budget, and schedules a wakeup if packets are left. Must be called with
+     * the lock held.
+     */
+    private fun process(now: Long) {
+        updateBudget(now)
+        while (budgetBytes > 0 && sendOne(now)) {
+        }
+        if (queuedBytes > 0 && wakeup == null) {
+            val rate = effectiveRateBps(now)
+            val delayNanos = ((1 - budgetBytes) * 8 * NANOS_PER_SECOND / rate).toLong()
+            wakeup = scheduler.schedule(
+                Runnable { onWakeup() },
+                delayNanos.coerceAtLeast(MIN_WAKEUP_DELAY_NANOS),
+                TimeUnit.NANOSECONDS
+            )
+        }
+    }
+
+    /**
+     * Sends the first packet of the highest priority queue which is not empty.
+     *
+     * @return false if all queues are empty.
+     */
+    private fun sendOne(now: Long): Boolean {
+        val entry = queues.firstOrNull { it.isNotEmpty() }?.poll() ?: return false
+        val length = entry.packetInfo.packet.length
+        queuedBytes -= length
+        budgetBytes -= length
+        packetsSent[entry.packetClass.ordinal]++
+        val delayNanos = now - entry.enqueuedNanos
+        delayStats.addDelayNanos(delayNanos)
+        pacingDelayStats.addDelayNanos(delayNanos)
+        send.accept(entry.packetInfo)
+        return true
+    }
+
+    private fun drain() {
+        val now = nanoClock.nanoTime()
+        while (sendOne(now)) {
+        }
+    }
+
+    /**
+     * The pacing rate, raised if needed so that the queue drains before its oldest packet has waited for
+     * [maxQueueDelayNanos].
+     */
+    private fun effectiveRateBps(now: Long): Double {
+        var oldestNanos = now
+        queues.forEach { queue -> queue.peek()?.let { oldestNanos = minOf(oldestNanos, it.enqueuedNanos) } }
+        val remainingNanos = maxOf(maxQueueDelayNanos - (now - oldestNanos), MIN_WAKEUP_DELAY_NANOS)
+        return maxOf(rateBps.toDouble(), queuedBytes * 8.0 * NANOS_PER_SECOND / remainingNanos)
+    }
+
+    private fun updateBudget(now: Long) {
+        val elapsedNanos = now - lastBudgetUpdateNanos
+        lastBudgetUpdateNanos = now
+        if (rateBps <= 0) {
+            budgetBytes = 0.0
+            return
+        }
+        val rate = effectiveRateBps(now)
+        val maxBudgetBytes = rate * burstWindowNanos / 8 / NANOS_PER_SECOND
+        budgetBytes = minOf(budgetBytes + rate * elapsedNanos / 8 / NANOS_PER_SECOND, maxBudgetBytes)
+    }
+
+    /**
+     * Stops pacing and releases the queued packets.
+     */
+    @Synchronized
+    fun close() {
+        closed = true
+        wakeup?.cancel(false)
+        wakeup = null
+        queues.forEach { queue ->
+            queue.forEach { ByteBufferPool.returnBuffer(it.packetInfo.packet.buffer) }
+            queue.clear()
+        }
+        queuedBytes = 0
+    }
+
+    fun getDebugState(): OrderedJsonObject = synchronized(this) {
+        OrderedJsonObject().apply {
+            put("rate_bps", rateBps)
+            put("budget_bytes", budgetBytes)
+            put("queued_bytes", queuedBytes)
+            PacketClass.values().forEach {
+                put("queued_${it.statName}", queues[it.ordinal].size)
+                put("sent_${it.statName}", packetsSent[it.ordinal])
+            }
+            put("pacing_delay", delayStats.toJson())
+        }
+    }
+
+    /**
+     * The classes of paced packets, in priority order.
+     */
+    private enum class PacketClass(val statName: String) {
+        RETRANSMISSION("retransmissions"),
+        VIDEO("video"),
+        PROBE("probes")
+    }
+
+    private class Entry(val packetInfo: PacketInfo, val packetClass: PacketClass, val enqueuedNanos: Long)
+
+    companion object {
+        private const val RTP_HEADER_LENGTH = 12
+        private const val NANOS_PER_SECOND = 1_000_000_000.0
+        private val MIN_WAKEUP_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1)
+
+        /**
+         * The time packets spend in the pacers of all endpoints.
+         */
+        private val pacingDelayStats = MicrosecondDelayStats()
+
+        @JvmStatic
+        fun getPacingDelayStatsJson() = pacingDelayStats.toJson()
+    }
+}
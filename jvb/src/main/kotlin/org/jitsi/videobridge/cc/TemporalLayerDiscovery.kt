@@ -0,0 +1,121 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.cc
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Learns the number of temporal layers of the video streams of an endpoint from the temporal layer indices of the
+ * packets that it sends, since they are not signaled.
+ *
+ * A stream is observed for [window] before its number of layers is reported. After that, a new (higher) layer is
+ * reported once it has been sent for [riseDelay], and a layer is removed when none of its packets have been seen
+ * for [window] (e.g. when the sender stops sending it because of CPU or bandwidth constraints). Every change rebuilds
+ * the sources of the endpoint, so both delays keep a layer which flaps from changing the layout more than once.
+ */
+class TemporalLayerDiscovery(
+    private val window: Duration,
+    private val riseDelay: Duration = Duration.ZERO
+) {
+    private val streams: MutableMap<Long, StreamLayers> = ConcurrentHashMap()
+
+    /**
+     * Records that a packet with temporal layer index [tid] was received on [ssrc]. A negative [tid] means that the
+     * packet doesn't have one, i.e. that the stream has a single layer.
+     *
+     * @return true if the number of temporal layers of the stream changed.
+     */
+    fun observe(ssrc: Long, tid: Int, nowMs: Long): Boolean {
+        val stream = streams.computeIfAbsent(ssrc) { StreamLayers(nowMs) }
+        return stream.observe(tid.coerceIn(0, MAX_TEMPORAL_LAYERS - 1), nowMs, window.toMillis(), riseDelay.toMillis())
+    }
+
+    /**
+     * Gets the number of temporal layers of a stream, or 0 if it hasn't been observed for long enough to tell.
+     */
+    fun getNumTemporalLayers(ssrc: Long): Int = streams[ssrc]?.numLayers ?: 0
+
+    /**
+     * Forgets the streams that are not in [ssrcs].
+     */
+    fun retain(ssrcs: Collection<Long>) {
+        streams.keys.retainAll(ssrcs)
+    }
+
+    fun getStatsJson(): Map<String, Int> = streams.entries.associate { it.key.toString() to it.value.numLayers }
+
+    private class StreamLayers(private val firstSeenMs: Long) {
+        /**
+         * The last time a packet of each temporal layer was seen.
+         */
+        private val lastSeenMs = LongArray(MAX_TEMPORAL_LAYERS) { NEVER }
+
+        /**
+         * The time the current run of packets of each temporal layer started.
+         */
+        private val activeSinceMs = LongArray(MAX_TEMPORAL_LAYERS) { NEVER }
+
+        /**
+         * The number of temporal layers that we report, 0 while we are still learning.
+         */
+        @Volatile
+        var numLayers = 0
+            private set
+
+        @Synchronized
+        fun observe(tid: Int, nowMs: Long, windowMs: Long, riseDelayMs: Long): Boolean {
+            // A layer which we don't report yet has to be sent without gaps longer than the rise delay to be reported.
+            val maxGapMs = if (tid < numLayers) windowMs else riseDelayMs
+            if (lastSeenMs[tid] == NEVER || nowMs - lastSeenMs[tid] > maxGapMs) {
+                activeSinceMs[tid] = nowMs
+            }
+            lastSeenMs[tid] = nowMs
+            if (numLayers == 0 && nowMs - firstSeenMs < windowMs) {
+                return false
+            }
+            val newNumLayers = countLayers(nowMs, windowMs, riseDelayMs)
+            if (newNumLayers == numLayers) {
+                return false
+            }
+            numLayers = newNumLayers
+            return true
+        }
+
+        private fun countLayers(nowMs: Long, windowMs: Long, riseDelayMs: Long): Int {
+            for (tid in MAX_TEMPORAL_LAYERS - 1 downTo 1) {
+                if (isActive(tid, nowMs, windowMs) && lastSeenMs[tid] - activeSinceMs[tid] >= riseDelayMs) {
+                    return tid + 1
+                }
+            }
+            return 1
+        }
+
+        private fun isActive(tid: Int, nowMs: Long, windowMs: Long) =
+            lastSeenMs[tid] != NEVER && nowMs - lastSeenMs[tid] <= windowMs
+    }
+
+    companion object {
+        /**
+         * The VP8 payload descriptor has a 2-bit temporal layer index.
+         */
+        const val MAX_TEMPORAL_LAYERS = 4
+
+        private const val NEVER = Long.MIN_VALUE
+    }
+}
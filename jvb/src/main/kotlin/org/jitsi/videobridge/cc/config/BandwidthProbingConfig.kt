@@ -29,4 +29,39 @@ class BandwidthProbingConfig {
         "videobridge.cc.padding-period"
             .from(JitsiConfig.newConfig).convertFrom<Duration> { it.toMillis() }
     }
+
+    /**
+     * How long a single probe cluster lasts.
+     */
+    val clusterDuration: Duration by config("videobridge.cc.probing.cluster-duration".from(JitsiConfig.newConfig))
+
+    /**
+     * The total send rate that we aim for during a probe cluster, expressed as
+     * a multiple of the current bandwidth estimation.
+     */
+    val clusterRateMultiplier: Double by
+        config("videobridge.cc.probing.cluster-rate-multiplier".from(JitsiConfig.newConfig))
+
+    /**
+     * How long we wait after a probe cluster has ended for the bandwidth
+     * estimation to react, before we consider the cluster failed.
+     */
+    val evaluationWindow: Duration by config("videobridge.cc.probing.evaluation-window".from(JitsiConfig.newConfig))
+
+    /**
+     * The minimum relative increase of the bandwidth estimation for a probe
+     * cluster to be considered successful.
+     */
+    val minBweIncrease: Double by config("videobridge.cc.probing.min-bwe-increase".from(JitsiConfig.newConfig))
+
+    /**
+     * How long we wait before the next probe cluster after a failed one. The
+     * delay doubles with every consecutive failure, up to [maxBackoff].
+     */
+    val initialBackoff: Duration by config("videobridge.cc.probing.initial-backoff".from(JitsiConfig.newConfig))
+
+    /**
+     * The maximum delay between two probe clusters.
+     */
+    val maxBackoff: Duration by config("videobridge.cc.probing.max-backoff".from(JitsiConfig.newConfig))
 }
@@ -119,5 +119,74 @@ class BitrateControllerConfig {
 
         @JvmStatic
         fun maxTimeBetweenCalculations() = maxTimeBetweenCalculations
+
+        /**
+         * The maximum number of bitrate allocations to cache per conference, to be shared between receivers with
+         * identical inputs. A value of 0 disables caching.
+         */
+        private val allocationCacheSize: Int by
+            config("videobridge.cc.allocation-cache.size".from(JitsiConfig.newConfig))
+
+        @JvmStatic
+        fun allocationCacheSize() = allocationCacheSize
+
+        /**
+         * How long a cached bitrate allocation can be used for.
+         */
+        private val allocationCacheTtl: Duration by
+            config("videobridge.cc.allocation-cache.ttl".from(JitsiConfig.newConfig))
+
+        @JvmStatic
+        fun allocationCacheTtl() = allocationCacheTtl
+
+        /**
+         * The relative size of the bandwidth buckets used to share allocations between receivers. The bandwidth
+         * estimation is rounded down to the lower bound of its bucket, so this is also the maximum fraction of the
+         * bandwidth that is left unallocated because of caching.
+         */
+        private val allocationCacheBandwidthStep: Double by
+            config("videobridge.cc.allocation-cache.bandwidth-step".from(JitsiConfig.newConfig))
+
+        @JvmStatic
+        fun allocationCacheBandwidthStep() = allocationCacheBandwidthStep
+
+        /**
+         * How long a suspended source projection can be idle before it releases its state, except for what it needs
+         * to resume the stream. A value of 0 disables this.
+         */
+        private val projectionIdleTimeout: Duration by
+            config("videobridge.cc.projection-idle-timeout".from(JitsiConfig.newConfig))
+
+        @JvmStatic
+        fun projectionIdleTimeout() = projectionIdleTimeout
+
+        /**
+         * Whether to learn the number of temporal layers of the received video streams from their packets, instead
+         * of assuming that every stream has three.
+         */
+        private val temporalLayerDiscoveryEnabled: Boolean by
+            config("videobridge.cc.temporal-layer-discovery.enabled".from(JitsiConfig.newConfig))
+
+        @JvmStatic
+        fun temporalLayerDiscoveryEnabled() = temporalLayerDiscoveryEnabled
+
+        /**
+         * How long a stream is observed before its number of temporal layers is known, and how long a temporal layer
+         * can be absent before it is removed.
+         */
+        private val temporalLayerDiscoveryWindow: Duration by
+            config("videobridge.cc.temporal-layer-discovery.window".from(JitsiConfig.newConfig))
+
+        @JvmStatic
+        fun temporalLayerDiscoveryWindow() = temporalLayerDiscoveryWindow
+
+        /**
+         * How long a new temporal layer has to be sent before it is added.
+         */
+        private val temporalLayerDiscoveryRiseDelay: Duration by
+            config("videobridge.cc.temporal-layer-discovery.rise-delay".from(JitsiConfig.newConfig))
+
+        @JvmStatic
+        fun temporalLayerDiscoveryRiseDelay() = temporalLayerDiscoveryRiseDelay
     }
 }
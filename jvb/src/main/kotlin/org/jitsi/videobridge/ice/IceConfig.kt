@@ -104,6 +104,14 @@ class IceConfig {
             .convertFrom<String> { NominationStrategy.fromString(it) }
     }
 
+    /**
+     * Whether to read incoming packets directly into buffers from the pool, which are then handed to the packet
+     * pipeline without a copy.
+     */
+    val zeroCopyReceive: Boolean by config(
+        "videobridge.ice.zero-copy-receive".from(JitsiConfig.newConfig)
+    )
+
     companion object {
         @JvmField
         val config = IceConfig()
@@ -0,0 +1,121 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.message
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory
+import com.fasterxml.jackson.module.kotlin.registerKotlinModule
+import org.jitsi.config.JitsiConfig
+import org.jitsi.metaconfig.config
+import org.jitsi.metaconfig.from
+import org.jitsi.nlj.util.OrderedJsonObject
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * The encodings in which [BridgeChannelMessage]s can be sent to an endpoint. JSON (as text) is always supported, and a
+ * client can ask for a binary encoding in its [ClientHelloMessage].
+ */
+enum class BridgeChannelEncoding(val encodingName: String) {
+    JSON("json"),
+
+    /**
+     * CBOR (RFC 7049), sent as binary. It has the same structure as the JSON encoding (including the "colibriClass"
+     * field), so a client can decode it with a generic CBOR decoder.
+     */
+    CBOR("cbor");
+
+    companion object {
+        @JvmStatic
+        fun fromName(name: String): BridgeChannelEncoding? = values().find { it.encodingName == name }
+    }
+}
+
+/**
+ * Encodes and decodes [BridgeChannelMessage]s, and keeps track of the number of messages, their size and the time
+ * spent encoding them for each [BridgeChannelEncoding].
+ */
+object BridgeChannelCodec {
+    private val cborEnabled: Boolean by config("videobridge.bridge-channel.cbor-enabled".from(JitsiConfig.newConfig))
+
+    private val cborMapper = ObjectMapper(CBORFactory()).registerKotlinModule()
+
+    private val stats = BridgeChannelEncoding.values().associate { it to EncodingStats() }
+
+    /**
+     * Select the encoding to use with a client, given the encodings listed in its [ClientHelloMessage] in order of
+     * preference.
+     */
+    @JvmStatic
+    fun selectEncoding(clientEncodings: List<String>?): BridgeChannelEncoding {
+        clientEncodings?.forEach { name ->
+            when (BridgeChannelEncoding.fromName(name)) {
+                BridgeChannelEncoding.JSON -> return BridgeChannelEncoding.JSON
+                BridgeChannelEncoding.CBOR -> if (cborEnabled) return BridgeChannelEncoding.CBOR
+                null -> Unit
+            }
+        }
+        return BridgeChannelEncoding.JSON
+    }
+
+    @JvmStatic
+    fun encodeJson(message: BridgeChannelMessage): String {
+        val start = System.nanoTime()
+        val json = message.toJson()
+        // The JSON is sent as UTF-8, but most of it is ASCII, so we count chars to keep this cheap.
+        stats.getValue(BridgeChannelEncoding.JSON).messageEncoded(json.length, System.nanoTime() - start)
+        return json
+    }
+
+    @JvmStatic
+    fun encodeCbor(message: BridgeChannelMessage): ByteArray {
+        val start = System.nanoTime()
+        val cbor = cborMapper.writeValueAsBytes(message)
+        stats.getValue(BridgeChannelEncoding.CBOR).messageEncoded(cbor.size, System.nanoTime() - start)
+        return cbor
+    }
+
+    @JvmStatic
+    @Throws(IOException::class)
+    fun decodeCbor(data: ByteArray): BridgeChannelMessage = cborMapper.readValue(data, BridgeChannelMessage::class.java)
+
+    @JvmStatic
+    fun getStatsJson(): OrderedJsonObject = OrderedJsonObject().apply {
+        put("cbor_enabled", cborEnabled)
+        stats.forEach { (encoding, encodingStats) -> put(encoding.encodingName, encodingStats.toJson()) }
+    }
+
+    private class EncodingStats {
+        private val numMessages = AtomicLong()
+        private val numBytes = AtomicLong()
+        private val encodeTimeNanos = AtomicLong()
+
+        fun messageEncoded(size: Int, nanos: Long) {
+            numMessages.incrementAndGet()
+            numBytes.addAndGet(size.toLong())
+            encodeTimeNanos.addAndGet(nanos)
+        }
+
+        fun toJson(): OrderedJsonObject = OrderedJsonObject().apply {
+            val count = numMessages.get()
+            put("num_messages", count)
+            put("num_bytes", numBytes.get())
+            put("average_size_bytes", if (count > 0) numBytes.get().toDouble() / count else 0.0)
+            put("average_encode_time_us", if (count > 0) encodeTimeNanos.get() / 1000.0 / count else 0.0)
+        }
+    }
+}
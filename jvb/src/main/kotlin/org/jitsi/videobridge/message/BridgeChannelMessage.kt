@@ -17,6 +17,7 @@ package org.jitsi.videobridge.message
 
 import com.fasterxml.jackson.annotation.JsonAnyGetter
 import com.fasterxml.jackson.annotation.JsonAnySetter
+import com.fasterxml.jackson.annotation.JsonIgnore
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties
 import com.fasterxml.jackson.annotation.JsonInclude
 import com.fasterxml.jackson.annotation.JsonProperty
@@ -55,9 +56,11 @@ import java.util.concurrent.atomic.AtomicLong
     JsonSubTypes.Type(value = DominantSpeakerMessage::class, name = DominantSpeakerMessage.TYPE),
     JsonSubTypes.Type(value = EndpointConnectionStatusMessage::class, name = EndpointConnectionStatusMessage.TYPE),
     JsonSubTypes.Type(value = ForwardedEndpointsMessage::class, name = ForwardedEndpointsMessage.TYPE),
+    JsonSubTypes.Type(value = ForwardedEndpointsDeltaMessage::class, name = ForwardedEndpointsDeltaMessage.TYPE),
     JsonSubTypes.Type(value = SenderVideoConstraintsMessage::class, name = SenderVideoConstraintsMessage.TYPE),
     JsonSubTypes.Type(value = AddReceiverMessage::class, name = AddReceiverMessage.TYPE),
-    JsonSubTypes.Type(value = RemoveReceiverMessage::class, name = RemoveReceiverMessage.TYPE)
+    JsonSubTypes.Type(value = RemoveReceiverMessage::class, name = RemoveReceiverMessage.TYPE),
+    JsonSubTypes.Type(value = AudioProjectionMessage::class, name = AudioProjectionMessage.TYPE)
 )
 // The type is included as colibriClass (as we want) by the annotation above.
 @JsonIgnoreProperties("type")
@@ -102,9 +105,11 @@ open class MessageHandler {
             is DominantSpeakerMessage -> dominantSpeaker(message)
             is EndpointConnectionStatusMessage -> endpointConnectionStatus(message)
             is ForwardedEndpointsMessage -> forwardedEndpoints(message)
+            is ForwardedEndpointsDeltaMessage -> forwardedEndpointsDelta(message)
             is SenderVideoConstraintsMessage -> senderVideoConstraints(message)
             is AddReceiverMessage -> addReceiver(message)
             is RemoveReceiverMessage -> removeReceiver(message)
+            is AudioProjectionMessage -> audioProjection(message)
         }
     }
 
@@ -127,9 +132,11 @@ open class MessageHandler {
     open fun dominantSpeaker(message: DominantSpeakerMessage) = unhandledMessageReturnNull(message)
     open fun endpointConnectionStatus(message: EndpointConnectionStatusMessage) = unhandledMessageReturnNull(message)
     open fun forwardedEndpoints(message: ForwardedEndpointsMessage) = unhandledMessageReturnNull(message)
+    open fun forwardedEndpointsDelta(message: ForwardedEndpointsDeltaMessage) = unhandledMessageReturnNull(message)
     open fun senderVideoConstraints(message: SenderVideoConstraintsMessage) = unhandledMessageReturnNull(message)
     open fun addReceiver(message: AddReceiverMessage) = unhandledMessageReturnNull(message)
     open fun removeReceiver(message: RemoveReceiverMessage) = unhandledMessageReturnNull(message)
+    open fun audioProjection(message: AudioProjectionMessage) = unhandledMessageReturnNull(message)
 
     fun getReceivedCounts() = receivedCounts.mapValues { it.value.get() }
 }
@@ -183,7 +190,24 @@ class PinnedEndpointMessage(val pinnedEndpoint: String?) : BridgeChannelMessage(
 /**
  * A message sent from a client to a bridge in the beginning of a session.
  */
-class ClientHelloMessage : BridgeChannelMessage(TYPE) {
+class ClientHelloMessage @JvmOverloads constructor(
+    /**
+     * The names of the [BridgeChannelEncoding]s which the client can receive, in order of preference. A client which
+     * lists a binary encoding must be able to receive it at any point after it sends this message.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val encodings: List<String>? = null,
+    /**
+     * Whether the client can receive changes to its forwarded endpoints as [ForwardedEndpointsDeltaMessage]s.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val forwardedEndpointsDeltas: Boolean? = null,
+    /**
+     * Whether the client can receive projected audio (see [AudioProjectionMessage]).
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val audioProjection: Boolean? = null
+) : BridgeChannelMessage(TYPE) {
     companion object {
         const val TYPE = "ClientHello"
     }
@@ -191,9 +215,39 @@ class ClientHelloMessage : BridgeChannelMessage(TYPE) {
 
 /**
  * A message sent from a bridge to a client in response to a [ClientHelloMessage] or when a websocket is accepted.
+ * It is always sent as JSON.
  */
-class ServerHelloMessage : BridgeChannelMessage(TYPE) {
-    override fun toJson() = JSON_STRING
+class ServerHelloMessage @JvmOverloads constructor(
+    /**
+     * The name of the [BridgeChannelEncoding] which the bridge selected from the ones listed in the
+     * [ClientHelloMessage], if any.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val encoding: String? = null,
+    /**
+     * Whether the bridge will send changes to the forwarded endpoints as [ForwardedEndpointsDeltaMessage]s, if the
+     * client asked for it.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val forwardedEndpointsDeltas: Boolean? = null,
+    /**
+     * Whether the bridge will send projected audio (see [AudioProjectionMessage]), if the client asked for it.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val audioProjection: Boolean? = null
+) : BridgeChannelMessage(TYPE) {
+    override fun toJson(): String = if (
+        encoding == null && forwardedEndpointsDeltas == null && audioProjection == null
+    ) {
+        JSON_STRING
+    } else {
+        JSONObject().apply {
+            this["colibriClass"] = TYPE
+            encoding?.let { this["encoding"] = it }
+            forwardedEndpointsDeltas?.let { this["forwardedEndpointsDeltas"] = it }
+            audioProjection?.let { this["audioProjection"] = it }
+        }.toJSONString()
+    }
 
     companion object {
         const val TYPE = "ServerHello"
@@ -214,6 +268,10 @@ class ServerHelloMessage : BridgeChannelMessage(TYPE) {
 class EndpointMessage(val to: String) : BridgeChannelMessage(TYPE) {
     @JsonInclude(JsonInclude.Include.NON_NULL)
     var from: String? = null
+        set(value) {
+            field = value
+            json = null
+        }
 
     @get:JsonAnyGetter
     val otherFields = mutableMapOf<String, Any>()
@@ -221,22 +279,31 @@ class EndpointMessage(val to: String) : BridgeChannelMessage(TYPE) {
     /**
      * Whether this message is to be broadcast or targeted to a specific endpoint.
      */
+    @get:JsonIgnore
     val isBroadcast: Boolean = isEmpty(to)
 
+    /**
+     * The serialized form of this message, cached because a broadcast message is sent to many endpoints. It is reset
+     * by [from] and [put], but not by modifying [otherFields] directly.
+     */
+    @Volatile
+    private var json: String? = null
+
     @JsonAnySetter
     fun put(key: String, value: Any) {
         otherFields[key] = value
+        json = null
     }
 
     /**
      * Serialize using json-simple because it's faster.
      */
-    override fun toJson(): String = JSONObject().apply {
+    override fun toJson(): String = json ?: JSONObject().apply {
         this["colibriClass"] = TYPE
         from?.let { this["from"] = it }
         this["to"] = to
         putAll(otherFields)
-    }.toJSONString()
+    }.toJSONString().also { json = it }
 
     companion object {
         const val TYPE = "EndpointMessage"
@@ -350,11 +417,17 @@ class EndpointConnectionStatusMessage(
  *
  * TODO: document the semantics of the fields.
  */
-class ForwardedEndpointsMessage(
+class ForwardedEndpointsMessage @JvmOverloads constructor(
     @get:JsonProperty("lastNEndpoints")
     val forwardedEndpoints: Collection<String>,
     val endpointsEnteringLastN: Collection<String>,
-    val conferenceEndpoints: Collection<String>
+    val conferenceEndpoints: Collection<String>,
+    /**
+     * The sequence number of this message, only set for clients which receive [ForwardedEndpointsDeltaMessage]s (for
+     * which this message is a full resync).
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val seq: Long? = null
 ) : BridgeChannelMessage(TYPE) {
     /**
      * Serialize using json-simple because it's faster.
@@ -366,6 +439,7 @@ class ForwardedEndpointsMessage(
         this["lastNEndpoints"] = ArrayList(forwardedEndpoints)
         this["endpointsEnteringLastN"] = ArrayList(endpointsEnteringLastN)
         this["conferenceEndpoints"] = ArrayList(conferenceEndpoints)
+        seq?.let { this["seq"] = it }
     }.toJSONString()
 
     companion object {
@@ -373,6 +447,40 @@ class ForwardedEndpointsMessage(
     }
 }
 
+/**
+ * A message sent from the bridge to a client which asked for deltas in its [ClientHelloMessage], with the changes to
+ * its forwarded endpoints and to the endpoints in the conference since the message with sequence number [seq] - 1
+ * (which is either a [ForwardedEndpointsMessage] or another [ForwardedEndpointsDeltaMessage]). A client which sees a
+ * gap in the sequence numbers should wait for the next [ForwardedEndpointsMessage]. The bridge sends one at least
+ * every full-resync-interval (on a timer, even if the forwarded endpoints don't change), after
+ * max-deltas-between-resyncs deltas, and after a message which it failed to send.
+ */
+class ForwardedEndpointsDeltaMessage(
+    val seq: Long,
+    val addedLastNEndpoints: Collection<String>,
+    val removedLastNEndpoints: Collection<String>,
+    val endpointsEnteringLastN: Collection<String>,
+    val addedConferenceEndpoints: Collection<String>,
+    val removedConferenceEndpoints: Collection<String>
+) : BridgeChannelMessage(TYPE) {
+    /**
+     * Serialize using json-simple because it's faster.
+     */
+    override fun toJson(): String = JSONObject().apply {
+        this["colibriClass"] = TYPE
+        this["seq"] = seq
+        this["addedLastNEndpoints"] = ArrayList(addedLastNEndpoints)
+        this["removedLastNEndpoints"] = ArrayList(removedLastNEndpoints)
+        this["endpointsEnteringLastN"] = ArrayList(endpointsEnteringLastN)
+        this["addedConferenceEndpoints"] = ArrayList(addedConferenceEndpoints)
+        this["removedConferenceEndpoints"] = ArrayList(removedConferenceEndpoints)
+    }.toJSONString()
+
+    companion object {
+        const val TYPE = "LastNEndpointsDeltaEvent"
+    }
+}
+
 /**
  * A message sent from the bridge to a client (sender), indicating constraints for the sender's video streams.
  *
@@ -429,3 +537,16 @@ class RemoveReceiverMessage(
         const val TYPE = "RemoveReceiver"
     }
 }
+
+/**
+ * A message sent from the bridge to a client which receives projected audio (see [ClientHelloMessage.audioProjection]),
+ * with the SSRCs on which it receives audio and the endpoint whose audio each of them carries (or `null` if it carries
+ * none). It is sent whenever the endpoint of an SSRC changes, and always lists all the SSRCs.
+ */
+class AudioProjectionMessage(val sources: List<Source>) : BridgeChannelMessage(TYPE) {
+    data class Source(val ssrc: Long, val endpointId: String?)
+
+    companion object {
+        const val TYPE = "AudioProjection"
+    }
+}
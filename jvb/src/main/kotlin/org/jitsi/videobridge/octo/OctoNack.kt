@@ -0,0 +1,122 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.octo
+
+/**
+ * Encodes and parses the retransmission requests which bridges exchange over
+ * Octo.  These are RTCP generic NACKs (RFC 4585 section 6.2.1), sent with
+ * the [org.jitsi.videobridge.transport.octo.OctoUtils.NACK_EP_ID] endpoint ID.
+ */
+internal object OctoNack {
+    private const val HEADER_LENGTH = 12
+    private const val FCI_LENGTH = 4
+    private const val PT_RTPFB = 205
+    private const val FMT_NACK = 1
+
+    /**
+     * Encodes a NACK for the packets of [mediaSsrc] with sequence numbers
+     * [seqs] (in increasing order, modulo wrap-around), starting at [offset]
+     * into the returned buffer.  Returns the buffer and the length of the NACK.
+     */
+    fun encode(mediaSsrc: Long, seqs: List<Int>, offset: Int): Pair<ByteArray, Int> {
+        val pids = IntArray(seqs.size)
+        val blps = IntArray(seqs.size)
+        var numFcis = 0
+        var i = 0
+        while (i < seqs.size) {
+            val pid = seqs[i]
+            var blp = 0
+            i++
+            while (i < seqs.size) {
+                val delta = seqDelta(seqs[i], pid)
+                if (delta !in 1..16) {
+                    break
+                }
+                blp = blp or (1 shl (delta - 1))
+                i++
+            }
+            pids[numFcis] = pid
+            blps[numFcis] = blp
+            numFcis++
+        }
+
+        val length = HEADER_LENGTH + numFcis * FCI_LENGTH
+        val buf = ByteArray(offset + length)
+        buf[offset] = (0x80 or FMT_NACK).toByte()
+        buf[offset + 1] = PT_RTPFB.toByte()
+        writeUint16(buf, offset + 2, length / 4 - 1)
+        // The sender SSRC (bytes 4 to 7) is left at 0.
+        writeUint32(buf, offset + 8, mediaSsrc)
+        for (j in 0 until numFcis) {
+            writeUint16(buf, offset + HEADER_LENGTH + j * FCI_LENGTH, pids[j])
+            writeUint16(buf, offset + HEADER_LENGTH + j * FCI_LENGTH + 2, blps[j])
+        }
+        return Pair(buf, length)
+    }
+
+    /**
+     * Parses the NACK in [buf] and calls [block] with the media SSRC and the
+     * sequence number of each requested packet.  Returns false if [buf] doesn't
+     * contain a valid NACK.
+     */
+    fun forEachRequested(buf: ByteArray, off: Int, len: Int, block: (Long, Int) -> Unit): Boolean {
+        if (len < HEADER_LENGTH || off + len > buf.size ||
+            buf[off].toInt() and 0xff != (0x80 or FMT_NACK) || buf[off + 1].toInt() and 0xff != PT_RTPFB) {
+            return false
+        }
+        val nackLength = (readUint16(buf, off + 2) + 1) * 4
+        if (nackLength > len) {
+            return false
+        }
+        val mediaSsrc = readUint32(buf, off + 8)
+        var fciOff = off + HEADER_LENGTH
+        while (fciOff + FCI_LENGTH <= off + nackLength) {
+            val pid = readUint16(buf, fciOff)
+            val blp = readUint16(buf, fciOff + 2)
+            block(mediaSsrc, pid)
+            for (bit in 0 until 16) {
+                if (blp and (1 shl bit) != 0) {
+                    block(mediaSsrc, (pid + bit + 1) and 0xffff)
+                }
+            }
+            fciOff += FCI_LENGTH
+        }
+        return true
+    }
+
+    /**
+     * The difference [a] - [b] between two RTP sequence numbers, taking
+     * wrap-around into account.
+     */
+    fun seqDelta(a: Int, b: Int): Int = ((a - b) shl 16) shr 16
+
+    fun readUint16(buf: ByteArray, off: Int): Int =
+        ((buf[off].toInt() and 0xff) shl 8) or (buf[off + 1].toInt() and 0xff)
+
+    fun readUint32(buf: ByteArray, off: Int): Long =
+        (readUint16(buf, off).toLong() shl 16) or readUint16(buf, off + 2).toLong()
+
+    private fun writeUint16(buf: ByteArray, off: Int, value: Int) {
+        buf[off] = (value shr 8).toByte()
+        buf[off + 1] = value.toByte()
+    }
+
+    private fun writeUint32(buf: ByteArray, off: Int, value: Long) {
+        writeUint16(buf, off, (value shr 16).toInt())
+        writeUint16(buf, off + 2, value.toInt())
+    }
+}
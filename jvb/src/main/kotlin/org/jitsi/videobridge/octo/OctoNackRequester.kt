@@ -0,0 +1,223 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.octo
+
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.videobridge.octo.OctoPacket.OCTO_HEADER_LENGTH
+import java.time.Clock
+import java.time.Duration
+
+/**
+ * Detects the video packets from the remote Octo bridges which were lost on
+ * the link between the bridges, from the gaps in the sequence numbers of each
+ * SSRC, and requests their retransmission (see [OctoSendHistory]).
+ *
+ * A lost packet is requested as soon as the gap is detected, so that it can
+ * be repaired within one round trip between the bridges, and again every
+ * [nackInterval] (checked when more packets of the SSRC arrive), at most
+ * [maxNacksPerPacket] times.  After [maxAge] we stop waiting for it.
+ *
+ * The Octo header doesn't identify the bridge which sent a packet, so NACKs
+ * and retransmissions go to all the remote bridges.  This also filters out
+ * the retransmissions which other bridges requested: a packet which is older
+ * than the highest sequence number of its stream and which we are not
+ * waiting for is a duplicate, which must not be forwarded again.
+ */
+class OctoNackRequester @JvmOverloads constructor(
+    /**
+     * Sends a NACK to the remote bridges.  The NACK is in the given buffer,
+     * at the given offset and with the given length, with room for an Octo
+     * header before it.
+     */
+    private val sendNack: (ByteArray, Int, Int) -> Unit,
+    nackInterval: Duration,
+    private val maxNacksPerPacket: Int,
+    maxAge: Duration,
+    private val clock: Clock = Clock.systemUTC()
+) {
+    private val nackIntervalMs = nackInterval.toMillis()
+    private val maxAgeMs = maxAge.toMillis()
+
+    /**
+     * The SSRCs of the video streams we receive, the only ones we request
+     * retransmissions for.
+     */
+    @Volatile
+    private var videoSsrcs: Set<Long> = emptySet()
+
+    /**
+     * Guarded by [this].
+     */
+    private val streams = HashMap<Long, Stream>()
+
+    private var packetsLost = 0L
+    private var packetsRecovered = 0L
+    private var packetsUnrecovered = 0L
+    private var nacksSent = 0L
+    private var duplicatesDropped = 0L
+
+    fun setVideoSsrcs(ssrcs: Set<Long>) {
+        videoSsrcs = ssrcs
+        synchronized(this) {
+            streams.keys.retainAll(ssrcs)
+        }
+    }
+
+    /**
+     * Notifies this requester that the RTP packet in [buf] was received.
+     *
+     * @return false if the packet is a duplicate of a packet which was
+     * already received (e.g. a retransmission which another bridge requested),
+     * in which case it should be dropped.
+     */
+    fun rtpPacketReceived(buf: ByteArray, off: Int, len: Int): Boolean {
+        if (len < RTP_HEADER_LENGTH) {
+            return true
+        }
+        val ssrc = OctoNack.readUint32(buf, off + 8)
+        if (ssrc !in videoSsrcs) {
+            return true
+        }
+        val seq = OctoNack.readUint16(buf, off + 2)
+
+        val nack = synchronized(this) {
+            val now = clock.millis()
+            val stream = streams.getOrPut(ssrc) { Stream(ssrc) }
+            if (!stream.packetReceived(seq, now)) {
+                duplicatesDropped++
+                return false
+            }
+            stream.nackMissing(now)
+        }
+        nack?.let { sendNack(it.first, OCTO_HEADER_LENGTH, it.second) }
+        return true
+    }
+
+    @Synchronized
+    fun getStatsJson(): OrderedJsonObject = OrderedJsonObject().apply {
+        put("packets_lost", packetsLost)
+        put("packets_recovered", packetsRecovered)
+        put("packets_unrecovered", packetsUnrecovered)
+        put("nacks_sent", nacksSent)
+        put("duplicates_dropped", duplicatesDropped)
+        val repairRate = if (packetsRecovered + packetsUnrecovered > 0) {
+            packetsRecovered.toDouble() / (packetsRecovered + packetsUnrecovered)
+        } else {
+            0.0
+        }
+        put("repair_rate", repairRate)
+    }
+
+    private class Missing(val detectedMs: Long) {
+        var lastRequestedMs = -1L
+        var numRequests = 0
+    }
+
+    private inner class Stream(private val ssrc: Long) {
+        private var highestSeq = -1
+
+        /**
+         * The sequence numbers of the missing packets, in the order in which
+         * they were detected (which is also their order in the stream).
+         */
+        private val missing = LinkedHashMap<Int, Missing>()
+
+        /**
+         * Updates the state of the stream after a packet with sequence number
+         * [seq] was received.
+         *
+         * @return false if the packet is a duplicate.
+         */
+        fun packetReceived(seq: Int, now: Long): Boolean {
+            if (highestSeq == -1) {
+                highestSeq = seq
+                return true
+            }
+            val delta = OctoNack.seqDelta(seq, highestSeq)
+            if (delta - 1 > MAX_GAP || delta < -MAX_GAP) {
+                // Most likely the stream was restarted, rather than this many
+                // packets lost (or delayed).
+                giveUp(missing.size)
+                missing.clear()
+                highestSeq = seq
+            } else if (delta > 0) {
+                for (i in 1 until delta) {
+                    missing[(highestSeq + i) and 0xffff] = Missing(now)
+                    packetsLost++
+                }
+                while (missing.size > MAX_MISSING) {
+                    missing.remove(missing.keys.first())
+                    giveUp(1)
+                }
+                highestSeq = seq
+            } else if (missing.remove(seq) != null) {
+                packetsRecovered++
+            } else {
+                // Either we already received it, or we gave up on it.
+                return false
+            }
+            return true
+        }
+
+        private fun giveUp(numPackets: Int) {
+            packetsUnrecovered += numPackets
+        }
+
+        /**
+         * Returns the NACK to send for the missing packets (see
+         * [OctoNack.encode]), if any are due.
+         */
+        fun nackMissing(now: Long): Pair<ByteArray, Int>? {
+            if (missing.isEmpty()) {
+                return null
+            }
+            var toRequest: MutableList<Int>? = null
+            with(missing.entries.iterator()) {
+                while (hasNext()) {
+                    val (seq, packet) = next()
+                    if (now - packet.detectedMs > maxAgeMs) {
+                        remove()
+                        giveUp(1)
+                    } else if (packet.numRequests < maxNacksPerPacket &&
+                        (packet.numRequests == 0 || now - packet.lastRequestedMs >= nackIntervalMs)) {
+                        packet.numRequests++
+                        packet.lastRequestedMs = now
+                        toRequest = (toRequest ?: mutableListOf()).apply { add(seq) }
+                    }
+                }
+            }
+            return toRequest?.let {
+                nacksSent++
+                OctoNack.encode(ssrc, it, OCTO_HEADER_LENGTH)
+            }
+        }
+    }
+
+    companion object {
+        private const val RTP_HEADER_LENGTH = 12
+
+        /**
+         * Gaps larger than this are not requested.
+         */
+        private const val MAX_GAP = 100
+
+        /**
+         * The maximum number of missing packets to keep track of per SSRC.
+         */
+        private const val MAX_MISSING = 256
+    }
+}
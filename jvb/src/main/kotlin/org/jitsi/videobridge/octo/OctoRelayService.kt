@@ -24,7 +24,6 @@ import org.jitsi.videobridge.util.TaskPools
 import java.net.SocketAddress
 import java.net.SocketException
 import java.net.UnknownHostException
-import java.time.Instant
 
 /**
  * The service which is responsible for sending and receiving packets on the Octo link.  Only
@@ -72,8 +71,9 @@ class OctoRelayService {
 
         // Wire the data coming from the UdpTransport to the OctoTransport
         udpTransport.incomingDataHandler = object : UdpTransport.IncomingDataHandler {
-            override fun dataReceived(data: ByteArray, offset: Int, length: Int, receivedTime: Instant) {
-                bridgeOctoTransport.dataReceived(data, offset, length, receivedTime)
+            override fun dataReceived(data: ByteArray, offset: Int, length: Int, receivedTime: Long) {
+                bridgeOctoTransport.dataReceived(
+                    data, offset, length, udpTransport.nanoClock.toEpochMillis(receivedTime))
             }
         }
         // Wire the data going out of OctoTransport to UdpTransport
@@ -85,7 +85,7 @@ class OctoRelayService {
     }
 
     fun start() {
-        TaskPools.IO_POOL.submit { udpTransport.startReadingData() }
+        TaskPools.BLOCKING_POOL.submit { udpTransport.startReadingData() }
     }
 
     fun stop() {
@@ -0,0 +1,185 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.octo
+
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.videobridge.octo.OctoPacket.OCTO_HEADER_LENGTH
+import org.jitsi.videobridge.util.ByteBufferPool
+import java.time.Clock
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A bounded history of the video packets which a conference sends to the
+ * remote Octo bridges, from which we retransmit the packets that they report
+ * lost (see [OctoNackRequester]).  We keep the last [packetsPerSsrc] packets
+ * of each SSRC, and retransmit them for at most [maxAge].
+ */
+class OctoSendHistory @JvmOverloads constructor(
+    private val packetsPerSsrc: Int,
+    maxAge: Duration,
+    private val clock: Clock = Clock.systemUTC()
+) {
+    private val maxAgeMs = maxAge.toMillis()
+
+    private val histories: MutableMap<Long, SsrcHistory> = ConcurrentHashMap()
+
+    @Volatile
+    private var lastCleanupMs = clock.millis()
+
+    private val packetsStored = LongAdder()
+    private val nacksReceived = LongAdder()
+    private val invalidNacksReceived = LongAdder()
+    private val packetsRequested = LongAdder()
+    private val packetsRetransmitted = LongAdder()
+    private val packetsNotFound = LongAdder()
+
+    /**
+     * Adds a copy of the RTP packet in [buf] (with SSRC [ssrc] and sequence
+     * number [seq]), sent on behalf of the endpoint [sourceEpId].
+     */
+    fun add(ssrc: Long, seq: Int, buf: ByteArray, off: Int, len: Int, sourceEpId: String?) {
+        val now = clock.millis()
+        histories.computeIfAbsent(ssrc) { SsrcHistory(packetsPerSsrc) }.add(seq, buf, off, len, sourceEpId, now)
+        packetsStored.increment()
+
+        if (now - lastCleanupMs >= INACTIVE_MS) {
+            lastCleanupMs = now
+            removeInactive(now)
+        }
+    }
+
+    /**
+     * Handles a retransmission request received from a remote bridge (see
+     * [OctoNack]), by calling [retransmit] with each requested packet that we
+     * still have, and the ID of the endpoint it was sent on behalf of.
+     * [retransmit] doesn't own the buffer, but it may write an Octo header in
+     * the [OCTO_HEADER_LENGTH] bytes before the packet.
+     */
+    fun nackReceived(buf: ByteArray, off: Int, len: Int, retransmit: (ByteArray, Int, Int, String?) -> Unit) {
+        nacksReceived.increment()
+        val minTimeMs = clock.millis() - maxAgeMs
+        val valid = OctoNack.forEachRequested(buf, off, len) { ssrc, seq ->
+            packetsRequested.increment()
+            if (histories[ssrc]?.retransmit(seq, minTimeMs, retransmit) == true) {
+                packetsRetransmitted.increment()
+            } else {
+                packetsNotFound.increment()
+            }
+        }
+        if (!valid) {
+            invalidNacksReceived.increment()
+        }
+    }
+
+    private fun removeInactive(now: Long) {
+        with(histories.values.iterator()) {
+            while (hasNext()) {
+                val history = next()
+                if (now - history.lastAddedMs > INACTIVE_MS) {
+                    remove()
+                    history.clear()
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all packets and returns their buffers to the pool.
+     */
+    fun clear() {
+        histories.values.forEach { it.clear() }
+        histories.clear()
+    }
+
+    fun getStatsJson(): OrderedJsonObject = OrderedJsonObject().apply {
+        put("ssrcs", histories.size)
+        put("packets_stored", packetsStored.sum())
+        put("nacks_received", nacksReceived.sum())
+        put("invalid_nacks_received", invalidNacksReceived.sum())
+        put("packets_requested", packetsRequested.sum())
+        put("packets_retransmitted", packetsRetransmitted.sum())
+        // Requests go to all remote bridges, so this includes the packets of
+        // other bridges.
+        put("packets_not_found", packetsNotFound.sum())
+    }
+
+    /**
+     * The last packets of one SSRC, in slots indexed by sequence number.
+     */
+    private class SsrcHistory(private val size: Int) {
+        private val seqs = IntArray(size) { -1 }
+        private val bufs = arrayOfNulls<ByteArray>(size)
+        private val lengths = IntArray(size)
+        private val timesMs = LongArray(size)
+        private val sourceEpIds = arrayOfNulls<String>(size)
+        private var cleared = false
+
+        @Volatile
+        var lastAddedMs = 0L
+            private set
+
+        @Synchronized
+        fun add(seq: Int, buf: ByteArray, off: Int, len: Int, sourceEpId: String?, now: Long) {
+            if (cleared) {
+                return
+            }
+            val i = seq % size
+            var slot = bufs[i]
+            if (slot == null || slot.size < OCTO_HEADER_LENGTH + len) {
+                slot?.let { ByteBufferPool.returnBuffer(it) }
+                slot = ByteBufferPool.getBuffer(OCTO_HEADER_LENGTH + len)
+                bufs[i] = slot
+            }
+            System.arraycopy(buf, off, slot, OCTO_HEADER_LENGTH, len)
+            seqs[i] = seq
+            lengths[i] = len
+            timesMs[i] = now
+            sourceEpIds[i] = sourceEpId
+            lastAddedMs = now
+        }
+
+        @Synchronized
+        fun retransmit(seq: Int, minTimeMs: Long, retransmit: (ByteArray, Int, Int, String?) -> Unit): Boolean {
+            val i = seq % size
+            val buf = bufs[i]
+            if (buf == null || seqs[i] != seq || timesMs[i] < minTimeMs) {
+                return false
+            }
+            retransmit(buf, OCTO_HEADER_LENGTH, lengths[i], sourceEpIds[i])
+            return true
+        }
+
+        @Synchronized
+        fun clear() {
+            cleared = true
+            for (i in 0 until size) {
+                bufs[i]?.let { ByteBufferPool.returnBuffer(it) }
+                bufs[i] = null
+                seqs[i] = -1
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * The histories of SSRCs without packets for this long are removed.
+         */
+        private const val INACTIVE_MS = 10_000L
+    }
+}
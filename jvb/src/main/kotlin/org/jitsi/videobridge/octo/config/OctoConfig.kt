@@ -21,6 +21,7 @@ import org.jitsi.metaconfig.ConfigException
 import org.jitsi.metaconfig.config
 import org.jitsi.metaconfig.from
 import org.jitsi.metaconfig.optionalconfig
+import java.time.Duration
 
 class OctoConfig {
     val recvQueueSize: Int by config("videobridge.octo.recv-queue-size".from(JitsiConfig.newConfig))
@@ -78,6 +79,41 @@ class OctoConfig {
         "bindAddress" { bindAddress }
     }
 
+    /**
+     * Whether to retransmit video packets lost on the links between bridges.
+     */
+    val retransmissionsEnabled: Boolean by config(
+        "videobridge.octo.retransmissions.enabled".from(JitsiConfig.newConfig)
+    )
+
+    /**
+     * The number of packets per SSRC to keep for retransmission.
+     */
+    val retransmissionHistorySize: Int by config(
+        "videobridge.octo.retransmissions.history-size".from(JitsiConfig.newConfig)
+    )
+
+    /**
+     * For how long a lost packet is worth retransmitting.
+     */
+    val retransmissionMaxAge: Duration by config(
+        "videobridge.octo.retransmissions.max-age".from(JitsiConfig.newConfig)
+    )
+
+    /**
+     * How long to wait before requesting a lost packet again.
+     */
+    val nackInterval: Duration by config(
+        "videobridge.octo.retransmissions.nack-interval".from(JitsiConfig.newConfig)
+    )
+
+    /**
+     * The maximum number of times to request a lost packet.
+     */
+    val maxNacksPerPacket: Int by config(
+        "videobridge.octo.retransmissions.max-nacks-per-packet".from(JitsiConfig.newConfig)
+    )
+
     companion object {
         @JvmField
         val config = OctoConfig()
@@ -0,0 +1,52 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.sctp
+
+/**
+ * The CRC32c (Castagnoli) checksum used by SCTP (RFC 4960 Appendix B).  We
+ * target Java 8, which doesn't have java.util.zip.CRC32C.
+ */
+internal object Crc32c {
+    private const val POLYNOMIAL = 0x82F63B78.toInt()
+
+    private val table = IntArray(256) { n ->
+        var crc = n
+        repeat(8) {
+            crc = if (crc and 1 != 0) (crc ushr 1) xor POLYNOMIAL else crc ushr 1
+        }
+        crc
+    }
+
+    /**
+     * Computes the checksum of an SCTP packet, treating the checksum field
+     * (bytes 8 to 11 of the common header) as zero.
+     */
+    fun ofSctpPacket(buf: ByteArray, off: Int, len: Int): Int {
+        var crc = update(-1, buf, off, 8)
+        repeat(4) { crc = table[crc and 0xff] xor (crc ushr 8) }
+        crc = update(crc, buf, off + 12, len - 12)
+        return crc.inv()
+    }
+
+    private fun update(initial: Int, buf: ByteArray, off: Int, len: Int): Int {
+        var crc = initial
+        for (i in off until off + len) {
+            crc = table[(crc xor buf[i].toInt()) and 0xff] xor (crc ushr 8)
+        }
+        return crc
+    }
+}
@@ -0,0 +1,1012 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.sctp
+
+import org.jitsi.nlj.PacketInfo
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.utils.logging2.Logger
+import org.jitsi.utils.logging2.createChildLogger
+import org.jitsi.videobridge.util.ByteBufferPool
+import org.jitsi_modified.sctp4j.SctpDataSender
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.security.SecureRandom
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.ArrayDeque
+import java.util.TreeMap
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * A pure-Java SCTP association (RFC 4960), implementing the subset which
+ * WebRTC data channels need, as an alternative to the native usrsctp stack
+ * used by [SctpManager].
+ *
+ * It supports both roles of the handshake (with a cookie which is kept in
+ * memory rather than signed, since there is one association per endpoint
+ * anyway), reliable ordered and unordered messages with fragmentation and
+ * reassembly, SACKs with gap blocks, fast retransmit and retransmission
+ * timeouts with RFC 4960 congestion control, and heartbeats from the peer.
+ * It doesn't support partial reliability, stream reconfiguration or
+ * multi-homing, none of which we advertise in the INIT.
+ *
+ * Outgoing packets are serialized directly into buffers from the
+ * [ByteBufferPool], which are handed to the [SctpDataSender], and the
+ * buffers of incoming packets are returned to the pool once they are
+ * processed.  Timers run on a shared [ScheduledExecutorService] and are
+ * only scheduled while there is something to retransmit.
+ */
+class SctpAssociation @JvmOverloads constructor(
+    private val dataSender: SctpDataSender,
+    private val listener: Listener,
+    private val scheduler: ScheduledExecutorService,
+    parentLogger: Logger,
+    private val clock: Clock = Clock.systemUTC(),
+    private val localPort: Int = DEFAULT_PORT,
+    private val remotePort: Int = DEFAULT_PORT
+) {
+    private val logger = createChildLogger(parentLogger)
+
+    private var state = State.CLOSED
+
+    private val localTag = randomNonZeroInt()
+    private var peerTag = 0
+
+    /**
+     * The cookie which we send in our INIT-ACK, and expect back in a
+     * COOKIE-ECHO.
+     */
+    private val cookie = ByteArray(COOKIE_LENGTH).also { random.nextBytes(it) }
+
+    /**
+     * The cookie which the peer sent in its INIT-ACK, if we initiated the
+     * association.
+     */
+    private var peerCookie: ByteArray? = null
+
+    /**
+     * Retransmissions of the INIT or COOKIE-ECHO.
+     */
+    private var t1Retransmissions = 0
+    private var t1Generation = 0
+
+    /* Sending */
+
+    private val initialTsn = random.nextInt().toLong() and 0xffffffffL
+    private var nextTsn = initialTsn
+
+    /**
+     * The highest TSN for which the peer acknowledged all earlier TSNs.
+     */
+    private var cumulativeAckTsn = initialTsn - 1
+
+    /**
+     * The next stream sequence number of each outgoing stream.
+     */
+    private var nextSsn = IntArray(16)
+
+    /**
+     * The chunks which were queued for sending and not acknowledged yet, in
+     * TSN order.
+     */
+    private val outstanding = ArrayDeque<OutboundChunk>()
+    private var queuedBytes = 0
+    private var flightSize = 0
+    private var peerRwnd = 0L
+    private var cwnd = INITIAL_CWND
+    private var ssthresh = Int.MAX_VALUE
+    private var partialBytesAcked = 0
+
+    private var rtoMs = RTO_INITIAL_MS
+    private var srttMs = -1.0
+    private var rttvarMs = 0.0
+    private var t3Running = false
+    private var t3Generation = 0
+
+    /* Receiving */
+
+    /**
+     * The highest TSN received from the peer for which all earlier TSNs were
+     * received too, unwrapped into a long.
+     */
+    private var peerCumulativeTsn = 0L
+    private val receivedOutOfOrder = TreeMap<Long, InboundChunk>()
+    private var outOfOrderBytes = 0
+    private val reassembly = ArrayList<InboundChunk>()
+
+    /* Statistics */
+
+    private var packetsSent = 0L
+    private var packetsReceived = 0L
+    private var messagesSent = 0L
+    private var messagesReceived = 0L
+    private var retransmissions = 0L
+    private var fastRetransmissions = 0L
+    private var timeouts = 0L
+    private var checksumErrors = 0L
+    private var duplicateTsns = 0L
+
+    /**
+     * Starts the association as the initiator, by sending an INIT.  The
+     * bridge normally waits for the INIT of the remote peer instead.
+     */
+    fun connect() {
+        synchronized(this) {
+            if (state != State.CLOSED) {
+                return
+            }
+            state = State.COOKIE_WAIT
+            sendInit()
+            startT1()
+        }
+    }
+
+    /**
+     * Processes an incoming SCTP packet and returns its buffer to the
+     * [ByteBufferPool].
+     */
+    fun handleIncomingSctp(packetInfo: PacketInfo) {
+        val packet = packetInfo.packet
+        try {
+            handleIncomingSctp(packet.buffer, packet.offset, packet.length)
+        } finally {
+            ByteBufferPool.returnBuffer(packet.buffer)
+        }
+    }
+
+    /**
+     * Processes an incoming SCTP packet.  The buffer is not retained.
+     */
+    fun handleIncomingSctp(buf: ByteArray, off: Int, len: Int) {
+        val events = Events()
+        synchronized(this) {
+            processPacket(buf, off, len, events)
+        }
+        events.dispatch()
+    }
+
+    /**
+     * Queues a message for sending.
+     *
+     * @return the number of bytes queued, or -1 if the association is not
+     * established or too much data is already queued.
+     */
+    fun send(data: ByteBuffer, ordered: Boolean, sid: Int, ppid: Int): Int {
+        synchronized(this) {
+            val length = data.remaining()
+            if (state != State.ESTABLISHED || queuedBytes + length > MAX_QUEUED_BYTES || sid > MAX_STREAM_ID) {
+                return -1
+            }
+
+            val ssn = if (ordered) nextSsn(sid) else 0
+            val source = data.duplicate()
+            var fragmentOffset = 0
+            do {
+                val fragmentLength = minOf(MAX_DATA_PAYLOAD, length - fragmentOffset)
+                val payload = ByteArray(fragmentLength)
+                source.get(payload)
+
+                var flags = 0
+                if (!ordered) flags = flags or DATA_FLAG_UNORDERED
+                if (fragmentOffset == 0) flags = flags or DATA_FLAG_BEGIN
+                if (fragmentOffset + fragmentLength == length) flags = flags or DATA_FLAG_END
+
+                outstanding.add(OutboundChunk(nextTsn++, sid, ssn, ppid, flags, payload))
+                queuedBytes += fragmentLength
+                fragmentOffset += fragmentLength
+            } while (fragmentOffset < length)
+
+            messagesSent++
+            transmit(sack = false)
+            return length
+        }
+    }
+
+    /**
+     * Aborts the association.
+     */
+    fun close() {
+        val events = Events()
+        synchronized(this) {
+            if (state == State.CLOSED) {
+                return
+            }
+            if (peerTag != 0) {
+                sendControlChunk(CHUNK_ABORT, 0, EMPTY)
+            }
+            closed(events)
+        }
+        events.dispatch()
+    }
+
+    @Synchronized
+    fun isReady(): Boolean = state == State.ESTABLISHED
+
+    @Synchronized
+    fun getDebugState(): OrderedJsonObject = OrderedJsonObject().apply {
+        put("state", state.toString())
+        put("packets_sent", packetsSent)
+        put("packets_received", packetsReceived)
+        put("messages_sent", messagesSent)
+        put("messages_received", messagesReceived)
+        put("retransmissions", retransmissions)
+        put("fast_retransmissions", fastRetransmissions)
+        put("timeouts", timeouts)
+        put("checksum_errors", checksumErrors)
+        put("duplicate_tsns", duplicateTsns)
+        put("queued_bytes", queuedBytes)
+        put("flight_size", flightSize)
+        put("cwnd", cwnd)
+        put("peer_rwnd", peerRwnd)
+        put("rto_ms", rtoMs)
+    }
+
+    private fun processPacket(buf: ByteArray, off: Int, len: Int, events: Events) {
+        if (len < COMMON_HEADER_LENGTH + CHUNK_HEADER_LENGTH) {
+            return
+        }
+        if (Crc32c.ofSctpPacket(buf, off, len) != readIntLE(buf, off + 8)) {
+            checksumErrors++
+            return
+        }
+        packetsReceived++
+
+        val verificationTag = readInt(buf, off + 4)
+        val firstType = buf[off + COMMON_HEADER_LENGTH].toInt() and 0xff
+        val firstFlags = buf[off + COMMON_HEADER_LENGTH + 1].toInt() and 0xff
+        val expectedTag = when {
+            firstType == CHUNK_INIT -> 0
+            (firstType == CHUNK_ABORT || firstType == CHUNK_SHUTDOWN_COMPLETE) && firstFlags and 1 != 0 -> peerTag
+            else -> localTag
+        }
+        if (verificationTag != expectedTag) {
+            logger.debug { "Dropping a packet with an unexpected verification tag" }
+            return
+        }
+
+        var needSack = false
+        var pos = off + COMMON_HEADER_LENGTH
+        val end = off + len
+        chunks@ while (pos + CHUNK_HEADER_LENGTH <= end) {
+            val type = buf[pos].toInt() and 0xff
+            val flags = buf[pos + 1].toInt() and 0xff
+            val chunkLength = readShort(buf, pos + 2)
+            if (chunkLength < CHUNK_HEADER_LENGTH || pos + chunkLength > end) {
+                break
+            }
+            val valueOff = pos + CHUNK_HEADER_LENGTH
+            val valueLen = chunkLength - CHUNK_HEADER_LENGTH
+
+            when (type) {
+                CHUNK_DATA -> if (state == State.ESTABLISHED && valueLen > DATA_HEADER_LENGTH) {
+                    handleData(buf, valueOff, valueLen, flags, events)
+                    needSack = true
+                }
+                CHUNK_INIT -> handleInit(buf, valueOff, valueLen)
+                CHUNK_INIT_ACK -> handleInitAck(buf, valueOff, valueLen)
+                CHUNK_COOKIE_ECHO -> handleCookieEcho(buf, valueOff, valueLen, events)
+                CHUNK_COOKIE_ACK -> if (state == State.COOKIE_ECHOED) established(events)
+                CHUNK_SACK -> if (state == State.ESTABLISHED) handleSack(buf, valueOff, valueLen)
+                CHUNK_HEARTBEAT -> sendControlChunk(CHUNK_HEARTBEAT_ACK, 0, buf.copyOfRange(valueOff, valueOff + valueLen))
+                CHUNK_ABORT -> {
+                    logger.info("The remote peer aborted the SCTP association")
+                    closed(events)
+                    return
+                }
+                CHUNK_SHUTDOWN -> {
+                    sendControlChunk(CHUNK_SHUTDOWN_ACK, 0, EMPTY)
+                    closed(events)
+                    return
+                }
+                CHUNK_SHUTDOWN_ACK -> {
+                    sendControlChunk(CHUNK_SHUTDOWN_COMPLETE, 0, EMPTY)
+                    closed(events)
+                    return
+                }
+                CHUNK_SHUTDOWN_COMPLETE -> {
+                    closed(events)
+                    return
+                }
+                CHUNK_HEARTBEAT_ACK, CHUNK_ERROR -> Unit
+                // The two high bits of the type say whether to skip an
+                // unrecognized chunk or to stop processing the packet.
+                else -> if (type and 0x80 == 0) break@chunks
+            }
+            pos += padded(chunkLength)
+        }
+
+        if (needSack || state == State.ESTABLISHED && outstanding.isNotEmpty()) {
+            transmit(sack = needSack)
+        }
+    }
+
+    private fun handleInit(buf: ByteArray, off: Int, len: Int) {
+        if (len < INIT_LENGTH) {
+            return
+        }
+        if (state == State.ESTABLISHED) {
+            // A restart would mean a new DTLS session, and therefore a new
+            // endpoint.
+            logger.info("Ignoring an INIT for an established association")
+            return
+        }
+        val initiateTag = readInt(buf, off)
+        if (initiateTag == 0) {
+            return
+        }
+        setPeerParameters(initiateTag, buf, off)
+
+        // We reply with the same parameters regardless of our state, which
+        // also handles an INIT collision (RFC 4960 5.2.1).
+        val initAck = ByteArray(INIT_LENGTH + padded(PARAMETER_HEADER_LENGTH + COOKIE_LENGTH))
+        writeInitParameters(initAck)
+        writeShort(initAck, INIT_LENGTH, PARAMETER_STATE_COOKIE)
+        writeShort(initAck, INIT_LENGTH + 2, PARAMETER_HEADER_LENGTH + COOKIE_LENGTH)
+        System.arraycopy(cookie, 0, initAck, INIT_LENGTH + PARAMETER_HEADER_LENGTH, COOKIE_LENGTH)
+        sendControlChunk(CHUNK_INIT_ACK, 0, initAck)
+    }
+
+    private fun handleInitAck(buf: ByteArray, off: Int, len: Int) {
+        if (state != State.COOKIE_WAIT || len < INIT_LENGTH) {
+            return
+        }
+        val initiateTag = readInt(buf, off)
+        var paramPos = off + INIT_LENGTH
+        var stateCookie: ByteArray? = null
+        while (paramPos + PARAMETER_HEADER_LENGTH <= off + len) {
+            val paramType = readShort(buf, paramPos)
+            val paramLength = readShort(buf, paramPos + 2)
+            if (paramLength < PARAMETER_HEADER_LENGTH || paramPos + paramLength > off + len) {
+                break
+            }
+            if (paramType == PARAMETER_STATE_COOKIE) {
+                stateCookie = buf.copyOfRange(paramPos + PARAMETER_HEADER_LENGTH, paramPos + paramLength)
+            }
+            paramPos += padded(paramLength)
+        }
+        if (initiateTag == 0 || stateCookie == null) {
+            return
+        }
+
+        setPeerParameters(initiateTag, buf, off)
+        peerCookie = stateCookie
+        state = State.COOKIE_ECHOED
+        sendControlChunk(CHUNK_COOKIE_ECHO, 0, stateCookie)
+        startT1()
+    }
+
+    private fun handleCookieEcho(buf: ByteArray, off: Int, len: Int, events: Events) {
+        if (len != COOKIE_LENGTH || peerTag == 0 ||
+            !MessageDigest.isEqual(cookie, buf.copyOfRange(off, off + len))
+        ) {
+            logger.debug { "Ignoring a COOKIE-ECHO with an invalid cookie" }
+            return
+        }
+        sendControlChunk(CHUNK_COOKIE_ACK, 0, EMPTY)
+        if (state != State.ESTABLISHED) {
+            established(events)
+        }
+    }
+
+    private fun setPeerParameters(initiateTag: Int, buf: ByteArray, off: Int) {
+        peerTag = initiateTag
+        peerRwnd = readInt(buf, off + 4).toLong() and 0xffffffffL
+        peerCumulativeTsn = (readInt(buf, off + 12).toLong() and 0xffffffffL) - 1
+    }
+
+    private fun established(events: Events) {
+        state = State.ESTABLISHED
+        t1Generation++
+        peerCookie = null
+        logger.info("SCTP association established")
+        events.ready = true
+    }
+
+    private fun closed(events: Events) {
+        if (state == State.CLOSED) {
+            return
+        }
+        state = State.CLOSED
+        t1Generation++
+        t3Generation++
+        t3Running = false
+        outstanding.clear()
+        receivedOutOfOrder.clear()
+        reassembly.clear()
+        queuedBytes = 0
+        flightSize = 0
+        events.disconnected = true
+    }
+
+    private fun handleData(buf: ByteArray, off: Int, len: Int, flags: Int, events: Events) {
+        val tsn = unwrap(peerCumulativeTsn, readInt(buf, off))
+        if (tsn <= peerCumulativeTsn || receivedOutOfOrder.containsKey(tsn)) {
+            duplicateTsns++
+            return
+        }
+        val payloadLength = len - DATA_HEADER_LENGTH
+        if (tsn != peerCumulativeTsn + 1 &&
+            (outOfOrderBytes + payloadLength > RECEIVE_WINDOW || tsn - peerCumulativeTsn > 0xffff)
+        ) {
+            // Beyond our advertised window (or too far ahead to be reported
+            // in a gap block).
+            return
+        }
+
+        val chunk = InboundChunk(
+            readShort(buf, off + 4),
+            readInt(buf, off + 8),
+            flags,
+            buf.copyOfRange(off + DATA_HEADER_LENGTH, off + len)
+        )
+        if (tsn != peerCumulativeTsn + 1) {
+            receivedOutOfOrder[tsn] = chunk
+            outOfOrderBytes += payloadLength
+            return
+        }
+
+        peerCumulativeTsn = tsn
+        deliver(chunk, events)
+        while (true) {
+            val next = receivedOutOfOrder.remove(peerCumulativeTsn + 1) ?: break
+            outOfOrderBytes -= next.payload.size
+            peerCumulativeTsn++
+            deliver(next, events)
+        }
+    }
+
+    /**
+     * Delivers chunks in TSN order.  The fragments of a message have
+     * consecutive TSNs, so delivering in TSN order also keeps the messages
+     * of each ordered stream in order.
+     */
+    private fun deliver(chunk: InboundChunk, events: Events) {
+        if (chunk.flags and DATA_FLAG_BEGIN != 0) {
+            reassembly.clear()
+        } else if (reassembly.isEmpty()) {
+            // We missed the beginning of the message (which can't happen
+            // with reliable delivery, unless the peer misbehaves).
+            return
+        }
+        reassembly.add(chunk)
+        if (chunk.flags and DATA_FLAG_END == 0) {
+            return
+        }
+
+        val message = if (reassembly.size == 1) {
+            chunk.payload
+        } else {
+            ByteArray(reassembly.sumBy { it.payload.size }).also { message ->
+                var pos = 0
+                reassembly.forEach {
+                    System.arraycopy(it.payload, 0, message, pos, it.payload.size)
+                    pos += it.payload.size
+                }
+            }
+        }
+        reassembly.clear()
+        messagesReceived++
+        events.messages.add(ReceivedMessage(message, chunk.sid, chunk.ppid))
+    }
+
+    private fun handleSack(buf: ByteArray, off: Int, len: Int) {
+        if (len < SACK_LENGTH) {
+            return
+        }
+        val cumulativeAck = unwrap(cumulativeAckTsn, readInt(buf, off))
+        if (cumulativeAck < cumulativeAckTsn) {
+            // An old SACK, received out of order.
+            return
+        }
+        val advertisedRwnd = readInt(buf, off + 4).toLong() and 0xffffffffL
+        val numGapBlocks = readShort(buf, off + 8)
+
+        var bytesAcked = 0
+        var rttMeasured = false
+        val now = clock.instant()
+        while (outstanding.isNotEmpty() && outstanding.peekFirst().tsn <= cumulativeAck) {
+            val chunk = outstanding.pollFirst()
+            if (!chunk.gapAcked && chunk.inFlight) {
+                flightSize -= chunk.payload.size
+            }
+            if (!chunk.gapAcked) {
+                bytesAcked += chunk.payload.size
+            }
+            queuedBytes -= chunk.payload.size
+            if (!rttMeasured && chunk.transmissions == 1 && chunk.sentTime != null) {
+                updateRto(Duration.between(chunk.sentTime, now).toMillis())
+                rttMeasured = true
+            }
+        }
+        val cumulativeAckAdvanced = cumulativeAck > cumulativeAckTsn
+        cumulativeAckTsn = cumulativeAck
+
+        // Gap blocks: mark the chunks which the peer received out of order,
+        // and count a miss for each chunk before the highest one.
+        var highestGapAcked = cumulativeAck
+        for (i in 0 until numGapBlocks) {
+            val blockOff = off + SACK_LENGTH + i * 4
+            if (blockOff + 4 > off + len) {
+                break
+            }
+            val start = cumulativeAck + readShort(buf, blockOff)
+            val end = cumulativeAck + readShort(buf, blockOff + 2)
+            for (chunk in outstanding) {
+                if (chunk.tsn > end) {
+                    break
+                }
+                if (chunk.tsn >= start && !chunk.gapAcked) {
+                    chunk.gapAcked = true
+                    if (chunk.inFlight) {
+                        flightSize -= chunk.payload.size
+                        chunk.inFlight = false
+                    }
+                    bytesAcked += chunk.payload.size
+                }
+            }
+            highestGapAcked = maxOf(highestGapAcked, end)
+        }
+        var fastRetransmit = false
+        for (chunk in outstanding) {
+            if (chunk.tsn >= highestGapAcked) {
+                break
+            }
+            if (!chunk.gapAcked && chunk.inFlight && ++chunk.misses == FAST_RETRANSMIT_MISSES) {
+                chunk.inFlight = false
+                chunk.retransmit = true
+                flightSize -= chunk.payload.size
+                fastRetransmit = true
+                fastRetransmissions++
+            }
+        }
+
+        if (fastRetransmit) {
+            ssthresh = maxOf(cwnd / 2, 4 * MTU)
+            cwnd = ssthresh
+            partialBytesAcked = 0
+        } else if (cumulativeAckAdvanced) {
+            if (cwnd <= ssthresh) {
+                cwnd += minOf(bytesAcked, MTU)
+            } else {
+                partialBytesAcked += bytesAcked
+                if (partialBytesAcked >= cwnd) {
+                    partialBytesAcked -= cwnd
+                    cwnd += MTU
+                }
+            }
+        }
+
+        peerRwnd = maxOf(0L, advertisedRwnd - flightSize)
+
+        if (outstanding.none { it.inFlight }) {
+            t3Running = false
+            t3Generation++
+        } else if (cumulativeAckAdvanced) {
+            startT3()
+        }
+    }
+
+    private fun updateRto(rttMs: Long) {
+        if (srttMs < 0) {
+            srttMs = rttMs.toDouble()
+            rttvarMs = rttMs / 2.0
+        } else {
+            rttvarMs = 0.75 * rttvarMs + 0.25 * Math.abs(srttMs - rttMs)
+            srttMs = 0.875 * srttMs + 0.125 * rttMs
+        }
+        rtoMs = (srttMs + 4 * rttvarMs).toLong().coerceIn(RTO_MIN_MS, RTO_MAX_MS)
+    }
+
+    /**
+     * Sends the chunks which need to be (re)transmitted and fit in the
+     * congestion and receive windows, bundled into as few packets as
+     * possible, preceded by a SACK if [sack] is set.
+     */
+    private fun transmit(sack: Boolean) {
+        var needSack = sack
+        while (true) {
+            val buf = ByteBufferPool.getBuffer(MTU)
+            var pos = COMMON_HEADER_LENGTH
+            if (needSack) {
+                pos = writeSack(buf, pos)
+                needSack = false
+            }
+            val dataStart = pos
+            // Retransmissions first, then new chunks.
+            pos = writeChunks(buf, pos, onlyRetransmissions = true)
+            pos = writeChunks(buf, pos, onlyRetransmissions = false)
+
+            if (pos == COMMON_HEADER_LENGTH) {
+                ByteBufferPool.returnBuffer(buf)
+                return
+            }
+            sendPacket(buf, pos)
+            if (pos == dataStart) {
+                return
+            }
+            if (!t3Running) {
+                startT3()
+            }
+        }
+    }
+
+    /**
+     * Writes the chunks which are waiting for a retransmission (or else the
+     * new chunks) into [buf], as long as they fit in the packet and the windows.
+     *
+     * @return the position after the last chunk written.
+     */
+    private fun writeChunks(buf: ByteArray, start: Int, onlyRetransmissions: Boolean): Int {
+        var pos = start
+        val now = clock.instant()
+        for (chunk in outstanding) {
+            if (chunk.gapAcked || chunk.inFlight) {
+                continue
+            }
+            if (chunk.retransmit != onlyRetransmissions) {
+                if (onlyRetransmissions) continue else break
+            }
+            if (pos + padded(DATA_CHUNK_HEADER_LENGTH + chunk.payload.size) > MTU) {
+                break
+            }
+            // Always allow one packet to be in flight, so that we probe a
+            // closed window.
+            if (flightSize > 0 && (flightSize + chunk.payload.size > cwnd || chunk.payload.size > peerRwnd)) {
+                break
+            }
+            pos = writeData(buf, pos, chunk)
+            if (chunk.transmissions > 0) {
+                retransmissions++
+            }
+            chunk.transmissions++
+            chunk.retransmit = false
+            chunk.inFlight = true
+            chunk.misses = 0
+            chunk.sentTime = now
+            flightSize += chunk.payload.size
+            peerRwnd = maxOf(0L, peerRwnd - chunk.payload.size)
+        }
+        return pos
+    }
+
+    private fun startT3() {
+        t3Running = true
+        val generation = ++t3Generation
+        scheduler.schedule(Runnable { onT3Expired(generation) }, rtoMs, TimeUnit.MILLISECONDS)
+    }
+
+    private fun onT3Expired(generation: Int) {
+        synchronized(this) {
+            if (generation != t3Generation || state != State.ESTABLISHED) {
+                return
+            }
+            timeouts++
+            t3Running = false
+            rtoMs = minOf(rtoMs * 2, RTO_MAX_MS)
+            ssthresh = maxOf(cwnd / 2, 4 * MTU)
+            cwnd = MTU
+            partialBytesAcked = 0
+            outstanding.forEach {
+                if (it.inFlight) {
+                    it.inFlight = false
+                    it.retransmit = true
+                }
+            }
+            flightSize = 0
+            transmit(sack = false)
+        }
+    }
+
+    private fun startT1() {
+        t1Retransmissions = 0
+        scheduleT1(++t1Generation, RTO_INITIAL_MS)
+    }
+
+    private fun scheduleT1(generation: Int, delayMs: Long) {
+        scheduler.schedule(Runnable { onT1Expired(generation, delayMs) }, delayMs, TimeUnit.MILLISECONDS)
+    }
+
+    private fun onT1Expired(generation: Int, delayMs: Long) {
+        val events = Events()
+        synchronized(this) {
+            if (generation != t1Generation) {
+                return
+            }
+            if (++t1Retransmissions > MAX_INIT_RETRANSMISSIONS) {
+                logger.warn("SCTP association timed out during the handshake")
+                closed(events)
+            } else {
+                when (state) {
+                    State.COOKIE_WAIT -> sendInit()
+                    State.COOKIE_ECHOED -> peerCookie?.let { sendControlChunk(CHUNK_COOKIE_ECHO, 0, it) }
+                    else -> return
+                }
+                scheduleT1(generation, minOf(delayMs * 2, RTO_MAX_MS))
+            }
+        }
+        events.dispatch()
+    }
+
+    private fun sendInit() {
+        val init = ByteArray(INIT_LENGTH)
+        writeInitParameters(init)
+        sendControlChunk(CHUNK_INIT, 0, init, verificationTag = 0)
+    }
+
+    private fun writeInitParameters(buf: ByteArray) {
+        writeInt(buf, 0, localTag)
+        writeInt(buf, 4, RECEIVE_WINDOW)
+        writeShort(buf, 8, MAX_STREAM_ID + 1)
+        writeShort(buf, 10, MAX_STREAM_ID + 1)
+        writeInt(buf, 12, initialTsn.toInt())
+    }
+
+    private fun sendControlChunk(type: Int, flags: Int, value: ByteArray, verificationTag: Int = peerTag) {
+        val length = CHUNK_HEADER_LENGTH + value.size
+        val buf = ByteBufferPool.getBuffer(COMMON_HEADER_LENGTH + padded(length))
+        var pos = COMMON_HEADER_LENGTH
+        buf[pos] = type.toByte()
+        buf[pos + 1] = flags.toByte()
+        writeShort(buf, pos + 2, length)
+        System.arraycopy(value, 0, buf, pos + CHUNK_HEADER_LENGTH, value.size)
+        pos += length
+        while (pos % 4 != 0) {
+            buf[pos++] = 0
+        }
+        sendPacket(buf, pos, verificationTag)
+    }
+
+    private fun writeSack(buf: ByteArray, start: Int): Int {
+        // Gap blocks, as offsets from the cumulative TSN, limited to what
+        // fits in a packet along with some data.
+        var numGapBlocks = 0
+        var pos = start + CHUNK_HEADER_LENGTH + SACK_LENGTH
+        var blockStart = NO_BLOCK
+        var blockEnd = NO_BLOCK
+        for (tsn in receivedOutOfOrder.keys) {
+            if (blockStart != NO_BLOCK && tsn == blockEnd + 1) {
+                blockEnd = tsn
+                continue
+            }
+            if (blockStart != NO_BLOCK) {
+                if (numGapBlocks == MAX_GAP_BLOCKS) break
+                pos = writeGapBlock(buf, pos, blockStart, blockEnd)
+                numGapBlocks++
+            }
+            blockStart = tsn
+            blockEnd = tsn
+        }
+        if (blockStart != NO_BLOCK && numGapBlocks < MAX_GAP_BLOCKS) {
+            pos = writeGapBlock(buf, pos, blockStart, blockEnd)
+            numGapBlocks++
+        }
+
+        buf[start] = CHUNK_SACK.toByte()
+        buf[start + 1] = 0
+        writeShort(buf, start + 2, pos - start)
+        writeInt(buf, start + 4, peerCumulativeTsn.toInt())
+        writeInt(buf, start + 8, maxOf(0, RECEIVE_WINDOW - outOfOrderBytes))
+        writeShort(buf, start + 12, numGapBlocks)
+        writeShort(buf, start + 14, 0)
+        return pos
+    }
+
+    private fun writeGapBlock(buf: ByteArray, pos: Int, start: Long, end: Long): Int {
+        writeShort(buf, pos, (start - peerCumulativeTsn).toInt())
+        writeShort(buf, pos + 2, (end - peerCumulativeTsn).toInt())
+        return pos + 4
+    }
+
+    private fun writeData(buf: ByteArray, start: Int, chunk: OutboundChunk): Int {
+        val length = DATA_CHUNK_HEADER_LENGTH + chunk.payload.size
+        buf[start] = CHUNK_DATA.toByte()
+        buf[start + 1] = chunk.flags.toByte()
+        writeShort(buf, start + 2, length)
+        writeInt(buf, start + 4, chunk.tsn.toInt())
+        writeShort(buf, start + 8, chunk.sid)
+        writeShort(buf, start + 10, chunk.ssn)
+        writeInt(buf, start + 12, chunk.ppid)
+        System.arraycopy(chunk.payload, 0, buf, start + DATA_CHUNK_HEADER_LENGTH, chunk.payload.size)
+        var pos = start + length
+        while (pos % 4 != 0) {
+            buf[pos++] = 0
+        }
+        return pos
+    }
+
+    /**
+     * Fills in the common header of the packet in [buf] and sends it.  The
+     * ownership of [buf] passes to the [dataSender].
+     */
+    private fun sendPacket(buf: ByteArray, length: Int, verificationTag: Int = peerTag) {
+        writeShort(buf, 0, localPort)
+        writeShort(buf, 2, remotePort)
+        writeInt(buf, 4, verificationTag)
+        writeIntLE(buf, 8, Crc32c.ofSctpPacket(buf, 0, length))
+        packetsSent++
+        dataSender.send(buf, 0, length)
+    }
+
+    private fun nextSsn(sid: Int): Int {
+        if (sid >= nextSsn.size) {
+            nextSsn = nextSsn.copyOf(maxOf(sid + 1, nextSsn.size * 2))
+        }
+        return nextSsn[sid].also { nextSsn[sid] = (it + 1) and 0xffff }
+    }
+
+    /**
+     * The listener calls which result from processing a packet, which are
+     * made after releasing the lock.
+     */
+    private inner class Events {
+        var ready = false
+        var disconnected = false
+        val messages = ArrayList<ReceivedMessage>(1)
+
+        fun dispatch() {
+            if (ready) listener.onReady()
+            messages.forEach { listener.onData(it.data, it.sid, it.ppid) }
+            if (disconnected) listener.onDisconnected()
+        }
+    }
+
+    private class ReceivedMessage(val data: ByteArray, val sid: Int, val ppid: Int)
+
+    private class InboundChunk(val sid: Int, val ppid: Int, val flags: Int, val payload: ByteArray)
+
+    private class OutboundChunk(
+        val tsn: Long,
+        val sid: Int,
+        val ssn: Int,
+        val ppid: Int,
+        val flags: Int,
+        val payload: ByteArray
+    ) {
+        var transmissions = 0
+        var sentTime: Instant? = null
+        var inFlight = false
+        var retransmit = false
+        var gapAcked = false
+        var misses = 0
+    }
+
+    private enum class State {
+        CLOSED,
+        COOKIE_WAIT,
+        COOKIE_ECHOED,
+        ESTABLISHED
+    }
+
+    interface Listener {
+        /**
+         * The association was established.
+         */
+        fun onReady()
+
+        /**
+         * A message was received.
+         */
+        fun onData(data: ByteArray, sid: Int, ppid: Int)
+
+        /**
+         * The association was closed (by either side) or timed out.
+         */
+        fun onDisconnected()
+    }
+
+    companion object {
+        /**
+         * We hard-code 5000 in the offer.
+         */
+        const val DEFAULT_PORT = 5000
+
+        /**
+         * The maximum size of the SCTP packets that we send, which leaves
+         * room for the DTLS, UDP and IP overhead.
+         */
+        const val MTU = 1200
+
+        private const val COMMON_HEADER_LENGTH = 12
+        private const val CHUNK_HEADER_LENGTH = 4
+        private const val PARAMETER_HEADER_LENGTH = 4
+        private const val INIT_LENGTH = 16
+        private const val SACK_LENGTH = 12
+        private const val DATA_HEADER_LENGTH = 12
+        private const val DATA_CHUNK_HEADER_LENGTH = CHUNK_HEADER_LENGTH + DATA_HEADER_LENGTH
+        private const val MAX_DATA_PAYLOAD = MTU - COMMON_HEADER_LENGTH - DATA_CHUNK_HEADER_LENGTH
+        private const val COOKIE_LENGTH = 16
+
+        private const val CHUNK_DATA = 0
+        private const val CHUNK_INIT = 1
+        private const val CHUNK_INIT_ACK = 2
+        private const val CHUNK_SACK = 3
+        private const val CHUNK_HEARTBEAT = 4
+        private const val CHUNK_HEARTBEAT_ACK = 5
+        private const val CHUNK_ABORT = 6
+        private const val CHUNK_SHUTDOWN = 7
+        private const val CHUNK_SHUTDOWN_ACK = 8
+        private const val CHUNK_ERROR = 9
+        private const val CHUNK_COOKIE_ECHO = 10
+        private const val CHUNK_COOKIE_ACK = 11
+        private const val CHUNK_SHUTDOWN_COMPLETE = 14
+
+        private const val PARAMETER_STATE_COOKIE = 7
+
+        private const val DATA_FLAG_END = 0x01
+        private const val DATA_FLAG_BEGIN = 0x02
+        private const val DATA_FLAG_UNORDERED = 0x04
+
+        private const val MAX_STREAM_ID = 1023
+        private const val RECEIVE_WINDOW = 128 * 1024
+        private const val MAX_QUEUED_BYTES = 1024 * 1024
+        private const val MAX_GAP_BLOCKS = 16
+        private const val INITIAL_CWND = 4 * MTU
+        private const val FAST_RETRANSMIT_MISSES = 3
+        private const val MAX_INIT_RETRANSMISSIONS = 8
+
+        private const val RTO_INITIAL_MS = 1000L
+        private const val RTO_MIN_MS = 250L
+        private const val RTO_MAX_MS = 10_000L
+
+        private const val NO_BLOCK = Long.MIN_VALUE
+
+        private val EMPTY = ByteArray(0)
+
+        private val random = SecureRandom()
+
+        private fun randomNonZeroInt(): Int {
+            while (true) {
+                random.nextInt().let { if (it != 0) return it }
+            }
+        }
+
+        private fun padded(length: Int) = (length + 3) and 3.inv()
+
+        /**
+         * Unwraps a 32-bit TSN into a long, using the closest value to
+         * [reference].
+         */
+        private fun unwrap(reference: Long, tsn: Int): Long = reference + (tsn - reference.toInt())
+
+        private fun readShort(buf: ByteArray, off: Int): Int =
+            (buf[off].toInt() and 0xff shl 8) or (buf[off + 1].toInt() and 0xff)
+
+        private fun readInt(buf: ByteArray, off: Int): Int =
+            (buf[off].toInt() and 0xff shl 24) or
+                (buf[off + 1].toInt() and 0xff shl 16) or
+                (buf[off + 2].toInt() and 0xff shl 8) or
+                (buf[off + 3].toInt() and 0xff)
+
+        private fun readIntLE(buf: ByteArray, off: Int): Int = Integer.reverseBytes(readInt(buf, off))
+
+        private fun writeShort(buf: ByteArray, off: Int, value: Int) {
+            buf[off] = (value ushr 8).toByte()
+            buf[off + 1] = value.toByte()
+        }
+
+        private fun writeInt(buf: ByteArray, off: Int, value: Int) {
+            buf[off] = (value ushr 24).toByte()
+            buf[off + 1] = (value ushr 16).toByte()
+            buf[off + 2] = (value ushr 8).toByte()
+            buf[off + 3] = value.toByte()
+        }
+
+        private fun writeIntLE(buf: ByteArray, off: Int, value: Int) = writeInt(buf, off, Integer.reverseBytes(value))
+    }
+}
@@ -24,6 +24,20 @@ class SctpConfig {
 
     fun enabled() = enabled
 
+    /**
+     * The SCTP stack to use: the native usrsctp stack (through jitsi-sctp) or
+     * the pure-Java [SctpAssociation].
+     */
+    val implementation: Implementation by config {
+        "videobridge.sctp.implementation".from(JitsiConfig.newConfig)
+            .convertFrom<String> { Implementation.valueOf(it.toUpperCase()) }
+    }
+
+    enum class Implementation {
+        NATIVE,
+        JAVA
+    }
+
     companion object {
         @JvmField
         val config = SctpConfig()
@@ -0,0 +1,72 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.stats
+
+import org.jitsi.nlj.util.OrderedJsonObject
+import java.util.concurrent.atomic.LongAccumulator
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A histogram of delays with microsecond buckets, for the parts of the packet
+ * path which take well under a millisecond and for which the millisecond
+ * buckets of [org.jitsi.nlj.stats.DelayStats] are too coarse.  Safe to update
+ * from multiple threads.
+ */
+class MicrosecondDelayStats @JvmOverloads constructor(
+    /**
+     * The (inclusive) upper bounds of the buckets in microseconds, in
+     * increasing order.  Larger delays are counted in an extra bucket.
+     */
+    private val thresholdsUs: LongArray = DEFAULT_THRESHOLDS_US
+) {
+    private val buckets = Array(thresholdsUs.size + 1) { LongAdder() }
+    private val count = LongAdder()
+    private val totalDelayUs = LongAdder()
+    private val maxDelayUs = LongAccumulator(Math::max, 0)
+
+    fun addDelayNanos(delayNanos: Long) {
+        val delayUs = (delayNanos / 1000).coerceAtLeast(0)
+        count.increment()
+        totalDelayUs.add(delayUs)
+        maxDelayUs.accumulate(delayUs)
+        buckets[bucketIndex(delayUs)].increment()
+    }
+
+    private fun bucketIndex(delayUs: Long): Int {
+        for (i in thresholdsUs.indices) {
+            if (delayUs <= thresholdsUs[i]) {
+                return i
+            }
+        }
+        return thresholdsUs.size
+    }
+
+    fun toJson(): OrderedJsonObject = OrderedJsonObject().apply {
+        val count = count.sum()
+        put("average_delay_us", if (count > 0) totalDelayUs.sum().toDouble() / count else 0.0)
+        put("max_delay_us", maxDelayUs.get())
+        put("total_count", count)
+        put("buckets", OrderedJsonObject().apply {
+            thresholdsUs.forEachIndexed { i, threshold -> put("<= $threshold us", buckets[i].sum()) }
+            put("> ${thresholdsUs.last()} us", buckets[thresholdsUs.size].sum())
+        })
+    }
+
+    companion object {
+        private val DEFAULT_THRESHOLDS_US = longArrayOf(10, 50, 100, 250, 500, 1000, 2000, 5000, 10000, 50000)
+    }
+}
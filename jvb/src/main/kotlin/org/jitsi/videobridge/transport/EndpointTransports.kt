@@ -0,0 +1,97 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.transport
+
+import org.jitsi.utils.logging2.Logger
+import org.jitsi.utils.logging2.LoggerImpl
+import org.jitsi.videobridge.Endpoint
+import org.jitsi.videobridge.TransportConfig
+import org.jitsi.videobridge.transport.dtls.DtlsTransport
+import org.jitsi.videobridge.transport.ice.IceTransport
+import org.jitsi.videobridge.util.TaskPools
+import org.jitsi.videobridge.util.WarmPool
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * The ICE and DTLS transports of an [Endpoint].  Creating them (most notably
+ * the ICE agent, which harvests its candidates) is expensive, so they can be
+ * created ahead of time in a [WarmPool] and handed to endpoints as they are
+ * created.
+ */
+class EndpointTransports private constructor(
+    val iceTransport: IceTransport,
+    val dtlsTransport: DtlsTransport,
+    /**
+     * The logger the transports were created with.  For pooled transports,
+     * the context of the endpoint is added to it when it's checked out.
+     */
+    private val logger: Logger
+) {
+    fun stop() {
+        dtlsTransport.stop()
+        iceTransport.stop()
+    }
+
+    companion object {
+        private val nextPooledId = AtomicLong()
+
+        @JvmStatic
+        val pool = WarmPool(
+            "endpoint transport",
+            TransportConfig.warmPoolSize,
+            TransportConfig.warmPoolMaxAge,
+            TaskPools.IO_POOL,
+            ::createPooled,
+            EndpointTransports::stop
+        )
+
+        private fun createPooled(): EndpointTransports {
+            val logger = LoggerImpl(Endpoint::class.java.name)
+            return EndpointTransports(
+                IceTransport("pooled-${nextPooledId.getAndIncrement()}", false, logger),
+                DtlsTransport(logger),
+                logger
+            )
+        }
+
+        /**
+         * Get the transports for a new endpoint, from the pool if it has any
+         * ready, or else by creating them.
+         *
+         * @param logContext the log context of the endpoint.
+         */
+        @JvmStatic
+        fun create(
+            id: String,
+            iceControlling: Boolean,
+            parentLogger: Logger,
+            logContext: Map<String, String>
+        ): EndpointTransports {
+            pool.checkout()?.let {
+                it.logger.addContext(logContext)
+                it.iceTransport.setIceControlling(iceControlling)
+                return it
+            }
+
+            return EndpointTransports(
+                IceTransport(id, iceControlling, parentLogger),
+                DtlsTransport(parentLogger),
+                parentLogger
+            )
+        }
+    }
+}
@@ -33,13 +33,15 @@ import org.jitsi.utils.logging2.createChildLogger
 import org.jitsi.videobridge.ice.Harvesters
 import org.jitsi.videobridge.ice.IceConfig
 import org.jitsi.videobridge.ice.TransportUtils
+import org.jitsi.videobridge.stats.MicrosecondDelayStats
+import org.jitsi.videobridge.util.ByteBufferPool
+import org.jitsi.videobridge.util.NanoClock
 import org.jitsi.xmpp.extensions.jingle.CandidatePacketExtension
 import org.jitsi.xmpp.extensions.jingle.IceUdpTransportPacketExtension
 import org.jitsi.xmpp.extensions.jingle.RtcpmuxPacketExtension
 import java.beans.PropertyChangeEvent
 import java.io.IOException
 import java.net.DatagramPacket
-import java.time.Clock
 import java.time.Instant
 import java.util.concurrent.atomic.AtomicBoolean
 
@@ -51,14 +53,18 @@ class IceTransport @JvmOverloads constructor(
      */
     controlling: Boolean,
     parentLogger: Logger,
-    private val clock: Clock = Clock.systemUTC()
+    /**
+     * The source of the receive times passed to the [incomingDataHandler].
+     */
+    val nanoClock: NanoClock = NanoClock.SYSTEM
 ) {
     private val logger = createChildLogger(parentLogger)
 
     /**
      * The handler which will be invoked when data is received.  The handler
-     * does *not* own the buffer passed to it, so a copy must be made if it wants
-     * to use the data after the handler call finishes.  This field should be
+     * does *not* own the buffer passed to [IncomingDataHandler.dataReceived],
+     * so a copy must be made if it wants to use the data after the handler
+     * call finishes (but see [PooledIncomingDataHandler]).  This field should be
      * set by some other entity which wishes to handle the incoming data
      * received over the ICE connection.
      * NOTE: we don't create a packet in [IceTransport] because
@@ -90,6 +96,11 @@ class IceTransport @JvmOverloads constructor(
 
     fun isConnected(): Boolean = iceConnected.get()
 
+    /**
+     * Whether the selected candidate pair uses TCP, in which case [send] blocks while the TCP send buffer is full.
+     */
+    fun isTcp(): Boolean = iceComponent.selectedPair?.localCandidate?.transport?.isTcpType() == true
+
     /**
      * Whether or not this transport is 'running'.  If it is not
      * running, no more data will be read from the socket or sent out.
@@ -126,6 +137,14 @@ class IceTransport @JvmOverloads constructor(
     val icePassword: String
         get() = iceAgent.localPassword
 
+    /**
+     * Set the ICE role of this transport.  This only has an effect before
+     * connectivity establishment has started.
+     */
+    fun setIceControlling(controlling: Boolean) {
+        iceAgent.isControlling = controlling
+    }
+
     /**
      * Tell this [IceTransport] to start ICE connectivity establishment.
      */
@@ -188,15 +207,28 @@ class IceTransport @JvmOverloads constructor(
 
     fun startReadingData() {
         logger.cdebug { "Starting to read incoming data" }
+        val handler = incomingDataHandler
+        if (IceConfig.config.zeroCopyReceive && handler is PooledIncomingDataHandler) {
+            readIntoPooledBuffers(handler)
+        } else {
+            readIntoSharedBuffer()
+        }
+        logger.info("No longer running, stopped reading packets")
+    }
+
+    /**
+     * Reads all packets into a single buffer, which the [incomingDataHandler] has to copy from.
+     */
+    private fun readIntoSharedBuffer() {
         val socket = iceComponent.socket
-        val receiveBuf = ByteArray(1500)
+        val receiveBuf = ByteArray(RECEIVE_BUFFER_SIZE)
         val packet = DatagramPacket(receiveBuf, 0, receiveBuf.size)
-        var receivedTime: Instant
+        var receivedTime: Long
 
         while (running.get()) {
             try {
                 socket.receive(packet)
-                receivedTime = clock.instant()
+                receivedTime = nanoClock.nanoTime()
             } catch (e: SocketClosedException) {
                 logger.info("Socket closed, stopping reader")
                 break
@@ -209,8 +241,38 @@ class IceTransport @JvmOverloads constructor(
                 logger.cdebug { "Data handler is null, dropping data" }
                 packetStats.numIncomingPacketsDroppedNoHandler++
             }
+            ingressDelayStats.addDelayNanos(nanoClock.nanoTime() - receivedTime)
         }
-        logger.info("No longer running, stopped reading packets")
+    }
+
+    /**
+     * Reads each packet into a buffer from the [ByteBufferPool], leaving [PooledIncomingDataHandler.headroom] bytes
+     * before it, and hands the buffer to [handler]. When the handler takes the ownership of the buffer we get a new
+     * one for the next read, otherwise we reuse it.
+     */
+    private fun readIntoPooledBuffers(handler: PooledIncomingDataHandler) {
+        val socket = iceComponent.socket
+        val receiveBuffer = PooledReceiveBuffer(handler, RECEIVE_BUFFER_SIZE)
+        var receivedTime: Long
+
+        while (running.get()) {
+            try {
+                socket.receive(receiveBuffer.packet)
+                receivedTime = nanoClock.nanoTime()
+            } catch (e: SocketClosedException) {
+                logger.info("Socket closed, stopping reader")
+                break
+            } catch (e: IOException) {
+                logger.warn("Stopping reader", e)
+                break
+            }
+            packetStats.numPacketsReceived++
+            if (receiveBuffer.handleReceived(receivedTime)) {
+                packetStats.numPacketsReceivedWithoutCopy++
+            }
+            ingressDelayStats.addDelayNanos(nanoClock.nanoTime() - receivedTime)
+        }
+        receiveBuffer.release()
     }
 
     /**
@@ -345,6 +407,20 @@ class IceTransport @JvmOverloads constructor(
     }
 
     companion object {
+        /**
+         * The size of the buffers that we read packets into.
+         */
+        private const val RECEIVE_BUFFER_SIZE = 1500
+
+        /**
+         * The time it takes to handle a received packet (until the reader is
+         * ready to read the next one), across all transports.
+         */
+        private val ingressDelayStats = MicrosecondDelayStats()
+
+        @JvmStatic
+        fun getIngressDelayStatsJson(): OrderedJsonObject = ingressDelayStats.toJson()
+
         fun appendHarvesters(iceAgent: Agent) {
             Harvesters.initializeStaticConfiguration()
             Harvesters.tcpHarvester?.let {
@@ -356,12 +432,14 @@ class IceTransport @JvmOverloads constructor(
 
     private data class PacketStats(
         var numPacketsReceived: Int = 0,
+        var numPacketsReceivedWithoutCopy: Int = 0,
         var numIncomingPacketsDroppedNoHandler: Int = 0,
         var numPacketsSent: Int = 0,
         var numOutgoingPacketsDroppedStopped: Int = 0
     ) {
         fun toJson(): OrderedJsonObject = OrderedJsonObject().apply {
             put("num_packets_received", numPacketsReceived)
+            put("num_packets_received_without_copy", numPacketsReceivedWithoutCopy)
             put("num_incoming_packets_dropped_no_handler", numIncomingPacketsDroppedNoHandler)
             put("num_packets_sent", numPacketsSent)
             put("num_outgoing_packets_dropped_stopped", numOutgoingPacketsDroppedStopped)
@@ -371,9 +449,38 @@ class IceTransport @JvmOverloads constructor(
     interface IncomingDataHandler {
         /**
          * Notify the handler that data was received (contained
-         * within [data] at [offset] with [length]) at [receivedTime]
+         * within [data] at [offset] with [length]) at [receivedTime], a
+         * reading of [IceTransport.nanoClock]
+         */
+        fun dataReceived(data: ByteArray, offset: Int, length: Int, receivedTime: Long)
+    }
+
+    /**
+     * An [IncomingDataHandler] which can take the ownership of the buffers that
+     * the data is read into. When zero-copy receive is enabled, [IceTransport]
+     * reads each packet into a buffer from the [ByteBufferPool], at [headroom]
+     * bytes from its start and leaving at least [tailroom] bytes after it, and
+     * passes it to [pooledDataReceived].  Packets which don't fit are passed to
+     * [dataReceived] instead.
+     */
+    interface PooledIncomingDataHandler : IncomingDataHandler {
+        /**
+         * The number of bytes to leave before the data.
+         */
+        val headroom: Int
+
+        /**
+         * The number of bytes to leave after the data.
+         */
+        val tailroom: Int
+
+        /**
+         * Notify the handler that data was received (contained within the
+         * pooled buffer [data] at [offset] with [length]) at [receivedTime], a
+         * reading of [IceTransport.nanoClock].  Returns true if the handler took the
+         * ownership of [data], or false if [IceTransport] should reuse it.
          */
-        fun dataReceived(data: ByteArray, offset: Int, length: Int, receivedTime: Instant)
+        fun pooledDataReceived(data: ByteArray, offset: Int, length: Int, receivedTime: Long): Boolean
     }
 
     interface EventHandler {
@@ -0,0 +1,71 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.transport.ice
+
+import org.jitsi.videobridge.util.ByteBufferPool
+import java.net.DatagramPacket
+
+/**
+ * The buffer that [IceTransport] reads packets into when zero-copy receive is
+ * enabled.  [packet] points into a buffer from the [ByteBufferPool], at
+ * [IceTransport.PooledIncomingDataHandler.headroom] bytes from its start.
+ * After a packet is received into it, [handleReceived] hands the buffer to the
+ * handler, and takes a new one from the pool if the handler kept it.
+ */
+internal class PooledReceiveBuffer(
+    private val handler: IceTransport.PooledIncomingDataHandler,
+    private val bufferSize: Int
+) {
+    private val headroom = handler.headroom
+    private val tailroom = handler.tailroom
+
+    private var buf = ByteBufferPool.getBuffer(bufferSize)
+
+    /**
+     * The packet to receive into.
+     */
+    val packet = DatagramPacket(buf, headroom, buf.size - headroom)
+
+    /**
+     * Hands the packet which was just received into [packet] to the handler.
+     *
+     * @return true if the handler took the ownership of the buffer.
+     */
+    fun handleReceived(receivedTime: Long): Boolean {
+        val handedOver = if (packet.length > buf.size - headroom - tailroom) {
+            // The packet doesn't leave the tailroom free, so it can't be handed over and we fall back to a copy.
+            handler.dataReceived(buf, packet.offset, packet.length, receivedTime)
+            false
+        } else {
+            handler.pooledDataReceived(buf, packet.offset, packet.length, receivedTime)
+        }
+        if (handedOver) {
+            buf = ByteBufferPool.getBuffer(bufferSize)
+        }
+        // Restore the full capacity, which receiving a packet shrinks.
+        packet.setData(buf, headroom, buf.size - headroom)
+        return handedOver
+    }
+
+    /**
+     * Returns the current buffer to the pool.  This instance must not be used
+     * afterwards.
+     */
+    fun release() {
+        ByteBufferPool.returnBuffer(buf)
+    }
+}
@@ -32,7 +32,6 @@ import org.jitsi.videobridge.transport.octo.OctoUtils.Companion.JVB_EP_ID
 import org.jitsi.videobridge.util.ByteBufferPool
 import java.net.SocketAddress
 import java.nio.charset.StandardCharsets
-import java.time.Instant
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicLong
 import java.util.concurrent.atomic.LongAdder
@@ -119,7 +118,7 @@ class BridgeOctoTransport(
     }
 
     @Suppress("DEPRECATION")
-    fun dataReceived(buf: ByteArray, off: Int, len: Int, receivedTime: Instant) {
+    fun dataReceived(buf: ByteArray, off: Int, len: Int, receivedTimeMs: Long) {
         var conferenceId: Long
         var mediaType: MediaType
         var sourceEpId: String
@@ -155,7 +154,7 @@ class BridgeOctoTransport(
         }
         when (mediaType) {
             MediaType.AUDIO, MediaType.VIDEO -> {
-                handler.handleMediaPacket(createPacketInfo(sourceEpId, buf, off, len, receivedTime))
+                handler.handleMediaPacket(createPacketInfo(sourceEpId, buf, off, len, receivedTimeMs))
             }
             MediaType.DATA -> {
                 handler.handleMessagePacket(createMessageString(buf, off, len), sourceEpId)
@@ -241,7 +240,7 @@ class BridgeOctoTransport(
         buf: ByteArray,
         off: Int,
         len: Int,
-        receivedTime: Instant
+        receivedTimeMs: Long
     ): OctoPacketInfo {
         val rtpLen = len - OCTO_HEADER_LENGTH
         val bufCopy = ByteBufferPool.getBuffer(
@@ -255,7 +254,7 @@ class BridgeOctoTransport(
         }
         return OctoPacketInfo(UnparsedPacket(bufCopy, RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET, rtpLen)).apply {
             this.endpointId = sourceEpId
-            this.receivedTime = receivedTime.toEpochMilli()
+            this.receivedTime = receivedTimeMs
         }
     }
 
@@ -23,6 +23,13 @@ import java.net.SocketAddress
 class OctoUtils {
     companion object {
         const val JVB_EP_ID = "ffffffff"
+
+        /**
+         * The endpoint ID of the retransmission requests (RTCP NACKs) which
+         * bridges send to each other.
+         */
+        const val NACK_EP_ID = "fffffffe"
+
         fun relayIdToSocketAddress(relayId: String): SocketAddress? {
             if (!relayId.contains(":")) {
                 return null
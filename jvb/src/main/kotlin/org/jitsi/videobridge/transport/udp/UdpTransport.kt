@@ -23,6 +23,8 @@ import org.jitsi.utils.logging2.Logger
 import org.jitsi.utils.logging2.createChildLogger
 import org.jitsi.utils.secs
 import org.jitsi.utils.stats.RateTracker
+import org.jitsi.videobridge.stats.MicrosecondDelayStats
+import org.jitsi.videobridge.util.NanoClock
 import java.io.IOException
 import java.net.DatagramPacket
 import java.net.DatagramSocket
@@ -31,8 +33,6 @@ import java.net.InetSocketAddress
 import java.net.SocketAddress
 import java.net.SocketException
 import java.net.UnknownHostException
-import java.time.Clock
-import java.time.Instant
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.LongAdder
 
@@ -49,7 +49,10 @@ class UdpTransport @JvmOverloads @Throws(SocketException::class, UnknownHostExce
     parentLogger: Logger,
     soRcvBuf: Int? = null,
     soSndBuf: Int? = null,
-    private val clock: Clock = Clock.systemUTC()
+    /**
+     * The source of the receive times passed to the [incomingDataHandler].
+     */
+    val nanoClock: NanoClock = NanoClock.SYSTEM
 ) {
     private val logger = createChildLogger(parentLogger, mapOf(
         "address" to bindAddress,
@@ -91,9 +94,10 @@ class UdpTransport @JvmOverloads @Throws(SocketException::class, UnknownHostExce
             } catch (e: IOException) {
                 logger.warn("Exception while reading ", e)
             }
-            val now = clock.instant()
-            stats.packetReceived(packet.length, now)
+            val now = nanoClock.nanoTime()
+            stats.packetReceived(packet.length, nanoClock.toEpochMillis(now))
             incomingDataHandler?.dataReceived(buf, packet.offset, packet.length, now) ?: stats.incomingPacketDropped()
+            stats.packetHandled(nanoClock.nanoTime() - now)
         }
     }
 
@@ -108,7 +112,7 @@ class UdpTransport @JvmOverloads @Throws(SocketException::class, UnknownHostExce
         }
         try {
             socket.send(DatagramPacket(data, off, length, remoteAddress).apply { socketAddress = remoteAddress })
-            stats.packetSent(length, clock.instant())
+            stats.packetSent(length, nanoClock.toEpochMillis(nanoClock.nanoTime()))
         } catch (t: Throwable) {
             logger.warn("Error sending data", t)
         }
@@ -145,23 +149,27 @@ class UdpTransport @JvmOverloads @Throws(SocketException::class, UnknownHostExce
         private val receiveBitRate: BitrateTracker = BitrateTracker(RATE_INTERVAL)
         private val sendPacketRate: RateTracker = RateTracker(RATE_INTERVAL)
         private val sendBitRate: BitrateTracker = BitrateTracker(RATE_INTERVAL)
+        private val receiveHandlingDelay = MicrosecondDelayStats()
 
-        fun packetReceived(numBytes: Int, time: Instant) {
+        fun packetReceived(numBytes: Int, timeMs: Long) {
             packetsReceived.increment()
             bytesReceived.add(numBytes.toLong())
-            time.toEpochMilli().also { timeMs ->
-                receivePacketRate.update(1, timeMs)
-                receiveBitRate.update(numBytes.bytes, timeMs)
-            }
+            receivePacketRate.update(1, timeMs)
+            receiveBitRate.update(numBytes.bytes, timeMs)
+        }
+
+        /**
+         * Records the time it took to handle a received packet.
+         */
+        fun packetHandled(delayNanos: Long) {
+            receiveHandlingDelay.addDelayNanos(delayNanos)
         }
 
-        fun packetSent(numBytes: Int, time: Instant) {
+        fun packetSent(numBytes: Int, timeMs: Long) {
             packetsSent.increment()
             bytesSent.add(numBytes.toLong())
-            time.toEpochMilli().also { timeMs ->
-                sendPacketRate.update(1, timeMs)
-                sendBitRate.update(numBytes.bytes, timeMs)
-            }
+            sendPacketRate.update(1, timeMs)
+            sendBitRate.update(numBytes.bytes, timeMs)
         }
 
         fun incomingPacketDropped() {
@@ -181,6 +189,7 @@ class UdpTransport @JvmOverloads @Throws(SocketException::class, UnknownHostExce
             put("send_packet_rate_pps", sendPacketRate.rate)
             put("outgoing_packets_dropped", outgoingPacketsDropped.sum())
             put("bytes_sent", bytesSent.sum())
+            put("receive_handling_delay", receiveHandlingDelay.toJson())
         }
 
         fun toSnapshot(): StatsSnapshot = StatsSnapshot(
@@ -217,12 +226,13 @@ class UdpTransport @JvmOverloads @Throws(SocketException::class, UnknownHostExce
     interface IncomingDataHandler {
         /**
          * Notify the handler that data was received (contained
-         * within [data] at [offset] with [length]) at [receivedTime])
+         * within [data] at [offset] with [length]) at [receivedTime], a
+         * reading of [UdpTransport.nanoClock])
          *
          * Note that the handler does *not* own the buffer, and must copy if they
          * want to modify it or keep it longer than the duration of the
          * [dataReceived] call.
          */
-        fun dataReceived(data: ByteArray, offset: Int, length: Int, receivedTime: Instant)
+        fun dataReceived(data: ByteArray, offset: Int, length: Int, receivedTime: Long)
     }
 }
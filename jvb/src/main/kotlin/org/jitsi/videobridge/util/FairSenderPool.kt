@@ -0,0 +1,338 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.util
+
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.utils.logging2.createLogger
+import org.jitsi.utils.queue.ErrorHandler
+import org.jitsi.videobridge.stats.MicrosecondDelayStats
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.atomic.LongAccumulator
+import java.util.concurrent.atomic.LongAdder
+import java.util.function.Consumer
+
+/**
+ * A fixed set of threads which drain outgoing packet queues (one per endpoint) in round-robin order.
+ *
+ * A queue with pending packets is drained by one thread at a time, which handles at most [burstLimit] of its packets
+ * before it moves on to the next queue with pending packets. So a busy queue delays the others by at most one burst,
+ * and the number of threads doesn't grow with the number of endpoints (unlike with a cached thread pool).
+ *
+ * The handlers must not block, since a blocked handler holds one of the few threads of the pool. A queue whose
+ * handler may block (e.g. because it sends over ICE-TCP, which blocks while the TCP send buffer is full) has to be
+ * moved to a separate executor with [SendQueue.setBlockingExecutor].
+ */
+class FairSenderPool @JvmOverloads constructor(
+    private val name: String,
+    /**
+     * The number of threads. With 0 no threads are started, and the queues are only drained by [runOnce] (used in
+     * tests).
+     */
+    numThreads: Int,
+    private val burstLimit: Int,
+    private val nanoClock: NanoClock = NanoClock.SYSTEM
+) {
+    private val logger = createLogger()
+
+    /**
+     * The queues which have pending packets and are not being drained, in the order in which they are to be drained.
+     */
+    private val readyQueues = LinkedBlockingQueue<SendQueue<*>>()
+
+    private val queues: MutableSet<SendQueue<*>> = ConcurrentHashMap.newKeySet()
+
+    /**
+     * The time between a packet being added to a queue and it being handled.
+     */
+    private val drainLag = MicrosecondDelayStats()
+
+    /**
+     * The depth of a queue right after a packet was added to it.
+     */
+    private val queueDepth = DepthHistogram()
+
+    private val numPacketsHandled = LongAdder()
+    private val numPacketsDropped = LongAdder()
+    private val numExceptions = LongAdder()
+    private val numBursts = LongAdder()
+    private val numBurstLimitReached = LongAdder()
+    private val numBlockingBursts = LongAdder()
+
+    @Volatile
+    private var running = true
+
+    private val threads = List(numThreads) { i ->
+        Thread(this::drainQueues, "$name-$i").apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    /**
+     * Creates a queue which is drained by this pool.
+     *
+     * @param capacity the maximum number of pending packets. When the queue is full, its oldest packet is dropped.
+     * @param handler handles (sends) the packets of the queue.
+     * @param release releases the packets which are dropped, or which are still pending when the queue is closed.
+     * @param errorHandler is notified of dropped packets and of exceptions thrown by [handler].
+     */
+    fun <T> createQueue(
+        id: String,
+        capacity: Int,
+        handler: Consumer<T>,
+        release: Consumer<T>,
+        errorHandler: ErrorHandler?
+    ): SendQueue<T> = SendQueue(id, capacity, handler, release, errorHandler).also { queues.add(it) }
+
+    private fun drainQueues() {
+        while (running) {
+            val queue = try {
+                readyQueues.take()
+            } catch (e: InterruptedException) {
+                break
+            }
+            queue.drain()
+        }
+    }
+
+    /**
+     * Drains the next queue with pending packets, if there is one, on the calling thread.
+     *
+     * @return true if a queue was drained.
+     */
+    fun runOnce(): Boolean {
+        val queue = readyQueues.poll() ?: return false
+        queue.drain()
+        return true
+    }
+
+    fun shutdown() {
+        running = false
+        threads.forEach(Thread::interrupt)
+    }
+
+    fun getStatsJson(): OrderedJsonObject = OrderedJsonObject().apply {
+        put("executor_class", FairSenderPool::class.java.simpleName)
+        put("pool_size", threads.size)
+        put("burst_limit", burstLimit)
+        put("num_queues", queues.size)
+        put("num_ready_queues", readyQueues.size)
+        put("packets_handled", numPacketsHandled.sum())
+        put("packets_dropped", numPacketsDropped.sum())
+        put("exceptions", numExceptions.sum())
+        put("bursts", numBursts.sum())
+        put("bursts_at_limit", numBurstLimitReached.sum())
+        put("num_blocking_queues", queues.count { it.blockingExecutor != null })
+        put("blocking_bursts", numBlockingBursts.sum())
+        put("queue_depth", queueDepth.toJson())
+        put("drain_lag", drainLag.toJson())
+    }
+
+    /**
+     * A bounded queue of packets, drained by the threads of the pool.
+     */
+    inner class SendQueue<T> internal constructor(
+        val id: String,
+        private val capacity: Int,
+        private val handler: Consumer<T>,
+        private val release: Consumer<T>,
+        private val errorHandler: ErrorHandler?
+    ) {
+        /**
+         * The pending packets and the times they were added, in a ring buffer.
+         */
+        private val packets = arrayOfNulls<Any?>(capacity)
+        private val addedTimes = LongArray(capacity)
+        private var head = 0
+        private var size = 0
+
+        /**
+         * Whether this queue is in [readyQueues] or is being drained.
+         */
+        private var scheduled = false
+
+        private var closed = false
+
+        /**
+         * The executor which drains this queue instead of the threads of the pool, if its handler may block.
+         */
+        @Volatile
+        var blockingExecutor: Executor? = null
+            private set
+
+        /**
+         * Drains this queue with tasks on [executor] from now on, instead of on the threads of the pool. This is for
+         * handlers which may block, so that they don't hold up the queues of the other endpoints. The queue is still
+         * drained by one task at a time, a burst at a time.
+         */
+        fun setBlockingExecutor(executor: Executor) {
+            blockingExecutor = executor
+        }
+
+        fun add(packet: T) {
+            var dropped: Any? = null
+            val schedule = synchronized(this) {
+                if (closed) {
+                    release.accept(packet)
+                    return
+                }
+                if (size == capacity) {
+                    dropped = poll()
+                }
+                packets[(head + size) % capacity] = packet
+                addedTimes[(head + size) % capacity] = nanoClock.nanoTime()
+                size++
+                queueDepth.record(size)
+
+                if (scheduled) {
+                    false
+                } else {
+                    scheduled = true
+                    true
+                }
+            }
+            dropped?.let {
+                numPacketsDropped.increment()
+                errorHandler?.packetDropped()
+                @Suppress("UNCHECKED_CAST")
+                release.accept(it as T)
+            }
+            if (schedule) {
+                schedule()
+            }
+        }
+
+        private fun schedule() {
+            val executor = blockingExecutor
+            if (executor == null) {
+                readyQueues.add(this)
+            } else {
+                numBlockingBursts.increment()
+                executor.execute(this::drain)
+            }
+        }
+
+        /**
+         * Removes the oldest packet. Must be called with the lock held and a non-empty queue.
+         */
+        private fun poll(): Any? {
+            val packet = packets[head]
+            packets[head] = null
+            head = (head + 1) % capacity
+            size--
+            return packet
+        }
+
+        /**
+         * Handles up to [burstLimit] packets, and puts this queue back at the end of [readyQueues] if there are more.
+         */
+        internal fun drain() {
+            numBursts.increment()
+            for (i in 0 until burstLimit) {
+                var addedTime = 0L
+                val packet = synchronized(this) {
+                    if (closed || size == 0) {
+                        scheduled = false
+                        return
+                    }
+                    addedTime = addedTimes[head]
+                    poll()
+                }
+                drainLag.addDelayNanos(nanoClock.nanoTime() - addedTime)
+                try {
+                    @Suppress("UNCHECKED_CAST")
+                    handler.accept(packet as T)
+                    numPacketsHandled.increment()
+                } catch (t: Throwable) {
+                    numExceptions.increment()
+                    errorHandler?.packetHandlingFailed(t)
+                    logger.warn("Failed to handle a packet of $id", t)
+                }
+            }
+            numBurstLimitReached.increment()
+            synchronized(this) {
+                if (closed || size == 0) {
+                    scheduled = false
+                    return
+                }
+            }
+            schedule()
+        }
+
+        /**
+         * Closes this queue and releases its pending packets.
+         */
+        fun close() {
+            val pending = synchronized(this) {
+                closed = true
+                List(size) { poll() }
+            }
+            queues.remove(this)
+            @Suppress("UNCHECKED_CAST")
+            pending.forEach { release.accept(it as T) }
+        }
+
+        fun size(): Int = synchronized(this) { size }
+    }
+
+    /**
+     * Counts queue depths in power of two buckets, and estimates percentiles from them.
+     */
+    private class DepthHistogram {
+        /**
+         * Bucket i counts the depths in [2^(i-1), 2^i - 1] (bucket 0 counts 0).
+         */
+        private val buckets = Array(32) { LongAdder() }
+
+        private val max = LongAccumulator(Math::max, 0)
+
+        fun record(depth: Int) {
+            buckets[32 - Integer.numberOfLeadingZeros(depth)].increment()
+            max.accumulate(depth.toLong())
+        }
+
+        /**
+         * The upper bound of the bucket which contains the [percentile]th percentile.
+         */
+        private fun percentile(counts: LongArray, total: Long, percentile: Int): Int {
+            val target = (total * percentile + 99) / 100
+            var sum = 0L
+            counts.forEachIndexed { i, count ->
+                sum += count
+                if (sum >= target) {
+                    return (1 shl i) - 1
+                }
+            }
+            return Int.MAX_VALUE
+        }
+
+        fun toJson(): OrderedJsonObject = OrderedJsonObject().apply {
+            val counts = LongArray(buckets.size) { buckets[it].sum() }
+            val total = counts.sum()
+            put("total_count", total)
+            if (total > 0) {
+                put("p50", percentile(counts, total, 50))
+                put("p90", percentile(counts, total, 90))
+                put("p99", percentile(counts, total, 99))
+            }
+            put("max", max.get())
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.util
+
+import java.util.Collections
+
+/**
+ * An ordered list of distinct items which supports adding, removing and
+ * moving an item to the front in O(1).
+ *
+ * The items are kept in arrays, linked by their position in the arrays,
+ * so that moving an item doesn't allocate.  The order is exposed through an
+ * immutable [snapshot], which is built in O(n) the first time it is
+ * requested after a change, and is then shared by all readers, which don't
+ * need to copy it or to hold any lock.
+ *
+ * This class is not thread safe.
+ */
+class MoveToFrontList<T : Any> : Iterable<T> {
+    private val indices = HashMap<T, Int>()
+
+    /**
+     * The items by index, and the doubly linked list over the indices.  An
+     * item keeps its index until it is removed.
+     */
+    private var items = arrayOfNulls<Any>(INITIAL_CAPACITY)
+    private var prev = IntArray(INITIAL_CAPACITY)
+    private var next = IntArray(INITIAL_CAPACITY)
+    private var head = NONE
+    private var tail = NONE
+
+    /**
+     * The indices of removed items, which are reused before new ones.
+     */
+    private var freeIndices = IntArray(INITIAL_CAPACITY)
+    private var numFreeIndices = 0
+
+    /**
+     * The number of indices which have ever been assigned.
+     */
+    private var numIndices = 0
+
+    private var snapshot: List<T>? = null
+
+    val size: Int
+        get() = indices.size
+
+    /**
+     * The item at the front of the list, if any.
+     */
+    @Suppress("UNCHECKED_CAST")
+    val first: T?
+        get() = if (head == NONE) null else items[head] as T
+
+    operator fun contains(item: T): Boolean = indices.containsKey(item)
+
+    /**
+     * Adds [item] to the end of the list, if it isn't already in it.
+     *
+     * @return true if it was added.
+     */
+    fun add(item: T): Boolean {
+        if (indices.containsKey(item)) {
+            return false
+        }
+
+        val index = if (numFreeIndices > 0) freeIndices[--numFreeIndices] else allocateIndex()
+        indices[item] = index
+        items[index] = item
+        linkLast(index)
+        snapshot = null
+        return true
+    }
+
+    /**
+     * Removes [item] from the list.
+     *
+     * @return true if it was in the list.
+     */
+    fun remove(item: T): Boolean {
+        val index = indices.remove(item) ?: return false
+        unlink(index)
+        items[index] = null
+        freeIndices[numFreeIndices++] = index
+        snapshot = null
+        return true
+    }
+
+    /**
+     * Removes the items for which [predicate] is true.
+     *
+     * @return true if any item was removed.
+     */
+    fun removeIf(predicate: (T) -> Boolean): Boolean {
+        var removed = false
+        // Removal only changes the links of the removed item, so we can keep
+        // following the "next" links.
+        var index = head
+        while (index != NONE) {
+            val nextIndex = next[index]
+            @Suppress("UNCHECKED_CAST")
+            val item = items[index] as T
+            if (predicate(item)) {
+                remove(item)
+                removed = true
+            }
+            index = nextIndex
+        }
+        return removed
+    }
+
+    /**
+     * Moves [item] to the front of the list.
+     *
+     * @return false if [item] is not in the list.
+     */
+    fun moveToFront(item: T): Boolean {
+        val index = indices[item] ?: return false
+        if (index != head) {
+            unlink(index)
+            linkFirst(index)
+            snapshot = null
+        }
+        return true
+    }
+
+    fun clear() {
+        indices.clear()
+        items.fill(null)
+        head = NONE
+        tail = NONE
+        numFreeIndices = 0
+        numIndices = 0
+        snapshot = null
+    }
+
+    /**
+     * Gets an immutable snapshot of the items, in their current order.
+     */
+    fun snapshot(): List<T> = snapshot ?: buildSnapshot().also { snapshot = it }
+
+    override fun iterator(): Iterator<T> = object : Iterator<T> {
+        private var index = head
+
+        override fun hasNext(): Boolean = index != NONE
+
+        @Suppress("UNCHECKED_CAST")
+        override fun next(): T {
+            if (index == NONE) {
+                throw NoSuchElementException()
+            }
+            return (items[index] as T).also { index = next[index] }
+        }
+    }
+
+    private fun buildSnapshot(): List<T> = Collections.unmodifiableList(toCollection(ArrayList(size)))
+
+    private fun allocateIndex(): Int {
+        if (numIndices == items.size) {
+            val capacity = items.size * 2
+            items = items.copyOf(capacity)
+            prev = prev.copyOf(capacity)
+            next = next.copyOf(capacity)
+            freeIndices = freeIndices.copyOf(capacity)
+        }
+        return numIndices++
+    }
+
+    private fun linkFirst(index: Int) {
+        prev[index] = NONE
+        next[index] = head
+        if (head == NONE) tail = index else prev[head] = index
+        head = index
+    }
+
+    private fun linkLast(index: Int) {
+        prev[index] = tail
+        next[index] = NONE
+        if (tail == NONE) head = index else next[tail] = index
+        tail = index
+    }
+
+    private fun unlink(index: Int) {
+        val p = prev[index]
+        val n = next[index]
+        if (p == NONE) head = n else next[p] = n
+        if (n == NONE) tail = p else prev[n] = p
+    }
+
+    companion object {
+        private const val NONE = -1
+        private const val INITIAL_CAPACITY = 16
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.util
+
+import java.time.Clock
+
+/**
+ * A monotonic time source with nanosecond resolution which, unlike
+ * [Clock.instant], doesn't allocate.  Its readings have an arbitrary origin
+ * and are only meaningful relative to each other, or after conversion with
+ * [toEpochMillis] (e.g. for [org.jitsi.nlj.PacketInfo.receivedTime]).
+ */
+interface NanoClock {
+    /**
+     * The current time in nanoseconds.
+     */
+    fun nanoTime(): Long
+
+    /**
+     * Converts a reading of [nanoTime] to milliseconds since the epoch.
+     */
+    fun toEpochMillis(nanoTime: Long): Long
+
+    companion object {
+        /**
+         * A [NanoClock] which reads [System.nanoTime].
+         */
+        @JvmField
+        val SYSTEM: NanoClock = SystemNanoClock()
+
+        /**
+         * Returns a [NanoClock] which reads [clock], e.g. a fake clock in tests.
+         */
+        @JvmStatic
+        fun fromClock(clock: Clock): NanoClock = ClockNanoClock(clock)
+    }
+}
+
+private const val NANOS_PER_MILLI = 1_000_000L
+
+/**
+ * A [NanoClock] which reads [systemNanoTime] and converts its readings with
+ * [currentTimeMillis], which are [System.nanoTime] and
+ * [System.currentTimeMillis] except in tests.
+ */
+internal class SystemNanoClock(
+    private val systemNanoTime: () -> Long = System::nanoTime,
+    private val currentTimeMillis: () -> Long = System::currentTimeMillis
+) : NanoClock {
+    /**
+     * A pair of readings of [systemNanoTime] and [currentTimeMillis] taken
+     * together, which [toEpochMillis] converts relative to.
+     */
+    private class Anchor(val nanoTime: Long, val epochMillis: Long)
+
+    /**
+     * The two clocks drift apart (e.g. when the wall clock is adjusted), so
+     * the anchor is renewed every [ANCHOR_INTERVAL_NANOS].
+     */
+    @Volatile
+    private var anchor = newAnchor()
+
+    private fun newAnchor() = Anchor(systemNanoTime(), currentTimeMillis())
+
+    override fun nanoTime(): Long = systemNanoTime()
+
+    override fun toEpochMillis(nanoTime: Long): Long {
+        var anchor = this.anchor
+        if (nanoTime - anchor.nanoTime > ANCHOR_INTERVAL_NANOS) {
+            anchor = newAnchor()
+            this.anchor = anchor
+        }
+        return anchor.epochMillis + Math.floorDiv(nanoTime - anchor.nanoTime, NANOS_PER_MILLI)
+    }
+
+    companion object {
+        private const val ANCHOR_INTERVAL_NANOS = 1000 * NANOS_PER_MILLI
+    }
+}
+
+private class ClockNanoClock(private val clock: Clock) : NanoClock {
+    override fun nanoTime(): Long = clock.instant().let { it.epochSecond * 1000 * NANOS_PER_MILLI + it.nano }
+
+    override fun toEpochMillis(nanoTime: Long): Long = Math.floorDiv(nanoTime, NANOS_PER_MILLI)
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.util
+
+import org.jitsi.config.JitsiConfig
+import org.jitsi.metaconfig.config
+import org.jitsi.metaconfig.from
+
+class TaskPoolsConfig {
+    companion object {
+        /**
+         * Whether to run blocking tasks (the receive loops of the transports, expiring endpoints and conferences)
+         * on virtual threads, when the JVM supports them.
+         */
+        @JvmStatic
+        val virtualThreads: Boolean by config("videobridge.task-pools.virtual-threads".from(JitsiConfig.newConfig))
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.util
+
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.utils.logging2.createLogger
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Keeps one timeout per item on a [TimingWheel] and calls [check] for an
+ * item when its timeout fires.  The wheel is advanced periodically on an
+ * [ScheduledExecutorService], and a tick only looks at the timeouts which
+ * are due, so the periodic cost is proportional to the number of timeouts
+ * which fire and not to the number of items.
+ *
+ * Timeouts are not re-armed on every bit of activity of an item (which would
+ * put the wheel's lock on the packet path).  Instead [check] returns how long
+ * to wait before the item is checked again (e.g. the time left until its
+ * inactivity limit, counted from its last activity), or null to stop
+ * checking it.
+ */
+class TimeoutScheduler<T : Any> @JvmOverloads constructor(
+    private val name: String,
+    tickPeriod: Duration,
+    private val executor: ScheduledExecutorService,
+    /**
+     * The number of slots of the wheel.  Timeouts longer than
+     * [numSlots] ticks survive multiple rotations.
+     */
+    numSlots: Int,
+    private val check: (T) -> Duration?,
+    private val clock: Clock = Clock.systemUTC()
+) {
+    private val logger = createLogger()
+
+    private val tickPeriodMs = tickPeriod.toMillis().coerceAtLeast(1)
+
+    private val wheel = TimingWheel<T>(numSlots)
+
+    /**
+     * The time of tick 0 of the wheel.  The wheel is advanced to the tick
+     * which corresponds to the current time, so ticks which run late (or
+     * which are skipped entirely) don't delay the timeouts.
+     */
+    private val startTime: Instant = clock.instant()
+
+    private val taskHandle = AtomicReference<ScheduledFuture<*>>(null)
+
+    private val numChecks = AtomicLong()
+    private val numFailedChecks = AtomicLong()
+
+    fun start() {
+        if (taskHandle.compareAndSet(
+                null,
+                executor.scheduleWithFixedDelay(::tick, tickPeriodMs, tickPeriodMs, TimeUnit.MILLISECONDS))
+        ) {
+            logger.info("Started the $name timeouts with a tick period of $tickPeriodMs ms")
+        } else {
+            logger.warn("The $name timeouts are already started, not starting again")
+        }
+    }
+
+    fun stop() {
+        taskHandle.getAndSet(null)?.cancel(false)
+    }
+
+    /**
+     * Check a specific item after [delay], replacing its previous timeout if
+     * it had one.  The item is checked on the first tick at or after the
+     * delay, and never before the next tick.
+     */
+    fun schedule(item: T, delay: Duration) {
+        val delayMs = delay.toMillis().coerceAtLeast(0)
+        val deadlineTick = currentTimeTick() + (delayMs + tickPeriodMs - 1) / tickPeriodMs
+        wheel.schedule(item, deadlineTick - wheel.currentTick)
+    }
+
+    /**
+     * Stop checking a specific item.
+     */
+    fun cancel(item: T) {
+        wheel.cancel(item)
+    }
+
+    private fun currentTimeTick(): Long = Duration.between(startTime, clock.instant()).toMillis() / tickPeriodMs
+
+    private fun tick() {
+        try {
+            val targetTick = currentTimeTick()
+            val due = mutableListOf<T>()
+            while (wheel.currentTick < targetTick) {
+                due += wheel.advance()
+            }
+            // An item is no longer scheduled once it's returned by the wheel,
+            // so it's checked at most once per tick even if it's rescheduled.
+            due.forEach(::runCheck)
+        } catch (t: Throwable) {
+            // An exception would cancel the periodic execution.
+            logger.warn("Failed to run the $name timeouts", t)
+        }
+    }
+
+    private fun runCheck(item: T) {
+        numChecks.incrementAndGet()
+        val nextDelay = try {
+            check(item)
+        } catch (t: Throwable) {
+            numFailedChecks.incrementAndGet()
+            logger.warn("Failed to check $item, no longer checking it", t)
+            null
+        }
+        nextDelay?.let { schedule(item, it) }
+    }
+
+    /**
+     * The number of items which currently have a timeout.
+     */
+    fun size(): Int = wheel.size()
+
+    fun getStatsJson(): OrderedJsonObject = OrderedJsonObject().apply {
+        put("tick_period_ms", tickPeriodMs)
+        put("num_scheduled", wheel.size())
+        put("num_ticks", wheel.currentTick)
+        put("num_checks", numChecks.get())
+        put("num_failed_checks", numFailedChecks.get())
+    }
+}
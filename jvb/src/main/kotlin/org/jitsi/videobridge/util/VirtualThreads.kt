@@ -0,0 +1,84 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.util
+
+import org.jitsi.utils.logging2.createLogger
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+
+/**
+ * Creates executors which run each task on a new virtual thread. Virtual threads are available from Java 21, and we
+ * target Java 8, so they are created through reflection.
+ */
+object VirtualThreads {
+    private val logger = createLogger()
+
+    /**
+     * Whether the running JVM supports virtual threads.
+     */
+    @JvmStatic
+    val isSupported: Boolean by lazy { createThreadFactory("probe") != null }
+
+    /**
+     * The first Java version in which a virtual thread which blocks inside a synchronized block (as ice4j sockets and
+     * DatagramSocket.receive do) releases its carrier thread. Before it, such a thread pins its carrier, and the
+     * carriers (at most 256) can all be pinned by blocked readers, leaving the other readers unscheduled.
+     */
+    const val MIN_NON_PINNING_JAVA_VERSION = 24
+
+    /**
+     * The feature version of the running JVM (e.g. 8 or 21), or 0 if it can't be parsed.
+     */
+    @JvmStatic
+    val javaVersion: Int by lazy { parseJavaVersion(System.getProperty("java.specification.version")) }
+
+    /**
+     * Parses a `java.specification.version`, which is "1.8" for Java 8 and "21" for Java 21.
+     */
+    internal fun parseJavaVersion(version: String?): Int =
+        version?.removePrefix("1.")?.substringBefore('.')?.toIntOrNull() ?: 0
+
+    /**
+     * Creates an executor which runs each task on a new virtual thread named [name]-N, or returns null if the JVM
+     * doesn't support virtual threads.
+     */
+    @JvmStatic
+    fun newThreadPerTaskExecutor(name: String): ExecutorService? {
+        val factory = createThreadFactory(name) ?: return null
+        return try {
+            Executors::class.java.getMethod("newThreadPerTaskExecutor", ThreadFactory::class.java)
+                .invoke(null, factory) as ExecutorService
+        } catch (e: ReflectiveOperationException) {
+            logger.warn("Failed to create a virtual thread executor", e)
+            null
+        }
+    }
+
+    /**
+     * Calls `Thread.ofVirtual().name("$name-", 0).factory()`.
+     */
+    private fun createThreadFactory(name: String): ThreadFactory? = try {
+        val builder = Thread::class.java.getMethod("ofVirtual").invoke(null)
+        val builderClass = Class.forName("java.lang.Thread\$Builder\$OfVirtual")
+        builderClass.getMethod("name", String::class.java, Long::class.javaPrimitiveType).invoke(builder, "$name-", 0L)
+        builderClass.getMethod("factory").invoke(builder) as ThreadFactory
+    } catch (e: ReflectiveOperationException) {
+        null
+    }
+}
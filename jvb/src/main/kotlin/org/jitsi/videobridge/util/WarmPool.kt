@@ -0,0 +1,197 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.util
+
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.utils.logging2.createLogger
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ConcurrentLinkedDeque
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A pool of objects which are expensive to create, created ahead of time on
+ * an [Executor] so that they're ready when they're needed.  Objects are
+ * single-use: once checked out they are owned by the caller, and the pool
+ * creates a replacement in the background.
+ *
+ * Objects which have been in the pool for longer than [maxAge] are discarded
+ * instead of being checked out, since the state they prepared (e.g. harvested
+ * ICE candidates) may be stale.
+ *
+ * Objects are never returned to the pool, so there is nothing recycled to
+ * count: the state which makes them worth pooling is tied to their first user
+ * (e.g. the ICE credentials of endpoint transports are signaled to the
+ * endpoint's client, and their DTLS session is established with it), so they
+ * can't be handed to another one.  The stats count the checkouts served by
+ * pre-created objects (`num_hits`) and the ones which left the caller to
+ * create its own (`num_misses`).
+ */
+class WarmPool<T : Any> @JvmOverloads constructor(
+    private val name: String,
+    /**
+     * The number of objects to keep ready, or 0 to disable the pool.
+     */
+    private val size: Int,
+    private val maxAge: Duration,
+    private val executor: Executor,
+    private val create: () -> T,
+    private val discard: (T) -> Unit,
+    private val clock: Clock = Clock.systemUTC()
+) {
+    private val logger = createLogger()
+
+    private val available = ConcurrentLinkedDeque<Entry>()
+
+    /**
+     * The number of objects in [available].  Tracked separately since
+     * [ConcurrentLinkedDeque.size] is O(n).
+     */
+    private val numAvailable = AtomicInteger()
+
+    private val refilling = AtomicBoolean(false)
+
+    private val running = AtomicBoolean(false)
+
+    private val stats = Stats()
+
+    val isEnabled: Boolean
+        get() = size > 0
+
+    /**
+     * Start filling the pool.
+     */
+    fun start() {
+        if (isEnabled && running.compareAndSet(false, true)) {
+            logger.info("Starting the $name pool with size $size")
+            refill()
+        }
+    }
+
+    /**
+     * Stop the pool and discard the objects it holds.
+     */
+    fun stop() {
+        if (running.compareAndSet(true, false)) {
+            drain()
+        }
+    }
+
+    /**
+     * Take an object from the pool.
+     *
+     * @return an object, or null if the pool is disabled or empty, in which
+     * case the caller should create one itself.
+     */
+    fun checkout(): T? {
+        if (!running.get()) {
+            return null
+        }
+
+        var entry = poll()
+        while (entry != null && entry.isExpired()) {
+            stats.numExpired.incrementAndGet()
+            discardSafely(entry.item)
+            entry = poll()
+        }
+        refill()
+
+        return if (entry == null) {
+            stats.numMisses.incrementAndGet()
+            null
+        } else {
+            stats.numHits.incrementAndGet()
+            entry.item
+        }
+    }
+
+    /**
+     * Create objects until the pool is full, on the executor.  At most one
+     * refill runs at a time.
+     */
+    private fun refill() {
+        if (numAvailable.get() >= size || !refilling.compareAndSet(false, true)) {
+            return
+        }
+        executor.execute {
+            try {
+                while (running.get() && numAvailable.get() < size) {
+                    val item = try {
+                        create()
+                    } catch (t: Throwable) {
+                        stats.numFailures.incrementAndGet()
+                        logger.warn("Failed to create an object for the $name pool", t)
+                        return@execute
+                    }
+                    stats.numCreated.incrementAndGet()
+                    offer(Entry(item, clock.instant()))
+                }
+            } finally {
+                refilling.set(false)
+            }
+            if (!running.get()) {
+                // We may have raced with stop().
+                drain()
+            }
+        }
+    }
+
+    private fun offer(entry: Entry) {
+        available.addLast(entry)
+        numAvailable.incrementAndGet()
+    }
+
+    private fun poll(): Entry? = available.pollFirst()?.also { numAvailable.decrementAndGet() }
+
+    private fun drain() {
+        generateSequence { poll() }.forEach { discardSafely(it.item) }
+    }
+
+    private fun discardSafely(item: T) {
+        try {
+            discard(item)
+        } catch (t: Throwable) {
+            logger.warn("Failed to discard an object from the $name pool", t)
+        }
+    }
+
+    fun getStatsJson(): OrderedJsonObject = OrderedJsonObject().apply {
+        put("size", size)
+        put("available", numAvailable.get())
+        put("num_created", stats.numCreated.get())
+        put("num_hits", stats.numHits.get())
+        put("num_misses", stats.numMisses.get())
+        put("num_expired", stats.numExpired.get())
+        put("num_failures", stats.numFailures.get())
+    }
+
+    private inner class Entry(val item: T, private val created: Instant) {
+        fun isExpired() = Duration.between(created, clock.instant()) > maxAge
+    }
+
+    private class Stats {
+        val numCreated = AtomicLong()
+        val numHits = AtomicLong()
+        val numMisses = AtomicLong()
+        val numExpired = AtomicLong()
+        val numFailures = AtomicLong()
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.xmpp
+
+import org.jitsi.nlj.stats.DelayStats
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.utils.logging2.createLogger
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.LinkedList
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Runs Colibri requests on an [Executor], so that a slow request for one
+ * conference (e.g. one which creates endpoints and harvests ICE candidates)
+ * doesn't delay the requests for the other conferences.  Requests with the
+ * same key (i.e. for the same conference) run one at a time, in the order in
+ * which they were submitted.
+ */
+class ColibriRequestDispatcher @JvmOverloads constructor(
+    private val executor: Executor,
+    private val clock: Clock = Clock.systemUTC()
+) {
+    private val logger = createLogger()
+
+    /**
+     * The requests waiting to run, by key.  A key is only present while it
+     * has a request running or waiting, and at most one task drains its
+     * queue at any time.
+     */
+    private val queues: MutableMap<String, LinkedList<Request<*>>> = ConcurrentHashMap()
+
+    /**
+     * The number of requests which have been submitted but haven't started
+     * running yet.
+     */
+    private val queueDepth = AtomicInteger()
+    private val maxQueueDepth = AtomicInteger()
+    private val numRequests = AtomicLong()
+    private val numFailedRequests = AtomicLong()
+
+    /**
+     * How long requests wait in their queue before they run.
+     */
+    private val queueDelayStats = DelayStats(DELAY_THRESHOLDS)
+
+    /**
+     * How long requests take to run.
+     */
+    private val processingDelayStats = DelayStats(DELAY_THRESHOLDS)
+
+    /**
+     * Submit a request to run after all of the previously submitted requests
+     * with the same key.
+     *
+     * @return a future which completes with the result of [block], or
+     * exceptionally with the exception it threw.
+     */
+    fun <T> submit(key: String, block: () -> T): CompletableFuture<T> {
+        val request = Request(block, clock.instant())
+        numRequests.incrementAndGet()
+        maxQueueDepth.accumulateAndGet(queueDepth.incrementAndGet(), ::maxOf)
+
+        var startDraining = false
+        queues.compute(key) { _, queue ->
+            (queue ?: LinkedList<Request<*>>().also { startDraining = true }).apply { add(request) }
+        }
+        if (startDraining) {
+            executor.execute { drain(key) }
+        }
+
+        return request.future
+    }
+
+    /**
+     * Run the requests for a specific key until its queue is empty.
+     */
+    private fun drain(key: String) {
+        while (true) {
+            var next: Request<*>? = null
+            queues.computeIfPresent(key) { _, queue ->
+                next = queue.peek()
+                // Removing the queue signals that nobody is draining it
+                // anymore, so the next request will start a new task.
+                if (next == null) null else queue
+            }
+            val request = next ?: return
+            run(request)
+            queues.computeIfPresent(key) { _, queue -> queue.apply { remove(request) } }
+        }
+    }
+
+    private fun run(request: Request<*>) {
+        val start = clock.instant()
+        queueDepth.decrementAndGet()
+        queueDelayStats.addDelay(Duration.between(request.submitted, start).toMillis())
+        try {
+            request.run()
+        } catch (t: Throwable) {
+            numFailedRequests.incrementAndGet()
+            logger.warn("Colibri request failed", t)
+        }
+        processingDelayStats.addDelay(Duration.between(start, clock.instant()).toMillis())
+    }
+
+    /**
+     * The number of requests which are waiting to run.
+     */
+    fun getQueueDepth(): Int = queueDepth.get()
+
+    fun getStatsJson(): OrderedJsonObject = OrderedJsonObject().apply {
+        put("queue_depth", queueDepth.get())
+        put("max_queue_depth", maxQueueDepth.get())
+        put("num_active_keys", queues.size)
+        put("num_requests", numRequests.get())
+        put("num_failed_requests", numFailedRequests.get())
+        put("queue_delay", queueDelayStats.toJson())
+        put("processing_delay", processingDelayStats.toJson())
+    }
+
+    private class Request<T>(
+        private val block: () -> T,
+        val submitted: Instant
+    ) {
+        val future = CompletableFuture<T>()
+
+        fun run() {
+            try {
+                future.complete(block())
+            } catch (t: Throwable) {
+                future.completeExceptionally(t)
+                throw t
+            }
+        }
+    }
+
+    companion object {
+        private val DELAY_THRESHOLDS = longArrayOf(5, 50, 100, 1000)
+    }
+}
@@ -33,12 +33,17 @@ import org.jivesoftware.smack.packet.IQ
 import org.jivesoftware.smack.packet.XMPPError
 import org.jivesoftware.smackx.iqversion.packet.Version
 import org.json.simple.JSONObject
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
 import java.util.concurrent.atomic.AtomicBoolean
 
 /**
  * The XMPP client connection for the videobridge
  */
-class XmppConnection : IQListener {
+class XmppConnection @JvmOverloads constructor(
+    val config: XmppClientConnectionConfig = XmppClientConnectionConfig()
+) : IQListener {
     private val logger = createLogger()
 
     /**
@@ -46,8 +51,6 @@ class XmppConnection : IQListener {
      */
     val mucClientManager = MucClientManager(FEATURES)
 
-    val config = XmppClientConnectionConfig()
-
     private val running = AtomicBoolean(false)
 
     var eventHandler: EventHandler? = null
@@ -176,7 +179,24 @@ class XmppConnection : IQListener {
                 handler.versionIqReceived(iq)
             }
             is ColibriConferenceIQ -> measureDelay(colibriDelayStats, { iq.toXML() }) {
-                handler.colibriConferenceIqReceived(iq)
+                // The IQListener interface of jicoco expects the response to
+                // be returned, so this is where we wait for it. The MUC
+                // clients use the async IQ handler mode, so this is one of
+                // Smack's pool threads rather than the thread which handles
+                // the IQs of the connection. The request itself runs on the
+                // Colibri request dispatcher.
+                val response = CompletableFuture<IQ>()
+                handler.colibriConferenceIqReceived(iq) { response.complete(it) }
+                try {
+                    response.get(config.colibriResponseTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                } catch (e: TimeoutException) {
+                    logger.warn("Timed out waiting for the response to a Colibri request: ${iq.toXML()}")
+                    IQUtils.createError(
+                        iq,
+                        XMPPError.Condition.internal_server_error,
+                        "Timed out handling the request"
+                    )
+                }
             }
             is HealthCheckIQ -> measureDelay(healthDelayStats, { iq.toXML() }) {
                 handler.healthCheckIqReceived(iq)
@@ -205,7 +225,11 @@ class XmppConnection : IQListener {
     }
 
     interface EventHandler {
-        fun colibriConferenceIqReceived(iq: ColibriConferenceIQ): IQ
+        /**
+         * Handle a Colibri request, and invoke [responseSender] with the
+         * response once it has been handled.
+         */
+        fun colibriConferenceIqReceived(iq: ColibriConferenceIQ, responseSender: (IQ) -> Unit)
         fun versionIqReceived(iq: Version): IQ
         fun healthCheckIqReceived(iq: HealthCheckIQ): IQ
     }
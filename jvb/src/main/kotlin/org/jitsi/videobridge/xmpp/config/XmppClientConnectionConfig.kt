@@ -44,6 +44,13 @@ class XmppClientConnectionConfig {
             }
     }
 
+    /**
+     * How long to wait for the response to a Colibri request before responding with an error.
+     */
+    val colibriResponseTimeout: Duration by config {
+        "videobridge.apis.xmpp-client.colibri-response-timeout".from(JitsiConfig.newConfig)
+    }
+
     private val presenceIntervalProperty: Duration by config {
         "videobridge.apis.xmpp-client.presence-interval".from(JitsiConfig.newConfig)
     }
@@ -60,11 +67,13 @@ class XmppClientConnectionConfig {
 }
 
 /**
- * We want the bridge to default to using "sync" as the IQ handler mode (unless the config actually overrides it).
+ * We want the bridge to default to using "async" as the IQ handler mode (unless the config actually overrides it), so
+ * that a slow Colibri request doesn't delay the IQs which follow it on the same connection. The requests for the same
+ * conference are still handled in order by the Colibri request dispatcher.
  */
 private fun MucClientConfiguration.applyDefaultIqHandlerMode() {
     if (this.iqHandlerMode == null) {
-        this.iqHandlerMode = "sync"
+        this.iqHandlerMode = "async"
     }
 }
 
@@ -0,0 +1,194 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge;
+
+import org.jitsi.nlj.*;
+import org.jitsi.nlj.rtp.*;
+import org.jitsi.shutdown.*;
+import org.jitsi.videobridge.transport.dtls.*;
+import org.jitsi.videobridge.transport.ice.*;
+import org.jitsi.videobridge.util.*;
+import org.jxmpp.jid.impl.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Compares the cost of forwarding an audio packet to the receivers of a
+ * conference through the generic path of {@link Conference} (an
+ * {@link Endpoint#wants} and an {@link Endpoint#send} call for every
+ * endpoint) and through an {@link AudioForwarder} (with
+ * {@link Endpoint#wantsAudio} and {@link Endpoint#sendAudio}). The receivers
+ * are real endpoints of a real conference, so both paths include handing the
+ * packets to their transceivers.
+ *
+ * The endpoints are not connected to anything. Their transports are marked as
+ * connected, and their audio as accepted, through reflection, which is the
+ * only state that the two paths check.
+ *
+ * This is not run as part of the build. Run {@link #main(String[])} with the
+ * test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AudioFanOutBenchmark
+{
+    private static final int PACKET_SIZE = 150;
+
+    @Param({"generic", "fast"})
+    public String path;
+
+    @Param({"100"})
+    public int numReceivers;
+
+    private Videobridge videobridge;
+
+    private Conference conference;
+
+    private final List<Endpoint> receivers = new ArrayList<>();
+
+    private final AudioForwarder audioForwarder = new AudioForwarder();
+
+    private long sent = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+        throws Exception
+    {
+        videobridge = new Videobridge(null, new ShutdownServiceImpl());
+        conference = videobridge.createConference(
+            JidCreate.entityBareFrom("benchmark@conference.example.com"));
+        for (int i = 0; i < numReceivers; i++)
+        {
+            Endpoint endpoint = conference.createLocalEndpoint("endpoint-" + i, true);
+            markConnected(endpoint);
+            receivers.add(endpoint);
+        }
+        audioForwarder.setReceivers(receivers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        videobridge.expireConference(conference);
+    }
+
+    /**
+     * Marks the ICE and DTLS transports of {@code endpoint} as connected, and
+     * its audio as accepted.
+     */
+    private static void markConnected(Endpoint endpoint)
+        throws ReflectiveOperationException
+    {
+        IceTransport iceTransport = (IceTransport) getField(endpoint, Endpoint.class, "iceTransport");
+        ((AtomicBoolean) getField(iceTransport, IceTransport.class, "iceConnected")).set(true);
+        DtlsTransport dtlsTransport = (DtlsTransport) getField(endpoint, Endpoint.class, "dtlsTransport");
+        Field handshakeComplete = DtlsTransport.class.getDeclaredField("dtlsHandshakeComplete");
+        handshakeComplete.setAccessible(true);
+        handshakeComplete.setBoolean(dtlsTransport, true);
+        Field acceptAudio = Endpoint.class.getDeclaredField("acceptAudio");
+        acceptAudio.setAccessible(true);
+        acceptAudio.setBoolean(endpoint, true);
+    }
+
+    private static Object getField(Object target, Class<?> clazz, String name)
+        throws ReflectiveOperationException
+    {
+        Field field = clazz.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    @Benchmark
+    public long forwardPacket()
+    {
+        PacketInfo packetInfo = createPacket();
+        if ("fast".equals(path))
+        {
+            if (!audioForwarder.forward(packetInfo, null))
+            {
+                ByteBufferPool.returnBuffer(packetInfo.getPacket().getBuffer());
+            }
+        }
+        else
+        {
+            sendOut(packetInfo);
+        }
+        return ++sent;
+    }
+
+    /**
+     * A copy of the loop in {@link Conference}'s generic path.
+     */
+    private void sendOut(PacketInfo packetInfo)
+    {
+        String sourceEndpointId = packetInfo.getEndpointId();
+        PotentialPacketHandler prevHandler = null;
+        for (Endpoint receiver : receivers)
+        {
+            if (receiver.getID().equals(sourceEndpointId))
+            {
+                continue;
+            }
+
+            if (receiver.wants(packetInfo))
+            {
+                if (prevHandler != null)
+                {
+                    prevHandler.send(packetInfo.clone());
+                }
+                prevHandler = receiver;
+            }
+        }
+
+        if (prevHandler != null)
+        {
+            prevHandler.send(packetInfo);
+        }
+        else
+        {
+            ByteBufferPool.returnBuffer(packetInfo.getPacket().getBuffer());
+        }
+    }
+
+    private static PacketInfo createPacket()
+    {
+        byte[] buffer = ByteBufferPool.getBuffer(PACKET_SIZE);
+        // Version 2, PT 111 (opus).
+        buffer[0] = (byte) 0x80;
+        buffer[1] = 111;
+        PacketInfo packetInfo = new PacketInfo(new AudioRtpPacket(buffer, 0, PACKET_SIZE));
+        packetInfo.setEndpointId("sender");
+        return packetInfo;
+    }
+
+    public static void main(String[] args)
+        throws RunnerException
+    {
+        new Runner(
+            new OptionsBuilder().include(AudioFanOutBenchmark.class.getSimpleName()).build()
+        ).run();
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.cc.vp8;
+
+import org.jitsi.nlj.*;
+import org.jitsi.nlj.rtp.codec.vp8.*;
+import org.jitsi.rtp.rtp.*;
+import org.jitsi.utils.logging2.*;
+import org.jitsi_modified.impl.neomedia.codec.video.vp8.*;
+import org.junit.*;
+
+import javax.xml.bind.*;
+
+import static org.junit.Assert.*;
+
+public class VP8LayerIndexTest
+{
+    private static final long SSRC = 0xcafebabeL;
+
+    private static final byte[] vp8PacketTemplate =
+        DatatypeConverter.parseHexBinary(
+            /* RTP Header */
+            "80" + /* V, P, X, CC */
+                "60" + /* M, PT */
+                "0000" + /* Seq */
+                "00000000" + /* TS */
+                "cafebabe" + /* SSRC */
+                /* VP8 Payload descriptor */
+                "90" + /* First byte, X, S set, PID = 0 */
+                "e0" + /* X byte, I, L, T set */
+                "8000" + /* I byte (ext pic id), M set */
+                "00" + /* L byte (tl0 pic idx) */
+                "00" + /* T/K byte (tid) */
+                /* VP8 payload header */
+                "00" + /* P = 0. */
+                "0000" + /* Length = 0. */
+                "9d012a" + /* Keyframe startcode */
+                "0050D002" /* 1280 × 720 (little-endian) */
+        );
+
+    private final Logger logger = new LoggerImpl(getClass().getName());
+
+    private final VP8LayerIndex index = new VP8LayerIndex(VP8QualityFilter.MIN_KEY_FRAME_WAIT_MS);
+
+    /**
+     * Creates a single-packet frame.
+     */
+    private static VP8Frame frame(long ssrc, int pictureId, int tid, boolean keyframe)
+    {
+        byte[] buffer = vp8PacketTemplate.clone();
+        RtpPacket rtpPacket = new RtpPacket(buffer, 0, buffer.length);
+        rtpPacket.setSsrc(ssrc);
+        rtpPacket.setSequenceNumber(pictureId);
+        rtpPacket.setTimestamp(pictureId * 3000L);
+
+        DePacketizer.VP8PayloadDescriptor.setStartOfPartition(
+            rtpPacket.buffer, rtpPacket.getPayloadOffset(), true);
+        DePacketizer.VP8PayloadDescriptor.setTemporalLayerIndex(
+            rtpPacket.buffer, rtpPacket.getPayloadOffset(), rtpPacket.getPayloadLength(), tid);
+        int szVP8PayloadDescriptor = DePacketizer.VP8PayloadDescriptor.getSize(
+            rtpPacket.buffer, rtpPacket.getPayloadOffset(), rtpPacket.getPayloadLength());
+        DePacketizer.VP8PayloadHeader.setKeyFrame(
+            rtpPacket.buffer, rtpPacket.getPayloadOffset() + szVP8PayloadDescriptor, keyframe);
+        rtpPacket.setMarked(true);
+
+        Vp8Packet vp8Packet = rtpPacket.toOtherType(Vp8Packet::new);
+        vp8Packet.setPictureId(pictureId);
+        vp8Packet.setTL0PICIDX(pictureId);
+
+        return new VP8Frame(vp8Packet);
+    }
+
+    @Test
+    public void anyKeyframeStartsAGroup()
+    {
+        assertEquals(-1, index.getKeyframeGroupStartMs());
+        assertFalse(index.isInKeyframeGroup(0));
+
+        index.frameReceived(frame(SSRC, 1, 0, false), 0, false, 100);
+        assertEquals(-1, index.getKeyframeGroupStartMs());
+
+        // Keyframes start a group even if nobody accepted them.
+        VP8Frame keyframe = frame(SSRC, 2, 0, true);
+        assertFalse(keyframe.isAccepted());
+        index.frameReceived(keyframe, 0, false, 200);
+        assertEquals(200, index.getKeyframeGroupStartMs());
+        assertTrue(index.isInKeyframeGroup(500));
+        assertFalse(index.isInKeyframeGroup(501));
+
+        // The keyframes of the other encodings are part of the same group.
+        index.frameReceived(frame(SSRC + 1, 2, 0, true), 1, false, 250);
+        assertEquals(200, index.getKeyframeGroupStartMs());
+
+        // A keyframe after the window starts a new group.
+        index.frameReceived(frame(SSRC, 20, 0, true), 0, false, 600);
+        assertEquals(600, index.getKeyframeGroupStartMs());
+    }
+
+    @Test
+    public void keyframePendingForEncodingsWhichHaventSentTheirKeyframe()
+    {
+        index.frameReceived(frame(SSRC + 2, 1, 0, false), 2, false, 0);
+        index.frameReceived(frame(SSRC, 2, 0, true), 0, false, 100);
+
+        // Encoding 2 is sending but hasn't sent its keyframe of this group.
+        assertTrue(index.isKeyframePending(2, 100));
+        // Encoding 1 has never been received, so no keyframe is expected.
+        assertFalse(index.isKeyframePending(1, 100));
+        assertFalse(index.isKeyframePending(-1, 100));
+        // Encoding 0 has sent its keyframe.
+        assertFalse(index.isKeyframePending(0, 100));
+
+        index.frameReceived(frame(SSRC + 2, 2, 0, true), 2, false, 150);
+        assertFalse(index.isKeyframePending(2, 150));
+
+        // After the window we no longer wait for a keyframe.
+        index.frameReceived(frame(SSRC + 1, 3, 0, false), 1, false, 200);
+        assertFalse(index.isKeyframePending(1, 401));
+    }
+
+    @Test
+    public void droppedNewerTl0()
+    {
+        VP8Frame keyframe = frame(SSRC, 10, 0, true);
+        index.frameReceived(keyframe, 0, false, 0);
+        // The keyframe itself is the latest TL0, which isn't newer.
+        assertFalse(index.hasDroppedNewerTl0(keyframe, 0));
+
+        // A newer TL1 frame doesn't matter.
+        index.frameReceived(frame(SSRC, 11, 1, false), 0, false, 33);
+        assertFalse(index.hasDroppedNewerTl0(keyframe, 0));
+
+        // A newer TL0 which was dropped means we can't start from the keyframe.
+        VP8Frame tl0 = frame(SSRC, 12, 0, false);
+        index.frameReceived(tl0, 0, false, 66);
+        assertTrue(index.hasDroppedNewerTl0(keyframe, 0));
+
+        // But we can if it was accepted.
+        tl0.setAccepted(true);
+        assertFalse(index.hasDroppedNewerTl0(keyframe, 0));
+
+        // An older TL0 doesn't replace the latest one.
+        index.frameReceived(frame(SSRC, 9, 0, false), 0, false, 70);
+        assertFalse(index.hasDroppedNewerTl0(keyframe, 0));
+
+        // Frames of another SSRC (or encoding) are not compared.
+        assertFalse(index.hasDroppedNewerTl0(frame(SSRC + 1, 10, 0, true), 0));
+        assertFalse(index.hasDroppedNewerTl0(keyframe, 1));
+
+        // A reset forgets the previous TL0.
+        index.frameReceived(frame(SSRC, 100, 2, false), 0, true, 100);
+        assertFalse(index.hasDroppedNewerTl0(frame(SSRC, 50, 0, true), 0));
+    }
+
+    @Test
+    public void noKeyframeRequestWhileTheTargetKeyframeIsOnItsWay()
+    {
+        VP8QualityFilter filter = new VP8QualityFilter(index, logger);
+        int target0 = RtpLayerDesc.getIndex(0, 0, 2);
+        int target2 = RtpLayerDesc.getIndex(2, 0, 2);
+
+        // Encoding 2 is being received, encoding 1 isn't.
+        receive(filter, frame(SSRC + 2, 1, 0, false), 2, target0, 0);
+
+        // Start forwarding encoding 0 on its keyframe.
+        assertTrue(receive(filter, frame(SSRC, 2, 0, true), 0, target0, 100));
+        assertFalse(filter.needsKeyframe());
+
+        // The target moves up while the keyframe group is in progress: the
+        // keyframe of encoding 2 is on its way, so we don't request one.
+        assertFalse(receive(filter, frame(SSRC + 2, 3, 1, false), 2, target2, 110));
+        assertFalse(filter.needsKeyframe());
+
+        // Once the window has passed without it, we do.
+        assertFalse(receive(filter, frame(SSRC + 2, 4, 0, false), 2, target2, 401));
+        assertTrue(filter.needsKeyframe());
+
+        // When the keyframe arrives, we switch on it.
+        assertTrue(receive(filter, frame(SSRC + 2, 5, 0, true), 2, target2, 450));
+        assertFalse(filter.needsKeyframe());
+    }
+
+    @Test
+    public void keyframeRequestForATargetWhichIsNotBeingReceived()
+    {
+        VP8QualityFilter filter = new VP8QualityFilter(index, logger);
+        int target0 = RtpLayerDesc.getIndex(0, 0, 2);
+        int target1 = RtpLayerDesc.getIndex(1, 0, 2);
+
+        assertTrue(receive(filter, frame(SSRC, 1, 0, true), 0, target0, 0));
+
+        // Nothing was ever received on encoding 1, so we don't wait for it.
+        assertTrue(receive(filter, frame(SSRC, 2, 0, false), 0, target1, 33));
+        assertTrue(filter.needsKeyframe());
+    }
+
+    /**
+     * Passes a frame through the filter and then updates the index, like
+     * {@link VP8AdaptiveSourceProjectionContext} does.
+     */
+    private boolean receive(VP8QualityFilter filter, VP8Frame frame, int encodingId, int targetIndex, long nowMs)
+    {
+        boolean accepted = filter.acceptFrame(frame, RtpLayerDesc.getIndex(encodingId, 0, 0), targetIndex, nowMs);
+        frame.setAccepted(accepted);
+        index.frameReceived(frame, encodingId, false, nowMs);
+        return accepted;
+    }
+}
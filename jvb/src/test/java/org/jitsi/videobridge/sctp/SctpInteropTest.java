@@ -0,0 +1,226 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.sctp;
+
+import org.jetbrains.annotations.*;
+import org.jitsi.utils.logging2.*;
+import org.jitsi.videobridge.util.*;
+import org.jitsi_modified.sctp4j.*;
+import org.junit.*;
+
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Connects the pure-Java {@link SctpAssociation} to the native (usrsctp)
+ * stack, in both roles, and exchanges messages in both directions.
+ */
+public class SctpInteropTest
+{
+    private static final int PPID_STRING = 51;
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final Queue<byte[]> toJava = new ConcurrentLinkedQueue<>();
+    private final Queue<byte[]> toNative = new ConcurrentLinkedQueue<>();
+
+    private final List<String> receivedByJava = new CopyOnWriteArrayList<>();
+    private final List<String> receivedByNative = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch javaReady = new CountDownLatch(1);
+    private final CountDownLatch nativeReady = new CountDownLatch(1);
+
+    private ScheduledExecutorService scheduler;
+    private SctpAssociation association;
+    private SctpSocket socket;
+
+    @BeforeClass
+    public static void initSctp4j()
+    {
+        Sctp4j.init(SctpAssociation.DEFAULT_PORT);
+    }
+
+    @Before
+    public void setUp()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        association = new SctpAssociation(
+            (data, offset, length) -> {
+                toNative.add(Arrays.copyOfRange(data, offset, offset + length));
+                ByteBufferPool.returnBuffer(data);
+                return 0;
+            },
+            new SctpAssociation.Listener()
+            {
+                @Override
+                public void onReady()
+                {
+                    javaReady.countDown();
+                }
+
+                @Override
+                public void onData(@NotNull byte[] data, int sid, int ppid)
+                {
+                    receivedByJava.add(message(data, sid, ppid));
+                }
+
+                @Override
+                public void onDisconnected()
+                {
+                }
+            },
+            scheduler,
+            new LoggerImpl(SctpInteropTest.class.getName()));
+    }
+
+    @After
+    public void tearDown()
+    {
+        association.close();
+        if (socket != null)
+        {
+            socket.close();
+        }
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testJavaServerWithNativeClient()
+        throws Exception
+    {
+        SctpClientSocket client = Sctp4j.createClientSocket(SctpAssociation.DEFAULT_PORT);
+        setUpNativeSocket(client);
+        client.connect(SctpAssociation.DEFAULT_PORT);
+
+        pumpUntil(() -> javaReady.getCount() == 0 && nativeReady.getCount() == 0);
+        exchangeMessages();
+    }
+
+    @Test
+    public void testJavaClientWithNativeServer()
+        throws Exception
+    {
+        SctpServerSocket server = Sctp4j.createServerSocket(SctpAssociation.DEFAULT_PORT);
+        setUpNativeSocket(server);
+        server.listen();
+        association.connect();
+
+        pumpUntil(server::accept);
+        pumpUntil(() -> javaReady.getCount() == 0);
+        exchangeMessages();
+    }
+
+    private void setUpNativeSocket(SctpSocket socket)
+    {
+        this.socket = socket;
+        socket.outgoingDataSender = (data, offset, length) -> {
+            // The native stack reuses its buffer.
+            toJava.add(Arrays.copyOfRange(data, offset, offset + length));
+            return 0;
+        };
+        socket.dataCallback = (data, sid, ssn, tsn, ppid, context, flags)
+            -> receivedByNative.add(message(data, sid, (int) ppid));
+        socket.eventHandler = new SctpSocket.SctpSocketEventHandler()
+        {
+            @Override
+            public void onReady()
+            {
+                nativeReady.countDown();
+            }
+
+            @Override
+            public void onDisconnected()
+            {
+            }
+        };
+    }
+
+    private void exchangeMessages()
+        throws Exception
+    {
+        assertTrue(association.send(utf8("from java"), true, 1, PPID_STRING) >= 0);
+        pumpUntil(() -> !receivedByNative.isEmpty());
+        assertEquals(Collections.singletonList(message("from java", 1)), receivedByNative);
+
+        assertTrue(socket.send(utf8("from native"), true, 2, PPID_STRING) >= 0);
+        pumpUntil(() -> !receivedByJava.isEmpty());
+        assertEquals(Collections.singletonList(message("from native", 2)), receivedByJava);
+
+        // Large enough to be fragmented by both stacks.
+        char[] large = new char[5000];
+        Arrays.fill(large, 'x');
+        String largeMessage = new String(large);
+
+        assertTrue(association.send(utf8(largeMessage), true, 3, PPID_STRING) >= 0);
+        assertTrue(socket.send(utf8(largeMessage), true, 4, PPID_STRING) >= 0);
+        pumpUntil(() -> receivedByNative.size() == 2 && receivedByJava.size() == 2);
+        assertEquals(message(largeMessage, 3), receivedByNative.get(1));
+        assertEquals(message(largeMessage, 4), receivedByJava.get(1));
+    }
+
+    /**
+     * Delivers the packets in flight in both directions until
+     * {@code condition} holds. The native stack may send packets from its
+     * own timer thread, so we keep polling while waiting.
+     */
+    private void pumpUntil(BooleanSupplier condition)
+        throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean())
+        {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+
+            boolean idle = true;
+            byte[] packet;
+            while ((packet = toNative.poll()) != null)
+            {
+                socket.onConnIn(packet, 0, packet.length);
+                idle = false;
+            }
+            while ((packet = toJava.poll()) != null)
+            {
+                association.handleIncomingSctp(packet, 0, packet.length);
+                idle = false;
+            }
+            if (idle)
+            {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static ByteBuffer utf8(String s)
+    {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String message(byte[] data, int sid, int ppid)
+    {
+        return sid + "/" + ppid + "/" + new String(data, StandardCharsets.UTF_8);
+    }
+
+    private static String message(String data, int sid)
+    {
+        return sid + "/" + PPID_STRING + "/" + data;
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.sctp;
+
+import org.jetbrains.annotations.*;
+import org.jitsi.nlj.*;
+import org.jitsi.rtp.*;
+import org.jitsi.utils.logging2.*;
+import org.jitsi.videobridge.util.*;
+import org.jitsi_modified.sctp4j.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Compares the throughput of the native (usrsctp) and the pure-Java
+ * ({@link SctpAssociation}) SCTP stacks, by sending data channel sized
+ * messages between two associations connected back to back.  Each packet
+ * goes through a queue, so the sending and receiving paths are measured
+ * the way they are used by the bridge (including the buffer copy of the
+ * native path), without the DTLS layer.
+ *
+ * This is not run as part of the build. Run {@link #main(String[])} with the
+ * test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SctpThroughputBenchmark
+{
+    private static final int MESSAGES_PER_INVOCATION = 100;
+
+    private static final int PPID_STRING = 51;
+
+    @Param({"java", "native"})
+    public String implementation;
+
+    @Param({"100", "1000", "4000"})
+    public int messageSize;
+
+    private Link link;
+
+    private ByteBuffer message;
+
+    @Setup(Level.Trial)
+    public void setUp()
+        throws Exception
+    {
+        link = "java".equals(implementation) ? new JavaLink() : new NativeLink();
+        link.connect();
+        message = ByteBuffer.wrap(new byte[messageSize]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        link.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION)
+    public long sendMessages()
+    {
+        long target = link.receivedMessages.get() + MESSAGES_PER_INVOCATION;
+        for (int i = 0; i < MESSAGES_PER_INVOCATION; i++)
+        {
+            // The sender may run out of window, in which case we let the
+            // receiver catch up.
+            while (link.send(message.duplicate()) < 0)
+            {
+                link.pump();
+            }
+        }
+        while (link.receivedMessages.get() < target)
+        {
+            link.pump();
+        }
+        return link.receivedMessages.get();
+    }
+
+    public static void main(String[] args)
+        throws RunnerException
+    {
+        new Runner(
+            new OptionsBuilder().include(SctpThroughputBenchmark.class.getSimpleName()).build()
+        ).run();
+    }
+
+    /**
+     * Two associations connected back to back through packet queues, which
+     * are drained by the benchmark thread.
+     */
+    private abstract static class Link
+    {
+        final Queue<UnparsedPacket> toServer = new ConcurrentLinkedQueue<>();
+        final Queue<UnparsedPacket> toClient = new ConcurrentLinkedQueue<>();
+        final AtomicLong receivedMessages = new AtomicLong();
+
+        abstract void connect()
+            throws Exception;
+
+        abstract int send(ByteBuffer data);
+
+        abstract void deliverToServer(UnparsedPacket packet);
+
+        abstract void deliverToClient(UnparsedPacket packet);
+
+        abstract void close();
+
+        /**
+         * Delivers the packets queued in both directions.
+         */
+        void pump()
+        {
+            UnparsedPacket packet;
+            while ((packet = toServer.poll()) != null)
+            {
+                deliverToServer(packet);
+            }
+            while ((packet = toClient.poll()) != null)
+            {
+                deliverToClient(packet);
+            }
+        }
+
+        /**
+         * Queues a packet in a copy from the pool, like the bridge does with
+         * the packets of the native stack before it hands them to the DTLS
+         * transport.
+         */
+        static int enqueueCopy(Queue<UnparsedPacket> queue, byte[] data, int offset, int length)
+        {
+            byte[] copy = ByteBufferPool.getBuffer(length);
+            System.arraycopy(data, offset, copy, 0, length);
+            queue.add(new UnparsedPacket(copy, 0, length));
+            return 0;
+        }
+    }
+
+    private static class JavaLink
+        extends Link
+    {
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        private final Logger logger = new LoggerImpl(SctpThroughputBenchmark.class.getName());
+        private final CountDownLatch ready = new CountDownLatch(2);
+
+        private final SctpAssociation client = new SctpAssociation(
+            (data, offset, length) -> toServer.add(new UnparsedPacket(data, offset, length)) ? 0 : -1,
+            new Listener(),
+            scheduler,
+            logger);
+
+        private final SctpAssociation server = new SctpAssociation(
+            (data, offset, length) -> toClient.add(new UnparsedPacket(data, offset, length)) ? 0 : -1,
+            new Listener(),
+            scheduler,
+            logger);
+
+        @Override
+        void connect()
+            throws InterruptedException
+        {
+            client.connect();
+            while (!ready.await(1, TimeUnit.MILLISECONDS))
+            {
+                pump();
+            }
+        }
+
+        @Override
+        int send(ByteBuffer data)
+        {
+            return client.send(data, true, 0, PPID_STRING);
+        }
+
+        @Override
+        void deliverToServer(UnparsedPacket packet)
+        {
+            server.handleIncomingSctp(new PacketInfo(packet));
+        }
+
+        @Override
+        void deliverToClient(UnparsedPacket packet)
+        {
+            client.handleIncomingSctp(new PacketInfo(packet));
+        }
+
+        @Override
+        void close()
+        {
+            client.close();
+            server.close();
+            scheduler.shutdown();
+        }
+
+        private class Listener
+            implements SctpAssociation.Listener
+        {
+            @Override
+            public void onReady()
+            {
+                ready.countDown();
+            }
+
+            @Override
+            public void onData(@NotNull byte[] data, int sid, int ppid)
+            {
+                receivedMessages.incrementAndGet();
+            }
+
+            @Override
+            public void onDisconnected()
+            {
+            }
+        }
+    }
+
+    private static class NativeLink
+        extends Link
+    {
+        private static boolean initialized = false;
+
+        private SctpServerSocket server;
+        private SctpClientSocket client;
+
+        @Override
+        void connect()
+            throws InterruptedException
+        {
+            synchronized (NativeLink.class)
+            {
+                if (!initialized)
+                {
+                    Sctp4j.init(SctpAssociation.DEFAULT_PORT);
+                    initialized = true;
+                }
+            }
+
+            CountDownLatch ready = new CountDownLatch(1);
+            server = Sctp4j.createServerSocket(SctpAssociation.DEFAULT_PORT);
+            server.outgoingDataSender = (data, offset, length) -> enqueueCopy(toClient, data, offset, length);
+            server.dataCallback = (data, sid, ssn, tsn, ppid, context, flags) -> receivedMessages.incrementAndGet();
+            server.listen();
+
+            client = Sctp4j.createClientSocket(SctpAssociation.DEFAULT_PORT);
+            client.outgoingDataSender = (data, offset, length) -> enqueueCopy(toServer, data, offset, length);
+            client.eventHandler = new SctpSocket.SctpSocketEventHandler()
+            {
+                @Override
+                public void onReady()
+                {
+                    ready.countDown();
+                }
+
+                @Override
+                public void onDisconnected()
+                {
+                }
+            };
+            client.connect(SctpAssociation.DEFAULT_PORT);
+
+            while (!server.accept() || !ready.await(1, TimeUnit.MILLISECONDS))
+            {
+                pump();
+            }
+        }
+
+        @Override
+        int send(ByteBuffer data)
+        {
+            return client.send(data, true, 0, PPID_STRING);
+        }
+
+        @Override
+        void deliverToServer(UnparsedPacket packet)
+        {
+            server.onConnIn(packet.getBuffer(), packet.getOffset(), packet.getLength());
+            ByteBufferPool.returnBuffer(packet.getBuffer());
+        }
+
+        @Override
+        void deliverToClient(UnparsedPacket packet)
+        {
+            client.onConnIn(packet.getBuffer(), packet.getOffset(), packet.getLength());
+            ByteBufferPool.returnBuffer(packet.getBuffer());
+        }
+
+        @Override
+        void close()
+        {
+            client.close();
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.transport.ice;
+
+import org.ice4j.*;
+import org.ice4j.ice.*;
+import org.jitsi.utils.logging2.*;
+import org.jitsi.videobridge.util.*;
+import org.jitsi.xmpp.extensions.jingle.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares platform and virtual threads for the blocking receive loops of
+ * the ICE transports. It connects an {@link IceTransport} per simulated
+ * endpoint (with the bridge's single-port harvester) to an ice4j
+ * {@link Agent} acting as the client, runs the
+ * {@link IceTransport#startReadingData()} loops on a cached thread pool (like
+ * the {@link TaskPools#IO_POOL}) or on virtual threads, and keeps every
+ * endpoint busy with packets sent by its client. It measures the latency
+ * from a client sending a packet to the reader of its endpoint handling it,
+ * and reports the number of platform threads and the RSS of the process at
+ * the end of each trial.
+ *
+ * This is not run as part of the build. Run {@link #main(String[])} with the
+ * test classpath. Virtual threads need Java 21 or later, and Java 24 or
+ * later to not pin their carrier threads in ice4j. The host candidates are
+ * harvested on the non-loopback interfaces, and each client uses a socket,
+ * so the file descriptor limit must be above the number of endpoints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BlockingReaderBenchmark
+{
+    private static final int PACKET_SIZE = 200;
+
+    /**
+     * The value of the second byte of the packets which the benchmark waits
+     * for (the other packets are only load).
+     */
+    private static final byte PROBE = 1;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"2000"})
+    public int numEndpoints;
+
+    @Param({"50"})
+    public int packetsPerSecond;
+
+    @Param({"30000"})
+    public int clientBasePort;
+
+    private final Logger logger = new LoggerImpl(BlockingReaderBenchmark.class.getName());
+
+    private final List<IceTransport> transports = new ArrayList<>();
+
+    private final List<Agent> clients = new ArrayList<>();
+
+    private final List<DatagramSocket> clientSockets = new ArrayList<>();
+
+    private final BlockingQueue<Integer> probesReceived = new LinkedBlockingQueue<>();
+
+    private ExecutorService readers;
+
+    private ScheduledExecutorService load;
+
+    private int nextEndpoint = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+        throws Exception
+    {
+        logger.setLevel(java.util.logging.Level.WARNING);
+        readers = "virtual".equals(mode)
+            ? VirtualThreads.newThreadPerTaskExecutor("reader")
+            : Executors.newCachedThreadPool();
+        if (readers == null)
+        {
+            throw new IllegalStateException("Virtual threads are not supported by Java "
+                + System.getProperty("java.version"));
+        }
+
+        for (int i = 0; i < numEndpoints; i++)
+        {
+            connect(i);
+        }
+
+        byte[] loadBuf = new byte[PACKET_SIZE];
+        loadBuf[0] = (byte) 0x80;
+        load = Executors.newSingleThreadScheduledExecutor();
+        load.scheduleAtFixedRate(
+            () -> clientSockets.forEach(socket -> send(socket, loadBuf)),
+            0,
+            TimeUnit.SECONDS.toNanos(1) / packetsPerSecond,
+            TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Connects endpoint {@code i} to a new client and starts its reader.
+     */
+    private void connect(int i)
+        throws Exception
+    {
+        IceTransport transport = new IceTransport("endpoint-" + i, false, logger);
+        CountDownLatch connected = new CountDownLatch(1);
+        transport.eventHandler = new IceTransport.EventHandler()
+        {
+            @Override
+            public void connected()
+            {
+                connected.countDown();
+            }
+
+            @Override
+            public void failed()
+            {
+            }
+
+            @Override
+            public void consentUpdated(java.time.Instant time)
+            {
+            }
+        };
+        transport.incomingDataHandler = (data, offset, length, receivedTime) -> {
+            if (data[offset + 1] == PROBE)
+            {
+                probesReceived.add(ByteBuffer.wrap(data, offset + 2, 4).getInt());
+            }
+        };
+
+        Agent client = new Agent();
+        client.setControlling(true);
+        IceMediaStream stream = client.createMediaStream("stream");
+        int port = clientBasePort + i;
+        Component component = client.createComponent(
+            stream, Transport.UDP, port, port, port, KeepAliveStrategy.SELECTED_ONLY, true);
+
+        IceUdpTransportPacketExtension endpointDescription = new IceUdpTransportPacketExtension();
+        transport.describe(endpointDescription);
+        stream.setRemoteUfrag(endpointDescription.getUfrag());
+        stream.setRemotePassword(endpointDescription.getPassword());
+        for (CandidatePacketExtension candidate : endpointDescription.getCandidateList())
+        {
+            if (Transport.UDP.toString().equalsIgnoreCase(candidate.getProtocol()))
+            {
+                component.addRemoteCandidate(new RemoteCandidate(
+                    new TransportAddress(candidate.getIP(), candidate.getPort(), Transport.UDP),
+                    component,
+                    org.ice4j.ice.CandidateType.HOST_CANDIDATE,
+                    candidate.getFoundation(),
+                    candidate.getPriority(),
+                    null));
+            }
+        }
+
+        IceUdpTransportPacketExtension clientDescription = new IceUdpTransportPacketExtension();
+        clientDescription.setUfrag(client.getLocalUfrag());
+        clientDescription.setPassword(client.getLocalPassword());
+        for (LocalCandidate candidate : component.getLocalCandidates())
+        {
+            CandidatePacketExtension cpe = new CandidatePacketExtension();
+            cpe.setComponent(component.getComponentID());
+            cpe.setFoundation(candidate.getFoundation());
+            cpe.setGeneration(client.getGeneration());
+            cpe.setID("client-" + i + "-" + candidate.getFoundation());
+            cpe.setNetwork(0);
+            cpe.setPriority(candidate.getPriority());
+            cpe.setProtocol(Transport.UDP.toString());
+            cpe.setType(org.jitsi.xmpp.extensions.jingle.CandidateType.host);
+            cpe.setIP(candidate.getTransportAddress().getHostAddress());
+            cpe.setPort(candidate.getTransportAddress().getPort());
+            clientDescription.addCandidate(cpe);
+        }
+
+        transport.startConnectivityEstablishment(clientDescription);
+        client.startConnectivityEstablishment();
+        if (!connected.await(10, TimeUnit.SECONDS))
+        {
+            throw new IllegalStateException("Endpoint " + i + " failed to connect");
+        }
+        readers.submit(transport::startReadingData);
+
+        transports.add(transport);
+        clients.add(client);
+        clientSockets.add(component.getSocket());
+    }
+
+    private static void send(DatagramSocket socket, byte[] buf)
+    {
+        try
+        {
+            socket.send(new DatagramPacket(buf, buf.length));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sends a packet to the next endpoint, and waits until its reader has
+     * handled it.
+     */
+    @Benchmark
+    public void receive()
+        throws InterruptedException
+    {
+        int endpoint = nextEndpoint;
+        nextEndpoint = (nextEndpoint + 1) % numEndpoints;
+
+        byte[] buf = new byte[PACKET_SIZE];
+        buf[0] = (byte) 0x80;
+        buf[1] = PROBE;
+        ByteBuffer.wrap(buf, 2, 4).putInt(endpoint);
+        send(clientSockets.get(endpoint), buf);
+
+        // A probe which timed out may still arrive, skip it.
+        Integer received;
+        do
+        {
+            received = probesReceived.poll(1, TimeUnit.SECONDS);
+        }
+        while (received != null && received != endpoint);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.out.println(mode + ": " + numEndpoints + " endpoints, "
+            + threads.getThreadCount() + " platform threads (peak "
+            + threads.getPeakThreadCount() + "), RSS " + readRssKb() + " KB");
+
+        load.shutdownNow();
+        transports.forEach(IceTransport::stop);
+        clients.forEach(Agent::free);
+        readers.shutdownNow();
+    }
+
+    /**
+     * Reads the resident set size of this process (Linux only), or returns -1.
+     */
+    private static long readRssKb()
+    {
+        try
+        {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status")))
+            {
+                if (line.startsWith("VmRSS:"))
+                {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        }
+        catch (IOException | NumberFormatException e)
+        {
+            // Not available on this platform.
+        }
+        return -1;
+    }
+
+    public static void main(String[] args)
+        throws RunnerException
+    {
+        new Runner(
+            new OptionsBuilder().include(BlockingReaderBenchmark.class.getSimpleName()).build()
+        ).run();
+    }
+}
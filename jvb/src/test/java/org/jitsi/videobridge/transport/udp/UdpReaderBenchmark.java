@@ -0,0 +1,215 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.transport.udp;
+
+import org.jitsi.utils.logging2.*;
+import org.jitsi.videobridge.transport.ice.*;
+import org.jitsi.videobridge.util.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares platform and virtual threads for the blocking receive loops of
+ * {@link UdpTransport}, like {@link BlockingReaderBenchmark} does for
+ * {@link IceTransport}. It creates a transport per simulated endpoint, runs
+ * their {@link UdpTransport#startReadingData()} loops on a cached thread pool
+ * (like the {@link TaskPools#IO_POOL}) or on virtual threads, and keeps every
+ * endpoint busy with packets sent by its client. It measures the latency from
+ * a client sending a packet to the reader of its endpoint handling it, and
+ * reports the number of platform threads and the RSS of the process at the
+ * end of each trial.
+ *
+ * This is not run as part of the build. Run {@link #main(String[])} with the
+ * test classpath. Virtual threads need Java 21 or later. Each endpoint and
+ * each client uses a socket, so the file descriptor limit must be above twice
+ * the number of endpoints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UdpReaderBenchmark
+{
+    private static final int PACKET_SIZE = 200;
+
+    /**
+     * The value of the second byte of the packets which the benchmark waits
+     * for (the other packets are only load).
+     */
+    private static final byte PROBE = 1;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"2000"})
+    public int numEndpoints;
+
+    @Param({"50"})
+    public int packetsPerSecond;
+
+    @Param({"20000"})
+    public int basePort;
+
+    private final Logger logger = new LoggerImpl(UdpReaderBenchmark.class.getName());
+
+    private final List<UdpTransport> transports = new ArrayList<>();
+
+    private final List<DatagramSocket> clientSockets = new ArrayList<>();
+
+    private final BlockingQueue<Integer> probesReceived = new LinkedBlockingQueue<>();
+
+    private ExecutorService readers;
+
+    private ScheduledExecutorService load;
+
+    private int nextEndpoint = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+        throws Exception
+    {
+        logger.setLevel(java.util.logging.Level.WARNING);
+        readers = "virtual".equals(mode)
+            ? VirtualThreads.newThreadPerTaskExecutor("reader")
+            : Executors.newCachedThreadPool();
+        if (readers == null)
+        {
+            throw new IllegalStateException("Virtual threads are not supported by Java "
+                + System.getProperty("java.version"));
+        }
+
+        for (int i = 0; i < numEndpoints; i++)
+        {
+            UdpTransport transport = new UdpTransport("127.0.0.1", basePort + i, logger);
+            transport.setIncomingDataHandler((data, offset, length, receivedTime) -> {
+                if (data[offset + 1] == PROBE)
+                {
+                    probesReceived.add(ByteBuffer.wrap(data, offset + 2, 4).getInt());
+                }
+            });
+            readers.submit(transport::startReadingData);
+            transports.add(transport);
+
+            DatagramSocket client = new DatagramSocket();
+            client.connect(new InetSocketAddress("127.0.0.1", basePort + i));
+            clientSockets.add(client);
+        }
+
+        byte[] loadBuf = new byte[PACKET_SIZE];
+        loadBuf[0] = (byte) 0x80;
+        load = Executors.newSingleThreadScheduledExecutor();
+        load.scheduleAtFixedRate(
+            () -> clientSockets.forEach(socket -> send(socket, loadBuf)),
+            0,
+            TimeUnit.SECONDS.toNanos(1) / packetsPerSecond,
+            TimeUnit.NANOSECONDS);
+    }
+
+    private static void send(DatagramSocket socket, byte[] buf)
+    {
+        try
+        {
+            socket.send(new DatagramPacket(buf, buf.length));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sends a packet to the next endpoint, and waits until its reader has
+     * handled it.
+     */
+    @Benchmark
+    public void receive()
+        throws InterruptedException
+    {
+        int endpoint = nextEndpoint;
+        nextEndpoint = (nextEndpoint + 1) % numEndpoints;
+
+        byte[] buf = new byte[PACKET_SIZE];
+        buf[0] = (byte) 0x80;
+        buf[1] = PROBE;
+        ByteBuffer.wrap(buf, 2, 4).putInt(endpoint);
+        send(clientSockets.get(endpoint), buf);
+
+        // A probe which timed out may still arrive, skip it.
+        Integer received;
+        do
+        {
+            received = probesReceived.poll(1, TimeUnit.SECONDS);
+        }
+        while (received != null && received != endpoint);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.out.println(mode + ": " + numEndpoints + " endpoints, "
+            + threads.getThreadCount() + " platform threads (peak "
+            + threads.getPeakThreadCount() + "), RSS " + readRssKb() + " KB");
+
+        load.shutdownNow();
+        transports.forEach(UdpTransport::stop);
+        clientSockets.forEach(DatagramSocket::close);
+        readers.shutdownNow();
+    }
+
+    /**
+     * Reads the resident set size of this process (Linux only), or returns -1.
+     */
+    private static long readRssKb()
+    {
+        try
+        {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status")))
+            {
+                if (line.startsWith("VmRSS:"))
+                {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        }
+        catch (IOException | NumberFormatException e)
+        {
+            // Not available on this platform.
+        }
+        return -1;
+    }
+
+    public static void main(String[] args)
+        throws RunnerException
+    {
+        new Runner(
+            new OptionsBuilder().include(UdpReaderBenchmark.class.getSimpleName()).build()
+        ).run();
+    }
+}
@@ -155,6 +155,40 @@ public void createMediaSources2()
         assertEquals(9, source.numRtpLayers());
     }
 
+    // 3 sim streams, 2 temporal layers observed on the first one -> 1 source,
+    // 8 layers
+    @Test
+    public void createMediaSourcesWithObservedTemporalLayers()
+    {
+        replayAll();
+
+        long videoSsrc1 = 12345;
+        long videoSsrc2 = 23456;
+        long videoSsrc3 = 34567;
+
+        SourcePacketExtension videoSource1 = createSource(videoSsrc1);
+        SourcePacketExtension videoSource2 = createSource(videoSsrc2);
+        SourcePacketExtension videoSource3 = createSource(videoSsrc3);
+
+        SourceGroupPacketExtension simGroup
+            = createGroup(
+                SourceGroupPacketExtension.SEMANTICS_SIMULCAST,
+                videoSource1,
+                videoSource2,
+                videoSource3);
+
+        MediaSourceDesc[] sources =
+            MediaSourceFactory.createMediaSources(
+                Arrays.asList(videoSource1, videoSource2, videoSource3),
+                Collections.singletonList(simGroup),
+                ssrc -> ssrc == videoSsrc1 ? 2 : 0);
+
+        assertNotNull(sources);
+        assertEquals(1, sources.length);
+        MediaSourceDesc source = sources[0];
+        assertEquals(8, source.numRtpLayers());
+    }
+
     // 3 sim streams, svc enabled, 3 rtx -> 1 source, 3 layers
     @Test
     public void createMediaSources3()
@@ -0,0 +1,154 @@
+/*
+ * Copyright @ 2020 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldHaveSize
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import io.kotest.matchers.types.shouldNotBeSameInstanceAs
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import org.jitsi.nlj.PacketInfo
+import org.jitsi.nlj.rtp.AudioRtpPacket
+
+class AudioForwarderTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val audioForwarder = AudioForwarder()
+
+    private val a = FakeReceiver("a")
+    private val b = FakeReceiver("b")
+    private val c = FakeReceiver("c")
+
+    private val octoReceived = mutableListOf<PacketInfo>()
+    private val octo = mockk<PotentialPacketHandler> {
+        every { wants(any()) } returns true
+        every { send(capture(octoReceived)) } returns Unit
+    }
+
+    init {
+        context("Forwarding to all receivers") {
+            audioForwarder.setReceivers(listOf(a, b, c))
+            audioForwarder.numReceivers shouldBe 3
+            val packetInfo = createPacket("a")
+
+            audioForwarder.forward(packetInfo, null) shouldBe true
+
+            should("exclude the source") {
+                a.received.shouldBeEmpty()
+            }
+            should("give the original to the last receiver and copies to the others") {
+                b.received shouldHaveSize 1
+                b.received[0] shouldNotBeSameInstanceAs packetInfo
+                c.received shouldHaveSize 1
+                c.received[0] shouldBeSameInstanceAs packetInfo
+            }
+        }
+        context("Receivers which don't want the packet") {
+            audioForwarder.setReceivers(listOf(a, b, c))
+            c.wants = false
+            val packetInfo = createPacket("a")
+
+            audioForwarder.forward(packetInfo, null) shouldBe true
+
+            should("be skipped") {
+                c.received.shouldBeEmpty()
+                b.received shouldHaveSize 1
+                b.received[0] shouldBeSameInstanceAs packetInfo
+            }
+        }
+        context("Forwarding with Octo") {
+            audioForwarder.setReceivers(listOf(a, b))
+            val packetInfo = createPacket("a")
+
+            context("when Octo wants the packet") {
+                audioForwarder.forward(packetInfo, octo) shouldBe true
+
+                should("give the original to Octo and a copy to the receiver") {
+                    octoReceived shouldHaveSize 1
+                    octoReceived[0] shouldBeSameInstanceAs packetInfo
+                    b.received shouldHaveSize 1
+                    b.received[0] shouldNotBeSameInstanceAs packetInfo
+                }
+            }
+            context("when Octo doesn't want the packet") {
+                every { octo.wants(any()) } returns false
+
+                audioForwarder.forward(packetInfo, octo) shouldBe true
+
+                should("give the original to the receiver") {
+                    verify(exactly = 0) { octo.send(any()) }
+                    b.received shouldHaveSize 1
+                    b.received[0] shouldBeSameInstanceAs packetInfo
+                }
+            }
+            context("when only Octo wants the packet") {
+                b.wants = false
+
+                audioForwarder.forward(packetInfo, octo) shouldBe true
+
+                should("give the original to Octo") {
+                    octoReceived shouldHaveSize 1
+                    octoReceived[0] shouldBeSameInstanceAs packetInfo
+                }
+            }
+        }
+        context("When no one wants the packet") {
+            context("because the source is the only receiver") {
+                audioForwarder.setReceivers(listOf(a))
+
+                should("return false so that the caller keeps the packet") {
+                    audioForwarder.forward(createPacket("a"), null) shouldBe false
+                    a.received.shouldBeEmpty()
+                }
+            }
+            context("because the receivers and Octo don't want it") {
+                audioForwarder.setReceivers(listOf(a, b))
+                b.wants = false
+                every { octo.wants(any()) } returns false
+
+                should("return false so that the caller keeps the packet") {
+                    audioForwarder.forward(createPacket("a"), octo) shouldBe false
+                    b.received.shouldBeEmpty()
+                    verify(exactly = 0) { octo.send(any()) }
+                }
+            }
+            context("because there are no receivers") {
+                should("return false so that the caller keeps the packet") {
+                    audioForwarder.forward(createPacket("a"), null) shouldBe false
+                }
+            }
+        }
+    }
+
+    private fun createPacket(sourceEndpointId: String) =
+        PacketInfo(AudioRtpPacket(ByteArray(150), 0, 150)).apply { endpointId = sourceEndpointId }
+
+    private class FakeReceiver(private val id: String) : AudioForwarder.Receiver {
+        var wants = true
+        val received = mutableListOf<PacketInfo>()
+
+        override fun getID() = id
+        override fun wantsAudio(packetInfo: PacketInfo) = wants
+        override fun sendAudio(packetInfo: PacketInfo) {
+            received.add(packetInfo)
+        }
+    }
+}
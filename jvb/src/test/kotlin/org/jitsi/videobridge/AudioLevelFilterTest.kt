@@ -0,0 +1,111 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
+import io.kotest.matchers.shouldBe
+import org.jitsi.test.time.FakeClock
+import org.jitsi.utils.ms
+
+class AudioLevelFilterTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val clock = FakeClock()
+    val filter = AudioLevelFilter(2, 500.ms, clock)
+
+    /**
+     * Receives a packet with a specific level from an endpoint, and returns whether it is forwarded.
+     */
+    fun receive(endpointId: String, level: Long): Boolean {
+        filter.levelReceived(endpointId, level)
+        return filter.accept(endpointId)
+    }
+
+    context("An endpoint which doesn't signal levels") {
+        should("be forwarded") {
+            filter.accept("a") shouldBe true
+            filter.accept(null) shouldBe true
+        }
+    }
+    context("Silence") {
+        should("not be forwarded") {
+            receive("a", 0) shouldBe false
+            filter.getForwardedSpeakers() shouldBe emptyList()
+        }
+    }
+    context("Speakers") {
+        receive("a", 50) shouldBe true
+        receive("b", 40) shouldBe true
+        should("be forwarded up to the limit") {
+            filter.getForwardedSpeakers() shouldContainExactlyInAnyOrder listOf("a", "b")
+        }
+        context("when a quieter speaker starts") {
+            should("not forward it") {
+                receive("c", 30) shouldBe false
+                filter.getForwardedSpeakers() shouldContainExactlyInAnyOrder listOf("a", "b")
+            }
+        }
+        context("when a louder speaker starts") {
+            should("replace the quietest speaker") {
+                receive("c", 60) shouldBe true
+                filter.getForwardedSpeakers() shouldContainExactlyInAnyOrder listOf("a", "c")
+                receive("b", 40) shouldBe false
+            }
+        }
+        context("when a speaker goes silent") {
+            clock.elapse(20.ms)
+            should("keep forwarding it during the hangover") {
+                receive("a", 0) shouldBe true
+                clock.elapse(400.ms)
+                receive("a", 0) shouldBe true
+            }
+            should("stop forwarding it after the hangover") {
+                clock.elapse(600.ms)
+                receive("a", 0) shouldBe false
+                filter.getForwardedSpeakers() shouldBe listOf("b")
+            }
+            should("let another speaker take its place after the hangover") {
+                receive("b", 40)
+                clock.elapse(490.ms)
+                receive("c", 10) shouldBe true
+                filter.getForwardedSpeakers() shouldContainExactlyInAnyOrder listOf("b", "c")
+            }
+        }
+        context("levels") {
+            should("be smoothed") {
+                filter.levelReceived("a", 100)
+                filter.getLevels().getValue("a") shouldBe 55.0
+            }
+            should("only be reported for active speakers") {
+                clock.elapse(300.ms)
+                filter.levelReceived("b", 40)
+                clock.elapse(300.ms)
+                filter.getLevels() shouldBe mapOf("b" to 40.0)
+            }
+        }
+        context("when a speaker is removed") {
+            filter.endpointRemoved("a")
+            should("let another speaker take its place") {
+                receive("c", 10) shouldBe true
+                filter.getForwardedSpeakers() shouldContainExactlyInAnyOrder listOf("b", "c")
+            }
+        }
+    }
+})
@@ -0,0 +1,142 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import org.jitsi.rtp.rtp.RtpPacket
+import org.jitsi.test.time.FakeClock
+import org.jitsi.utils.ms
+
+class AudioProjectionTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val clock = FakeClock()
+    val projection = AudioProjection(listOf(1001L, 1002L), clock)
+
+    projection.setSpeakers(listOf("a", "b", "c")) shouldBe true
+
+    context("The most recent speakers") {
+        should("be projected") {
+            projection.getSources() shouldBe mapOf(1001L to "a", 1002L to "b")
+            projection.accept("a") shouldBe true
+            projection.accept("b") shouldBe true
+            projection.accept("c") shouldBe false
+            projection.accept(null) shouldBe false
+        }
+        should("not be rewritten unless projected") {
+            projection.rewrite(packet(3, 1, 1000), "c") shouldBe false
+        }
+        should("be rewritten onto their slots") {
+            val packet = packet(1, 100, 5000)
+            projection.rewrite(packet, "a") shouldBe true
+            packet.ssrc shouldBe 1001L
+            packet.sequenceNumber shouldBe 100
+            packet.timestamp shouldBe 5000L
+        }
+    }
+    context("When the order changes") {
+        should("keep the slots of the speakers which stay") {
+            projection.setSpeakers(listOf("b", "a", "c")) shouldBe false
+            projection.getSources() shouldBe mapOf(1001L to "a", 1002L to "b")
+        }
+        should("give the slot of a speaker which left to the new one") {
+            projection.setSpeakers(listOf("c", "b", "a")) shouldBe true
+            projection.getSources() shouldBe mapOf(1001L to "c", 1002L to "b")
+        }
+    }
+    context("When a speaker which is not dominant starts talking") {
+        val levels = AudioLevelFilter(3, 500.ms, clock)
+        levels.levelReceived("a", 40)
+        levels.levelReceived("b", 40)
+
+        should("keep the projection while it is quieter") {
+            levels.levelReceived("c", 20)
+            projection.setSpeakers(listOf("a", "b", "c"), levels.getLevels()) shouldBe false
+            projection.getSources() shouldBe mapOf(1001L to "a", 1002L to "b")
+        }
+        should("project it as soon as it is louder, before it becomes dominant") {
+            levels.levelReceived("c", 60)
+            projection.setSpeakers(listOf("a", "b", "c"), levels.getLevels()) shouldBe true
+            projection.getSources() shouldBe mapOf(1001L to "a", 1002L to "c")
+        }
+        should("project it when the others stopped talking") {
+            levels.levelReceived("c", 10)
+            clock.elapse(400.ms)
+            levels.levelReceived("c", 10)
+            clock.elapse(200.ms)
+            projection.setSpeakers(listOf("a", "b", "c"), levels.getLevels()) shouldBe true
+            projection.getSources() shouldBe mapOf(1001L to "a", 1002L to "c")
+        }
+    }
+    context("Speakers with the same level") {
+        should("be ranked by speech activity") {
+            val levels = mapOf("a" to 30.0, "b" to 50.0, "c" to 50.0)
+            projection.setSpeakers(listOf("c", "a", "b"), levels) shouldBe true
+            projection.getSources() shouldBe mapOf(1001L to "c", 1002L to "b")
+        }
+    }
+    context("When a slot switches to another speaker") {
+        projection.rewrite(packet(1, 100, 5000), "a")
+        projection.rewrite(packet(1, 101, 5960), "a")
+        clock.elapse(100.ms)
+        projection.setSpeakers(listOf("c", "b"))
+
+        should("keep the sequence numbers and timestamps continuous") {
+            val first = packet(3, 60000, 123456)
+            projection.rewrite(first, "c") shouldBe true
+            first.ssrc shouldBe 1001L
+            first.sequenceNumber shouldBe 102
+            first.timestamp shouldBe 5960L + 100 * 48
+
+            val second = packet(3, 60001, 124416)
+            projection.rewrite(second, "c")
+            second.sequenceNumber shouldBe 103
+            second.timestamp shouldBe 5960L + 100 * 48 + 960
+        }
+        should("resume continuously when the previous speaker comes back") {
+            projection.rewrite(packet(3, 60000, 123456), "c")
+            clock.elapse(20.ms)
+            projection.setSpeakers(listOf("a", "b"))
+            val packet = packet(1, 150, 50000)
+            projection.rewrite(packet, "a")
+            packet.sequenceNumber shouldBe 103
+            packet.timestamp shouldBe 5960L + 100 * 48 + 20 * 48
+        }
+    }
+    context("Sequence numbers") {
+        projection.rewrite(packet(1, 65535, 5000), "a")
+        clock.elapse(20.ms)
+        projection.setSpeakers(listOf("c", "b"))
+        should("wrap around") {
+            val packet = packet(3, 10, 1000)
+            projection.rewrite(packet, "c")
+            packet.sequenceNumber shouldBe 0
+        }
+    }
+}) {
+    companion object {
+        private fun packet(ssrc: Long, sequenceNumber: Int, timestamp: Long) =
+            RtpPacket(ByteArray(32).apply { this[0] = 0x80.toByte() }, 0, 32).apply {
+                this.ssrc = ssrc
+                this.sequenceNumber = sequenceNumber
+                this.timestamp = timestamp
+            }
+    }
+}
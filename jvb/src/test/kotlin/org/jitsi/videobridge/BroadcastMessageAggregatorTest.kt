@@ -0,0 +1,119 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.spyk
+import org.jitsi.test.concurrent.FakeScheduledExecutorService
+import org.jitsi.utils.logging2.LoggerImpl
+import org.jitsi.utils.secs
+import org.jitsi.videobridge.message.BridgeChannelMessage
+import org.jitsi.videobridge.message.EndpointMessage
+import java.time.Duration
+
+class BroadcastMessageAggregatorTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val executor: FakeScheduledExecutorService = spyk()
+    val clock = executor.clock
+
+    val received = mutableMapOf<String, MutableList<BridgeChannelMessage>>()
+    fun endpoint(id: String): Endpoint = mockk {
+        every { this@mockk.id } returns id
+        every { sendMessage(any()) } answers {
+            received.getOrPut(id) { mutableListOf() } += firstArg<BridgeChannelMessage>()
+        }
+    }
+    val eps = listOf(endpoint("1"), endpoint("2"), endpoint("3"))
+
+    val octoMessages = mutableListOf<BridgeChannelMessage>()
+    val conference: Conference = mockk {
+        every { localEndpoints } returns eps
+        every { sendMessage(any(), emptyList(), true) } answers { octoMessages += firstArg<BridgeChannelMessage>() }
+    }
+
+    fun message(from: String) = EndpointMessage("").apply { this.from = from }
+
+    fun aggregator(window: Duration, maxRate: Double = 0.0, maxBurst: Double = 0.0) = BroadcastMessageAggregator(
+        conference,
+        executor,
+        LoggerImpl("test"),
+        clock,
+        mockk {
+            every { coalescingWindow } returns window
+            every { maxRatePerSender } returns maxRate
+            every { maxBurstPerSender } returns maxBurst
+        }
+    )
+
+    context("Without coalescing") {
+        val aggregator = aggregator(Duration.ZERO)
+        val msg = message("1")
+        aggregator.broadcast("1", msg) shouldBe true
+        should("send the message to the other endpoints immediately") {
+            received["1"] shouldBe null
+            received["2"]!! shouldContainExactly listOf(msg)
+            received["3"]!! shouldContainExactly listOf(msg)
+            octoMessages shouldContainExactly listOf(msg)
+        }
+    }
+    context("With coalescing") {
+        val aggregator = aggregator(Duration.ofMillis(20))
+        val msg1 = message("1")
+        val msg2 = message("2")
+        aggregator.broadcast("1", msg1)
+        aggregator.broadcast("2", msg2)
+        should("wait for the window to end") {
+            received.values.forEach { it.shouldBeEmpty() }
+            octoMessages.shouldBeEmpty()
+        }
+        context("when the window ends") {
+            executor.runOne()
+            should("send all the messages, in order") {
+                received["1"]!! shouldContainExactly listOf(msg2)
+                received["2"]!! shouldContainExactly listOf(msg1)
+                received["3"]!! shouldContainExactly listOf(msg1, msg2)
+                octoMessages shouldContainExactly listOf(msg1, msg2)
+            }
+        }
+    }
+    context("With a rate limit") {
+        val aggregator = aggregator(Duration.ZERO, maxRate = 1.0, maxBurst = 2.0)
+        val accepted = (1..5).map { aggregator.broadcast("1", message("1")) }
+        should("drop the messages above the burst") {
+            accepted shouldContainExactly listOf(true, true, false, false, false)
+            aggregator.getNumDroppedMessages() shouldBe 3
+            received["2"]!!.size shouldBe 2
+        }
+        should("not limit the other senders") {
+            aggregator.broadcast("2", message("2")) shouldBe true
+        }
+        context("after the bucket refills") {
+            clock.elapse(1.secs)
+            should("accept messages again") {
+                aggregator.broadcast("1", message("1")) shouldBe true
+                aggregator.broadcast("1", message("1")) shouldBe false
+            }
+        }
+    }
+})
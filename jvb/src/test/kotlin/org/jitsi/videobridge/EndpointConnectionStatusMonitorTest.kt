@@ -80,6 +80,7 @@ class EndpointConnectionStatusMonitorTest : ShouldSpec({
 
     val monitor = EndpointConnectionStatusMonitor(conference, executor, LoggerImpl("test"), clock).apply {
         start()
+        eps.filterIsInstance<Endpoint>().forEach(::endpointCreated)
     }
 
     context("EndpointConnectionStatusMonitor") {
@@ -0,0 +1,103 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge
+
+import io.kotest.core.spec.Spec
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.mockkConstructor
+import io.mockk.unmockkConstructor
+import org.jitsi.ConfigTest
+import org.jitsi.nlj.RtpLayerDesc
+import org.jitsi.nlj.util.Bandwidth
+import org.jitsi.nlj.util.bps
+import org.jitsi.test.time.FakeClock
+import org.jitsi.utils.MediaType
+import org.jitsi.utils.logging2.LoggerImpl
+import org.jitsi.videobridge.shim.ChannelShim
+import org.jitsi.xmpp.extensions.colibri.SourcePacketExtension
+import org.jxmpp.jid.impl.JidCreate
+import java.time.Duration
+import java.util.IdentityHashMap
+
+class EndpointTest : ConfigTest() {
+    private val videobridge = mockk<Videobridge> {
+        every { statistics } returns Videobridge.Statistics()
+    }
+    private val clock = FakeClock()
+
+    /**
+     * The bitrates that the layers have measured, since we don't feed any packets to the endpoint.
+     */
+    private val measuredBps = IdentityHashMap<RtpLayerDesc, Bandwidth>()
+
+    override fun beforeSpec(spec: Spec) {
+        super.beforeSpec(spec)
+        mockkConstructor(RtpLayerDesc::class)
+        every { anyConstructed<RtpLayerDesc>().getBitrate(any()) } answers {
+            measuredBps[self as RtpLayerDesc] ?: 0.bps
+        }
+    }
+
+    override fun afterSpec(spec: Spec) {
+        unmockkConstructor(RtpLayerDesc::class)
+        super.afterSpec(spec)
+    }
+
+    init {
+        val conference = Conference(
+            videobridge,
+            "id",
+            JidCreate.entityBareFrom("roomName@somedomain.com"),
+            Conference.GID_NOT_SET
+        )
+        val endpoint = Endpoint("abcdabcd", conference, LoggerImpl("test"), true, clock)
+        endpoint.addChannel(mockk<ChannelShim>(relaxed = true) {
+            every { mediaType } returns MediaType.VIDEO
+            every { sources } returns listOf(SourcePacketExtension().apply { ssrc = 1234 })
+            every { sourceGroups } returns null
+        })
+
+        context("Re-creating the media sources") {
+            endpoint.recreateMediaSources()
+            val oldLayers = endpoint.mediaSources.single().rtpLayers
+            oldLayers.forEachIndexed { i, layer -> measuredBps[layer] = Bandwidth(100_000.0 * (i + 1)) }
+
+            endpoint.recreateMediaSources()
+            val newLayers = endpoint.mediaSources.single().rtpLayers
+
+            should("create new layers") {
+                newLayers.size shouldBe oldLayers.size
+                newLayers.zip(oldLayers).forEach { (new, old) -> (new === old) shouldBe false }
+            }
+            should("keep the bitrates of the old layers") {
+                newLayers.forEachIndexed { i, layer ->
+                    endpoint.getLayerBitrateBps(layer, clock.millis()) shouldBe 100_000L * (i + 1)
+                }
+            }
+            context("once the new layers have been measured for long enough") {
+                clock.elapse(Duration.ofSeconds(10))
+                newLayers.forEach { measuredBps[it] = Bandwidth(50_000.0) }
+                should("use their own bitrates") {
+                    newLayers.forEach { endpoint.getLayerBitrateBps(it, clock.millis()) shouldBe 50_000L }
+                }
+            }
+        }
+    }
+}
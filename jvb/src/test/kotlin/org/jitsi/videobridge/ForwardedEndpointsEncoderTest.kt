@@ -0,0 +1,147 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeInstanceOf
+import org.jitsi.test.time.FakeClock
+import org.jitsi.utils.secs
+import org.jitsi.videobridge.message.BridgeChannelMessage
+import org.jitsi.videobridge.message.ForwardedEndpointsDeltaMessage
+import org.jitsi.videobridge.message.ForwardedEndpointsMessage
+import java.time.Duration
+
+class ForwardedEndpointsEncoderTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val clock = FakeClock()
+    val encoder = ForwardedEndpointsEncoder(clock, Duration.ofSeconds(30), 3)
+
+    val sent = mutableListOf<BridgeChannelMessage>()
+    fun send(forwarded: List<String>, conference: List<String>) {
+        encoder.update(forwarded, conference)
+        encoder.sendPending { sent += it; true }
+    }
+
+    context("The first message") {
+        send(listOf("a", "b"), listOf("a", "b", "c"))
+        should("be a full message") {
+            sent.size shouldBe 1
+            val msg = sent[0].shouldBeInstanceOf<ForwardedEndpointsMessage>()
+            msg.seq shouldBe 1L
+            msg.forwardedEndpoints shouldContainExactlyInAnyOrder listOf("a", "b")
+            msg.conferenceEndpoints shouldContainExactlyInAnyOrder listOf("a", "b", "c")
+        }
+        context("and the next one") {
+            send(listOf("a", "c"), listOf("a", "c", "d"))
+            should("be a delta") {
+                sent.size shouldBe 2
+                val msg = sent[1].shouldBeInstanceOf<ForwardedEndpointsDeltaMessage>()
+                msg.seq shouldBe 2L
+                msg.addedLastNEndpoints shouldContainExactlyInAnyOrder listOf("c")
+                msg.removedLastNEndpoints shouldContainExactlyInAnyOrder listOf("b")
+                msg.addedConferenceEndpoints shouldContainExactlyInAnyOrder listOf("d")
+                msg.removedConferenceEndpoints shouldContainExactlyInAnyOrder listOf("b")
+            }
+        }
+        context("after the maximum number of deltas") {
+            repeat(3) { send(listOf("a"), listOf("a", "$it")) }
+            send(listOf("b"), listOf("b"))
+            should("send a full message") {
+                sent.map { it::class } shouldBe listOf(
+                    ForwardedEndpointsMessage::class,
+                    ForwardedEndpointsDeltaMessage::class,
+                    ForwardedEndpointsDeltaMessage::class,
+                    ForwardedEndpointsDeltaMessage::class,
+                    ForwardedEndpointsMessage::class
+                )
+                (sent.last() as ForwardedEndpointsMessage).seq shouldBe 5L
+            }
+        }
+        context("after the resync interval") {
+            clock.elapse(30.secs)
+            send(listOf("b"), listOf("b"))
+            should("send a full message") {
+                sent.last().shouldBeInstanceOf<ForwardedEndpointsMessage>()
+            }
+        }
+        context("when nothing changes") {
+            should("not resync before the interval") {
+                clock.elapse(29.secs)
+                encoder.resyncIfDue() shouldBe false
+            }
+            should("resync the last state after the interval") {
+                clock.elapse(30.secs)
+                encoder.resyncIfDue() shouldBe true
+                encoder.sendPending { sent += it; true }
+                sent.size shouldBe 2
+                val msg = sent[1].shouldBeInstanceOf<ForwardedEndpointsMessage>()
+                msg.seq shouldBe 2L
+                msg.forwardedEndpoints shouldContainExactlyInAnyOrder listOf("a", "b")
+                msg.endpointsEnteringLastN.shouldBeEmpty()
+                encoder.resyncIfDue() shouldBe false
+            }
+        }
+        context("after a message which failed to be sent") {
+            encoder.update(listOf("a", "c"), listOf("a", "b", "c"))
+            encoder.sendPending { false }
+            should("retry it as a full message") {
+                encoder.resyncIfDue() shouldBe true
+                encoder.sendPending { sent += it; true }
+                sent.size shouldBe 2
+                val msg = sent[1].shouldBeInstanceOf<ForwardedEndpointsMessage>()
+                msg.seq shouldBe 3L
+                msg.forwardedEndpoints shouldContainExactlyInAnyOrder listOf("a", "c")
+            }
+            should("send the next change as a full message") {
+                send(listOf("c"), listOf("a", "b", "c"))
+                sent.size shouldBe 2
+                sent[1].shouldBeInstanceOf<ForwardedEndpointsMessage>()
+            }
+        }
+        context("after a reset") {
+            encoder.reset()
+            encoder.sendPending { sent += it; true }
+            should("send the last state again, as a full message") {
+                sent.size shouldBe 2
+                val msg = sent[1].shouldBeInstanceOf<ForwardedEndpointsMessage>()
+                msg.seq shouldBe 2L
+                msg.forwardedEndpoints shouldContainExactlyInAnyOrder listOf("a", "b")
+            }
+        }
+    }
+    context("Updates which haven't been sent") {
+        encoder.update(listOf("a"), listOf("a"))
+        encoder.update(listOf("a", "b"), listOf("a", "b"))
+        encoder.sendPending { sent += it; true }
+        encoder.sendPending { sent += it; true }
+        should("be coalesced") {
+            sent.size shouldBe 1
+            (sent[0] as ForwardedEndpointsMessage).forwardedEndpoints shouldContainExactlyInAnyOrder listOf("a", "b")
+        }
+    }
+    context("Without any update") {
+        encoder.sendPending { sent += it; true }
+        should("send nothing") {
+            sent.shouldBeEmpty()
+        }
+    }
+})
@@ -0,0 +1,83 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+
+class SsrcOwnerIndexTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val index = SsrcOwnerIndex()
+
+    init {
+        context("adding SSRCs") {
+            index.put(1, "a")
+            index.put(2, "a")
+            index.put(0xffffffffL, "b")
+            should("find their owner") {
+                index.getOwner(1) shouldBe "a"
+                index.getOwner(2) shouldBe "a"
+                index.getOwner(0xffffffffL) shouldBe "b"
+                index.getOwner(3) shouldBe null
+                index.size() shouldBe 3
+            }
+            context("and replacing the SSRCs of an owner") {
+                index.setSsrcs("a", listOf(2L, 4L))
+                should("only keep the new ones") {
+                    index.getOwner(1) shouldBe null
+                    index.getOwner(2) shouldBe "a"
+                    index.getOwner(4) shouldBe "a"
+                    index.getOwner(0xffffffffL) shouldBe "b"
+                }
+            }
+            context("and removing an owner") {
+                index.removeOwner("a")
+                should("keep the SSRCs of the other owners") {
+                    index.getOwner(1) shouldBe null
+                    index.getOwner(0xffffffffL) shouldBe "b"
+                    index.size() shouldBe 1
+                }
+            }
+            context("and moving an SSRC to a different owner") {
+                index.put(1, "b")
+                should("return the new owner") {
+                    index.getOwner(1) shouldBe "b"
+                    index.size() shouldBe 3
+                }
+            }
+        }
+        context("adding the SSRCs of an owner in a batch") {
+            index.put(1, "b")
+            index.putAll("a", listOf(1L, 2L, 3L))
+            should("record all of them, replacing the previous owner") {
+                index.getOwner(1) shouldBe "a"
+                index.getOwner(2) shouldBe "a"
+                index.getOwner(3) shouldBe "a"
+                index.size() shouldBe 3
+            }
+        }
+        context("adding many SSRCs") {
+            (1L..1000L).forEach { index.put(it * 7919, "ep$it") }
+            should("find all of them") {
+                (1L..1000L).forEach { index.getOwner(it * 7919) shouldBe "ep$it" }
+                index.size() shouldBe 1000
+            }
+        }
+    }
+}
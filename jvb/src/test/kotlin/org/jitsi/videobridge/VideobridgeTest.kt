@@ -18,15 +18,20 @@ package org.jitsi.videobridge
 import io.kotest.core.spec.IsolationMode
 import io.kotest.core.spec.style.ShouldSpec
 import io.kotest.matchers.shouldBe
+import io.kotest.matchers.shouldNotBe
 import io.kotest.matchers.types.shouldBeInstanceOf
 import io.mockk.mockk
 import io.mockk.verify
 import org.jitsi.nlj.util.OrderedJsonObject
 import org.jitsi.shutdown.ShutdownServiceImpl
+import org.jitsi.xmpp.extensions.colibri.ColibriConferenceIQ
 import org.jivesoftware.smack.packet.ErrorIQ
+import org.jivesoftware.smack.packet.IQ
 import org.jivesoftware.smack.packet.XMPPError
 import org.json.simple.parser.JSONParser
 import org.jxmpp.jid.impl.JidCreate
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
 
 class VideobridgeTest : ShouldSpec() {
     override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
@@ -37,6 +42,32 @@ class VideobridgeTest : ShouldSpec() {
         context("Debug state should be JSON") {
             videobridge.getDebugState(null, null, true).shouldBeValidJson()
         }
+        context("Colibri requests") {
+            context("for a conference with a name") {
+                val name = JidCreate.entityBareFrom("named@domain.org")
+                val conf = videobridge.createConference(name)
+                should("be queued with the request which creates it") {
+                    val create = ColibriConferenceIQ().apply { this.name = name }
+                    val update = ColibriConferenceIQ().apply { id = conf.id }
+                    videobridge.getColibriRequestKey(update) shouldBe videobridge.getColibriRequestKey(create)
+                }
+            }
+            context("for a conference without a name") {
+                val conf = videobridge.createConference(null)
+                should("be queued by the ID of the conference") {
+                    val update = ColibriConferenceIQ().apply { id = conf.id }
+                    videobridge.getColibriRequestKey(update) shouldBe videobridge.getColibriRequestKey(update)
+                    videobridge.getColibriRequestKey(update) shouldNotBe
+                        videobridge.getColibriRequestKey(ColibriConferenceIQ().apply { id = "other" })
+                }
+            }
+            context("which create conferences without a name") {
+                should("not be queued together") {
+                    videobridge.getColibriRequestKey(ColibriConferenceIQ()) shouldNotBe
+                        videobridge.getColibriRequestKey(ColibriConferenceIQ())
+                }
+            }
+        }
         context("Shutdown") {
             context("when a conference is active") {
                 val conf = videobridge.createConference(JidCreate.entityBareFrom("conf@domain.org"))
@@ -50,7 +81,9 @@ class VideobridgeTest : ShouldSpec() {
                     }
                     should("respond with an error if a new conference create is received via XMPP") {
                         val confCreateIq = ColibriUtilities.createConferenceIq(JidCreate.from("focusJid"))
-                        val resp = videobridge.handleColibriConferenceIQ(confCreateIq)
+                        val response = CompletableFuture<IQ>()
+                        videobridge.handleColibriConferenceIQ(confCreateIq) { response.complete(it) }
+                        val resp = response.get(5, TimeUnit.SECONDS)
                         resp.shouldBeInstanceOf<ErrorIQ>()
                         resp as ErrorIQ
                         resp.error.condition shouldBe XMPPError.Condition.service_unavailable
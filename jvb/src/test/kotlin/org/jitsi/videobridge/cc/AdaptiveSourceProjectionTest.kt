@@ -0,0 +1,105 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.cc
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+import org.jitsi.nlj.MediaSourceDesc
+import org.jitsi.nlj.PacketInfo
+import org.jitsi.nlj.RtpLayerDesc
+import org.jitsi.nlj.format.OpusPayloadType
+import org.jitsi.nlj.rtp.VideoRtpPacket
+import org.jitsi.utils.logging.DiagnosticContext
+import org.jitsi.utils.logging2.LoggerImpl
+
+class AdaptiveSourceProjectionTest : ShouldSpec({
+    val source = mockk<MediaSourceDesc> {
+        every { primarySSRC } returns 1234L
+        every { owner } returns "endpoint"
+    }
+    // Not a VP8 payload type, so that a generic context is used.
+    val payloadTypes = mapOf(PT.toByte() to OpusPayloadType(PT.toByte(), mutableMapOf()))
+    val projection = AdaptiveSourceProjection(
+        DiagnosticContext(),
+        source,
+        Runnable { },
+        payloadTypes,
+        LoggerImpl(AdaptiveSourceProjectionTest::class.qualifiedName)
+    )
+    val idleTimeoutMs = 30_000L
+    var seq = 100
+
+    fun receive(receivedMs: Long): PacketInfo {
+        val packet = mockk<VideoRtpPacket>(relaxed = true) {
+            every { payloadType } returns PT
+            every { qualityIndex } returns 0
+            every { sequenceNumber } returns seq++
+            every { timestamp } returns 3000L * seq
+        }
+        return PacketInfo(packet).apply { receivedTime = receivedMs }
+    }
+
+    fun isCompacted() = projection.debugState["compacted"] as Boolean
+
+    context("A projection which is suspended for longer than the idle timeout") {
+        projection.targetIndex = RtpLayerDesc.getIndex(0, 0, 0)
+        projection.accept(receive(0)) shouldBe true
+
+        projection.targetIndex = RtpLayerDesc.SUSPENDED_INDEX
+        projection.accept(receive(1_000)) shouldBe false
+        isCompacted() shouldBe false
+        projection.accept(receive(idleTimeoutMs)) shouldBe false
+
+        should("be compacted") {
+            isCompacted() shouldBe true
+        }
+        should("not pass packets through without rewriting them") {
+            val packetInfo = receive(idleTimeoutMs + 1)
+            shouldThrow<RewriteException> {
+                projection.rewriteRtp(packetInfo)
+            }
+        }
+        context("and then resumes") {
+            projection.targetIndex = RtpLayerDesc.getIndex(0, 0, 0)
+            val packetInfo = receive(idleTimeoutMs + 2_000)
+            projection.accept(packetInfo) shouldBe true
+
+            should("no longer be compacted") {
+                isCompacted() shouldBe false
+            }
+            should("rewrite packets") {
+                // Doesn't throw.
+                projection.rewriteRtp(packetInfo)
+            }
+            should("start counting the idle time again") {
+                projection.targetIndex = RtpLayerDesc.SUSPENDED_INDEX
+                projection.accept(receive(idleTimeoutMs + 3_000)) shouldBe false
+                isCompacted() shouldBe false
+
+                projection.accept(receive(2 * idleTimeoutMs + 2_000)) shouldBe false
+                isCompacted() shouldBe true
+                projection.debugState["numCompactions"] shouldBe 2
+            }
+        }
+    }
+})
+
+private const val PT = 100
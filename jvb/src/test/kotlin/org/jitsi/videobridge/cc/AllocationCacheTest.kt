@@ -0,0 +1,132 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.cc
+
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.longs.shouldBeGreaterThanOrEqual
+import io.kotest.matchers.longs.shouldBeLessThanOrEqual
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import io.mockk.every
+import io.mockk.mockk
+import org.jitsi.nlj.MediaSourceDesc
+import org.jitsi.videobridge.AbstractEndpoint
+import org.jitsi.videobridge.VideoConstraints
+import java.time.Duration
+
+class AllocationCacheTest : ShouldSpec({
+    val cache = BitrateController.AllocationCache(16, Duration.ofMillis(500), 0.05)
+
+    context("quantizing the bandwidth") {
+        should("round down by at most the bandwidth step") {
+            listOf(1_000L, 123_456L, 1_000_000L, 2_500_000L, 987_654_321L).forEach {
+                val quantized = cache.quantize(it)
+                quantized shouldBeLessThanOrEqual it
+                quantized shouldBeGreaterThanOrEqual (it / 1.05).toLong()
+            }
+        }
+        should("map similar bandwidths to the same bucket") {
+            cache.quantize(2_000_000) shouldBe cache.quantize(2_010_000)
+        }
+        should("leave the untrusted bandwidth alone") {
+            cache.quantize(Long.MAX_VALUE) shouldBe Long.MAX_VALUE
+            cache.quantize(-1) shouldBe -1
+        }
+    }
+    context("receivers which send video") {
+        should("share the keys of the receivers outside of the last-n of the others") {
+            // The last-n of the others (who each have their own ranking), and one shared by everyone else.
+            numDistinctKeys(100, 20) shouldBe 21
+        }
+        should("not share keys when last-n is disabled") {
+            numDistinctKeys(10, -1) shouldBe 10
+        }
+    }
+    context("a cache without entries") {
+        should("be disabled") {
+            BitrateController.AllocationCache(0, Duration.ofMillis(500), 0.05).isEnabled shouldBe false
+        }
+    }
+    context("looking up allocations") {
+        val lruCache = BitrateController.AllocationCache(2, Duration.ofMillis(500), 0.05)
+        val allocation = BitrateController.AllocationCache.CachedAllocation(intArrayOf(2), booleanArray(1))
+
+        should("return a cached allocation for an equal key") {
+            lruCache.put(key("a", 1_000_000), allocation, 0)
+            lruCache.get(key("a", 1_000_000), 100) shouldBeSameInstanceAs allocation
+        }
+        should("not return an allocation for a different key") {
+            lruCache.get(key("a", 2_000_000), 100) shouldBe null
+            lruCache.get(key("b", 1_000_000), 100) shouldBe null
+        }
+        should("evict the least recently used entry") {
+            lruCache.clear()
+            lruCache.put(key("a", 1_000_000), allocation, 0)
+            lruCache.put(key("b", 1_000_000), allocation, 0)
+            // Makes "b" the least recently used.
+            lruCache.get(key("a", 1_000_000), 0) shouldBeSameInstanceAs allocation
+            lruCache.put(key("c", 1_000_000), allocation, 0)
+
+            lruCache.size() shouldBe 2
+            lruCache.get(key("b", 1_000_000), 0) shouldBe null
+            lruCache.get(key("a", 1_000_000), 0) shouldBeSameInstanceAs allocation
+            lruCache.get(key("c", 1_000_000), 0) shouldBeSameInstanceAs allocation
+        }
+        should("expire entries after the TTL") {
+            lruCache.clear()
+            lruCache.put(key("a", 1_000_000), allocation, 0)
+            lruCache.get(key("a", 1_000_000), 499) shouldBeSameInstanceAs allocation
+            lruCache.get(key("a", 1_000_000), 500) shouldBe null
+            lruCache.size() shouldBe 0
+        }
+        should("remove expired entries when a new one is added") {
+            lruCache.clear()
+            lruCache.put(key("a", 1_000_000), allocation, 0)
+            lruCache.put(key("b", 1_000_000), allocation, 600)
+            lruCache.size() shouldBe 1
+            lruCache.get(key("b", 1_000_000), 600) shouldBeSameInstanceAs allocation
+        }
+    }
+})
+
+private fun key(endpointId: String, bandwidthBps: Long) = BitrateController.AllocationCache.Key(
+    listOf(endpointId),
+    listOf(VideoConstraints(720)),
+    listOf(arrayOf<MediaSourceDesc>()),
+    true,
+    bandwidthBps
+)
+
+/**
+ * @return the number of distinct keys of the receivers of a conference in which every endpoint sends video, i.e. the
+ * number of allocations computed per round with the cache.
+ */
+private fun numDistinctKeys(numEndpoints: Int, lastN: Int): Int {
+    val endpoints = (0 until numEndpoints).map { i ->
+        val sources = arrayOf(mockk<MediaSourceDesc>())
+        mockk<AbstractEndpoint> {
+            every { id } returns "endpoint-$i"
+            every { isExpired } returns false
+            every { mediaSources } returns sources
+        }
+    }
+    return endpoints.map { receiver ->
+        // The other endpoints, in speaker order.
+        val rankList = BitrateController.makeEndpointMultiRankList(endpoints - receiver, emptyMap(), lastN)
+        BitrateController.AllocationCache.Key.of(rankList, 1_000_000)
+    }.toSet().size
+}
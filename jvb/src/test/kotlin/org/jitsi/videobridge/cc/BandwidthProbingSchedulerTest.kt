@@ -0,0 +1,116 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.cc
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.spyk
+import org.jitsi.test.concurrent.FakeScheduledExecutorService
+import java.util.concurrent.Executor
+
+class BandwidthProbingSchedulerTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val ticker: FakeScheduledExecutorService = spyk()
+    // Ticks every 10 ms, and checks idle probes every 100 ms (10 ticks).
+    val scheduler = BandwidthProbingScheduler(10, 100, Executor { it.run() }, 2)
+
+    var numRuns = 0
+    var nextDelayMs = 0L
+    val probing = mockk<BandwidthProbing> {
+        every { probe() } answers {
+            numRuns++
+            nextDelayMs
+        }
+    }
+
+    /**
+     * Advances the wheel by a number of ticks.
+     */
+    fun tick(n: Int = 1) = repeat(n) { ticker.runOne() }
+
+    scheduler.start(ticker)
+
+    context("A scheduler which is not started") {
+        val notStarted = BandwidthProbingScheduler(10, 100, Executor { it.run() }, 2)
+        notStarted.register(probing)
+        should("not run anything") {
+            tick(5)
+            numRuns shouldBe 0
+        }
+    }
+
+    context("A registered probe") {
+        scheduler.register(probing)
+        should("run on the next tick") {
+            tick()
+            numRuns shouldBe 1
+        }
+        should("run on every tick while it has something to probe for") {
+            tick(5)
+            numRuns shouldBe 5
+        }
+        should("run after the delay it asks for") {
+            nextDelayMs = 30
+            tick()
+            numRuns shouldBe 1
+            tick(2)
+            numRuns shouldBe 1
+            tick()
+            numRuns shouldBe 2
+        }
+        context("which has nothing to probe for") {
+            nextDelayMs = -1
+            tick()
+            numRuns shouldBe 1
+            should("still be checked again by the timer") {
+                tick(9)
+                numRuns shouldBe 1
+                tick()
+                numRuns shouldBe 2
+            }
+            should("run on the next tick when woken up") {
+                scheduler.wake(probing)
+                tick()
+                numRuns shouldBe 2
+            }
+        }
+        context("which fails") {
+            every { probing.probe() } answers {
+                numRuns++
+                throw IllegalStateException()
+            }
+            tick()
+            numRuns shouldBe 1
+            should("be retried by the timer") {
+                tick(10)
+                numRuns shouldBe 2
+            }
+        }
+        context("which is deregistered") {
+            scheduler.deregister(probing)
+            should("not run") {
+                tick(20)
+                numRuns shouldBe 0
+            }
+        }
+    }
+})
@@ -0,0 +1,77 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.cc
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+import org.jitsi.nlj.util.Bandwidth
+import org.jitsi.test.time.FakeClock
+import org.jitsi.utils.ms
+
+class BandwidthProbingTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val clock = FakeClock()
+    val sent = mutableListOf<Collection<Long>>()
+    val bitrateController = mockk<BitrateController> {
+        every { getStatusSnapshot() } returns BitrateController.StatusSnapshot(800_000, 5_000_000, listOf(2L, 1L))
+    }
+    val probing = BandwidthProbing(
+        BandwidthProbing.ProbingDataSender { ssrcs, numBytes ->
+            sent.add(ssrcs)
+            numBytes
+        },
+        clock
+    ).apply {
+        setBitrateController(bitrateController)
+        bandwidthEstimationChanged(Bandwidth(1_000_000.0))
+    }
+
+    context("When probing is disabled") {
+        should("not probe") {
+            probing.probe() shouldBe -1
+            sent.size shouldBe 0
+        }
+    }
+    context("When there is a deficit") {
+        probing.enabled = true
+        should("probe with the active SSRCs, in order") {
+            probing.probe() shouldBe 0
+            sent shouldContainExactly listOf(listOf(2L, 1L))
+        }
+        context("and the cluster fails") {
+            probing.probe()
+            clock.elapse(200.ms)
+            probing.probe() shouldBe 0
+            clock.elapse(500.ms)
+            should("back off according to the clock") {
+                probing.probe() shouldBe 1000
+                clock.elapse(999.ms)
+                probing.probe() shouldBe 1
+                sent.size shouldBe 1
+                clock.elapse(1.ms)
+                probing.probe() shouldBe 0
+                sent.size shouldBe 2
+            }
+        }
+    }
+})
@@ -0,0 +1,86 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.cc
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+import org.jitsi.nlj.MediaSourceDesc
+import org.jitsi.nlj.RtpLayerDesc
+import java.time.Duration
+import java.util.IdentityHashMap
+
+class LayerBitrateCarryOverTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val measuredBps = IdentityHashMap<RtpLayerDesc, Long>()
+    val carryOver = LayerBitrateCarryOver(Duration.ofSeconds(5)) { layer, _ -> measuredBps[layer] ?: 0 }
+
+    fun source(ssrc: Long, numTemporalLayers: Int): MediaSourceDesc {
+        val layers = Array(numTemporalLayers) {
+            RtpLayerDesc(0, if (numTemporalLayers > 1) it else -1, -1, 180, 30.0 / (1 shl (numTemporalLayers - 1 - it)), null)
+        }
+        return mockk {
+            every { primarySSRC } returns ssrc
+            every { rtpLayers } returns layers
+        }
+    }
+
+    val oldSource = source(1234, 3)
+    oldSource.rtpLayers.forEachIndexed { tid, layer -> measuredBps[layer] = 100_000L * (tid + 1) }
+
+    context("Rebuilding a source with fewer temporal layers") {
+        val newSource = source(1234, 2)
+        carryOver.sourcesRebuilt(arrayOf(oldSource), arrayOf(newSource), 1000)
+        should("carry over the bitrates of the remaining layers") {
+            carryOver.getBitrateBps(newSource.rtpLayers[0], 1000) shouldBe 100_000
+            carryOver.getBitrateBps(newSource.rtpLayers[1], 1000) shouldBe 200_000
+        }
+        context("once the new layers have been measured") {
+            measuredBps[newSource.rtpLayers[0]] = 150_000
+            measuredBps[newSource.rtpLayers[1]] = 180_000
+            should("use the higher of the two until the period ends") {
+                carryOver.getBitrateBps(newSource.rtpLayers[0], 2000) shouldBe 150_000
+                carryOver.getBitrateBps(newSource.rtpLayers[1], 2000) shouldBe 200_000
+            }
+            should("use the measured bitrates after the period") {
+                carryOver.getBitrateBps(newSource.rtpLayers[0], 6000) shouldBe 150_000
+                carryOver.getBitrateBps(newSource.rtpLayers[1], 6000) shouldBe 180_000
+            }
+        }
+    }
+    context("Rebuilding a source with a single temporal layer") {
+        val singleLayerSource = source(1234, 1)
+        measuredBps[singleLayerSource.rtpLayers[0]] = 300_000
+        val newSource = source(1234, 2)
+        carryOver.sourcesRebuilt(arrayOf(singleLayerSource), arrayOf(newSource), 1000)
+        should("carry over its bitrate to the base layer") {
+            carryOver.getBitrateBps(newSource.rtpLayers[0], 1000) shouldBe 300_000
+            carryOver.getBitrateBps(newSource.rtpLayers[1], 1000) shouldBe 0
+        }
+    }
+    context("Rebuilding with a different source") {
+        val newSource = source(5678, 3)
+        carryOver.sourcesRebuilt(arrayOf(oldSource), arrayOf(newSource), 1000)
+        should("not carry anything over") {
+            newSource.rtpLayers.forEach { carryOver.getBitrateBps(it, 1000) shouldBe 0 }
+        }
+    }
+})
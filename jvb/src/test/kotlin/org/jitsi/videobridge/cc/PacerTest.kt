@@ -0,0 +1,141 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.cc
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.comparables.shouldBeLessThan
+import io.kotest.matchers.shouldBe
+import io.mockk.spyk
+import org.jitsi.nlj.PacketInfo
+import org.jitsi.nlj.format.OpusPayloadType
+import org.jitsi.nlj.format.RtxPayloadType
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.rtp.UnparsedPacket
+import org.jitsi.test.concurrent.FakeScheduledExecutorService
+import org.jitsi.videobridge.util.NanoClock
+import java.time.Duration
+import java.util.function.Consumer
+import java.util.function.IntSupplier
+
+class PacerTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val executor: FakeScheduledExecutorService = spyk()
+    val sent = mutableListOf<String>()
+    val names = mutableMapOf<PacketInfo, String>()
+    val pacer = Pacer(
+        Consumer { sent.add(names.getValue(it)) },
+        executor,
+        1.0,
+        Duration.ofMillis(5),
+        Duration.ofMillis(250),
+        NanoClock.fromClock(executor.clock)
+    )
+    pacer.addPayloadType(OpusPayloadType(AUDIO_PT.toByte(), mutableMapOf()))
+    pacer.addPayloadType(RtxPayloadType(RTX_PT.toByte(), mutableMapOf("apt" to VIDEO_PT.toString())))
+
+    fun send(name: String, pt: Int, padding: Boolean = false, length: Int = 1000) {
+        val buf = ByteArray(length)
+        buf[0] = (if (padding) 0xa0 else 0x80).toByte()
+        buf[1] = pt.toByte()
+        val packetInfo = PacketInfo(UnparsedPacket(buf, 0, length))
+        names[packetInfo] = name
+        pacer.enqueue(packetInfo)
+    }
+
+    fun runUntilSent(count: Int) {
+        while (sent.size < count) {
+            executor.runOne()
+        }
+    }
+
+    context("Without a bandwidth estimation") {
+        send("v1", VIDEO_PT)
+        send("v2", VIDEO_PT)
+        should("send packets right away") {
+            sent shouldContainExactly listOf("v1", "v2")
+        }
+    }
+    context("With a bandwidth estimation") {
+        // 100 bytes per millisecond
+        pacer.bandwidthChanged(800_000)
+        val start = executor.clock.instant()
+        send("v1", VIDEO_PT)
+        send("v2", VIDEO_PT)
+        send("v3", VIDEO_PT)
+        context("audio") {
+            send("a1", AUDIO_PT)
+            should("not be paced") {
+                sent shouldContainExactly listOf("a1")
+            }
+        }
+        context("video") {
+            runUntilSent(3)
+            should("be sent at the pacing rate") {
+                sent shouldContainExactly listOf("v1", "v2", "v3")
+                (Duration.between(start, executor.clock.instant()) >= Duration.ofMillis(20)) shouldBe true
+                val delay = pacer.getDebugState()["pacing_delay"] as OrderedJsonObject
+                delay["total_count"] shouldBe 3L
+            }
+        }
+        context("retransmissions and probes") {
+            pacer.sendProbes(IntSupplier {
+                send("p1", RTX_PT)
+                send("p2", VIDEO_PT, padding = true)
+                2000
+            }) shouldBe 2000
+            send("r1", RTX_PT)
+            send("v4", VIDEO_PT, padding = true)
+            runUntilSent(7)
+            should("be sent by priority") {
+                sent shouldContainExactly listOf("r1", "v1", "v2", "v3", "v4", "p1", "p2")
+                pacer.getDebugState()["sent_retransmissions"] shouldBe 1L
+                pacer.getDebugState()["sent_video"] shouldBe 4L
+                pacer.getDebugState()["sent_probes"] shouldBe 2L
+            }
+        }
+    }
+    context("With a queue that would take too long to drain") {
+        // 1 byte per millisecond
+        pacer.bandwidthChanged(8_000)
+        val start = executor.clock.instant()
+        (1..10).forEach { send("v$it", VIDEO_PT) }
+        runUntilSent(10)
+        should("send them within about the max queue delay") {
+            Duration.between(start, executor.clock.instant()) shouldBeLessThan Duration.ofMillis(300)
+        }
+    }
+    context("When the bandwidth estimation goes away") {
+        pacer.bandwidthChanged(8_000)
+        send("v1", VIDEO_PT)
+        send("v2", VIDEO_PT)
+        sent.size shouldBe 0
+        pacer.bandwidthChanged(0)
+        should("send the queued packets") {
+            sent shouldContainExactly listOf("v1", "v2")
+        }
+    }
+}) {
+    companion object {
+        private const val AUDIO_PT = 111
+        private const val VIDEO_PT = 100
+        private const val RTX_PT = 96
+    }
+}
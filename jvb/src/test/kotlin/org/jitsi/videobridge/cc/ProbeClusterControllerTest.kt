@@ -0,0 +1,83 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.cc
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import java.time.Duration
+
+class ProbeClusterControllerTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val controller = ProbeClusterController(
+        Duration.ofMillis(200),
+        2.0,
+        Duration.ofMillis(500),
+        0.05,
+        Duration.ofSeconds(1),
+        Duration.ofSeconds(4)
+    )
+
+    init {
+        context("when there is no deficit") {
+            should("not probe") {
+                controller.getProbingBps(0, 1_000_000, 500_000, 500_000) shouldBe 0
+                controller.isProbing shouldBe false
+                controller.getNextProbeDelayMs(0) shouldBe -1
+            }
+        }
+        context("when the ideal bitrate fits in the estimation") {
+            should("not probe") {
+                controller.getProbingBps(0, 1_000_000, 500_000, 900_000) shouldBe 0
+            }
+        }
+        context("when there is a deficit") {
+            should("probe up to the ideal bitrate, limited by the cluster rate") {
+                controller.getProbingBps(0, 1_000_000, 800_000, 1_500_000) shouldBe 700_000
+                controller.getProbingBps(15, 1_000_000, 800_000, 5_000_000) shouldBe 1_200_000
+                controller.isProbing shouldBe true
+                controller.getNextProbeDelayMs(15) shouldBe 0
+            }
+            context("and the cluster ends") {
+                controller.getProbingBps(0, 1_000_000, 800_000, 5_000_000)
+                controller.getProbingBps(200, 1_000_000, 800_000, 5_000_000) shouldBe 0
+                context("and the estimation increases") {
+                    controller.bandwidthEstimationChanged(1_200_000)
+                    should("start a new cluster right away") {
+                        controller.getProbingBps(215, 1_200_000, 800_000, 5_000_000) shouldBe 1_600_000
+                    }
+                }
+                context("and the estimation doesn't increase") {
+                    should("back off exponentially") {
+                        controller.getProbingBps(699, 1_000_000, 800_000, 5_000_000) shouldBe 0
+                        // The first cluster failed at 700, the next one starts 1s later.
+                        controller.getProbingBps(700, 1_000_000, 800_000, 5_000_000) shouldBe 0
+                        controller.getNextProbeDelayMs(700) shouldBe 1000
+                        controller.getProbingBps(1699, 1_000_000, 800_000, 5_000_000) shouldBe 0
+                        controller.getProbingBps(1700, 1_000_000, 800_000, 5_000_000) shouldBe 1_200_000
+                        controller.getProbingBps(1900, 1_000_000, 800_000, 5_000_000) shouldBe 0
+                        // The second cluster failed at 2400, the next one starts 2s later.
+                        controller.getProbingBps(2400, 1_000_000, 800_000, 5_000_000) shouldBe 0
+                        controller.getProbingBps(4399, 1_000_000, 800_000, 5_000_000) shouldBe 0
+                        controller.getProbingBps(4400, 1_000_000, 800_000, 5_000_000) shouldBe 1_200_000
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.cc
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import java.time.Duration
+
+class TemporalLayerDiscoveryTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val discovery = TemporalLayerDiscovery(Duration.ofSeconds(5), Duration.ofSeconds(1))
+    var nowMs = 1000L
+
+    /**
+     * Receives 30 frames per second for [seconds], with the temporal layer indices of [pattern].
+     */
+    fun receive(seconds: Int, pattern: List<Int>, ssrc: Long = 1234): Int {
+        var changes = 0
+        repeat(seconds * 30) {
+            if (discovery.observe(ssrc, pattern[it % pattern.size], nowMs)) {
+                changes++
+            }
+            nowMs += 33
+        }
+        return changes
+    }
+
+    context("A stream that hasn't been observed for long enough") {
+        receive(2, listOf(0, 2, 1, 2))
+        should("have an unknown number of layers") {
+            discovery.getNumTemporalLayers(1234) shouldBe 0
+            discovery.getNumTemporalLayers(5678) shouldBe 0
+        }
+    }
+    context("A stream with three temporal layers") {
+        receive(6, listOf(0, 2, 1, 2)) shouldBe 1
+        should("have three layers") {
+            discovery.getNumTemporalLayers(1234) shouldBe 3
+        }
+        context("which stops sending its highest layer") {
+            receive(3, listOf(0, 1)) shouldBe 0
+            discovery.getNumTemporalLayers(1234) shouldBe 3
+            receive(3, listOf(0, 1)) shouldBe 1
+            should("lose it after the window") {
+                discovery.getNumTemporalLayers(1234) shouldBe 2
+            }
+            context("and resumes it") {
+                receive(1, listOf(0, 2, 1, 2)) shouldBe 0
+                discovery.getNumTemporalLayers(1234) shouldBe 2
+                receive(1, listOf(0, 2, 1, 2)) shouldBe 1
+                should("get it back after the rise delay") {
+                    discovery.getNumTemporalLayers(1234) shouldBe 3
+                }
+            }
+            context("and sends it in short bursts") {
+                repeat(3) {
+                    receive(1, listOf(0, 1)) shouldBe 0
+                    discovery.observe(1234, 2, nowMs) shouldBe false
+                }
+                receive(1, listOf(0, 1)) shouldBe 0
+                should("not get it back") {
+                    discovery.getNumTemporalLayers(1234) shouldBe 2
+                }
+            }
+        }
+    }
+    context("A stream without temporal layer indices") {
+        receive(6, listOf(-1))
+        should("have one layer") {
+            discovery.getNumTemporalLayers(1234) shouldBe 1
+        }
+    }
+    context("Retaining some streams") {
+        receive(6, listOf(0, 1))
+        receive(6, listOf(0), ssrc = 5678)
+        discovery.retain(listOf(5678L))
+        should("forget the others") {
+            discovery.getNumTemporalLayers(1234) shouldBe 0
+            discovery.getNumTemporalLayers(5678) shouldBe 1
+        }
+    }
+})
@@ -228,6 +228,74 @@ class BridgeChannelMessageTest : ShouldSpec() {
             parsed.bridgeId shouldBe "bridge1"
             parsed.endpointId shouldBe "abcdabcd"
         }
+
+        context("serializing and parsing AudioProjection") {
+            val message = AudioProjectionMessage(
+                listOf(AudioProjectionMessage.Source(1001, "abcdabcd"), AudioProjectionMessage.Source(1002, null))
+            )
+            val parsed = parse(message.toJson())
+
+            parsed.shouldBeInstanceOf<AudioProjectionMessage>()
+            parsed as AudioProjectionMessage
+            parsed.sources shouldBe message.sources
+        }
+
+        context("negotiating the encoding") {
+            val parsed = parse("""{"colibriClass":"ClientHello","encodings":["cbor","json"]}""")
+            parsed.shouldBeInstanceOf<ClientHelloMessage>()
+            parsed as ClientHelloMessage
+            parsed.encodings shouldContainExactly listOf("cbor", "json")
+
+            should("select the client's preferred encoding") {
+                BridgeChannelCodec.selectEncoding(parsed.encodings) shouldBe BridgeChannelEncoding.CBOR
+                BridgeChannelCodec.selectEncoding(listOf("unknown", "json")) shouldBe BridgeChannelEncoding.JSON
+                BridgeChannelCodec.selectEncoding(null) shouldBe BridgeChannelEncoding.JSON
+            }
+            should("include the selected encoding in the ServerHello") {
+                val serverHello = parse(ServerHelloMessage("cbor").toJson())
+                serverHello.shouldBeInstanceOf<ServerHelloMessage>()
+                serverHello as ServerHelloMessage
+                serverHello.encoding shouldBe "cbor"
+                ServerHelloMessage().toJson() shouldBe ServerHelloMessage.JSON_STRING
+            }
+        }
+
+        context("serializing and parsing as CBOR") {
+            should("work for ForwardedEndpointsMessage") {
+                val message = ForwardedEndpointsMessage(setOf("a", "b"), setOf("b"), listOf("a", "b", "c"))
+                val encoded = BridgeChannelCodec.encodeCbor(message)
+                val parsed = BridgeChannelCodec.decodeCbor(encoded)
+
+                parsed.shouldBeInstanceOf<ForwardedEndpointsMessage>()
+                parsed as ForwardedEndpointsMessage
+                parsed.forwardedEndpoints shouldContainExactly listOf("a", "b")
+                parsed.endpointsEnteringLastN shouldContainExactly listOf("b")
+                parsed.conferenceEndpoints shouldContainExactly listOf("a", "b", "c")
+            }
+            should("preserve the custom fields of EndpointMessage") {
+                val message = EndpointMessage("").apply {
+                    from = "abcdabcd"
+                    put("reaction", "clap")
+                }
+                val parsed = BridgeChannelCodec.decodeCbor(BridgeChannelCodec.encodeCbor(message))
+
+                parsed.shouldBeInstanceOf<EndpointMessage>()
+                parsed as EndpointMessage
+                parsed.from shouldBe "abcdabcd"
+                parsed.isBroadcast shouldBe true
+                parsed.otherFields shouldBe mapOf("reaction" to "clap")
+            }
+            should("work for EndpointConnectionStatusMessage") {
+                val parsed = BridgeChannelCodec.decodeCbor(
+                    BridgeChannelCodec.encodeCbor(EndpointConnectionStatusMessage("abcdabcd", false))
+                )
+
+                parsed.shouldBeInstanceOf<EndpointConnectionStatusMessage>()
+                parsed as EndpointConnectionStatusMessage
+                parsed.endpoint shouldBe "abcdabcd"
+                parsed.active shouldBe "false"
+            }
+        }
     }
 
     private fun testSerializePerformance() {
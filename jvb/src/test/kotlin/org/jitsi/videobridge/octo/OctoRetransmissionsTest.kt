@@ -0,0 +1,175 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.octo
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import org.jitsi.test.time.FakeClock
+import org.jitsi.utils.ms
+import org.jitsi.utils.secs
+
+class OctoRetransmissionsTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val clock = FakeClock()
+    val history = OctoSendHistory(16, 1.secs, clock)
+    val retransmitted = mutableListOf<Int>()
+    lateinit var requester: OctoNackRequester
+    requester = OctoNackRequester(
+        { buf, off, len ->
+            history.nackReceived(buf, off, len) { packet, packetOff, packetLen, sourceEpId ->
+                sourceEpId shouldBe "abcdabcd"
+                retransmitted.add(OctoNack.readUint16(packet, packetOff + 2))
+                requester.rtpPacketReceived(packet, packetOff, packetLen)
+            }
+        },
+        100.ms,
+        2,
+        1.secs,
+        clock
+    )
+    requester.setVideoSsrcs(setOf(SSRC))
+
+    /**
+     * Sends the packet with sequence number [seq], which is lost if [lost].
+     */
+    fun send(seq: Int, lost: Boolean = false) {
+        val packet = rtpPacket(seq)
+        history.add(SSRC, seq, packet, 0, packet.size, "abcdabcd")
+        if (!lost) {
+            requester.rtpPacketReceived(packet, 0, packet.size)
+        }
+    }
+
+    context("Without losses") {
+        (1..10).forEach { send(it) }
+        should("not request anything") {
+            retransmitted.shouldBeEmpty()
+            requester.getStatsJson()["nacks_sent"] shouldBe 0L
+        }
+    }
+    context("Lost packets") {
+        send(1)
+        send(2, lost = true)
+        send(3, lost = true)
+        send(4)
+        should("be requested and retransmitted") {
+            retransmitted shouldContainExactly listOf(2, 3)
+            requester.getStatsJson()["packets_lost"] shouldBe 2L
+            requester.getStatsJson()["packets_recovered"] shouldBe 2L
+            requester.getStatsJson()["repair_rate"] shouldBe 1.0
+            history.getStatsJson()["packets_retransmitted"] shouldBe 2L
+        }
+    }
+    context("Across a sequence number wrap-around") {
+        send(65534)
+        send(65535, lost = true)
+        send(0, lost = true)
+        send(1)
+        should("be requested and retransmitted") {
+            retransmitted shouldContainExactly listOf(65535, 0)
+        }
+    }
+    context("Packets which are no longer in the history") {
+        send(1)
+        send(2, lost = true)
+        (3..20).forEach { send(it, lost = true) }
+        send(21)
+        should("not be retransmitted") {
+            retransmitted shouldContainExactly (6..20).toList()
+            history.getStatsJson()["packets_not_found"] shouldBe 4L
+        }
+        context("and after the maximum age") {
+            clock.elapse(2.secs)
+            send(22)
+            should("be given up") {
+                requester.getStatsJson()["packets_lost"] shouldBe 19L
+                requester.getStatsJson()["packets_unrecovered"] shouldBe 4L
+            }
+        }
+    }
+    context("With three bridges") {
+        // The stream is sent by one bridge to two others, only one of which
+        // loses a packet. The retransmission goes to both.
+        val forwarded = mapOf("lossy" to mutableListOf<Int>(), "lossless" to mutableListOf())
+        val bridges = mutableMapOf<String, OctoNackRequester>()
+
+        fun deliver(bridge: String, packet: ByteArray, off: Int, len: Int) {
+            if (bridges.getValue(bridge).rtpPacketReceived(packet, off, len)) {
+                forwarded.getValue(bridge).add(OctoNack.readUint16(packet, off + 2))
+            }
+        }
+
+        forwarded.keys.forEach { bridge ->
+            bridges[bridge] = OctoNackRequester(
+                { buf, off, len ->
+                    history.nackReceived(buf, off, len) { packet, packetOff, packetLen, _ ->
+                        forwarded.keys.forEach { deliver(it, packet, packetOff, packetLen) }
+                    }
+                },
+                100.ms,
+                2,
+                1.secs,
+                clock
+            ).apply { setVideoSsrcs(setOf(SSRC)) }
+        }
+
+        (1..4).forEach { seq ->
+            val packet = rtpPacket(seq)
+            history.add(SSRC, seq, packet, 0, packet.size, "abcdabcd")
+            if (seq != 2) {
+                deliver("lossy", packet, 0, packet.size)
+            }
+            deliver("lossless", packet, 0, packet.size)
+        }
+        should("forward the retransmission only from the bridge which lost the packet") {
+            forwarded.getValue("lossy") shouldContainExactly listOf(1, 2, 3, 4)
+            forwarded.getValue("lossless") shouldContainExactly listOf(1, 2, 3, 4)
+            history.getStatsJson()["packets_retransmitted"] shouldBe 1L
+            bridges.getValue("lossy").getStatsJson()["packets_recovered"] shouldBe 1L
+            bridges.getValue("lossy").getStatsJson()["duplicates_dropped"] shouldBe 0L
+            bridges.getValue("lossless").getStatsJson()["duplicates_dropped"] shouldBe 1L
+        }
+    }
+    context("A stream which restarts with lower sequence numbers") {
+        send(1000)
+        send(10)
+        send(11)
+        should("not be dropped") {
+            retransmitted.shouldBeEmpty()
+            requester.getStatsJson()["duplicates_dropped"] shouldBe 0L
+        }
+    }
+}) {
+    companion object {
+        private const val SSRC = 0x1234abcdL
+
+        private fun rtpPacket(seq: Int) = ByteArray(20).apply {
+            this[0] = 0x80.toByte()
+            this[1] = 100
+            this[2] = (seq shr 8).toByte()
+            this[3] = seq.toByte()
+            this[8] = (SSRC shr 24).toByte()
+            this[9] = (SSRC shr 16).toByte()
+            this[10] = (SSRC shr 8).toByte()
+            this[11] = SSRC.toByte()
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.sctp
+
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.spyk
+import org.jitsi.test.concurrent.FakeScheduledExecutorService
+import org.jitsi.utils.logging2.LoggerImpl
+import org.jitsi_modified.sctp4j.SctpDataSender
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class Crc32cTest : ShouldSpec({
+    context("The checksum") {
+        // The test vectors of RFC 3720 Appendix B.4, which have zeros in the
+        // bytes of the SCTP checksum field.
+        should("match the vector with 32 bytes of zeros") {
+            Crc32c.ofSctpPacket(ByteArray(32), 0, 32) shouldBe 0x8A9136AA.toInt()
+        }
+        should("match the vector of an iSCSI read command") {
+            val pdu = bytes(
+                0x01, 0xc0, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                0x14, 0x00, 0x00, 0x00, 0x00, 0x00, 0x04, 0x00,
+                0x00, 0x00, 0x00, 0x14, 0x00, 0x00, 0x00, 0x18,
+                0x28, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                0x02, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+            )
+            Crc32c.ofSctpPacket(pdu, 0, pdu.size) shouldBe 0xD9963A56.toInt()
+        }
+        should("ignore the checksum field") {
+            val packet = ByteArray(32)
+            packet[9] = 0x55
+            Crc32c.ofSctpPacket(packet, 0, 32) shouldBe 0x8A9136AA.toInt()
+        }
+        should("honor the offset") {
+            Crc32c.ofSctpPacket(ByteArray(40), 8, 32) shouldBe 0x8A9136AA.toInt()
+        }
+    }
+    context("A packet sent by an association") {
+        val packets = mutableListOf<ByteArray>()
+        SctpAssociation(
+            SctpDataSender { data, offset, length ->
+                packets.add(data.copyOfRange(offset, offset + length))
+                0
+            },
+            object : SctpAssociation.Listener {
+                override fun onReady() {}
+                override fun onData(data: ByteArray, sid: Int, ppid: Int) {}
+                override fun onDisconnected() {}
+            },
+            spyk<FakeScheduledExecutorService>(),
+            LoggerImpl("test")
+        ).connect()
+        should("carry the checksum in little-endian byte order") {
+            val init = packets.single()
+            val checksum = ByteBuffer.wrap(init, 8, 4).order(ByteOrder.LITTLE_ENDIAN).int
+            checksum shouldBe Crc32c.ofSctpPacket(init, 0, init.size)
+        }
+    }
+})
+
+private fun bytes(vararg values: Int) = ByteArray(values.size) { values[it].toByte() }
@@ -0,0 +1,195 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.sctp
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import io.mockk.spyk
+import org.jitsi.test.concurrent.FakeScheduledExecutorService
+import org.jitsi.utils.logging2.LoggerImpl
+import org.jitsi.videobridge.util.ByteBufferPool
+import org.jitsi_modified.sctp4j.SctpDataSender
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.time.Clock
+import java.util.ArrayDeque
+import java.util.concurrent.ScheduledExecutorService
+
+class SctpAssociationTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val executor: FakeScheduledExecutorService = spyk()
+    val client = Peer(executor, executor.clock)
+    val server = Peer(executor, executor.clock)
+
+    /**
+     * Delivers the packets in flight in both directions until there are
+     * none left.
+     */
+    fun exchange() {
+        while (client.outgoing.isNotEmpty() || server.outgoing.isNotEmpty()) {
+            client.outgoing.poll()?.let { server.receive(it) }
+            server.outgoing.poll()?.let { client.receive(it) }
+        }
+    }
+
+    client.association.connect()
+    exchange()
+
+    context("The handshake") {
+        should("establish the association on both sides") {
+            client.ready shouldBe true
+            server.ready shouldBe true
+            client.association.isReady() shouldBe true
+            server.association.isReady() shouldBe true
+        }
+    }
+    context("Sending a message") {
+        client.send("hello", sid = 1)
+        exchange()
+        should("deliver it with its stream and PPID") {
+            server.messages shouldContainExactly listOf(Message("hello", 1, PPID))
+        }
+        should("have it acknowledged") {
+            client.association.getDebugState()["queued_bytes"] shouldBe 0
+        }
+    }
+    context("Sending a message larger than the MTU") {
+        val large = "x".repeat(5000) + "y"
+        client.send(large)
+        client.outgoing.size shouldBe 4
+        exchange()
+        should("reassemble it") {
+            server.messages shouldContainExactly listOf(Message(large, 0, PPID))
+        }
+    }
+    context("Packets received out of order") {
+        client.send("1")
+        client.send("2")
+        client.send("3")
+        val packets = client.outgoing.toList()
+        client.outgoing.clear()
+        listOf(2, 0, 1).forEach { server.receive(packets[it]) }
+        exchange()
+        should("be delivered in order") {
+            server.messages.map { it.data } shouldContainExactly listOf("1", "2", "3")
+        }
+    }
+    context("A lost packet") {
+        client.send("lost")
+        client.outgoing.clear()
+        exchange()
+        server.messages.shouldBeEmpty()
+        context("after the retransmission timeout") {
+            var attempts = 0
+            while (server.messages.isEmpty() && attempts++ < 10) {
+                executor.runOne()
+                exchange()
+            }
+            should("be retransmitted") {
+                server.messages.map { it.data } shouldContainExactly listOf("lost")
+                client.association.getDebugState()["retransmissions"] shouldBe 1L
+            }
+        }
+    }
+    context("A packet with a bad checksum") {
+        client.send("corrupted")
+        client.outgoing.peek()[20] = (client.outgoing.peek()[20] + 1).toByte()
+        exchange()
+        should("be dropped") {
+            server.messages.shouldBeEmpty()
+            server.association.getDebugState()["checksum_errors"] shouldBe 1L
+        }
+    }
+    context("A packet with an unrecognized chunk before its data") {
+        client.send("unrecognized")
+        val packet = client.outgoing.poll()
+
+        should("be processed past the chunk if its type says to skip it") {
+            server.receive(withChunkBefore(packet, 0xbf))
+            server.messages.map { it.data } shouldContainExactly listOf("unrecognized")
+        }
+        should("not be processed past the chunk if its type says to stop") {
+            server.receive(withChunkBefore(packet, 0x3f))
+            server.messages.shouldBeEmpty()
+        }
+    }
+    context("Closing the association") {
+        client.association.close()
+        exchange()
+        should("notify both sides") {
+            client.disconnected shouldBe true
+            server.disconnected shouldBe true
+            server.association.send(ByteBuffer.wrap(byteArrayOf(1)), true, 0, PPID) shouldBe -1
+        }
+    }
+}) {
+    private data class Message(val data: String, val sid: Int, val ppid: Int)
+
+    private class Peer(executor: ScheduledExecutorService, clock: Clock) {
+        val outgoing = ArrayDeque<ByteArray>()
+        val messages = mutableListOf<Message>()
+        var ready = false
+        var disconnected = false
+
+        val association = SctpAssociation(
+            SctpDataSender { data, offset, length ->
+                outgoing.add(data.copyOfRange(offset, offset + length))
+                ByteBufferPool.returnBuffer(data)
+                0
+            },
+            object : SctpAssociation.Listener {
+                override fun onReady() {
+                    ready = true
+                }
+
+                override fun onData(data: ByteArray, sid: Int, ppid: Int) {
+                    messages.add(Message(String(data), sid, ppid))
+                }
+
+                override fun onDisconnected() {
+                    disconnected = true
+                }
+            },
+            executor,
+            LoggerImpl("test"),
+            clock
+        )
+
+        fun send(data: String, sid: Int = 0) = association.send(ByteBuffer.wrap(data.toByteArray()), true, sid, PPID)
+
+        fun receive(packet: ByteArray) = association.handleIncomingSctp(packet, 0, packet.size)
+    }
+
+    companion object {
+        private const val PPID = 51
+
+        /**
+         * Inserts an empty chunk of a specific type before the chunks of a packet, and updates its checksum.
+         */
+        private fun withChunkBefore(packet: ByteArray, type: Int): ByteArray {
+            val chunk = byteArrayOf(type.toByte(), 0, 0, 4)
+            val result = packet.copyOfRange(0, 12) + chunk + packet.copyOfRange(12, packet.size)
+            ByteBuffer.wrap(result, 8, 4).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(Crc32c.ofSctpPacket(result, 0, result.size))
+            return result
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.stats
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import org.jitsi.nlj.util.OrderedJsonObject
+
+class MicrosecondDelayStatsTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val stats = MicrosecondDelayStats(longArrayOf(10, 100))
+
+    context("Without any delays") {
+        should("report zeros") {
+            stats.toJson()["total_count"] shouldBe 0L
+            stats.toJson()["average_delay_us"] shouldBe 0.0
+        }
+    }
+    context("Adding delays") {
+        stats.addDelayNanos(5_000)
+        stats.addDelayNanos(10_999)
+        stats.addDelayNanos(50_000)
+        stats.addDelayNanos(2_000_000)
+        val json = stats.toJson()
+        should("count them in microsecond buckets") {
+            val buckets = json["buckets"] as OrderedJsonObject
+            buckets["<= 10 us"] shouldBe 2L
+            buckets["<= 100 us"] shouldBe 1L
+            buckets["> 100 us"] shouldBe 1L
+        }
+        should("keep the average and the maximum") {
+            json["total_count"] shouldBe 4L
+            json["average_delay_us"] shouldBe (5 + 10 + 50 + 2000) / 4.0
+            json["max_delay_us"] shouldBe 2000L
+        }
+    }
+    context("A negative delay") {
+        stats.addDelayNanos(-1_000)
+        should("be counted as zero") {
+            (stats.toJson()["buckets"] as OrderedJsonObject)["<= 10 us"] shouldBe 1L
+            stats.toJson()["max_delay_us"] shouldBe 0L
+        }
+    }
+})
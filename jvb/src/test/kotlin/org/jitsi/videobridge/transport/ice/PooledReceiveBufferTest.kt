@@ -0,0 +1,136 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.transport.ice
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.ints.shouldBeGreaterThanOrEqual
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import io.kotest.matchers.types.shouldNotBeSameInstanceAs
+import org.jitsi.rtp.Packet
+import org.jitsi.rtp.rtp.RtpPacket
+
+class PooledReceiveBufferTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val handler = RecordingHandler()
+    private val receiveBuffer = PooledReceiveBuffer(handler, BUFFER_SIZE)
+
+    /**
+     * Fill the packet the way a socket does.
+     */
+    private fun receive(length: Int) = with(receiveBuffer.packet) {
+        repeat(length) { data[offset + it] = it.toByte() }
+        this.length = length
+    }
+
+    /**
+     * The room for a packet in the current buffer, which may be larger than
+     * requested.
+     */
+    private fun capacity() = receiveBuffer.packet.data.size - RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET
+
+    init {
+        context("The packet to receive into") {
+            should("start after the headroom") {
+                receiveBuffer.packet.data.size shouldBeGreaterThanOrEqual BUFFER_SIZE
+                receiveBuffer.packet.offset shouldBe RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET
+                receiveBuffer.packet.length shouldBe capacity()
+            }
+        }
+        context("A packet which the handler keeps") {
+            val buf = receiveBuffer.packet.data
+            receive(1000)
+            receiveBuffer.handleReceived(1234) shouldBe true
+            should("be handed over in place, with the headroom and tailroom") {
+                val received = handler.pooled.single()
+                received.data shouldBeSameInstanceAs buf
+                received.offset shouldBe RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET
+                received.length shouldBe 1000
+                received.receivedTime shouldBe 1234L
+                (received.data.size - received.offset - received.length) shouldBeGreaterThanOrEqual
+                    Packet.BYTES_TO_LEAVE_AT_END_OF_PACKET
+                received.data[received.offset + 999] shouldBe 999.toByte()
+                handler.copied.shouldBeEmpty()
+            }
+            should("be followed by a new buffer with the full capacity") {
+                receiveBuffer.packet.data shouldNotBeSameInstanceAs buf
+                receiveBuffer.packet.offset shouldBe RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET
+                receiveBuffer.packet.length shouldBe capacity()
+            }
+        }
+        context("A packet which the handler doesn't keep") {
+            handler.keep = false
+            val buf = receiveBuffer.packet.data
+            receive(100)
+            receiveBuffer.handleReceived(0) shouldBe false
+            should("leave the buffer to be reused, with the full capacity") {
+                handler.pooled.single().length shouldBe 100
+                receiveBuffer.packet.data shouldBeSameInstanceAs buf
+                receiveBuffer.packet.length shouldBe capacity()
+            }
+        }
+        context("A packet which runs into the tailroom") {
+            val buf = receiveBuffer.packet.data
+            val length = capacity() - Packet.BYTES_TO_LEAVE_AT_END_OF_PACKET + 1
+            receive(length)
+            receiveBuffer.handleReceived(0) shouldBe false
+            should("be passed to the copying path") {
+                handler.pooled.shouldBeEmpty()
+                val received = handler.copied.single()
+                received.data shouldBeSameInstanceAs buf
+                received.length shouldBe length
+                receiveBuffer.packet.data shouldBeSameInstanceAs buf
+            }
+        }
+        context("A packet which fills the buffer up to the tailroom") {
+            val length = capacity() - Packet.BYTES_TO_LEAVE_AT_END_OF_PACKET
+            receive(length)
+            receiveBuffer.handleReceived(0) shouldBe true
+            should("still be handed over") {
+                handler.pooled.single().length shouldBe length
+                handler.copied.shouldBeEmpty()
+            }
+        }
+    }
+
+    private data class Received(val data: ByteArray, val offset: Int, val length: Int, val receivedTime: Long)
+
+    private class RecordingHandler : IceTransport.PooledIncomingDataHandler {
+        val pooled = mutableListOf<Received>()
+        val copied = mutableListOf<Received>()
+        var keep = true
+
+        override val headroom = RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET
+        override val tailroom = Packet.BYTES_TO_LEAVE_AT_END_OF_PACKET
+
+        override fun dataReceived(data: ByteArray, offset: Int, length: Int, receivedTime: Long) {
+            copied += Received(data, offset, length, receivedTime)
+        }
+
+        override fun pooledDataReceived(data: ByteArray, offset: Int, length: Int, receivedTime: Long): Boolean {
+            pooled += Received(data, offset, length, receivedTime)
+            return keep
+        }
+    }
+
+    companion object {
+        private const val BUFFER_SIZE = 1500
+    }
+}
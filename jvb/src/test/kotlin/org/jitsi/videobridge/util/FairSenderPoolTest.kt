@@ -0,0 +1,146 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.util
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import org.jitsi.nlj.util.OrderedJsonObject
+import org.jitsi.test.time.FakeClock
+import org.jitsi.utils.ms
+import org.jitsi.utils.queue.CountingErrorHandler
+import java.util.concurrent.Executor
+import java.util.function.Consumer
+
+class FairSenderPoolTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val clock = FakeClock()
+    val pool = FairSenderPool("test", 0, 2, NanoClock.fromClock(clock))
+    val sent = mutableListOf<String>()
+    val released = mutableListOf<String>()
+    val errorHandler = CountingErrorHandler()
+
+    fun createQueue(id: String, capacity: Int = 10) = pool.createQueue(
+        id,
+        capacity,
+        Consumer<String> { sent.add(it) },
+        Consumer<String> { released.add(it) },
+        errorHandler
+    )
+
+    fun runAll() {
+        while (pool.runOnce()) {
+        }
+    }
+
+    val a = createQueue("a")
+    val b = createQueue("b")
+
+    context("Draining queues") {
+        (1..5).forEach { a.add("a$it") }
+        b.add("b1")
+        b.add("b2")
+        b.add("b3")
+        runAll()
+        should("take turns, a burst at a time") {
+            sent shouldContainExactly listOf("a1", "a2", "b1", "b2", "a3", "a4", "b3", "a5")
+        }
+        should("count the bursts") {
+            val stats = pool.getStatsJson()
+            stats["packets_handled"] shouldBe 8L
+            stats["bursts"] shouldBe 5L
+            stats["bursts_at_limit"] shouldBe 3L
+        }
+    }
+    context("A full queue") {
+        val small = createQueue("small", capacity = 2)
+        small.add("1")
+        small.add("2")
+        small.add("3")
+        runAll()
+        should("drop and release its oldest packet") {
+            sent shouldContainExactly listOf("2", "3")
+            released shouldContainExactly listOf("1")
+            errorHandler.numPacketsDropped shouldBe 1L
+        }
+        should("record its depth") {
+            val depth = pool.getStatsJson()["queue_depth"] as OrderedJsonObject
+            depth["total_count"] shouldBe 3L
+            depth["max"] shouldBe 2L
+        }
+    }
+    context("Packets which wait") {
+        a.add("a1")
+        clock.elapse(5.ms)
+        runAll()
+        should("have their drain lag recorded") {
+            val lag = pool.getStatsJson()["drain_lag"] as OrderedJsonObject
+            lag["max_delay_us"] shouldBe 5000L
+        }
+    }
+    context("Closing a queue") {
+        a.add("a1")
+        a.add("a2")
+        a.close()
+        a.add("a3")
+        runAll()
+        should("release its packets instead of sending them") {
+            sent shouldBe emptyList<String>()
+            released shouldContainExactly listOf("a1", "a2", "a3")
+            pool.getStatsJson()["num_queues"] shouldBe 1
+        }
+    }
+    context("A handler which throws") {
+        val failing = pool.createQueue(
+            "failing",
+            10,
+            Consumer<String> { throw IllegalStateException() },
+            Consumer<String> { },
+            errorHandler
+        )
+        failing.add("1")
+        failing.add("2")
+        runAll()
+        should("not stop the queue") {
+            errorHandler.numExceptions shouldBe 2L
+            failing.size() shouldBe 0
+        }
+    }
+    context("A queue with a blocking executor") {
+        val tasks = mutableListOf<Runnable>()
+        a.setBlockingExecutor(Executor { tasks.add(it) })
+        (1..3).forEach { a.add("a$it") }
+        b.add("b1")
+        runAll()
+        should("not be drained by the pool") {
+            sent shouldContainExactly listOf("b1")
+        }
+        should("be drained by the executor, a burst at a time") {
+            tasks.size shouldBe 1
+            tasks.removeAt(0).run()
+            sent shouldContainExactly listOf("b1", "a1", "a2")
+            tasks.removeAt(0).run()
+            sent shouldContainExactly listOf("b1", "a1", "a2", "a3")
+            tasks.size shouldBe 0
+            pool.getStatsJson()["num_blocking_queues"] shouldBe 1
+            pool.getStatsJson()["blocking_bursts"] shouldBe 2L
+        }
+    }
+})
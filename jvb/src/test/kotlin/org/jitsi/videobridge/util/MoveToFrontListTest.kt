@@ -0,0 +1,95 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.util
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+
+class MoveToFrontListTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    val list = MoveToFrontList<String>()
+    list.add("a")
+    list.add("b")
+    list.add("c")
+
+    context("Adding items") {
+        should("append them") {
+            list.toList() shouldContainExactly listOf("a", "b", "c")
+            list.first shouldBe "a"
+            list.size shouldBe 3
+        }
+        should("not add an item twice") {
+            list.add("b") shouldBe false
+            list.size shouldBe 3
+        }
+    }
+    context("Moving an item to the front") {
+        list.moveToFront("c") shouldBe true
+        should("change the order") {
+            list.toList() shouldContainExactly listOf("c", "a", "b")
+            list.first shouldBe "c"
+        }
+        should("be reflected in a new snapshot") {
+            list.snapshot() shouldContainExactly listOf("c", "a", "b")
+        }
+        should("not move an unknown item") {
+            list.moveToFront("d") shouldBe false
+        }
+    }
+    context("Snapshots") {
+        val snapshot = list.snapshot()
+        should("be shared while the list doesn't change") {
+            list.snapshot() shouldBeSameInstanceAs snapshot
+            list.moveToFront("a")
+            list.snapshot() shouldBeSameInstanceAs snapshot
+        }
+        should("not change when the list changes") {
+            list.moveToFront("b")
+            list.remove("c")
+            snapshot shouldContainExactly listOf("a", "b", "c")
+            list.snapshot() shouldContainExactly listOf("b", "a")
+        }
+    }
+    context("Removing items") {
+        list.remove("b") shouldBe true
+        list.removeIf { it == "a" } shouldBe true
+        should("unlink them") {
+            list.toList() shouldContainExactly listOf("c")
+            ("b" in list) shouldBe false
+            list.snapshot() shouldContainExactly listOf("c")
+        }
+        should("allow them to be added again") {
+            list.add("d") shouldBe true
+            list.add("b") shouldBe true
+            list.toList() shouldContainExactly listOf("c", "d", "b")
+        }
+    }
+    context("Many items") {
+        (0 until 100).forEach { list.add("$it") }
+        list.moveToFront("50")
+        list.remove("a")
+        should("keep their order") {
+            list.size shouldBe 102
+            list.snapshot().take(3) shouldContainExactly listOf("50", "b", "c")
+            list.snapshot().last() shouldBe "99"
+        }
+    }
+})
@@ -0,0 +1,87 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.util
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.longs.shouldBeInRange
+import io.kotest.matchers.shouldBe
+import org.jitsi.test.time.FakeClock
+import org.jitsi.utils.ms
+import org.jitsi.utils.secs
+import java.time.Duration
+
+class NanoClockTest : ShouldSpec({
+    isolationMode = IsolationMode.InstancePerLeaf
+
+    context("The system clock") {
+        var nanos = 5_000_000_000L
+        var millis = 1_600_000_000_000L
+        val clock = SystemNanoClock({ nanos }, { millis })
+
+        should("read the system time") {
+            clock.nanoTime() shouldBe nanos
+        }
+        should("convert readings relative to its anchor") {
+            clock.toEpochMillis(nanos) shouldBe millis
+            clock.toEpochMillis(nanos + 999_999) shouldBe millis
+            clock.toEpochMillis(nanos + 1_500_000) shouldBe millis + 1
+            clock.toEpochMillis(nanos - 1) shouldBe millis - 1
+        }
+        context("when the wall clock is adjusted") {
+            millis += 10_000
+            should("keep the anchor for 1 second") {
+                nanos += NANOS_PER_SECOND
+                clock.toEpochMillis(nanos) shouldBe 1_600_000_001_000L
+            }
+            should("renew the anchor after 1 second") {
+                nanos += NANOS_PER_SECOND + 1
+                millis += 1000
+                clock.toEpochMillis(nanos) shouldBe millis
+                // Older readings are converted relative to the new anchor too.
+                clock.toEpochMillis(nanos - 2_000_000) shouldBe millis - 2
+            }
+        }
+        should("be used by SYSTEM") {
+            val before = System.currentTimeMillis()
+            val converted = NanoClock.SYSTEM.toEpochMillis(NanoClock.SYSTEM.nanoTime())
+            val after = System.currentTimeMillis()
+            converted shouldBeInRange before - 100..after + 100
+        }
+    }
+    context("A clock made from a java.time.Clock") {
+        val fakeClock = FakeClock()
+        val clock = NanoClock.fromClock(fakeClock)
+        val start = clock.nanoTime()
+
+        should("convert readings to the time of the clock") {
+            clock.toEpochMillis(start) shouldBe fakeClock.millis()
+            fakeClock.elapse(1.secs)
+            clock.toEpochMillis(clock.nanoTime()) shouldBe fakeClock.millis()
+        }
+        should("advance with the clock, with nanosecond resolution") {
+            fakeClock.elapse(1500.ms)
+            clock.nanoTime() - start shouldBe 1_500_000_000L
+            fakeClock.elapse(Duration.ofNanos(1))
+            clock.nanoTime() - start shouldBe 1_500_000_001L
+        }
+    }
+}) {
+    companion object {
+        private const val NANOS_PER_SECOND = 1_000_000_000L
+    }
+}
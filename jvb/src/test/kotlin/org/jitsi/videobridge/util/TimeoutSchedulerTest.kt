@@ -0,0 +1,146 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.util
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import io.mockk.spyk
+import org.jitsi.test.concurrent.FakeScheduledExecutorService
+import org.jitsi.utils.ms
+import org.jitsi.utils.secs
+import java.time.Duration
+
+class TimeoutSchedulerTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val executor: FakeScheduledExecutorService = spyk()
+
+    private val checked = mutableListOf<String>()
+
+    /**
+     * The delays [check] returns for each item, in order.  An item is no
+     * longer checked once its delays run out.
+     */
+    private val nextDelays = mutableMapOf<String, MutableList<Duration>>()
+
+    private fun check(item: String): Duration? {
+        checked += item
+        if (item == "failing") {
+            throw IllegalStateException("failed")
+        }
+        return nextDelays[item]?.let { if (it.isEmpty()) null else it.removeAt(0) }
+    }
+
+    private val scheduler = TimeoutScheduler("test", 100.ms, executor, 8, ::check, executor.clock).apply {
+        start()
+    }
+
+    /**
+     * Let time pass, one tick at a time.
+     */
+    private fun elapseTicks(numTicks: Int) = repeat(numTicks) {
+        executor.clock.elapse(100.ms)
+        executor.runOne()
+    }
+
+    init {
+        context("an item with a timeout") {
+            scheduler.schedule("a", 250.ms)
+            scheduler.size() shouldBe 1
+
+            should("not be checked before its timeout") {
+                elapseTicks(2)
+                checked.shouldBeEmpty()
+            }
+            should("be checked on the first tick after its timeout") {
+                elapseTicks(3)
+                checked shouldContainExactly listOf("a")
+                scheduler.size() shouldBe 0
+            }
+            context("which is cancelled") {
+                scheduler.cancel("a")
+                should("never be checked") {
+                    elapseTicks(10)
+                    checked.shouldBeEmpty()
+                    scheduler.size() shouldBe 0
+                }
+            }
+            context("which is rescheduled") {
+                scheduler.schedule("a", 1.secs)
+                should("only be checked at the new timeout") {
+                    elapseTicks(9)
+                    checked.shouldBeEmpty()
+                    elapseTicks(1)
+                    checked shouldContainExactly listOf("a")
+                }
+            }
+        }
+        context("a check which returns a delay") {
+            nextDelays["a"] = mutableListOf(200.ms, 300.ms)
+            scheduler.schedule("a", 100.ms)
+            should("be repeated after that delay until it returns null") {
+                elapseTicks(1)
+                checked shouldContainExactly listOf("a")
+                elapseTicks(2)
+                checked shouldContainExactly listOf("a", "a")
+                elapseTicks(3)
+                checked shouldContainExactly listOf("a", "a", "a")
+                scheduler.size() shouldBe 0
+                elapseTicks(10)
+                checked shouldContainExactly listOf("a", "a", "a")
+            }
+        }
+        context("a timeout longer than a rotation of the wheel") {
+            scheduler.schedule("a", 2.secs)
+            should("fire after the full timeout") {
+                elapseTicks(19)
+                checked.shouldBeEmpty()
+                elapseTicks(1)
+                checked shouldContainExactly listOf("a")
+            }
+        }
+        context("ticks which run late") {
+            scheduler.schedule("a", 100.ms)
+            scheduler.schedule("b", 500.ms)
+            scheduler.schedule("c", 5.secs)
+            executor.clock.elapse(1.secs)
+            executor.runOne()
+            should("catch up with the clock") {
+                checked shouldContainExactly listOf("a", "b")
+                scheduler.size() shouldBe 1
+                scheduler.getStatsJson()["num_ticks"] shouldBe 10L
+            }
+        }
+        context("a check which fails") {
+            scheduler.schedule("failing", 100.ms)
+            scheduler.schedule("a", 100.ms)
+            elapseTicks(1)
+            should("not prevent the other checks from running") {
+                checked shouldContainExactly listOf("failing", "a")
+                scheduler.getStatsJson()["num_failed_checks"] shouldBe 1L
+            }
+            should("not be repeated") {
+                elapseTicks(10)
+                checked shouldContainExactly listOf("failing", "a")
+            }
+        }
+    }
+}
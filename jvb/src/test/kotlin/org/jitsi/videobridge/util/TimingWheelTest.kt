@@ -0,0 +1,76 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.util
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+
+class TimingWheelTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val wheel = TimingWheel<String>(4)
+
+    init {
+        context("scheduling items") {
+            wheel.schedule("a", 1)
+            wheel.schedule("b", 2)
+            wheel.schedule("c", 2)
+            wheel.size() shouldBe 3
+
+            should("expire them on their tick") {
+                wheel.advance() shouldContainExactly listOf("a")
+                wheel.advance() shouldContainExactly listOf("b", "c")
+                wheel.advance().shouldBeEmpty()
+                wheel.size() shouldBe 0
+            }
+            context("and cancelling one") {
+                wheel.cancel("b") shouldBe true
+                should("not expire it") {
+                    wheel.advance() shouldContainExactly listOf("a")
+                    wheel.advance() shouldContainExactly listOf("c")
+                }
+            }
+            context("and rescheduling one") {
+                wheel.schedule("a", 3)
+                should("only expire it on its new deadline") {
+                    wheel.advance().shouldBeEmpty()
+                    wheel.advance() shouldContainExactly listOf("b", "c")
+                    wheel.advance() shouldContainExactly listOf("a")
+                }
+            }
+        }
+        context("scheduling an item further than a rotation") {
+            wheel.schedule("a", 6)
+            should("keep it for multiple rotations") {
+                repeat(5) {
+                    wheel.advance().shouldBeEmpty()
+                }
+                wheel.isScheduled("a") shouldBe true
+                wheel.advance() shouldContainExactly listOf("a")
+            }
+        }
+        context("scheduling an item without a delay") {
+            wheel.schedule("a", 0)
+            should("expire it on the next tick") {
+                wheel.advance() shouldContainExactly listOf("a")
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jitsi.videobridge.util
+
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldStartWith
+import java.util.concurrent.Callable
+
+class VirtualThreadsTest : ShouldSpec({
+    context("Creating a virtual thread executor") {
+        val executor = VirtualThreads.newThreadPerTaskExecutor("test")
+        should("only fail when virtual threads are not supported") {
+            (executor != null) shouldBe VirtualThreads.isSupported
+        }
+        if (executor != null) {
+            should("run tasks on named threads") {
+                executor.submit(Callable { Thread.currentThread().name }).get() shouldStartWith "test-"
+                executor.shutdown()
+            }
+        }
+    }
+    context("Parsing the Java version") {
+        should("handle the old and the new formats") {
+            VirtualThreads.parseJavaVersion("1.8") shouldBe 8
+            VirtualThreads.parseJavaVersion("11") shouldBe 11
+            VirtualThreads.parseJavaVersion("24") shouldBe 24
+        }
+        should("return 0 when it can't be parsed") {
+            VirtualThreads.parseJavaVersion(null) shouldBe 0
+            VirtualThreads.parseJavaVersion("unknown") shouldBe 0
+        }
+    }
+})
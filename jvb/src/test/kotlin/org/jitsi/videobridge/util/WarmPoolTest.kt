@@ -0,0 +1,88 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.util
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import org.jitsi.test.time.FakeClock
+import java.time.Duration
+import java.util.concurrent.Executor
+
+class WarmPoolTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val clock = FakeClock()
+    private var nextItem = 0
+    private val discarded = mutableListOf<Int>()
+
+    private fun pool(size: Int) = WarmPool(
+        "test",
+        size,
+        Duration.ofMinutes(1),
+        Executor { it.run() },
+        { nextItem++ },
+        { discarded.add(it) },
+        clock
+    )
+
+    init {
+        context("a started pool") {
+            val pool = pool(2)
+            pool.start()
+            should("create its objects ahead of time") {
+                nextItem shouldBe 2
+                pool.getStatsJson()["available"] shouldBe 2
+            }
+            context("checking out objects") {
+                val first = pool.checkout()
+                val second = pool.checkout()
+                should("return the pooled objects and replace them") {
+                    listOf(first, second) shouldContainExactly listOf(0, 1)
+                    pool.getStatsJson()["available"] shouldBe 2
+                    pool.getStatsJson()["num_hits"] shouldBe 2L
+                }
+            }
+            context("checking out an object after the max age") {
+                clock.elapse(Duration.ofMinutes(2))
+                val item = pool.checkout()
+                should("discard the expired objects") {
+                    discarded shouldContainExactly listOf(0, 1)
+                    item shouldBe null
+                    pool.getStatsJson()["num_expired"] shouldBe 2L
+                    pool.getStatsJson()["num_misses"] shouldBe 1L
+                }
+            }
+            context("stopping the pool") {
+                pool.stop()
+                should("discard its objects") {
+                    discarded shouldContainExactly listOf(0, 1)
+                    pool.checkout() shouldBe null
+                }
+            }
+        }
+        context("a disabled pool") {
+            val pool = pool(0)
+            pool.start()
+            should("not create objects") {
+                nextItem shouldBe 0
+                pool.checkout() shouldBe null
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.xmpp
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeInstanceOf
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ColibriRequestDispatcherTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val executor = Executors.newCachedThreadPool()
+    private val dispatcher = ColibriRequestDispatcher(executor)
+
+    init {
+        context("requests for the same conference") {
+            val handled = Collections.synchronizedList(mutableListOf<Int>())
+            val futures = (1..100).map { i ->
+                dispatcher.submit("conference") {
+                    handled.add(i)
+                    i
+                }
+            }
+            should("run in order") {
+                futures.forEach { it.get(5, TimeUnit.SECONDS) }
+                handled shouldContainExactly (1..100).toList()
+            }
+        }
+        context("a slow request") {
+            val blocked = CountDownLatch(1)
+            val slow = dispatcher.submit("slow") { blocked.await(5, TimeUnit.SECONDS) }
+            val queued = dispatcher.submit("slow") { "queued" }
+            should("not delay the requests for other conferences") {
+                dispatcher.submit("other") { "done" }.get(5, TimeUnit.SECONDS) shouldBe "done"
+                slow.isDone shouldBe false
+                dispatcher.getQueueDepth() shouldBe 1
+                blocked.countDown()
+                queued.get(5, TimeUnit.SECONDS) shouldBe "queued"
+                dispatcher.getQueueDepth() shouldBe 0
+            }
+        }
+        context("a failed request") {
+            val failed = dispatcher.submit("conference") { throw IllegalStateException("failed") }
+            val next = dispatcher.submit("conference") { "next" }
+            should("complete its future exceptionally") {
+                val exception = shouldThrow<ExecutionException> { failed.get(5, TimeUnit.SECONDS) }
+                exception.cause.shouldBeInstanceOf<IllegalStateException>()
+            }
+            should("not prevent the next requests from running") {
+                next.get(5, TimeUnit.SECONDS) shouldBe "next"
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jitsi.videobridge.xmpp
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+import org.jitsi.utils.ms
+import org.jitsi.videobridge.xmpp.config.XmppClientConnectionConfig
+import org.jitsi.xmpp.extensions.colibri.ColibriConferenceIQ
+import org.jitsi.xmpp.extensions.health.HealthCheckIQ
+import org.jivesoftware.smack.packet.IQ
+import org.jivesoftware.smack.packet.XMPPError
+import org.jivesoftware.smackx.iqversion.packet.Version
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class XmppConnectionTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val config = mockk<XmppClientConnectionConfig> {
+        every { colibriResponseTimeout } returns 500.ms
+    }
+    private val xmppConnection = XmppConnection(config)
+
+    /**
+     * Runs the IQ handlers, like Smack does in the async IQ handler mode.
+     */
+    private val smackExecutor = Executors.newCachedThreadPool()
+
+    private val dispatcher = ColibriRequestDispatcher(Executors.newCachedThreadPool())
+
+    /**
+     * Blocks the requests for conference "slow".
+     */
+    private val slowConferenceBlocked = CountDownLatch(1)
+
+    init {
+        xmppConnection.eventHandler = object : XmppConnection.EventHandler {
+            override fun colibriConferenceIqReceived(iq: ColibriConferenceIQ, responseSender: (IQ) -> Unit) {
+                dispatcher.submit(iq.id) {
+                    if (iq.id == "slow") {
+                        slowConferenceBlocked.await(5, TimeUnit.SECONDS)
+                    }
+                    responseSender(IQ.createResultIQ(iq))
+                }
+            }
+
+            override fun versionIqReceived(iq: Version): IQ = IQ.createResultIQ(iq)
+            override fun healthCheckIqReceived(iq: HealthCheckIQ): IQ = IQ.createResultIQ(iq)
+        }
+
+        context("A slow Colibri request") {
+            val slowResponse = smackExecutor.submit<IQ> { xmppConnection.handleIq(colibriRequest("slow")) }
+
+            should("not delay a request for another conference") {
+                val start = System.nanoTime()
+                val response = smackExecutor.submit<IQ> { xmppConnection.handleIq(colibriRequest("other")) }
+                    .get(5, TimeUnit.SECONDS)
+                response.type shouldBe IQ.Type.result
+                (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(250)) shouldBe true
+                slowResponse.isDone shouldBe false
+                slowConferenceBlocked.countDown()
+                slowResponse.get(5, TimeUnit.SECONDS).type shouldBe IQ.Type.result
+            }
+            should("get an error response after the timeout") {
+                val response = slowResponse.get(5, TimeUnit.SECONDS)
+                response.type shouldBe IQ.Type.error
+                response.error.condition shouldBe XMPPError.Condition.internal_server_error
+                slowConferenceBlocked.countDown()
+            }
+        }
+    }
+
+    private fun colibriRequest(conferenceId: String) = ColibriConferenceIQ().apply {
+        id = conferenceId
+        type = IQ.Type.set
+    }
+}
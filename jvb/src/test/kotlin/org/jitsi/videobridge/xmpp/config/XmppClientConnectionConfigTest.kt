@@ -38,7 +38,7 @@ internal class XmppClientConnectionConfigTest : ConfigTest() {
                             this.username shouldBe "jvb"
                             this.password shouldBe "s3cr3t"
                             this.mucJids shouldContainExactly listOf("JvbBrewery@internal.some.domain.net")
-                            this.iqHandlerMode shouldBe "sync"
+                            this.iqHandlerMode shouldBe "async"
                         }
                     }
                 }
@@ -57,7 +57,7 @@ internal class XmppClientConnectionConfigTest : ConfigTest() {
                             this.username shouldBe "jvb"
                             this.password shouldBe "s3cr3t"
                             this.mucJids shouldContainExactly listOf("JvbBrewery@internal.some.domain.net")
-                            this.iqHandlerMode shouldBe "sync"
+                            this.iqHandlerMode shouldBe "async"
                         }
                     }
                 }
@@ -76,7 +76,7 @@ internal class XmppClientConnectionConfigTest : ConfigTest() {
                             this.username shouldBe "jvb"
                             this.password shouldBe "s3cr3t"
                             this.mucJids shouldContainExactly listOf("JvbBrewery@internal.some.domain.net")
-                            this.iqHandlerMode shouldBe "sync"
+                            this.iqHandlerMode shouldBe "async"
                         }
                     }
                 }
@@ -95,7 +95,7 @@ internal class XmppClientConnectionConfigTest : ConfigTest() {
                             this.username shouldBe "jvb"
                             this.password shouldBe "s3cr3t"
                             this.mucJids shouldContainExactly listOf("JvbBrewery@internal.some.domain.net")
-                            this.iqHandlerMode shouldBe "sync"
+                            this.iqHandlerMode shouldBe "async"
                         }
                     }
                 }